@@ -16,18 +16,24 @@
 
 package com.netflix.titus.api.jobmanager.service;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import com.netflix.titus.api.jobmanager.model.CallMetadata;
 import com.netflix.titus.api.jobmanager.model.job.Capacity;
+import com.netflix.titus.api.jobmanager.model.job.Job;
 import com.netflix.titus.api.jobmanager.model.job.JobDescriptor;
 import com.netflix.titus.api.jobmanager.model.job.ServiceJobProcesses;
 import com.netflix.titus.api.jobmanager.model.job.Task;
 import com.netflix.titus.api.jobmanager.model.job.disruptionbudget.DisruptionBudget;
+import com.netflix.titus.api.model.Page;
+import com.netflix.titus.api.model.Pagination;
 import com.netflix.titus.common.util.rx.ReactorExt;
+import com.netflix.titus.common.util.tuple.Pair;
 import reactor.core.publisher.Mono;
 import rx.Completable;
 import rx.Observable;
@@ -45,6 +51,18 @@ public interface V3JobOperations extends ReadOnlyJobOperations {
         Eviction,
     }
 
+    /**
+     * Returns a page of jobs matching the given predicate, sorted in the pagination cursor order (the job creation time
+     * first, and the job id next). Only jobs belonging to the requested page are collected.
+     */
+    Pair<List<Job<?>>, Pagination> findJobs(Predicate<Pair<Job<?>, List<Task>>> queryPredicate, Page page);
+
+    /**
+     * Returns a page of tasks matching the given predicate, sorted in the pagination cursor order (the task creation
+     * time first, and the task id next). Only tasks belonging to the requested page are collected.
+     */
+    Pair<List<Task>, Pagination> findTasks(Predicate<Pair<Job<?>, Task>> queryPredicate, Page page);
+
     /**
      * @deprecated Use {@link #createJobReactor(JobDescriptor, CallMetadata)}.
      */
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.api.jobmanager.store;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Versions of all active job and task records kept in a {@link JobStore}. A version is the time (in milliseconds)
+ * at which a record was last written, so a record with a version older than some point in time was not modified
+ * after it.
+ */
+public class ActiveRecordVersions {
+
+    private final Map<String, Long> jobVersions;
+    private final Map<String, Map<String, Long>> taskVersions;
+
+    public ActiveRecordVersions(Map<String, Long> jobVersions, Map<String, Map<String, Long>> taskVersions) {
+        this.jobVersions = jobVersions;
+        this.taskVersions = taskVersions;
+    }
+
+    /**
+     * Returns a map of job id to job record version.
+     */
+    public Map<String, Long> getJobVersions() {
+        return jobVersions;
+    }
+
+    /**
+     * Returns a map of job id to a map of task id to task record version.
+     */
+    public Map<String, Map<String, Long>> getTaskVersions() {
+        return taskVersions;
+    }
+
+    public Map<String, Long> getTaskVersions(String jobId) {
+        return taskVersions.getOrDefault(jobId, Collections.emptyMap());
+    }
+
+    @Override
+    public String toString() {
+        return "ActiveRecordVersions{" +
+                "jobs=" + jobVersions.size() +
+                ", jobsWithTasks=" + taskVersions.size() +
+                '}';
+    }
+}
@@ -42,6 +42,14 @@ public interface JobStore {
      */
     Observable<Pair<List<Job<?>>, Integer>> retrieveJobs();
 
+    /**
+     * Retrieve versions of all active job and task records, without reading the records themselves. Store
+     * implementations that cannot provide record versions return {@link UnsupportedOperationException} error.
+     */
+    default Observable<ActiveRecordVersions> retrieveActiveRecordVersions() {
+        return Observable.error(new UnsupportedOperationException("Record versions not supported by " + getClass().getSimpleName()));
+    }
+
     /**
      * Retrieve the job with the specified jobId.
      *
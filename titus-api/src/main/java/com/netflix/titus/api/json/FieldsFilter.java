@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.api.json;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.netflix.titus.common.util.PropertiesExt;
+import com.netflix.titus.common.util.ReflectionExt;
+
+/**
+ * Jackson property filter, which serializes only the selected fields of Titus POJOs. The dot separated field names
+ * are compiled once into an immutable path trie. Children of a node selected in whole are dropped, so a lookup
+ * within a fully selected sub-tree ends at the sub-tree root.
+ */
+class FieldsFilter extends SimpleBeanPropertyFilter {
+
+    static final String FILTER_ID = "titusFilter";
+
+    private final Node root;
+
+    FieldsFilter(Collection<String> fields) {
+        this.root = Node.compile(PropertiesExt.fullSplit(fields));
+    }
+
+    @Override
+    public void serializeAsField(Object pojo, JsonGenerator jgen, SerializerProvider provider, PropertyWriter writer) throws Exception {
+        Node selectorNode = findNode(jgen.getOutputContext().getParent());
+        if (selectorNode != null) {
+            boolean enabled = selectorNode.selected;
+            if (!enabled) {
+                Node childNode = selectorNode.children.get(writer.getName());
+                if (childNode != null) {
+                    boolean isNested = !childNode.children.isEmpty() && !isPrimitive(writer);
+                    enabled = isNested || childNode.selected;
+                }
+            }
+            if (enabled) {
+                writer.serializeAsField(pojo, jgen, provider);
+                return;
+            }
+        }
+        if (!jgen.canOmitFields()) {
+            writer.serializeAsOmittedField(pojo, jgen, provider);
+        }
+    }
+
+    private Node findNode(JsonStreamContext outputContext) {
+        if (outputContext.inArray()) {
+            return findNode(outputContext.getParent());
+        }
+        if (outputContext.getParent() == null) {
+            return root;
+        }
+        Node node = findNode(outputContext.getParent());
+        if (node == null || node.selected) {
+            return node;
+        }
+        return node.children.get(outputContext.getCurrentName());
+    }
+
+    private static boolean isPrimitive(PropertyWriter writer) {
+        if (writer instanceof BeanPropertyWriter) {
+            BeanPropertyWriter bw = (BeanPropertyWriter) writer;
+            return ReflectionExt.isPrimitiveOrWrapper(bw.getType().getRawClass());
+        }
+        return false;
+    }
+
+    private static final class Node {
+
+        private final boolean selected;
+        private final Map<String, Node> children;
+
+        private Node(boolean selected, Map<String, Node> children) {
+            this.selected = selected;
+            this.children = children;
+        }
+
+        private static Node compile(PropertiesExt.PropertyNode<Boolean> propertyNode) {
+            boolean selected = propertyNode.getValue().orElse(Boolean.FALSE);
+            if (selected || propertyNode.getChildren().isEmpty()) {
+                return new Node(selected, Collections.emptyMap());
+            }
+            Map<String, Node> children = new HashMap<>();
+            propertyNode.getChildren().forEach((name, child) -> children.put(name, compile(child)));
+            return new Node(false, children);
+        }
+    }
+}
@@ -18,25 +18,25 @@ package com.netflix.titus.api.json;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 import com.fasterxml.jackson.annotation.JsonView;
-import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.JsonStreamContext;
 import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.databind.AnnotationIntrospector;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.introspect.Annotated;
 import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
-import com.fasterxml.jackson.databind.ser.PropertyWriter;
-import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
 import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.base.Preconditions;
 import com.netflix.titus.api.agent.model.AgentInstance;
 import com.netflix.titus.api.agent.model.AgentInstanceGroup;
@@ -160,8 +160,7 @@ import com.netflix.titus.api.scheduler.store.mixin.ShouldMixin;
 import com.netflix.titus.api.scheduler.store.mixin.SystemSelectorMixin;
 import com.netflix.titus.api.store.v2.ApplicationSlaMixIn;
 import com.netflix.titus.api.store.v2.ResourceDimensionMixin;
-import com.netflix.titus.common.util.PropertiesExt;
-import com.netflix.titus.common.util.ReflectionExt;
+import com.netflix.titus.common.util.tuple.Pair;
 import rx.exceptions.Exceptions;
 
 /**
@@ -177,6 +176,16 @@ public class ObjectMappers {
     private static final ObjectMapper STORE = createStoreMapper();
     private static final ObjectMapper APP_SCALE_STORE = createAppScalePolicyMapper();
 
+    private static final int MAX_FIELDS_FILTER_WRITERS = 1_000;
+
+    private static final Cache<ObjectMapper, ObjectMapper> FIELDS_FILTER_MAPPERS = Caffeine.newBuilder()
+            .weakKeys()
+            .build();
+
+    private static final Cache<Pair<ObjectMapper, Set<String>>, ObjectWriter> FIELDS_FILTER_WRITERS = Caffeine.newBuilder()
+            .maximumSize(MAX_FIELDS_FILTER_WRITERS)
+            .build();
+
     /**
      * A helper marker class for use with {@link JsonView} annotation.
      */
@@ -206,6 +215,15 @@ public class ObjectMappers {
         return APP_SCALE_STORE;
     }
 
+    /**
+     * Creates a new {@link ObjectMapper} instance with the same configuration as {@link #storeMapper()}, but
+     * backed by the given {@link JsonFactory}. This allows to store data in a binary format (for example Smile),
+     * while reusing all the store mixins.
+     */
+    public static ObjectMapper newStoreMapper(JsonFactory jsonFactory) {
+        return configureStoreMapper(new ObjectMapper(jsonFactory));
+    }
+
     public static String writeValueAsString(ObjectMapper objectMapper, Object object) {
         try {
             return objectMapper.writeValueAsString(object);
@@ -223,12 +241,39 @@ public class ObjectMappers {
     }
 
     /**
-     * Serializes only the specified fields in Titus POJOs.
+     * Serializes only the specified fields in Titus POJOs. Each call creates a new mapper with empty serializer
+     * caches, so {@link #fieldsFilterWriter(ObjectMapper, Collection)} should be used on request paths.
      */
     public static ObjectMapper applyFieldsFilter(ObjectMapper original, Collection<String> fields) {
         Preconditions.checkArgument(!fields.isEmpty(), "Fields filter, with no field names provided");
 
-        PropertiesExt.PropertyNode<Boolean> rootNode = PropertiesExt.fullSplit(fields);
+        ObjectMapper newMapper = newFieldsFilterMapper(original);
+        newMapper.setFilterProvider(new SimpleFilterProvider().addFilter(FieldsFilter.FILTER_ID, new FieldsFilter(fields)));
+        return newMapper;
+    }
+
+    /**
+     * Returns a writer which serializes only the specified fields in Titus POJOs. Writers are cached per mapper and
+     * normalized field set. All writers created for the same mapper share a single copy of it, and thus its
+     * serializer caches.
+     */
+    public static ObjectWriter fieldsFilterWriter(ObjectMapper original, Collection<String> fields) {
+        Set<String> normalizedFields = new HashSet<>();
+        for (String field : fields) {
+            String trimmed = field.trim();
+            if (!trimmed.isEmpty()) {
+                normalizedFields.add(trimmed);
+            }
+        }
+        Preconditions.checkArgument(!normalizedFields.isEmpty(), "Fields filter, with no field names provided");
+
+        return FIELDS_FILTER_WRITERS.get(Pair.of(original, normalizedFields), key -> {
+            ObjectMapper filterMapper = FIELDS_FILTER_MAPPERS.get(key.getLeft(), ObjectMappers::newFieldsFilterMapper);
+            return filterMapper.writer(new SimpleFilterProvider().addFilter(FieldsFilter.FILTER_ID, new FieldsFilter(key.getRight())));
+        });
+    }
+
+    private static ObjectMapper newFieldsFilterMapper(ObjectMapper original) {
         SimpleModule module = new SimpleModule() {
             @Override
             public void setupModule(SetupContext context) {
@@ -236,64 +281,7 @@ public class ObjectMappers {
                 context.appendAnnotationIntrospector(new TitusAnnotationIntrospector());
             }
         };
-        ObjectMapper newMapper = original.copy().registerModule(module);
-
-        SimpleBeanPropertyFilter filter = new SimpleBeanPropertyFilter() {
-
-            private PropertiesExt.PropertyNode<Boolean> findNode(JsonStreamContext outputContext) {
-                if (outputContext.inArray()) {
-                    return findNode(outputContext.getParent());
-                }
-                if (outputContext.getParent() == null) {
-                    return rootNode;
-                }
-                PropertiesExt.PropertyNode<Boolean> node = findNode(outputContext.getParent());
-                if (node == null) {
-                    return null;
-                }
-                if (isEnabled(node)) {
-                    return node;
-                }
-                return node.getChildren().get(outputContext.getCurrentName());
-            }
-
-            @Override
-            public void serializeAsField(Object pojo, JsonGenerator jgen, SerializerProvider provider, PropertyWriter writer) throws Exception {
-                PropertiesExt.PropertyNode<Boolean> selectorNode = findNode(jgen.getOutputContext().getParent());
-                if (selectorNode != null) {
-                    boolean enabled = isEnabled(selectorNode);
-                    if (!enabled) {
-                        PropertiesExt.PropertyNode<Boolean> childNode = selectorNode.getChildren().get(writer.getName());
-                        if (childNode != null) {
-                            boolean isNested = !childNode.getChildren().isEmpty() && !isPrimitive(writer);
-                            enabled = isNested || isEnabled(childNode);
-                        }
-                    }
-                    if (enabled) {
-                        writer.serializeAsField(pojo, jgen, provider);
-                        return;
-                    }
-                }
-                if (!jgen.canOmitFields()) {
-                    writer.serializeAsOmittedField(pojo, jgen, provider);
-                }
-            }
-
-            private boolean isPrimitive(PropertyWriter writer) {
-                if (writer instanceof BeanPropertyWriter) {
-                    BeanPropertyWriter bw = (BeanPropertyWriter) writer;
-                    return ReflectionExt.isPrimitiveOrWrapper(bw.getType().getRawClass());
-                }
-                return false;
-            }
-
-            private Boolean isEnabled(PropertiesExt.PropertyNode<Boolean> childNode) {
-                return childNode.getValue().orElse(Boolean.FALSE);
-            }
-        };
-
-        newMapper.setFilterProvider(new SimpleFilterProvider().addFilter("titusFilter", filter));
-        return newMapper;
+        return original.copy().registerModule(module);
     }
 
     private static class TitusAnnotationIntrospector extends AnnotationIntrospector {
@@ -306,7 +294,7 @@ public class ObjectMappers {
         public Object findFilterId(Annotated ann) {
             Object id = super.findFilterId(ann);
             if (id == null && ann.getRawType().getName().startsWith("com.netflix.titus")) {
-                id = "titusFilter";
+                id = FieldsFilter.FILTER_ID;
             }
             return id;
         }
@@ -343,8 +331,10 @@ public class ObjectMappers {
     }
 
     private static ObjectMapper createStoreMapper() {
-        ObjectMapper objectMapper = new ObjectMapper();
+        return configureStoreMapper(new ObjectMapper());
+    }
 
+    private static ObjectMapper configureStoreMapper(ObjectMapper objectMapper) {
         objectMapper.registerModule(new Jdk8Module());
 
         // Common
@@ -17,12 +17,15 @@
 package com.netflix.titus.api.model;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import com.netflix.titus.common.util.StringExt;
 import com.netflix.titus.common.util.tuple.Pair;
@@ -84,6 +87,180 @@ public final class PaginationUtil {
         return Pair.of(pageItems, pagination);
     }
 
+    /**
+     * Pagination over a list that is already sorted in the cursor order, and filtered on the fly. The cursor position
+     * is resolved against the unfiltered list, and the scan starts there (or for page number based requests, at the
+     * beginning of the list), and stops as soon as the page is full. The page items, the cursor and the 'hasMore'
+     * flag are the same as {@link #takePageWithCursor(Page, List, Comparator, CursorIndexOf, Function)} would return
+     * for the filtered list. The total number of items, the number of pages and the cursor position are estimated,
+     * as the items outside of the scanned range are not tested. The estimates assume that all of them match the
+     * filter, so they are exact if the filter accepts all items, or if the scan reached the end of the list.
+     */
+    public static <T> Pair<List<T>, Pagination> takeFilteredPageWithCursor(Page page,
+                                                                           List<T> sortedItems,
+                                                                           Predicate<T> filter,
+                                                                           CursorIndexOf<T> cursorIndexOf,
+                                                                           Function<T, String> cursorFactory) {
+        boolean hasCursor = !StringExt.isEmpty(page.getCursor());
+        if (!hasCursor && page.getPageSize() <= 0) {
+            return Pair.of(Collections.emptyList(), new Pagination(page, false, 0, 0, "", 0));
+        }
+
+        // Position in the unfiltered list, from which the page items are taken.
+        int startPosition = hasCursor
+                ? cursorIndexOf.apply(sortedItems, page.getCursor()).orElseThrow(() -> new IllegalArgumentException("Invalid cursor: " + page.getCursor())) + 1
+                : 0;
+        // Number of matching items to skip, before the page items are taken.
+        int itemsToSkip = hasCursor ? 0 : page.getPageNumber() * page.getPageSize();
+
+        List<T> pageItems = new ArrayList<>();
+        int unscannedItems = 0;
+        for (int i = startPosition; i < sortedItems.size(); i++) {
+            T item = sortedItems.get(i);
+            if (!filter.test(item)) {
+                continue;
+            }
+            if (itemsToSkip > 0) {
+                itemsToSkip--;
+            } else if (pageItems.size() < page.getPageSize()) {
+                pageItems.add(item);
+            } else {
+                // One more matching item, so there is a next page
+                unscannedItems = sortedItems.size() - i;
+                break;
+            }
+        }
+        boolean hasMore = unscannedItems > 0;
+
+        if (!hasCursor) {
+            int offset = page.getPageNumber() * page.getPageSize() - itemsToSkip;
+            int totalItems = offset + pageItems.size() + unscannedItems;
+            if (totalItems == 0) {
+                return Pair.of(Collections.emptyList(), new Pagination(page, false, 0, 0, "", 0));
+            }
+            String cursor = pageItems.isEmpty() ? "" : cursorFactory.apply(pageItems.get(pageItems.size() - 1));
+            int cursorPosition = pageItems.isEmpty() ? 0 : offset + pageItems.size() - 1;
+            return Pair.of(pageItems, new Pagination(page, hasMore, numberOfPages(page, totalItems), totalItems, cursor, cursorPosition));
+        }
+
+        // Upper bound of the number of matching items up to the cursor position. If the page is empty, the cursor
+        // points to the last matching item, as in the non-filtered variant, so it is looked up backwards.
+        int offset = startPosition;
+        T cursorItem;
+        if (pageItems.isEmpty()) {
+            int position = Math.min(startPosition, sortedItems.size()) - 1;
+            while (position >= 0 && !filter.test(sortedItems.get(position))) {
+                position--;
+            }
+            cursorItem = position >= 0 ? sortedItems.get(position) : null;
+            offset = position + 1;
+        } else {
+            cursorItem = pageItems.get(pageItems.size() - 1);
+        }
+
+        int totalItems = offset + pageItems.size() + unscannedItems;
+        int endOffset = offset + pageItems.size();
+        int numberOfPages = numberOfPages(page, totalItems);
+        int pageNumber = Math.min(numberOfPages, offset / page.getPageSize());
+
+        Pagination pagination = new Pagination(
+                page.toBuilder().withPageNumber(pageNumber).build(),
+                hasMore,
+                numberOfPages,
+                totalItems,
+                totalItems == 0 ? "" : cursorFactory.apply(cursorItem),
+                totalItems == 0 ? 0 : endOffset - 1
+        );
+        return Pair.of(pageItems, pagination);
+    }
+
+    /**
+     * Pagination with the same semantics as {@link #takePageWithCursor(Page, List, Comparator, CursorIndexOf, Function)},
+     * applied to an unsorted collection. Instead of sorting all items, only the items of the requested page (and for
+     * page number based requests, the items of the preceding pages) are selected, using a bounded heap. This makes it
+     * a good fit for large in-memory collections, where only a small page is returned, and each returned item is
+     * further transformed by the caller.
+     *
+     * @param cursorReference maps a cursor value to an item with the cursor position in the sort order
+     */
+    public static <T> Pair<List<T>, Pagination> takeTopPageWithCursor(Page page,
+                                                                      Collection<T> items,
+                                                                      Comparator<T> cursorComparator,
+                                                                      Function<String, Optional<T>> cursorReference,
+                                                                      Function<T, String> cursorFactory) {
+        if (StringExt.isEmpty(page.getCursor())) {
+            if (items.isEmpty() || page.getPageSize() <= 0) {
+                return takePageWithoutCursor(page, Collections.emptyList(), cursorFactory);
+            }
+            int firstItem = page.getPageNumber() * page.getPageSize();
+            List<T> topItems = selectSmallest(items, item -> true, firstItem + page.getPageSize(), cursorComparator);
+            List<T> pageItems = firstItem < topItems.size() ? topItems.subList(firstItem, topItems.size()) : Collections.emptyList();
+
+            int totalItems = items.size();
+            int lastItem = Math.min(totalItems, firstItem + page.getPageSize());
+            String cursor = pageItems.isEmpty() ? "" : cursorFactory.apply(pageItems.get(pageItems.size() - 1));
+            int cursorPosition = pageItems.isEmpty() ? 0 : lastItem - 1;
+            return Pair.of(pageItems, new Pagination(page, totalItems > lastItem, numberOfPages(page, totalItems), totalItems, cursor, cursorPosition));
+        }
+
+        T reference = cursorReference.apply(page.getCursor())
+                .orElseThrow(() -> new IllegalArgumentException("Invalid cursor: " + page.getCursor()));
+
+        // Number of items up to (and including) the cursor position, and the last item, used as a cursor if the page is empty.
+        int offset = 0;
+        T lastItem = null;
+        for (T item : items) {
+            if (cursorComparator.compare(item, reference) <= 0) {
+                offset++;
+            }
+            if (lastItem == null || cursorComparator.compare(item, lastItem) > 0) {
+                lastItem = item;
+            }
+        }
+        List<T> pageItems = selectSmallest(items, item -> cursorComparator.compare(item, reference) > 0, page.getPageSize(), cursorComparator);
+
+        int totalItems = items.size();
+        boolean hasMore = totalItems > (offset + page.getPageSize());
+        int endOffset = Math.min(totalItems, offset + page.getPageSize());
+        int numberOfPages = numberOfPages(page, totalItems);
+        int pageNumber = Math.min(numberOfPages, offset / page.getPageSize());
+        T cursorItem = pageItems.isEmpty() ? lastItem : pageItems.get(pageItems.size() - 1);
+
+        Pagination pagination = new Pagination(
+                page.toBuilder().withPageNumber(pageNumber).build(),
+                hasMore,
+                numberOfPages,
+                totalItems,
+                totalItems == 0 ? "" : cursorFactory.apply(cursorItem),
+                totalItems == 0 ? 0 : endOffset - 1
+        );
+        return Pair.of(pageItems, pagination);
+    }
+
+    /**
+     * Returns up to <tt>limit</tt> smallest items matching the filter, in ascending order.
+     */
+    private static <T> List<T> selectSmallest(Collection<T> items, Predicate<T> filter, int limit, Comparator<T> comparator) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        PriorityQueue<T> largestOnTop = new PriorityQueue<>(Math.min(limit, Math.max(1, items.size())), comparator.reversed());
+        for (T item : items) {
+            if (!filter.test(item)) {
+                continue;
+            }
+            if (largestOnTop.size() < limit) {
+                largestOnTop.add(item);
+            } else if (comparator.compare(item, largestOnTop.peek()) < 0) {
+                largestOnTop.poll();
+                largestOnTop.add(item);
+            }
+        }
+        List<T> result = new ArrayList<>(largestOnTop);
+        result.sort(comparator);
+        return result;
+    }
+
     /**
      * {@link Page#getPageNumber() Number} (index) based pagination.
      * <p>
@@ -22,6 +22,7 @@ import java.util.List;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.junit.Test;
 
 import static com.netflix.titus.api.json.ObjectMappers.compactMapper;
@@ -62,6 +63,26 @@ public class ObjectMappersTest {
         assertThat(deserialized.objectValue.intValue).isEqualTo(0);
     }
 
+    @Test
+    public void testFieldsFilterWriter() throws Exception {
+        List<String> fields = asList("stringValue", "objectValue.intValue", "objectValues.intValue");
+
+        String expected = ObjectMappers.applyFieldsFilter(compactMapper(), fields).writeValueAsString(NESTED_OBJECT);
+        String actual = ObjectMappers.fieldsFilterWriter(compactMapper(), fields).writeValueAsString(NESTED_OBJECT);
+
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void testFieldsFilterWriterIsCachedByNormalizedFieldSet() throws Exception {
+        ObjectWriter first = ObjectMappers.fieldsFilterWriter(compactMapper(), asList("stringValue", "objectValue.intValue"));
+        ObjectWriter second = ObjectMappers.fieldsFilterWriter(compactMapper(), asList(" objectValue.intValue", "stringValue", ""));
+        ObjectWriter other = ObjectMappers.fieldsFilterWriter(compactMapper(), Collections.singletonList("stringValue"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(other).isNotSameAs(first);
+    }
+
     private OuterClass filter(List<String> fields) throws Exception {
         ObjectMapper mapper = ObjectMappers.applyFieldsFilter(compactMapper(), fields);
 
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.api.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.netflix.titus.common.util.StringExt;
+import com.netflix.titus.common.util.tuple.Pair;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PaginationUtilTest {
+
+    private static final List<Integer> ITEMS = Collections.unmodifiableList(
+            IntStream.range(0, 100).boxed().collect(Collectors.toList())
+    );
+
+    private static final List<Integer> SHUFFLED_ITEMS = shuffled(ITEMS);
+
+    private static final Predicate<Integer> EVEN = value -> value % 2 == 0;
+
+    @Test
+    public void testFilteredPageWithoutCursor() {
+        for (int pageNumber = 0; pageNumber < 12; pageNumber++) {
+            Page page = Page.newBuilder().withPageNumber(pageNumber).withPageSize(5).build();
+            assertSameResult(page, EVEN);
+        }
+    }
+
+    @Test
+    public void testFilteredPageWithCursor() {
+        Page page = Page.newBuilder().withPageSize(7).build();
+        Pair<List<Integer>, Pagination> result = assertSameResult(page, EVEN);
+        while (result.getRight().hasMore()) {
+            page = Page.newBuilder().withPageSize(7).withCursor(result.getRight().getCursor()).build();
+            result = assertSameResult(page, EVEN);
+        }
+        assertThat(result.getLeft()).endsWith(98);
+    }
+
+    @Test
+    public void testFilteredPageWithCursorPointingToFilteredOutItem() {
+        assertSameResult(Page.newBuilder().withPageSize(5).withCursor("31").build(), EVEN);
+        assertSameResult(Page.newBuilder().withPageSize(5).withCursor("99").build(), EVEN);
+    }
+
+    @Test
+    public void testFilteredPageWithNoMatchingItems() {
+        assertSameResult(Page.newBuilder().withPageSize(5).build(), value -> false);
+        assertSameResult(Page.newBuilder().withPageSize(5).withCursor("10").build(), value -> false);
+    }
+
+    @Test
+    public void testFilteredPageMatchingAllItemsHasExactTotals() {
+        assertSameResult(Page.newBuilder().withPageNumber(3).withPageSize(5).build(), value -> true, true);
+        assertSameResult(Page.newBuilder().withPageSize(5).withCursor("31").build(), value -> true, true);
+        assertSameResult(Page.newBuilder().withPageSize(5).withCursor("99").build(), value -> true, true);
+    }
+
+    @Test
+    public void testFilteredPageScanStopsWhenPageIsFull() {
+        AtomicInteger tested = new AtomicInteger();
+        Predicate<Integer> countingFilter = value -> {
+            tested.incrementAndGet();
+            return EVEN.test(value);
+        };
+        Pair<List<Integer>, Pagination> result = PaginationUtil.takeFilteredPageWithCursor(
+                Page.newBuilder().withPageSize(5).withCursor("50").build(), ITEMS, countingFilter, PaginationUtilTest::indexOf, String::valueOf
+        );
+
+        assertThat(result.getLeft()).containsExactly(52, 54, 56, 58, 60);
+        assertThat(result.getRight().hasMore()).isTrue();
+        // Items 51 to 62, where 62 is the first matching item after the page
+        assertThat(tested.get()).isEqualTo(12);
+    }
+
+    @Test
+    public void testTopPageWithoutCursor() {
+        for (int pageNumber = 0; pageNumber < 22; pageNumber++) {
+            assertSameTopPageResult(Page.newBuilder().withPageNumber(pageNumber).withPageSize(5).build(), SHUFFLED_ITEMS);
+        }
+        assertSameTopPageResult(Page.newBuilder().withPageSize(0).build(), SHUFFLED_ITEMS);
+        assertSameTopPageResult(Page.newBuilder().withPageSize(5).build(), Collections.emptyList());
+    }
+
+    @Test
+    public void testTopPageWithCursor() {
+        Page page = Page.newBuilder().withPageSize(7).build();
+        Pair<List<Integer>, Pagination> result = assertSameTopPageResult(page, SHUFFLED_ITEMS);
+        while (result.getRight().hasMore()) {
+            page = Page.newBuilder().withPageSize(7).withCursor(result.getRight().getCursor()).build();
+            result = assertSameTopPageResult(page, SHUFFLED_ITEMS);
+        }
+        assertThat(result.getLeft()).endsWith(99);
+    }
+
+    @Test
+    public void testTopPageWithCursorPointingToMissingItem() {
+        List<Integer> evenItems = SHUFFLED_ITEMS.stream().filter(EVEN).collect(Collectors.toList());
+        assertSameTopPageResult(Page.newBuilder().withPageSize(5).withCursor("31").build(), evenItems);
+        assertSameTopPageResult(Page.newBuilder().withPageSize(5).withCursor("99").build(), evenItems);
+        assertSameTopPageResult(Page.newBuilder().withPageSize(5).withCursor("-1").build(), evenItems);
+        assertSameTopPageResult(Page.newBuilder().withPageSize(5).withCursor("10").build(), Collections.emptyList());
+    }
+
+    private Pair<List<Integer>, Pagination> assertSameTopPageResult(Page page, List<Integer> items) {
+        Pair<List<Integer>, Pagination> expected = PaginationUtil.takePageWithCursor(
+                page, items, Comparator.naturalOrder(), PaginationUtilTest::indexOf, String::valueOf
+        );
+        Pair<List<Integer>, Pagination> actual = PaginationUtil.takeTopPageWithCursor(
+                page, items, Comparator.naturalOrder(), cursor -> Optional.of(Integer.parseInt(cursor)), String::valueOf
+        );
+
+        assertThat(actual.getLeft()).isEqualTo(new ArrayList<>(expected.getLeft()));
+        assertThat(actual.getRight()).isEqualTo(expected.getRight());
+        return actual;
+    }
+
+    private Pair<List<Integer>, Pagination> assertSameResult(Page page, Predicate<Integer> filter) {
+        return assertSameResult(page, filter, false);
+    }
+
+    /**
+     * Page items, the cursor and the 'hasMore' flag must be the same as for the pre-filtered list. The totals are
+     * upper bound estimates, which must be exact if the scan reached the end of the list, or if requested.
+     */
+    private Pair<List<Integer>, Pagination> assertSameResult(Page page, Predicate<Integer> filter, boolean exactTotals) {
+        List<Integer> filtered = ITEMS.stream().filter(filter).collect(Collectors.toList());
+        Pair<List<Integer>, Pagination> expected = PaginationUtil.takePageWithCursor(
+                page, filtered, Comparator.naturalOrder(), PaginationUtilTest::indexOf, String::valueOf
+        );
+        Pair<List<Integer>, Pagination> actual = PaginationUtil.takeFilteredPageWithCursor(
+                page, ITEMS, filter, PaginationUtilTest::indexOf, String::valueOf
+        );
+
+        assertThat(actual.getLeft()).isEqualTo(new ArrayList<>(expected.getLeft()));
+        Pagination expectedPagination = expected.getRight();
+        Pagination actualPagination = actual.getRight();
+        if (exactTotals) {
+            assertThat(actualPagination).isEqualTo(expectedPagination);
+        } else {
+            assertThat(actualPagination.hasMore()).isEqualTo(expectedPagination.hasMore());
+            assertThat(actualPagination.getCursor()).isEqualTo(expectedPagination.getCursor());
+            assertThat(actualPagination.getTotalItems()).isBetween(expectedPagination.getTotalItems(), ITEMS.size());
+            if (!actualPagination.hasMore() && StringExt.isEmpty(page.getCursor())) {
+                assertThat(actualPagination).isEqualTo(expectedPagination);
+            }
+        }
+        return actual;
+    }
+
+    private static List<Integer> shuffled(List<Integer> items) {
+        List<Integer> result = new ArrayList<>(items);
+        Collections.shuffle(result, new Random(123));
+        return Collections.unmodifiableList(result);
+    }
+
+    private static Optional<Integer> indexOf(List<Integer> items, String cursor) {
+        int idx = Collections.binarySearch(items, Integer.parseInt(cursor));
+        return Optional.of(idx >= 0 ? idx : Math.max(-1, -idx - 2));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.common.framework.reconciler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.titus.common.framework.reconciler.EntityHolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the cost of a single task update in a job with many tasks, between {@link EntityHolder} and the previous
+ * implementation, that copied the children map on each change. Run with the GC profiler to get the allocation rate
+ * per operation:
+ * <pre>
+ * ./gradlew :titus-benchmark:jmh -PjmhInclude=EntityHolderBenchmark -PjmhArgs='-prof gc'
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EntityHolderBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int taskCount;
+
+    private EntityHolder root;
+    private CopyOnWriteEntityHolder copyOnWriteRoot;
+
+    private int nextTaskIdx;
+    private long nextVersion;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.root = EntityHolder.newRoot("job", 0L);
+        this.copyOnWriteRoot = CopyOnWriteEntityHolder.newRoot("job", 0L);
+        for (int i = 0; i < taskCount; i++) {
+            root = root.addChild(EntityHolder.newRoot("task#" + i, 0L));
+            copyOnWriteRoot = copyOnWriteRoot.addChild(CopyOnWriteEntityHolder.newRoot("task#" + i, 0L));
+        }
+    }
+
+    @Benchmark
+    public EntityHolder updateTask() {
+        String taskId = nextTaskId();
+        EntityHolder task = root.findChildById(taskId).get();
+        root = root.addChild(task.setEntity(nextVersion++));
+        return root;
+    }
+
+    @Benchmark
+    public CopyOnWriteEntityHolder updateTaskCopyOnWrite() {
+        String taskId = nextTaskId();
+        CopyOnWriteEntityHolder task = copyOnWriteRoot.findChildById(taskId).get();
+        copyOnWriteRoot = copyOnWriteRoot.addChild(task.setEntity(nextVersion++));
+        return copyOnWriteRoot;
+    }
+
+    @Benchmark
+    public Optional<EntityHolder> findTask() {
+        return root.findChildById(nextTaskId());
+    }
+
+    @Benchmark
+    public Optional<CopyOnWriteEntityHolder> findTaskCopyOnWrite() {
+        return copyOnWriteRoot.findChildById(nextTaskId());
+    }
+
+    private String nextTaskId() {
+        String taskId = "task#" + nextTaskIdx;
+        nextTaskIdx = (nextTaskIdx + 1) % taskCount;
+        return taskId;
+    }
+
+    /**
+     * The relevant subset of the previous {@link EntityHolder} implementation, kept as a baseline.
+     */
+    static class CopyOnWriteEntityHolder {
+
+        private final String id;
+        private final Object entity;
+
+        private final List<CopyOnWriteEntityHolder> children;
+        private final Map<String, CopyOnWriteEntityHolder> childrenById;
+
+        private CopyOnWriteEntityHolder(String id, Object entity, Map<String, CopyOnWriteEntityHolder> childrenById) {
+            this.id = id;
+            this.entity = entity;
+            this.childrenById = childrenById;
+            this.children = new ArrayList<>(childrenById.values());
+        }
+
+        Optional<CopyOnWriteEntityHolder> findChildById(String childId) {
+            if (children.isEmpty()) {
+                return Optional.empty();
+            }
+            CopyOnWriteEntityHolder entityHolder = childrenById.get(childId);
+            if (entityHolder != null) {
+                return Optional.of(entityHolder);
+            }
+            for (CopyOnWriteEntityHolder child : children) {
+                Optional<CopyOnWriteEntityHolder> result = child.findChildById(childId);
+                if (result.isPresent()) {
+                    return result;
+                }
+            }
+            return Optional.empty();
+        }
+
+        CopyOnWriteEntityHolder addChild(CopyOnWriteEntityHolder child) {
+            Map<String, CopyOnWriteEntityHolder> newChildrenById = new HashMap<>(childrenById);
+            newChildrenById.put(child.id, child);
+            return new CopyOnWriteEntityHolder(id, entity, newChildrenById);
+        }
+
+        CopyOnWriteEntityHolder setEntity(Object entity) {
+            return new CopyOnWriteEntityHolder(id, entity, childrenById);
+        }
+
+        static CopyOnWriteEntityHolder newRoot(String id, Object entity) {
+            return new CopyOnWriteEntityHolder(id, entity, Collections.emptyMap());
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.common.framework.reconciler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.titus.common.framework.reconciler.ChangeAction;
+import com.netflix.titus.common.framework.reconciler.EntityHolder;
+import com.netflix.titus.common.framework.reconciler.ModelActionHolder;
+import com.netflix.titus.common.framework.reconciler.ReconcileEventFactory;
+import com.netflix.titus.common.framework.reconciler.ReconciliationEngine;
+import com.netflix.titus.common.framework.reconciler.internal.DefaultReconciliationEngine;
+import com.netflix.titus.common.framework.reconciler.internal.DefaultReconciliationFramework;
+import com.netflix.titus.common.framework.reconciler.internal.InternalReconciliationEngine;
+import com.netflix.titus.common.runtime.TitusRuntime;
+import com.netflix.titus.common.runtime.TitusRuntimes;
+import com.netflix.titus.common.util.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+
+/**
+ * Measures a single {@link DefaultReconciliationFramework} loop iteration as a function of the number of engines (jobs).
+ * The framework runs on a {@link TestScheduler}, so each benchmark operation advances the time to execute the
+ * loop synchronously on the benchmark thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReconciliationFrameworkBenchmark {
+
+    private static final String INDEX_ID = "byTimestamp";
+
+    private static final long IDLE_TIMEOUT_MS = TimeUnit.DAYS.toMillis(365);
+    private static final long ACTIVE_TIMEOUT_MS = 10;
+
+    private static final Map<Object, Comparator<EntityHolder>> INDEX_COMPARATORS = Collections.singletonMap(
+            INDEX_ID, Comparator.<EntityHolder, Long>comparing(EntityHolder::getEntity)
+    );
+
+    @Param({"1000", "10000", "30000"})
+    public int jobCount;
+
+    @Param({"10"})
+    public int tasksPerJob;
+
+    private TestScheduler testScheduler;
+    private TitusRuntime titusRuntime;
+    private DefaultReconciliationFramework<String> framework;
+    private List<InternalReconciliationEngine<String>> engines;
+
+    private long nextTimestamp;
+    private int nextEngineIdx;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.testScheduler = Schedulers.test();
+        this.titusRuntime = TitusRuntimes.test(testScheduler);
+
+        this.engines = new ArrayList<>();
+        for (int i = 0; i < jobCount; i++) {
+            EntityHolder root = EntityHolder.newRoot("job#" + i, nextTimestamp++);
+            for (int j = 0; j < tasksPerJob; j++) {
+                root = root.addChild(EntityHolder.newRoot("task#" + i + '#' + j, nextTimestamp++));
+            }
+            engines.add(newEngine(root, false));
+        }
+
+        this.framework = new DefaultReconciliationFramework<>(
+                engines,
+                root -> newEngine(root, true),
+                IDLE_TIMEOUT_MS,
+                ACTIVE_TIMEOUT_MS,
+                INDEX_COMPARATORS,
+                titusRuntime.getRegistry(),
+                Optional.of(testScheduler)
+        );
+        framework.start();
+
+        // The first iteration is always a full cycle.
+        runLoop();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        framework.stop(0);
+    }
+
+    @Benchmark
+    public void idleLoop() {
+        runLoop();
+    }
+
+    @Benchmark
+    public List<EntityHolder> loopWithSingleEngineUpdate() {
+        InternalReconciliationEngine<String> engine = engines.get(nextEngineIdx);
+        nextEngineIdx = (nextEngineIdx + 1) % engines.size();
+
+        long timestamp = nextTimestamp++;
+        engine.changeReferenceModel(updateRootAction(timestamp)).subscribe();
+
+        // The first loop iteration starts the change action, and the second one applies the model update.
+        runLoop();
+        runLoop();
+
+        return framework.orderedView(INDEX_ID);
+    }
+
+    private void runLoop() {
+        testScheduler.advanceTimeBy(ACTIVE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private InternalReconciliationEngine<String> newEngine(EntityHolder root, boolean newlyCreated) {
+        return new DefaultReconciliationEngine<>(
+                root,
+                newlyCreated,
+                engine -> Collections.emptyList(),
+                INDEX_COMPARATORS,
+                new StringEventFactory(),
+                changeAction -> Collections.emptyList(),
+                event -> Collections.emptyList(),
+                titusRuntime
+        );
+    }
+
+    private static ChangeAction updateRootAction(long timestamp) {
+        return () -> Observable.just(ModelActionHolder.referenceList(rootHolder -> {
+            EntityHolder newRoot = rootHolder.setEntity(timestamp);
+            return Optional.of(Pair.of(newRoot, newRoot));
+        }));
+    }
+
+    private static class StringEventFactory implements ReconcileEventFactory<String> {
+
+        @Override
+        public String newBeforeChangeEvent(ReconciliationEngine<String> engine, ChangeAction changeAction, String transactionId) {
+            return "beforeChange";
+        }
+
+        @Override
+        public String newAfterChangeEvent(ReconciliationEngine<String> engine, ChangeAction changeAction, long waitTimeMs, long executionTimeMs, String transactionId) {
+            return "afterChange";
+        }
+
+        @Override
+        public String newChangeErrorEvent(ReconciliationEngine<String> engine, ChangeAction changeAction, Throwable error, long waitTimeMs, long executionTimeMs, String transactionId) {
+            return "changeError";
+        }
+
+        @Override
+        public String newModelEvent(ReconciliationEngine<String> engine, EntityHolder newRoot) {
+            return "model";
+        }
+
+        @Override
+        public String newModelUpdateEvent(ReconciliationEngine<String> engine, ChangeAction changeAction, ModelActionHolder modelActionHolder, EntityHolder changedEntityHolder, Optional<EntityHolder> previousEntityHolder, String transactionId) {
+            return "modelUpdate";
+        }
+
+        @Override
+        public String newModelUpdateErrorEvent(ReconciliationEngine<String> engine, ChangeAction changeAction, ModelActionHolder modelActionHolder, EntityHolder previousEntityHolder, Throwable error, String transactionId) {
+            return "modelUpdateError";
+        }
+    }
+}
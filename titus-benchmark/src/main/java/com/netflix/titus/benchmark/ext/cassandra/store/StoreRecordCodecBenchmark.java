@@ -0,0 +1,168 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.ext.cassandra.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.json.ObjectMappers;
+import com.netflix.titus.benchmark.jobmanager.JobFixtures;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.ext.cassandra.store.StoreRecordCodec;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the JSON and binary (Smile) record formats of the Cassandra job store. The 'encode' benchmarks report
+ * the number of bytes written in the 'bytes' and 'records' auxiliary counters, so the average record size of each
+ * format is bytes / records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StoreRecordCodecBenchmark {
+
+    private static final int JOB_COUNT = 100;
+    private static final int TASKS_PER_JOB = 10;
+
+    @Param({"Json", "Smile"})
+    public StoreRecordCodec.Format format;
+
+    private StoreRecordCodec codec;
+
+    private List<Job<?>> jobs;
+    private List<Task> tasks;
+    private List<String> jsonTasks;
+    private List<ByteBuffer> binaryTasks;
+    private List<String> jsonJobs;
+    private List<ByteBuffer> binaryJobs;
+
+    private int nextJobIdx;
+    private int nextTaskIdx;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WrittenBytes {
+
+        public long bytes;
+        public long records;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            records = 0;
+        }
+
+        private void record(int size) {
+            bytes += size;
+            records++;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.codec = new StoreRecordCodec(ObjectMappers.storeMapper());
+
+        this.jobs = new ArrayList<>();
+        this.tasks = new ArrayList<>();
+        for (Pair<Job<?>, List<Task>> jobAndTasks : JobFixtures.newJobsWithTasks(JOB_COUNT, TASKS_PER_JOB)) {
+            jobs.add(jobAndTasks.getLeft());
+            tasks.addAll(jobAndTasks.getRight());
+        }
+
+        this.jsonJobs = new ArrayList<>();
+        this.binaryJobs = new ArrayList<>();
+        jobs.forEach(job -> {
+            jsonJobs.add(codec.encodeJson(job));
+            binaryJobs.add(codec.encodeBinary(job));
+        });
+        this.jsonTasks = new ArrayList<>();
+        this.binaryTasks = new ArrayList<>();
+        tasks.forEach(task -> {
+            jsonTasks.add(codec.encodeJson(task));
+            binaryTasks.add(codec.encodeBinary(task));
+        });
+    }
+
+    @Benchmark
+    public Object encodeJob(WrittenBytes writtenBytes) {
+        return encode(jobs.get(nextJobIdx()), writtenBytes);
+    }
+
+    @Benchmark
+    public Object encodeTask(WrittenBytes writtenBytes) {
+        return encode(tasks.get(nextTaskIdx()), writtenBytes);
+    }
+
+    @Benchmark
+    public Job decodeJob() {
+        int idx = nextJobIdx();
+        return format == StoreRecordCodec.Format.Smile
+                ? codec.decode(null, binaryJobs.get(idx), Job.class)
+                : codec.decode(jsonJobs.get(idx), null, Job.class);
+    }
+
+    @Benchmark
+    public Task decodeTask() {
+        int idx = nextTaskIdx();
+        return format == StoreRecordCodec.Format.Smile
+                ? codec.decode(null, binaryTasks.get(idx), Task.class)
+                : codec.decode(jsonTasks.get(idx), null, Task.class);
+    }
+
+    private Object encode(Object record, WrittenBytes writtenBytes) {
+        if (format == StoreRecordCodec.Format.Smile) {
+            ByteBuffer value = codec.encodeBinary(record);
+            writtenBytes.record(value.remaining());
+            return value;
+        }
+        String value = codec.encodeJson(record);
+        writtenBytes.record(value.getBytes(StandardCharsets.UTF_8).length);
+        return value;
+    }
+
+    private int nextJobIdx() {
+        int idx = nextJobIdx;
+        nextJobIdx = (nextJobIdx + 1) % jobs.size();
+        return idx;
+    }
+
+    private int nextTaskIdx() {
+        int idx = nextTaskIdx;
+        nextTaskIdx = (nextTaskIdx + 1) % tasks.size();
+        return idx;
+    }
+}
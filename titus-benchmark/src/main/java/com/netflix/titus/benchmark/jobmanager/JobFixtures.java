@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.jobmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.JobFunctions;
+import com.netflix.titus.api.jobmanager.model.job.JobModel;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.TaskState;
+import com.netflix.titus.api.jobmanager.model.job.TaskStatus;
+import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
+import com.netflix.titus.common.data.generator.DataGenerator;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.testkit.model.job.JobDescriptorGenerator;
+import com.netflix.titus.testkit.model.job.JobGenerator;
+
+/**
+ * Job/task data sets shared by the job management benchmarks. All data is created with the {@link DataGenerator}
+ * based generators from titus-testkit, so the benchmarks operate on the same kind of data as the integration tests.
+ */
+public final class JobFixtures {
+
+    /**
+     * Task states assigned to consecutive tasks of a job, so queries by task state select a predictable fraction
+     * of all tasks.
+     */
+    private static final TaskState[] TASK_STATES = {TaskState.Accepted, TaskState.Launched, TaskState.StartInitiated, TaskState.Started};
+
+    private JobFixtures() {
+    }
+
+    /**
+     * Creates batch jobs with the given number of tasks each. Application names, capacity groups, owners and
+     * containers are taken in a round robin fashion from the job descriptor generator.
+     */
+    public static List<Pair<Job<?>, List<Task>>> newJobsWithTasks(int jobCount, int tasksPerJob) {
+        DataGenerator<Job<BatchJobExt>> jobsWithDescriptors = JobDescriptorGenerator.batchJobDescriptors(JobFunctions.ofBatchSize(tasksPerJob))
+                .loop()
+                .map(jobDescriptor -> JobGenerator.batchJobs(jobDescriptor).getValue());
+
+        List<Pair<Job<?>, List<Task>>> result = new ArrayList<>(jobCount);
+        for (Job<BatchJobExt> job : jobsWithDescriptors.toList(jobCount)) {
+            List<Task> tasks = new ArrayList<>(tasksPerJob);
+            int idx = 0;
+            for (Task task : JobGenerator.batchTasks(job).toList(tasksPerJob)) {
+                tasks.add(withState(task, TASK_STATES[idx++ % TASK_STATES.length]));
+            }
+            result.add(Pair.of(job, tasks));
+        }
+        return result;
+    }
+
+    public static Task withState(Task task, TaskState taskState) {
+        TaskStatus status = JobModel.newTaskStatus()
+                .withState(taskState)
+                .withReasonCode("normal")
+                .withTimestamp(System.currentTimeMillis())
+                .build();
+        return JobFunctions.changeTaskStatus(task, status);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.master.scheduler.fitness;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.fenzo.TaskAssignmentResult;
+import com.netflix.fenzo.TaskRequest;
+import com.netflix.fenzo.VMTaskFitnessCalculator;
+import com.netflix.fenzo.VirtualMachineCurrentState;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.model.Tier;
+import com.netflix.titus.benchmark.jobmanager.JobFixtures;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.master.jobmanager.service.common.V3QueueableTask;
+import com.netflix.titus.master.scheduler.constraint.ConstraintEvaluatorTransformer;
+import com.netflix.titus.master.scheduler.constraint.SystemHardConstraint;
+import com.netflix.titus.master.scheduler.constraint.SystemSoftConstraint;
+import com.netflix.titus.master.scheduler.fitness.AgentTaskAggregateCache;
+import com.netflix.titus.master.scheduler.fitness.ImageSpreadingFitnessCalculator;
+import com.netflix.titus.master.scheduler.fitness.JobSpreadingFitnessCalculator;
+import com.netflix.titus.master.scheduler.fitness.SecurityGroupSpreadingFitnessCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Simulates the fitness evaluation part of a Fenzo scheduling iteration for the job, image and security group
+ * spreading calculators. Each pending task is evaluated against all agents, and is assigned to the best one, so the
+ * later evaluations see the assignments made earlier in the same iteration. The Fenzo agent state is stubbed with
+ * Mockito (stub only mode), which adds a constant overhead to each evaluation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SpreadingFitnessCalculatorBenchmark {
+
+    private static final int RUNNING_TASKS_PER_AGENT = 16;
+    private static final int TASKS_PER_JOB = 10;
+    private static final int PENDING_TASKS = 100;
+
+    @Param({"100", "1000"})
+    public int agentCount;
+
+    private final AgentTaskAggregateCache aggregateCache = new AgentTaskAggregateCache();
+    private final List<VMTaskFitnessCalculator> calculators = new ArrayList<>();
+
+    private List<VirtualMachineCurrentState> agents;
+    private List<List<TaskAssignmentResult>> assignmentsByAgent;
+    private List<TaskRequest> pendingTasks;
+    private List<TaskAssignmentResult> pendingTaskAssignments;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        calculators.add(new JobSpreadingFitnessCalculator(aggregateCache));
+        calculators.add(new ImageSpreadingFitnessCalculator(aggregateCache));
+        calculators.add(new SecurityGroupSpreadingFitnessCalculator(aggregateCache));
+
+        int runningTaskCount = agentCount * RUNNING_TASKS_PER_AGENT;
+        List<TaskRequest> allTasks = new ArrayList<>();
+        for (Pair<Job<?>, List<Task>> jobAndTasks : JobFixtures.newJobsWithTasks((runningTaskCount + PENDING_TASKS) / TASKS_PER_JOB, TASKS_PER_JOB)) {
+            jobAndTasks.getRight().forEach(task -> allTasks.add(newTaskRequest(jobAndTasks.getLeft(), task)));
+        }
+        Collections.shuffle(allTasks);
+
+        this.agents = new ArrayList<>();
+        this.assignmentsByAgent = new ArrayList<>();
+        for (int i = 0; i < agentCount; i++) {
+            List<TaskRequest> runningTasks = allTasks.subList(i * RUNNING_TASKS_PER_AGENT, (i + 1) * RUNNING_TASKS_PER_AGENT);
+            List<TaskAssignmentResult> assignments = new ArrayList<>();
+
+            VirtualMachineCurrentState agent = mock(VirtualMachineCurrentState.class, withSettings().stubOnly());
+            when(agent.getHostname()).thenReturn("agent" + i);
+            when(agent.getRunningTasks()).thenReturn(runningTasks);
+            when(agent.getTasksCurrentlyAssigned()).thenReturn(assignments);
+
+            agents.add(agent);
+            assignmentsByAgent.add(assignments);
+        }
+
+        this.pendingTasks = new ArrayList<>(allTasks.subList(runningTaskCount, runningTaskCount + PENDING_TASKS));
+        this.pendingTaskAssignments = new ArrayList<>();
+        pendingTasks.forEach(taskRequest -> {
+            TaskAssignmentResult assignment = mock(TaskAssignmentResult.class, withSettings().stubOnly());
+            when(assignment.getRequest()).thenReturn(taskRequest);
+            pendingTaskAssignments.add(assignment);
+        });
+    }
+
+    @Benchmark
+    public double schedulingIteration() {
+        assignmentsByAgent.forEach(List::clear);
+        aggregateCache.prepare();
+
+        double total = 0;
+        for (int t = 0; t < pendingTasks.size(); t++) {
+            TaskRequest taskRequest = pendingTasks.get(t);
+
+            int bestAgent = 0;
+            double bestFitness = -1;
+            for (int a = 0; a < agents.size(); a++) {
+                double fitness = 0;
+                for (VMTaskFitnessCalculator calculator : calculators) {
+                    fitness += calculator.calculateFitness(taskRequest, agents.get(a), null);
+                }
+                if (fitness > bestFitness) {
+                    bestFitness = fitness;
+                    bestAgent = a;
+                }
+            }
+            assignmentsByAgent.get(bestAgent).add(pendingTaskAssignments.get(t));
+            total += bestFitness;
+        }
+        return total;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TaskRequest newTaskRequest(Job<?> job, Task task) {
+        return new V3QueueableTask(
+                Tier.Flex,
+                null,
+                job,
+                task,
+                Collections::emptySet,
+                mock(ConstraintEvaluatorTransformer.class),
+                mock(SystemSoftConstraint.class),
+                mock(SystemHardConstraint.class)
+        );
+    }
+}
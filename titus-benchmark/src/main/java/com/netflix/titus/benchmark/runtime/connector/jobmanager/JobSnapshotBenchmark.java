@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.runtime.connector.jobmanager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.TaskState;
+import com.netflix.titus.benchmark.jobmanager.JobFixtures;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.runtime.connector.jobmanager.JobSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of applying a single job or task change to a {@link JobSnapshot}, which is done for each event
+ * received by the job replicator (gateway, federation, supplementary components).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JobSnapshotBenchmark {
+
+    @Param({"1000", "10000"})
+    public int jobCount;
+
+    @Param({"10"})
+    public int tasksPerJob;
+
+    private JobSnapshot snapshot;
+    private List<Job<?>> jobs;
+    private List<Task> tasks;
+
+    private int nextJobIdx;
+    private int nextTaskIdx;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Pair<Job<?>, List<Task>>> jobsAndTasks = JobFixtures.newJobsWithTasks(jobCount, tasksPerJob);
+
+        Map<String, Job<?>> jobsById = new HashMap<>();
+        Map<String, List<Task>> tasksByJobId = new HashMap<>();
+        this.jobs = new ArrayList<>();
+        this.tasks = new ArrayList<>();
+        jobsAndTasks.forEach(jobAndTasks -> {
+            Job<?> job = jobAndTasks.getLeft();
+            jobsById.put(job.getId(), job);
+            tasksByJobId.put(job.getId(), jobAndTasks.getRight());
+            jobs.add(job);
+            jobAndTasks.getRight().forEach(task -> tasks.add(JobFixtures.withState(task, TaskState.Started)));
+        });
+        this.snapshot = JobSnapshot.newInstance("benchmark", jobsById, tasksByJobId);
+    }
+
+    @Benchmark
+    public JobSnapshot updateTask() {
+        Task task = tasks.get(nextTaskIdx);
+        nextTaskIdx = (nextTaskIdx + 1) % tasks.size();
+        snapshot = snapshot.updateTask(task, false).orElse(snapshot);
+        return snapshot;
+    }
+
+    @Benchmark
+    public JobSnapshot updateJob() {
+        Job<?> job = jobs.get(nextJobIdx);
+        nextJobIdx = (nextJobIdx + 1) % jobs.size();
+        snapshot = snapshot.updateJob(job).orElse(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * A task update followed by a read of all tasks, which is the access pattern of a client listing tasks while
+     * events are streamed in.
+     */
+    @Benchmark
+    public List<Task> updateTaskAndGetTasks() {
+        return updateTask().getTasks();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.runtime.endpoint.v3.grpc;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.benchmark.jobmanager.JobFixtures;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.runtime.endpoint.common.EmptyLogStorageInfo;
+import com.netflix.titus.runtime.endpoint.common.LogStorageInfo;
+import com.netflix.titus.runtime.endpoint.v3.grpc.V3GrpcModelConverters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the core to GRPC (and back) model conversions, which are executed for each job and task returned by
+ * the query endpoints and for each event emitted by the observeJobs stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class V3GrpcModelConvertersBenchmark {
+
+    private static final int JOB_COUNT = 100;
+    private static final int TASKS_PER_JOB = 10;
+
+    @SuppressWarnings("unchecked")
+    private static final LogStorageInfo<Task> LOG_STORAGE_INFO = EmptyLogStorageInfo.INSTANCE;
+
+    private List<Pair<Job<?>, List<Task>>> jobsAndTasks;
+    private com.netflix.titus.grpc.protogen.Job[] grpcJobs;
+    private com.netflix.titus.grpc.protogen.Task[] grpcTasks;
+
+    private int nextIdx;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.jobsAndTasks = JobFixtures.newJobsWithTasks(JOB_COUNT, TASKS_PER_JOB);
+        this.grpcJobs = new com.netflix.titus.grpc.protogen.Job[JOB_COUNT];
+        this.grpcTasks = new com.netflix.titus.grpc.protogen.Task[JOB_COUNT];
+        for (int i = 0; i < JOB_COUNT; i++) {
+            Pair<Job<?>, List<Task>> jobAndTasks = jobsAndTasks.get(i);
+            grpcJobs[i] = V3GrpcModelConverters.toGrpcJob(jobAndTasks.getLeft());
+            grpcTasks[i] = V3GrpcModelConverters.toGrpcTask(jobAndTasks.getRight().get(0), LOG_STORAGE_INFO);
+        }
+    }
+
+    @Benchmark
+    public com.netflix.titus.grpc.protogen.Job toGrpcJob() {
+        return V3GrpcModelConverters.toGrpcJob(jobsAndTasks.get(nextIdx()).getLeft());
+    }
+
+    @Benchmark
+    public com.netflix.titus.grpc.protogen.Task toGrpcTask() {
+        return V3GrpcModelConverters.toGrpcTask(jobsAndTasks.get(nextIdx()).getRight().get(0), LOG_STORAGE_INFO);
+    }
+
+    @Benchmark
+    public Job toCoreJob() {
+        return V3GrpcModelConverters.toCoreJob(grpcJobs[nextIdx()]);
+    }
+
+    @Benchmark
+    public Task toCoreTask() {
+        int idx = nextIdx();
+        return V3GrpcModelConverters.toCoreTask(jobsAndTasks.get(idx).getLeft(), grpcTasks[idx]);
+    }
+
+    private int nextIdx() {
+        int idx = nextIdx;
+        nextIdx = (nextIdx + 1) % JOB_COUNT;
+        return idx;
+    }
+}
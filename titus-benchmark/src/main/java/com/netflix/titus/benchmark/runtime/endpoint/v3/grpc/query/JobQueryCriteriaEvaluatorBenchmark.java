@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.runtime.endpoint.v3.grpc.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.benchmark.jobmanager.JobFixtures;
+import com.netflix.titus.common.runtime.TitusRuntime;
+import com.netflix.titus.common.runtime.TitusRuntimes;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.grpc.protogen.JobDescriptor.JobSpecCase;
+import com.netflix.titus.grpc.protogen.TaskStatus;
+import com.netflix.titus.runtime.endpoint.JobQueryCriteria;
+import com.netflix.titus.runtime.endpoint.v3.grpc.query.V3JobQueryCriteriaEvaluator;
+import com.netflix.titus.runtime.endpoint.v3.grpc.query.V3TaskQueryCriteriaEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a full scan of the active job/task data set with the job and task query criteria evaluators, as done
+ * by the findJobs/findTasks GRPC endpoints. The 'query' parameter selects one of the typical query shapes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JobQueryCriteriaEvaluatorBenchmark {
+
+    public enum Query {
+        All,
+        ByAppName,
+        ByTaskState,
+        ByAppNameAndLabel
+    }
+
+    @Param({"1000", "10000"})
+    public int jobCount;
+
+    @Param({"10"})
+    public int tasksPerJob;
+
+    @Param({"All", "ByAppName", "ByTaskState", "ByAppNameAndLabel"})
+    public Query query;
+
+    private List<Pair<Job<?>, List<Task>>> jobsAndTasks;
+    private List<Pair<Job<?>, Task>> jobAndTaskPairs;
+
+    private V3JobQueryCriteriaEvaluator jobEvaluator;
+    private V3TaskQueryCriteriaEvaluator taskEvaluator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TitusRuntime titusRuntime = TitusRuntimes.internal();
+
+        this.jobsAndTasks = JobFixtures.newJobsWithTasks(jobCount, tasksPerJob);
+        this.jobAndTaskPairs = new ArrayList<>();
+        jobsAndTasks.forEach(jobAndTasks -> jobAndTasks.getRight().forEach(task -> jobAndTaskPairs.add(Pair.of(jobAndTasks.getLeft(), task))));
+
+        JobQueryCriteria<TaskStatus.TaskState, JobSpecCase> criteria = newCriteria(query);
+        this.jobEvaluator = new V3JobQueryCriteriaEvaluator(criteria, titusRuntime);
+        this.taskEvaluator = new V3TaskQueryCriteriaEvaluator(criteria, titusRuntime);
+    }
+
+    @Benchmark
+    public int evaluateJobs() {
+        int matching = 0;
+        for (Pair<Job<?>, List<Task>> jobAndTasks : jobsAndTasks) {
+            if (jobEvaluator.test(jobAndTasks)) {
+                matching++;
+            }
+        }
+        return matching;
+    }
+
+    @Benchmark
+    public int evaluateTasks() {
+        int matching = 0;
+        for (Pair<Job<?>, Task> jobAndTask : jobAndTaskPairs) {
+            if (taskEvaluator.test(jobAndTask)) {
+                matching++;
+            }
+        }
+        return matching;
+    }
+
+    private static JobQueryCriteria<TaskStatus.TaskState, JobSpecCase> newCriteria(Query query) {
+        JobQueryCriteria.Builder<TaskStatus.TaskState, JobSpecCase> builder = JobQueryCriteria.newBuilder();
+        switch (query) {
+            case ByAppName:
+                builder.withAppName("titus");
+                break;
+            case ByTaskState:
+                builder.withTaskStates(Collections.singleton(TaskStatus.TaskState.Started));
+                break;
+            case ByAppNameAndLabel:
+                builder.withAppName("titus").withLabels(Collections.singletonMap("labelA", Collections.singleton("valueA")));
+                break;
+            case All:
+                break;
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.benchmark.supplementary.relocation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.netflix.titus.api.agent.model.AgentInstance;
+import com.netflix.titus.api.agent.model.InstanceGroupLifecycleState;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.ext.ServiceJobExt;
+import com.netflix.titus.api.model.Tier;
+import com.netflix.titus.common.runtime.TitusRuntime;
+import com.netflix.titus.common.runtime.TitusRuntimes;
+import com.netflix.titus.supplementary.relocation.descheduler.DefaultDeschedulerService;
+import com.netflix.titus.supplementary.relocation.model.DeschedulingResult;
+import com.netflix.titus.testkit.model.agent.AgentComponentStub;
+import com.netflix.titus.testkit.model.eviction.EvictionComponentStub;
+import com.netflix.titus.testkit.model.job.JobComponentStub;
+import com.netflix.titus.testkit.model.job.JobGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static com.netflix.titus.api.agent.model.AgentFunctions.withId;
+import static com.netflix.titus.api.jobmanager.model.job.JobFunctions.ofServiceSize;
+import static com.netflix.titus.api.jobmanager.model.job.JobFunctions.withDisruptionBudget;
+import static com.netflix.titus.testkit.model.agent.AgentGenerator.agentServerGroups;
+import static com.netflix.titus.testkit.model.agent.AgentTestFunctions.inState;
+import static com.netflix.titus.testkit.model.eviction.DisruptionBudgetGenerator.budget;
+import static com.netflix.titus.testkit.model.eviction.DisruptionBudgetGenerator.selfManagedPolicy;
+import static com.netflix.titus.testkit.model.eviction.DisruptionBudgetGenerator.unlimitedRate;
+import static com.netflix.titus.testkit.model.job.JobDescriptorGenerator.oneTaskServiceJobDescriptor;
+
+/**
+ * Measures a full descheduling pass over a removable instance group with thousands of agents. Each job has only
+ * half of its tasks covered by the eviction quota, so agents compete for the job quotas, and most of them can be
+ * only partially evacuated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DeschedulerServiceBenchmark {
+
+    private static final int TASKS_PER_AGENT = 8;
+    private static final int TASKS_PER_JOB = 20;
+
+    @Param({"1000", "5000"})
+    public int agentCount;
+
+    private DefaultDeschedulerService deschedulerService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TitusRuntime titusRuntime = TitusRuntimes.internal();
+
+        AgentComponentStub agentComponentStub = AgentComponentStub.newAgentComponent();
+        agentComponentStub.addInstanceGroup(agentServerGroups(Tier.Flex, agentCount).getValue().but(
+                withId("removable"), inState(InstanceGroupLifecycleState.Removable)
+        ));
+        List<AgentInstance> agents = agentComponentStub.getAgentManagementService().getAgentInstances("removable");
+
+        JobComponentStub jobComponentStub = new JobComponentStub(titusRuntime);
+        EvictionComponentStub evictionComponentStub = new EvictionComponentStub(jobComponentStub, titusRuntime);
+
+        int jobCount = agentCount * TASKS_PER_AGENT / TASKS_PER_JOB;
+        List<Job<ServiceJobExt>> jobs = JobGenerator.serviceJobs(oneTaskServiceJobDescriptor().but(
+                ofServiceSize(TASKS_PER_JOB),
+                withDisruptionBudget(budget(selfManagedPolicy(30_000), unlimitedRate(), Collections.emptyList()))
+        )).toList(jobCount);
+
+        int agentIdx = 0;
+        for (Job<ServiceJobExt> job : jobs) {
+            List<Task> tasks = jobComponentStub.createJobAndTasks(job).getRight();
+            for (Task task : tasks) {
+                jobComponentStub.place(task.getId(), agents.get(agentIdx++ % agents.size()));
+            }
+            evictionComponentStub.setJobQuota(job.getId(), TASKS_PER_JOB / 2);
+        }
+
+        this.deschedulerService = new DefaultDeschedulerService(
+                jobComponentStub.getJobOperations(),
+                evictionComponentStub.getEvictionOperations(),
+                agentComponentStub.getAgentManagementService(),
+                titusRuntime
+        );
+    }
+
+    @Benchmark
+    public List<DeschedulingResult> deschedule() {
+        return deschedulerService.deschedule(Collections.emptyMap());
+    }
+}
@@ -17,6 +17,7 @@
 package com.netflix.titus.common.framework.reconciler;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -24,27 +25,41 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
 
+import com.netflix.titus.common.util.collections.PersistentHashMap;
 import com.netflix.titus.common.util.tuple.Pair;
 
 /**
  * Composite entity hierarchy. The parent-child association runs from parent to child only. {@link EntityHolder} instances
  * are immutable, thus each change produces a new version of an entity. Also each child update requires update of a parent
  * entity, when the reference to the child changes (a new version is created).
+ * <p>
+ * Children are kept in a persistent map, which is shared between the entity versions, together with a flattened
+ * index of all descendants. Adding, replacing or removing a child costs O(size of the child sub-tree), instead of
+ * O(number of children), and {@link #findChildById(String)} is a single lookup.
+ * <p>
+ * {@link #getChildrenView()} reads the children directly from the persistent map. {@link #getChildren()} copies them
+ * into a list once per entity version, and should be used only when positional access is needed.
  */
 public class EntityHolder {
 
     private final String id;
     private final Object entity;
 
-    private final List<EntityHolder> children;
-    private final Map<String, EntityHolder> childrenById;
+    private final PersistentHashMap<String, EntityHolder> childrenById;
+    private final PersistentHashMap<String, EntityHolder> descendantsById;
     private final Map<String, Object> attributes;
 
-    private EntityHolder(String id, Object entity, Map<String, EntityHolder> childrenById, Map<String, Object> attributes) {
+    private volatile List<EntityHolder> children;
+
+    private EntityHolder(String id,
+                         Object entity,
+                         PersistentHashMap<String, EntityHolder> childrenById,
+                         PersistentHashMap<String, EntityHolder> descendantsById,
+                         Map<String, Object> attributes) {
         this.id = id;
         this.entity = entity;
         this.childrenById = childrenById;
-        this.children = new ArrayList<>(childrenById.values());
+        this.descendantsById = descendantsById;
         this.attributes = attributes;
     }
 
@@ -56,10 +71,37 @@ public class EntityHolder {
         return (E) entity;
     }
 
+    /**
+     * Returns an immutable view of the children. No data are copied, so the size and the iteration cost do not depend
+     * on how often new versions of this entity are created.
+     */
+    public Collection<EntityHolder> getChildrenView() {
+        return childrenById.asMap().values();
+    }
+
+    /**
+     * Returns an immutable list of the children, in the {@link #getChildrenView()} iteration order. The list is built
+     * on the first call for this entity version.
+     */
     public List<EntityHolder> getChildren() {
+        if (children == null) {
+            children = childrenById.isEmpty()
+                    ? Collections.emptyList()
+                    : Collections.unmodifiableList(new ArrayList<>(childrenById.asMap().values()));
+        }
         return children;
     }
 
+    /**
+     * Returns children of this entity, which are not children of the other entity in the same version. For two versions
+     * of the same entity, the cost depends on the number of changed children, not on the number of all children.
+     */
+    public List<EntityHolder> getChildrenNotIn(EntityHolder other) {
+        List<EntityHolder> result = new ArrayList<>();
+        childrenById.forEachNotIn(other.childrenById, (childId, child) -> result.add(child));
+        return result;
+    }
+
     public Map<String, Object> getAttributes() {
         return attributes;
     }
@@ -72,43 +114,45 @@ public class EntityHolder {
     }
 
     public Optional<EntityHolder> findChildById(String childId) {
-        if (children.isEmpty()) {
-            return Optional.empty();
-        }
         EntityHolder entityHolder = childrenById.get(childId);
-        if (entityHolder != null) {
-            return Optional.of(entityHolder);
-        }
-        for (EntityHolder child : children) {
-            Optional<EntityHolder> result = child.findChildById(childId);
-            if (result.isPresent()) {
-                return result;
-            }
+        if (entityHolder == null) {
+            entityHolder = descendantsById.get(childId);
         }
-        return Optional.empty();
+        return Optional.ofNullable(entityHolder);
     }
 
     public EntityHolder addChild(EntityHolder child) {
-        Map<String, EntityHolder> newChildrenById = new HashMap<>(childrenById);
-        newChildrenById.put(child.getId(), child);
-        return new EntityHolder(id, entity, newChildrenById, attributes);
+        EntityHolder previous = childrenById.get(child.getId());
+        if (previous == child) {
+            return this;
+        }
+        PersistentHashMap<String, EntityHolder> newDescendantsById = descendantsById;
+        if (previous != null) {
+            newDescendantsById = unindex(newDescendantsById, previous);
+        }
+        newDescendantsById = index(newDescendantsById, child);
+        return new EntityHolder(id, entity, childrenById.put(child.getId(), child), newDescendantsById, attributes);
     }
 
     public Pair<EntityHolder, Optional<EntityHolder>> removeChild(String id) {
-        if (!childrenById.containsKey(id)) {
+        EntityHolder removedChild = childrenById.get(id);
+        if (removedChild == null) {
             return Pair.of(this, Optional.empty());
         }
-        Map<String, EntityHolder> newChildrenById = new HashMap<>(childrenById);
-        EntityHolder removedChild = newChildrenById.remove(id);
-
-        EntityHolder newRoot = new EntityHolder(this.id, this.entity, newChildrenById, this.attributes);
+        EntityHolder newRoot = new EntityHolder(
+                this.id,
+                this.entity,
+                childrenById.remove(id),
+                unindex(descendantsById, removedChild),
+                this.attributes
+        );
         return Pair.of(newRoot, Optional.of(removedChild));
     }
 
     public EntityHolder addTag(String tagName, Object tagValue) {
         Map<String, Object> newTags = new HashMap<>(attributes);
         newTags.put(tagName, tagValue);
-        return new EntityHolder(id, entity, childrenById, newTags);
+        return new EntityHolder(id, entity, childrenById, descendantsById, newTags);
     }
 
     public EntityHolder removeTag(String tagName) {
@@ -117,19 +161,43 @@ public class EntityHolder {
         }
         Map<String, Object> newTags = new HashMap<>(attributes);
         newTags.remove(tagName);
-        return new EntityHolder(id, entity, childrenById, newTags);
+        return new EntityHolder(id, entity, childrenById, descendantsById, newTags);
     }
 
     public <E> EntityHolder setEntity(E entity) {
-        return new EntityHolder(id, entity, childrenById, attributes);
+        return new EntityHolder(id, entity, childrenById, descendantsById, attributes);
     }
 
     public void visit(Consumer<EntityHolder> visitor) {
         visitor.accept(this);
-        children.forEach(c -> c.visit(visitor));
+        getChildrenView().forEach(c -> c.visit(visitor));
     }
 
     public static <E> EntityHolder newRoot(String id, E entity) {
-        return new EntityHolder(id, entity, Collections.emptyMap(), Collections.emptyMap());
+        return new EntityHolder(id, entity, PersistentHashMap.empty(), PersistentHashMap.empty(), Collections.emptyMap());
+    }
+
+    private static PersistentHashMap<String, EntityHolder> index(PersistentHashMap<String, EntityHolder> index, EntityHolder holder) {
+        PersistentHashMap<String, EntityHolder> result = index.put(holder.getId(), holder);
+        for (Map.Entry<String, EntityHolder> entry : holder.descendantsById) {
+            result = result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Removes the given holder and its descendants from the index. An entry is removed only if it refers to the same
+     * instance, so a holder with the same id located elsewhere in the hierarchy stays indexed.
+     */
+    private static PersistentHashMap<String, EntityHolder> unindex(PersistentHashMap<String, EntityHolder> index, EntityHolder holder) {
+        PersistentHashMap<String, EntityHolder> result = removeIfSame(index, holder.getId(), holder);
+        for (Map.Entry<String, EntityHolder> entry : holder.descendantsById) {
+            result = removeIfSame(result, entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    private static PersistentHashMap<String, EntityHolder> removeIfSame(PersistentHashMap<String, EntityHolder> index, String id, EntityHolder holder) {
+        return index.get(id) == holder ? index.remove(id) : index;
     }
 }
@@ -65,6 +65,31 @@ public interface ReconciliationFramework<EVENT> {
      */
     <ORDER_BY> List<EntityHolder> orderedView(ORDER_BY orderingCriteria);
 
+    /**
+     * Returns roots of {@link ReconciliationEngine} instances belonging to the given group of the requested grouping
+     * criteria. The returned list is immutable, and constitutes a snapshot of the entity model.
+     *
+     * @throws IllegalArgumentException if the grouping criteria are not recognized
+     */
+    <GROUP_BY> List<EntityHolder> groupedView(GROUP_BY groupingCriteria, Object groupKey);
+
+    /**
+     * Returns children of all {@link ReconciliationEngine} roots ordered by the requested ordering criteria. The returned
+     * list is immutable, and constitutes a snapshot of the entity model. The same list instance is returned until
+     * the children change, so callers may cache data derived from it, using the list identity as its version.
+     *
+     * @throws IllegalArgumentException if the ordering criteria are not recognized
+     */
+    <ORDER_BY> List<EntityHolder> orderedChildView(ORDER_BY orderingCriteria);
+
+    /**
+     * Returns children of all {@link ReconciliationEngine} roots belonging to the given group of the requested grouping
+     * criteria. The returned list is immutable, and constitutes a snapshot of the entity model.
+     *
+     * @throws IllegalArgumentException if the grouping criteria are not recognized
+     */
+    <GROUP_BY> List<EntityHolder> groupedChildView(GROUP_BY groupingCriteria, Object groupKey);
+
     /**
      * Creates a new reconciliation engine.
      */
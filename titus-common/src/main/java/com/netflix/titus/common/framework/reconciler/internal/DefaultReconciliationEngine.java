@@ -56,7 +56,7 @@ public class DefaultReconciliationEngine<EVENT> implements InternalReconciliatio
     private final TitusRuntime titusRuntime;
     private final Clock clock;
 
-    private IndexSet<EntityHolder> indexSet;
+    private volatile IndexSet<EntityHolder> indexSet;
 
     private Transaction pendingTransaction = EmptyTransaction.EMPTY;
 
@@ -65,6 +65,9 @@ public class DefaultReconciliationEngine<EVENT> implements InternalReconciliatio
 
     private boolean firstTrigger;
 
+    private volatile Runnable dirtyListener = () -> {
+    };
+
     public DefaultReconciliationEngine(EntityHolder bootstrapModel,
                                        boolean newlyCreated,
                                        DifferenceResolver<EVENT> runningDifferenceResolver,
@@ -75,24 +78,24 @@ public class DefaultReconciliationEngine<EVENT> implements InternalReconciliatio
                                        TitusRuntime titusRuntime) {
         this.runningDifferenceResolver = runningDifferenceResolver;
         this.eventFactory = eventFactory;
-        this.indexSet = IndexSet.newIndexSet(indexComparators);
+        this.indexSet = IndexSet.newIndexSet(indexComparators, EntityHolder::getId).apply(bootstrapModel.getChildrenView());
         this.titusRuntime = titusRuntime;
         this.clock = titusRuntime.getClock();
         this.eventObservable = ObservableExt.protectFromMissingExceptionHandlers(eventSubject, logger);
         this.modelHolder = new ModelHolder(bootstrapModel, bootstrapModel, bootstrapModel);
         this.firstTrigger = newlyCreated;
         this.metrics = new ReconciliationEngineMetrics<>(extraChangeActionTags, extraModelActionTags, titusRuntime.getRegistry(), clock);
-        indexEntityHolder(bootstrapModel);
     }
 
     @Override
     public boolean applyModelUpdates() {
         return pendingTransaction.applyModelUpdates(modelHolder)
                 .map(newModelHolder -> {
-                    boolean isReferenceModelChanged = newModelHolder != modelHolder && newModelHolder.getReference() != modelHolder.getReference();
+                    EntityHolder previousReference = modelHolder.getReference();
+                    boolean isReferenceModelChanged = newModelHolder != modelHolder && newModelHolder.getReference() != previousReference;
                     this.modelHolder = newModelHolder;
                     if (isReferenceModelChanged) {
-                        indexEntityHolder(modelHolder.getReference());
+                        indexEntityHolder(previousReference, modelHolder.getReference());
                     }
                     return isReferenceModelChanged;
                 })
@@ -104,6 +107,11 @@ public class DefaultReconciliationEngine<EVENT> implements InternalReconciliatio
         return !pendingTransaction.isClosed() || !referenceChangeActions.isEmpty();
     }
 
+    @Override
+    public void setDirtyListener(Runnable dirtyListener) {
+        this.dirtyListener = dirtyListener;
+    }
+
     @Override
     public void emitEvents() {
         /*
@@ -172,6 +180,7 @@ public class DefaultReconciliationEngine<EVENT> implements InternalReconciliatio
             changeActionEventQueue.add(eventFactory.newBeforeChangeEvent(this, referenceUpdate, transactionId));
             referenceChangeActions.add(new ChangeActionHolder(entityHolderId, referenceUpdate, subscriber, transactionId, clock.wallTime()));
             metrics.updateChangeActionQueueSize(referenceChangeActions.size());
+            dirtyListener.run();
         });
     }
 
@@ -304,8 +313,28 @@ public class DefaultReconciliationEngine<EVENT> implements InternalReconciliatio
         pendingTransaction = transactions.size() == 1 ? transactions.get(0) : new CompositeTransaction(transactions);
     }
 
-    private void indexEntityHolder(EntityHolder entityHolder) {
-        indexSet = indexSet.apply(entityHolder.getChildren());
+    /**
+     * Updates the index set with the children that were added, removed or replaced in the new reference model version.
+     * As {@link EntityHolder} is immutable, an unchanged child is the same object instance in both versions.
+     */
+    private void indexEntityHolder(EntityHolder previous, EntityHolder current) {
+        List<EntityHolder> removed = new ArrayList<>();
+        List<EntityHolder> added = new ArrayList<>();
+        for (EntityHolder child : current.getChildrenView()) {
+            Optional<EntityHolder> previousChild = previous.findChildById(child.getId());
+            if (!previousChild.isPresent()) {
+                added.add(child);
+            } else if (previousChild.get() != child) {
+                removed.add(previousChild.get());
+                added.add(child);
+            }
+        }
+        for (EntityHolder child : previous.getChildrenView()) {
+            if (!current.findChildById(child.getId()).isPresent()) {
+                removed.add(child);
+            }
+        }
+        indexSet = indexSet.update(removed, added);
     }
 
     void emitEvent(EVENT event) {
@@ -17,6 +17,7 @@
 package com.netflix.titus.common.framework.reconciler.internal;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -24,17 +25,18 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import com.google.common.base.Preconditions;
@@ -48,6 +50,7 @@ import com.netflix.titus.common.framework.reconciler.MultiEngineChangeAction;
 import com.netflix.titus.common.framework.reconciler.ReconciliationEngine;
 import com.netflix.titus.common.framework.reconciler.ReconciliationFramework;
 import com.netflix.titus.common.util.ExceptionExt;
+import com.netflix.titus.common.util.collections.PersistentHashMap;
 import com.netflix.titus.common.util.rx.ObservableExt;
 import com.netflix.titus.common.util.tuple.Pair;
 import org.slf4j.Logger;
@@ -77,13 +80,35 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
     private final ExecutorService executor;
     private final Scheduler scheduler;
 
-    private final Set<InternalReconciliationEngine<EVENT>> engines = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final EngineShards<EVENT> engines;
+
+    /**
+     * Engines which queued new change actions since the last loop iteration. An engine may be added multiple times.
+     */
+    private final Queue<InternalReconciliationEngine<EVENT>> dirtyEngines = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Engines with actions running after the last loop iteration. Accessed from the event loop only.
+     */
+    private final Set<InternalReconciliationEngine<EVENT>> activeEngines = new HashSet<>();
 
     private final BlockingQueue<Pair<InternalReconciliationEngine<EVENT>, Subscriber<ReconciliationEngine>>> enginesAdded = new LinkedBlockingQueue<>();
     private final BlockingQueue<Pair<InternalReconciliationEngine<EVENT>, Subscriber<Void>>> enginesToRemove = new LinkedBlockingQueue<>();
 
-    private final AtomicReference<Map<String, InternalReconciliationEngine<EVENT>>> idToEngineMapRef = new AtomicReference<>(Collections.emptyMap());
-    private IndexSet<EntityHolder> indexSet;
+    /**
+     * Maps root and child ids to their engines. A new version is published after each index update, so readers
+     * never observe a partially applied change.
+     */
+    private volatile PersistentHashMap<String, InternalReconciliationEngine<EVENT>> idToEngineMap = PersistentHashMap.empty();
+    private volatile IndexSet<EntityHolder> indexSet;
+    private volatile IndexSet<EntityHolder> childIndexSet;
+
+    /**
+     * Last reference model version of each engine, which was put into {@link #idToEngineMap}, {@link #indexSet} and
+     * {@link #childIndexSet}.
+     * Accessed from the event loop only.
+     */
+    private final Map<InternalReconciliationEngine<EVENT>, EntityHolder> indexedRoots = new HashMap<>();
 
     private final Scheduler.Worker worker;
 
@@ -107,11 +132,50 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
                                           Map<Object, Comparator<EntityHolder>> indexComparators,
                                           Registry registry,
                                           Optional<Scheduler> optionalScheduler) {
+        this(bootstrapEngines, engineFactory, idleTimeoutMs, activeTimeoutMs, indexComparators, 1, registry, optionalScheduler);
+    }
+
+    /**
+     * @param shardCount number of engine partitions. If greater than one, the reconciliation loop steps are executed
+     *                   for each partition on a separate thread.
+     */
+    public DefaultReconciliationFramework(List<InternalReconciliationEngine<EVENT>> bootstrapEngines,
+                                          Function<EntityHolder, InternalReconciliationEngine<EVENT>> engineFactory,
+                                          long idleTimeoutMs,
+                                          long activeTimeoutMs,
+                                          Map<Object, Comparator<EntityHolder>> indexComparators,
+                                          int shardCount,
+                                          Registry registry,
+                                          Optional<Scheduler> optionalScheduler) {
+        this(bootstrapEngines, engineFactory, idleTimeoutMs, activeTimeoutMs,
+                IndexSet.newIndexSet(indexComparators, EntityHolder::getId), IndexSet.empty(),
+                shardCount, registry, optionalScheduler
+        );
+    }
+
+    /**
+     * @param rootIndexSet  empty index set for the engine roots
+     * @param childIndexSet empty index set for the children of all engine roots. If it has no indexes, the children
+     *                      are not indexed at all.
+     * @param shardCount    number of engine partitions. If greater than one, the reconciliation loop steps are executed
+     *                      for each partition on a separate thread.
+     */
+    public DefaultReconciliationFramework(List<InternalReconciliationEngine<EVENT>> bootstrapEngines,
+                                          Function<EntityHolder, InternalReconciliationEngine<EVENT>> engineFactory,
+                                          long idleTimeoutMs,
+                                          long activeTimeoutMs,
+                                          IndexSet<EntityHolder> rootIndexSet,
+                                          IndexSet<EntityHolder> childIndexSet,
+                                          int shardCount,
+                                          Registry registry,
+                                          Optional<Scheduler> optionalScheduler) {
         Preconditions.checkArgument(idleTimeoutMs > 0, "idleTimeout <= 0 (%s)", idleTimeoutMs);
         Preconditions.checkArgument(activeTimeoutMs <= idleTimeoutMs, "activeTimeout(%s) > idleTimeout(%s)", activeTimeoutMs, idleTimeoutMs);
 
         this.engineFactory = engineFactory;
-        this.indexSet = IndexSet.newIndexSet(indexComparators);
+        this.engines = new EngineShards<>(shardCount, registry);
+        this.indexSet = rootIndexSet;
+        this.childIndexSet = childIndexSet;
 
         this.idleTimeoutMs = idleTimeoutMs;
         this.activeTimeoutMs = activeTimeoutMs;
@@ -140,10 +204,10 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
         PolledMeter.using(registry).withName(LAST_EXECUTION_TIME_METRIC).monitorValue(this, self -> scheduler.now() - self.lastExecutionTimeMs);
         PolledMeter.using(registry).withName(LAST_FULL_CYCLE_EXECUTION_TIME_METRIC).monitorValue(this, self -> scheduler.now() - self.lastFullCycleExecutionTimeMs);
 
-        engines.addAll(bootstrapEngines);
+        bootstrapEngines.forEach(this::addEngine);
         bootstrapEngines.forEach(engine -> eventsMergeSubject.onNext(engine.events()));
 
-        updateIndexSet();
+        updateIndexSet(bootstrapEngines, Collections.emptyList());
     }
 
     @Override
@@ -183,12 +247,15 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
     }
 
     private void stopEngines() {
-        engines.forEach(e -> {
+        engines.getEngines().forEach(e -> {
             if (e instanceof DefaultReconciliationEngine) {
                 ((DefaultReconciliationEngine) e).shutdown();
             }
         });
         engines.clear();
+        engines.shutdown();
+        dirtyEngines.clear();
+        activeEngines.clear();
     }
 
     @Override
@@ -271,7 +338,7 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
 
     @Override
     public Optional<ReconciliationEngine<EVENT>> findEngineByRootId(String id) {
-        InternalReconciliationEngine<EVENT> engine = idToEngineMapRef.get().get(id);
+        InternalReconciliationEngine<EVENT> engine = idToEngineMap.get(id);
         if (engine == null) {
             return Optional.empty();
         }
@@ -280,7 +347,7 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
 
     @Override
     public Optional<Pair<ReconciliationEngine<EVENT>, EntityHolder>> findEngineByChildId(String childId) {
-        InternalReconciliationEngine<EVENT> engine = idToEngineMapRef.get().get(childId);
+        InternalReconciliationEngine<EVENT> engine = idToEngineMap.get(childId);
         if (engine == null) {
             return Optional.empty();
         }
@@ -296,6 +363,21 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
         return indexSet.getOrdered(orderingCriteria);
     }
 
+    @Override
+    public <GROUP_BY> List<EntityHolder> groupedView(GROUP_BY groupingCriteria, Object groupKey) {
+        return indexSet.getGroupOrdered(groupingCriteria, groupKey);
+    }
+
+    @Override
+    public <ORDER_BY> List<EntityHolder> orderedChildView(ORDER_BY orderingCriteria) {
+        return childIndexSet.getOrdered(orderingCriteria);
+    }
+
+    @Override
+    public <GROUP_BY> List<EntityHolder> groupedChildView(GROUP_BY groupingCriteria, Object groupKey) {
+        return childIndexSet.getGroupOrdered(groupingCriteria, groupKey);
+    }
+
     private void doSchedule(long delayMs) {
         if (!runnable) {
             return;
@@ -325,23 +407,36 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
     private void doLoop(boolean fullReconciliationCycle) {
         Set<InternalReconciliationEngine<EVENT>> mustRunEngines = new HashSet<>();
 
+        // Outside of the full reconciliation cycle, visit only engines with new change actions, or with actions running.
+        Set<InternalReconciliationEngine<EVENT>> visitedEngines = new HashSet<>();
+        InternalReconciliationEngine<EVENT> dirtyEngine;
+        while ((dirtyEngine = dirtyEngines.poll()) != null) {
+            if (!fullReconciliationCycle && engines.contains(dirtyEngine)) {
+                visitedEngines.add(dirtyEngine);
+            }
+        }
+        if (!fullReconciliationCycle) {
+            visitedEngines.addAll(activeEngines);
+        }
+
         // Apply pending model updates/send events
-        boolean modelUpdates = false;
-        for (InternalReconciliationEngine engine : engines) {
+        List<InternalReconciliationEngine<EVENT>> updatedEngines = new ArrayList<>(select("applyModelUpdates", fullReconciliationCycle, visitedEngines, engine -> {
             try {
-                boolean anyChange = engine.applyModelUpdates();
-                modelUpdates = modelUpdates || anyChange;
+                return engine.applyModelUpdates();
             } catch (Exception e) {
                 logger.warn("Unexpected error from reconciliation engine 'applyModelUpdates' method", e);
+                return false;
             }
-        }
+        }));
 
         // Add new engines.
         List<Pair<InternalReconciliationEngine<EVENT>, Subscriber<ReconciliationEngine>>> recentlyAdded = new ArrayList<>();
         enginesAdded.drainTo(recentlyAdded);
         recentlyAdded.forEach(pair -> {
             InternalReconciliationEngine<EVENT> newEngine = pair.getLeft();
-            engines.add(newEngine);
+            addEngine(newEngine);
+            visitedEngines.add(newEngine);
+            updatedEngines.add(newEngine);
             mustRunEngines.add(newEngine);
             eventsMergeSubject.onNext(newEngine.events());
         });
@@ -350,12 +445,14 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
         List<Pair<InternalReconciliationEngine<EVENT>, Subscriber<Void>>> recentlyRemoved = new ArrayList<>();
         enginesToRemove.drainTo(recentlyRemoved);
         shutdownEnginesToRemove(recentlyRemoved);
-
-        boolean engineSetUpdate = !recentlyAdded.isEmpty() || !recentlyRemoved.isEmpty();
+        recentlyRemoved.forEach(pair -> {
+            visitedEngines.remove(pair.getLeft());
+            activeEngines.remove(pair.getLeft());
+        });
 
         // Update indexes if there are model changes.
-        if (modelUpdates || engineSetUpdate) {
-            updateIndexSet();
+        if (!updatedEngines.isEmpty() || !recentlyRemoved.isEmpty()) {
+            updateIndexSet(updatedEngines, recentlyRemoved.stream().map(Pair::getLeft).collect(Collectors.toList()));
         }
 
         // Complete engine add/remove subscribers.
@@ -371,35 +468,53 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
         recentlyRemoved.forEach(pair -> pair.getRight().onCompleted());
 
         // Emit events
-        for (InternalReconciliationEngine engine : engines) {
+        select("emitEvents", fullReconciliationCycle, visitedEngines, engine -> {
             try {
                 engine.emitEvents();
             } catch (Exception e) {
                 logger.warn("Unexpected error from reconciliation engine 'emitEvents' method", e);
             }
-        }
+            return false;
+        });
 
         // Complete ChangeAction subscribers
-        for (InternalReconciliationEngine<EVENT> engine : engines) {
+        mustRunEngines.addAll(select("closeFinishedTransactions", fullReconciliationCycle, visitedEngines, engine -> {
             try {
-                if (engine.closeFinishedTransactions()) {
-                    mustRunEngines.add(engine);
-                }
+                return engine.closeFinishedTransactions();
             } catch (Exception e) {
                 logger.warn("Unexpected error from reconciliation engine 'closeFinishedTransactions' method", e);
+                return false;
             }
-        }
+        }));
 
         // Trigger actions on engines.
-        for (InternalReconciliationEngine engine : engines) {
+        List<InternalReconciliationEngine<EVENT>> runningEngines = select("triggerActions", fullReconciliationCycle, visitedEngines, engine -> {
             if (fullReconciliationCycle || engine.hasPendingTransactions() || mustRunEngines.contains(engine)) {
                 try {
-                    engine.triggerActions();
+                    return engine.triggerActions();
                 } catch (Exception e) {
                     logger.warn("Unexpected error from reconciliation engine 'triggerActions' method", e);
+                    return true;
                 }
             }
-        }
+            return false;
+        });
+        activeEngines.clear();
+        activeEngines.addAll(runningEngines);
+    }
+
+    private List<InternalReconciliationEngine<EVENT>> select(String stepName,
+                                                             boolean fullReconciliationCycle,
+                                                             Set<InternalReconciliationEngine<EVENT>> visitedEngines,
+                                                             Predicate<InternalReconciliationEngine<EVENT>> step) {
+        return fullReconciliationCycle
+                ? engines.select(stepName, step)
+                : engines.select(stepName, visitedEngines, step);
+    }
+
+    private void addEngine(InternalReconciliationEngine<EVENT> engine) {
+        engines.add(engine);
+        engine.setDirtyListener(() -> dirtyEngines.add(engine));
     }
 
     private void shutdownEnginesToRemove(List<Pair<InternalReconciliationEngine<EVENT>, Subscriber<Void>>> toRemove) {
@@ -412,11 +527,96 @@ public class DefaultReconciliationFramework<EVENT> implements ReconciliationFram
         });
     }
 
-    private void updateIndexSet() {
-        Map<String, InternalReconciliationEngine<EVENT>> idToEngineMap = new HashMap<>();
-        engines.forEach(engine -> engine.getReferenceView().visit(h -> idToEngineMap.put(h.getId(), engine)));
-        this.idToEngineMapRef.set(idToEngineMap);
+    /**
+     * Updates the id to engine mapping, and the root and child indexes for the engines with modified reference models,
+     * and the removed engines. For a modified engine, only the children changed since its last indexed version are
+     * visited, so the cost depends on the size of the change, not on the number of children.
+     */
+    private void updateIndexSet(List<InternalReconciliationEngine<EVENT>> updatedEngines,
+                                List<InternalReconciliationEngine<EVENT>> removedEngines) {
+        PersistentHashMap<String, InternalReconciliationEngine<EVENT>> newIdToEngineMap = idToEngineMap;
+        List<EntityHolder> removedRoots = new ArrayList<>();
+        List<EntityHolder> addedRoots = new ArrayList<>();
+        List<EntityHolder> removedChildren = new ArrayList<>();
+        List<EntityHolder> addedChildren = new ArrayList<>();
+        List<Pair<InternalReconciliationEngine<EVENT>, List<EntityHolder>>> removedChildrenOfEngines = new ArrayList<>();
+
+        // Register new ids first, so an entity moved between two engines is always resolvable.
+        for (InternalReconciliationEngine<EVENT> engine : updatedEngines) {
+            EntityHolder newRoot = engine.getReferenceView();
+            EntityHolder previousRoot = indexedRoots.put(engine, newRoot);
+            if (previousRoot == newRoot) {
+                continue;
+            }
+            Collection<EntityHolder> engineAddedChildren;
+            if (previousRoot == null) {
+                engineAddedChildren = newRoot.getChildrenView();
+            } else {
+                engineAddedChildren = newRoot.getChildrenNotIn(previousRoot);
+                List<EntityHolder> engineRemovedChildren = previousRoot.getChildrenNotIn(newRoot);
+                removedRoots.add(previousRoot);
+                removedChildren.addAll(engineRemovedChildren);
+                removedChildrenOfEngines.add(Pair.of(engine, engineRemovedChildren));
+            }
+            newIdToEngineMap = newIdToEngineMap.put(newRoot.getId(), engine);
+            for (EntityHolder child : engineAddedChildren) {
+                newIdToEngineMap = registerIds(newIdToEngineMap, child, engine);
+            }
+            addedRoots.add(newRoot);
+            addedChildren.addAll(engineAddedChildren);
+        }
+
+        // Remove ids of entities that no longer belong to the updated engines.
+        for (Pair<InternalReconciliationEngine<EVENT>, List<EntityHolder>> pair : removedChildrenOfEngines) {
+            InternalReconciliationEngine<EVENT> engine = pair.getLeft();
+            EntityHolder currentRoot = indexedRoots.get(engine);
+            for (EntityHolder child : pair.getRight()) {
+                newIdToEngineMap = unregisterIds(newIdToEngineMap, child, engine, currentRoot);
+            }
+        }
+
+        for (InternalReconciliationEngine<EVENT> engine : removedEngines) {
+            EntityHolder previousRoot = indexedRoots.remove(engine);
+            if (previousRoot != null) {
+                newIdToEngineMap = unregisterIds(newIdToEngineMap, previousRoot, engine, null);
+                removedRoots.add(previousRoot);
+                removedChildren.addAll(previousRoot.getChildrenView());
+            }
+        }
+
+        idToEngineMap = newIdToEngineMap;
+        indexSet = indexSet.update(removedRoots, addedRoots);
+        if (!childIndexSet.isEmpty()) {
+            childIndexSet = childIndexSet.update(removedChildren, addedChildren);
+        }
+    }
+
+    private PersistentHashMap<String, InternalReconciliationEngine<EVENT>> registerIds(PersistentHashMap<String, InternalReconciliationEngine<EVENT>> ids,
+                                                                                      EntityHolder holder,
+                                                                                      InternalReconciliationEngine<EVENT> engine) {
+        PersistentHashMap<String, InternalReconciliationEngine<EVENT>> result = ids.put(holder.getId(), engine);
+        for (EntityHolder child : holder.getChildrenView()) {
+            result = registerIds(result, child, engine);
+        }
+        return result;
+    }
 
-        indexSet = indexSet.apply(engines.stream().map(ReconciliationEngine::getReferenceView).collect(Collectors.toList()));
+    /**
+     * Removes ids of the given entity hierarchy, which are still mapped to the engine, and are not present in the
+     * engine's current root (if provided).
+     */
+    private PersistentHashMap<String, InternalReconciliationEngine<EVENT>> unregisterIds(PersistentHashMap<String, InternalReconciliationEngine<EVENT>> ids,
+                                                                                        EntityHolder holder,
+                                                                                        InternalReconciliationEngine<EVENT> engine,
+                                                                                        EntityHolder currentRoot) {
+        PersistentHashMap<String, InternalReconciliationEngine<EVENT>> result = ids;
+        String id = holder.getId();
+        if (result.get(id) == engine && (currentRoot == null || !currentRoot.findById(id).isPresent())) {
+            result = result.remove(id);
+        }
+        for (EntityHolder child : holder.getChildrenView()) {
+            result = unregisterIds(result, child, engine, currentRoot);
+        }
+        return result;
     }
 }
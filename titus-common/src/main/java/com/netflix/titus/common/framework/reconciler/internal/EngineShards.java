@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.common.framework.reconciler.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import com.google.common.base.Preconditions;
+import com.netflix.spectator.api.Id;
+import com.netflix.spectator.api.Registry;
+import com.netflix.spectator.api.patterns.PolledMeter;
+import com.netflix.titus.common.util.ExecutorsExt;
+
+/**
+ * Partitions reconciliation engines into shards by their root id, and executes a reconciliation loop step for all
+ * engines. With a single shard, a step is executed inline, on the caller thread. With multiple shards, each shard
+ * has a dedicated thread, and a step completes once all shards have processed their engines. As an engine is always
+ * assigned to the same shard, and the steps are separated by this barrier, each engine observes the same order of
+ * operations as with the single threaded execution. Multi-engine change actions are coordinated at the transaction
+ * level (see {@link com.netflix.titus.common.util.rx.ObservableExt#propagate}), so they work across shards as well.
+ */
+class EngineShards<EVENT> {
+
+    private static final String ROOT_METRIC_NAME = "titus.reconciliation.framework.shard.";
+    private static final String STEP_EXECUTION_TIME_METRIC = ROOT_METRIC_NAME + "stepExecutionTime";
+    private static final String ENGINES_METRIC = ROOT_METRIC_NAME + "engines";
+
+    private final List<Shard> shards;
+    private final Registry registry;
+
+    EngineShards(int shardCount, Registry registry) {
+        Preconditions.checkArgument(shardCount > 0, "shardCount <= 0 (%s)", shardCount);
+        this.registry = registry;
+
+        List<Shard> shards = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new Shard(i, shardCount > 1));
+        }
+        this.shards = Collections.unmodifiableList(shards);
+    }
+
+    void add(InternalReconciliationEngine<EVENT> engine) {
+        shardOf(engine).engines.add(engine);
+    }
+
+    void remove(InternalReconciliationEngine<EVENT> engine) {
+        shardOf(engine).engines.remove(engine);
+    }
+
+    boolean contains(InternalReconciliationEngine<EVENT> engine) {
+        return shardOf(engine).engines.contains(engine);
+    }
+
+    Collection<InternalReconciliationEngine<EVENT>> getEngines() {
+        if (shards.size() == 1) {
+            return shards.get(0).engines;
+        }
+        List<InternalReconciliationEngine<EVENT>> all = new ArrayList<>();
+        shards.forEach(shard -> all.addAll(shard.engines));
+        return all;
+    }
+
+    void clear() {
+        shards.forEach(shard -> shard.engines.clear());
+    }
+
+    /**
+     * Executes the given step for all engines, and returns those for which the step returned true.
+     */
+    List<InternalReconciliationEngine<EVENT>> select(String stepName, Predicate<InternalReconciliationEngine<EVENT>> step) {
+        if (shards.size() == 1) {
+            return execute(shards.get(0).engines, step);
+        }
+        List<Collection<InternalReconciliationEngine<EVENT>>> partitions = new ArrayList<>();
+        shards.forEach(shard -> partitions.add(shard.engines));
+        return executeInParallel(stepName, partitions, step);
+    }
+
+    /**
+     * Executes the given step for a subset of engines, and returns those for which the step returned true.
+     */
+    List<InternalReconciliationEngine<EVENT>> select(String stepName,
+                                                     Collection<InternalReconciliationEngine<EVENT>> subset,
+                                                     Predicate<InternalReconciliationEngine<EVENT>> step) {
+        if (shards.size() == 1) {
+            return execute(subset, step);
+        }
+        List<Collection<InternalReconciliationEngine<EVENT>>> partitions = new ArrayList<>();
+        shards.forEach(shard -> partitions.add(new ArrayList<>()));
+        subset.forEach(engine -> partitions.get(shardIndexOf(engine)).add(engine));
+        return executeInParallel(stepName, partitions, step);
+    }
+
+    void shutdown() {
+        shards.forEach(Shard::shutdown);
+    }
+
+    private List<InternalReconciliationEngine<EVENT>> executeInParallel(String stepName,
+                                                                        List<Collection<InternalReconciliationEngine<EVENT>>> partitions,
+                                                                        Predicate<InternalReconciliationEngine<EVENT>> step) {
+        List<Future<List<InternalReconciliationEngine<EVENT>>>> futures = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            Shard shard = shards.get(i);
+            Collection<InternalReconciliationEngine<EVENT>> partition = partitions.get(i);
+            if (partition.isEmpty()) {
+                continue;
+            }
+            futures.add(shard.executor.submit(() -> {
+                long startTime = registry.clock().monotonicTime();
+                try {
+                    return execute(partition, step);
+                } finally {
+                    registry.timer(shard.stepExecutionTimeId.withTag("step", stepName))
+                            .record(registry.clock().monotonicTime() - startTime, TimeUnit.NANOSECONDS);
+                }
+            }));
+        }
+
+        List<InternalReconciliationEngine<EVENT>> result = new ArrayList<>();
+        for (Future<List<InternalReconciliationEngine<EVENT>>> future : futures) {
+            try {
+                result.addAll(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for reconciliation shards to complete step " + stepName, e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Reconciliation shard failure in step " + stepName, e.getCause());
+            }
+        }
+        return result;
+    }
+
+    private List<InternalReconciliationEngine<EVENT>> execute(Collection<InternalReconciliationEngine<EVENT>> engines,
+                                                              Predicate<InternalReconciliationEngine<EVENT>> step) {
+        List<InternalReconciliationEngine<EVENT>> selected = new ArrayList<>();
+        for (InternalReconciliationEngine<EVENT> engine : engines) {
+            if (step.test(engine)) {
+                selected.add(engine);
+            }
+        }
+        return selected;
+    }
+
+    private Shard shardOf(InternalReconciliationEngine<EVENT> engine) {
+        return shards.get(shardIndexOf(engine));
+    }
+
+    private int shardIndexOf(InternalReconciliationEngine<EVENT> engine) {
+        return Math.floorMod(engine.getReferenceView().getId().hashCode(), shards.size());
+    }
+
+    private class Shard {
+
+        private final Set<InternalReconciliationEngine<EVENT>> engines = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        private final ExecutorService executor;
+        private final Id stepExecutionTimeId;
+
+        private Shard(int index, boolean parallel) {
+            this.executor = parallel ? ExecutorsExt.namedSingleThreadExecutor("TitusReconciliationFramework-shard-" + index) : null;
+            this.stepExecutionTimeId = registry.createId(STEP_EXECUTION_TIME_METRIC, "shard", Integer.toString(index));
+            if (parallel) {
+                PolledMeter.using(registry)
+                        .withId(registry.createId(ENGINES_METRIC, "shard", Integer.toString(index)))
+                        .monitorSize(engines);
+            }
+        }
+
+        private void shutdown() {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
@@ -23,26 +23,73 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+
+import com.netflix.titus.common.util.collections.PersistentHashMap;
+import com.netflix.titus.common.util.collections.PersistentSortedSet;
 
 /**
- * TODO Optimize. This is expensive and inefficient implementation.
+ * A collection of ordered views of the same set of elements. Each index is a {@link PersistentSortedSet}, so an
+ * incremental update costs O(k*log(n)) for k modified elements, and the ordered lists returned to the clients are views
+ * on immutable trees, which are never copied or re-sorted. Elements with the same order according to the provided
+ * comparator are ordered by their id.
+ * <p>
+ * Besides the total orders, an index set may include group indexes, which partition the elements by a key (for example
+ * an entity state), and keep each partition ordered. An element for which the group key function returns null is
+ * not included in the group index.
  */
 public class IndexSet<T> {
 
-    private static final IndexSet<?> EMPTY = new IndexSet<>(Collections.emptyMap());
+    private static final IndexSet<?> EMPTY = new IndexSet<>(Collections.emptyMap(), Collections.emptyMap());
 
     private final Map<Object, Index<T>> indexes;
+    private final Map<Object, GroupIndex<T>> groupIndexes;
 
-    private IndexSet(Map<Object, Index<T>> indexes) {
+    private IndexSet(Map<Object, Index<T>> indexes, Map<Object, GroupIndex<T>> groupIndexes) {
         this.indexes = indexes;
+        this.groupIndexes = groupIndexes;
+    }
+
+    /**
+     * Returns true if there are no indexes defined in this index set.
+     */
+    public boolean isEmpty() {
+        return indexes.isEmpty() && groupIndexes.isEmpty();
     }
 
+    /**
+     * Replaces all elements in the index set with the provided collection.
+     */
     public IndexSet<T> apply(Collection<T> added) {
         Map<Object, Index<T>> copy = new HashMap<>();
         indexes.forEach((k, v) -> copy.put(k, v.apply(added)));
-        return new IndexSet<>(copy);
+        Map<Object, GroupIndex<T>> groupCopy = new HashMap<>();
+        groupIndexes.forEach((k, v) -> groupCopy.put(k, v.apply(added)));
+        return new IndexSet<>(copy, groupCopy);
     }
 
+    /**
+     * Incrementally updates the index set. The removed collection must contain the exact versions of elements that
+     * were added before, as they are located by their current sort order. An element is removed only if the indexed
+     * version is the same instance, so a removal never drops a newer version of an element that was already
+     * replaced. The removals are applied first, so an element version can be replaced by putting the previous version
+     * in the removed collection, and the new one in the added collection.
+     */
+    public IndexSet<T> update(Collection<T> removed, Collection<T> added) {
+        if ((removed.isEmpty() && added.isEmpty()) || isEmpty()) {
+            return this;
+        }
+        Map<Object, Index<T>> copy = new HashMap<>();
+        indexes.forEach((k, v) -> copy.put(k, v.update(removed, added)));
+        Map<Object, GroupIndex<T>> groupCopy = new HashMap<>();
+        groupIndexes.forEach((k, v) -> groupCopy.put(k, v.update(removed, added)));
+        return new IndexSet<>(copy, groupCopy);
+    }
+
+    /**
+     * Returns elements in the order of the given index. The same list instance is returned until the index changes,
+     * so it can be used as a version marker of data derived from it.
+     */
     public List<T> getOrdered(Object indexId) {
         Index<T> result = indexes.get(indexId);
         if (result == null) {
@@ -51,38 +98,131 @@ public class IndexSet<T> {
         return result.getOrdered();
     }
 
+    /**
+     * Returns ordered elements with the given group key, or an empty list if there are none.
+     */
+    public List<T> getGroupOrdered(Object groupIndexId, Object groupKey) {
+        GroupIndex<T> result = groupIndexes.get(groupIndexId);
+        if (result == null) {
+            throw new IllegalArgumentException("Unknown group index id " + groupIndexId);
+        }
+        return result.getOrdered(groupKey);
+    }
+
     public static <T> IndexSet<T> empty() {
         return (IndexSet<T>) EMPTY;
     }
 
-    public static <T> IndexSet<T> newIndexSet(Map<Object, Comparator<T>> comparators) {
+    public static <T> IndexSet<T> newIndexSet(Map<Object, Comparator<T>> comparators, Function<T, String> idExtractor) {
+        return newIndexSet(comparators, Collections.emptyMap(), null, idExtractor);
+    }
+
+    /**
+     * @param groupKeyExtractors group key functions of the group indexes
+     * @param groupComparator    the order of elements within each group of all group indexes
+     */
+    public static <T> IndexSet<T> newIndexSet(Map<Object, Comparator<T>> comparators,
+                                              Map<Object, Function<T, Object>> groupKeyExtractors,
+                                              Comparator<T> groupComparator,
+                                              Function<T, String> idExtractor) {
         Map<Object, Index<T>> indexes = new HashMap<>();
-        comparators.forEach((k, v) -> indexes.put(k, Index.newIndex(v)));
-        return new IndexSet<>(indexes);
+        comparators.forEach((k, v) -> indexes.put(k, Index.newIndex(v.thenComparing(idExtractor))));
+        Map<Object, GroupIndex<T>> groupIndexes = new HashMap<>();
+        groupKeyExtractors.forEach((k, v) -> groupIndexes.put(k, GroupIndex.newGroupIndex(v, groupComparator.thenComparing(idExtractor))));
+        return new IndexSet<>(indexes, groupIndexes);
     }
 
     static class Index<T> {
 
-        private final Comparator<T> comparator;
-        private final List<T> ordered;
+        private final PersistentSortedSet<T> ordered;
+        private final List<T> orderedView;
 
-        private Index(Comparator<T> comparator, List<T> ordered) {
-            this.comparator = comparator;
+        private Index(PersistentSortedSet<T> ordered) {
             this.ordered = ordered;
+            this.orderedView = ordered.asList();
         }
 
         Index<T> apply(Collection<T> added) {
-            List<T> copy = new ArrayList<>(added);
-            copy.sort(comparator);
-            return new Index<>(comparator, copy);
+            return new Index<>(PersistentSortedSet.of(ordered.getComparator(), added));
+        }
+
+        Index<T> update(Collection<T> removed, Collection<T> added) {
+            PersistentSortedSet<T> result = ordered;
+            for (T element : removed) {
+                result = removeIfSame(result, element);
+            }
+            for (T element : added) {
+                result = result.add(element);
+            }
+            return new Index<>(result);
         }
 
         List<T> getOrdered() {
-            return ordered;
+            return orderedView;
         }
 
         static <T> Index<T> newIndex(Comparator<T> comparator) {
-            return new Index<>(comparator, Collections.emptyList());
+            return new Index<>(PersistentSortedSet.empty(comparator));
         }
     }
+
+    static class GroupIndex<T> {
+
+        private final Function<T, Object> groupKeyExtractor;
+        private final Comparator<T> comparator;
+        private final PersistentHashMap<Object, PersistentSortedSet<T>> groups;
+
+        private GroupIndex(Function<T, Object> groupKeyExtractor,
+                           Comparator<T> comparator,
+                           PersistentHashMap<Object, PersistentSortedSet<T>> groups) {
+            this.groupKeyExtractor = groupKeyExtractor;
+            this.comparator = comparator;
+            this.groups = groups;
+        }
+
+        GroupIndex<T> apply(Collection<T> added) {
+            Map<Object, List<T>> grouped = new HashMap<>();
+            for (T element : added) {
+                Object key = groupKeyExtractor.apply(element);
+                if (key != null) {
+                    grouped.computeIfAbsent(key, k -> new ArrayList<>()).add(element);
+                }
+            }
+            Map<Object, PersistentSortedSet<T>> result = new HashMap<>();
+            grouped.forEach((key, elements) -> result.put(key, PersistentSortedSet.of(comparator, elements)));
+            return new GroupIndex<>(groupKeyExtractor, comparator, PersistentHashMap.of(result));
+        }
+
+        GroupIndex<T> update(Collection<T> removed, Collection<T> added) {
+            PersistentHashMap<Object, PersistentSortedSet<T>> result = groups;
+            for (T element : removed) {
+                Object key = groupKeyExtractor.apply(element);
+                PersistentSortedSet<T> group = key == null ? null : result.get(key);
+                if (group != null) {
+                    group = removeIfSame(group, element);
+                    result = group.isEmpty() ? result.remove(key) : result.put(key, group);
+                }
+            }
+            for (T element : added) {
+                Object key = groupKeyExtractor.apply(element);
+                if (key != null) {
+                    result = result.put(key, result.getOrDefault(key, PersistentSortedSet.empty(comparator)).add(element));
+                }
+            }
+            return new GroupIndex<>(groupKeyExtractor, comparator, result);
+        }
+
+        List<T> getOrdered(Object groupKey) {
+            PersistentSortedSet<T> group = groups.get(groupKey);
+            return group == null ? Collections.emptyList() : group.asList();
+        }
+
+        static <T> GroupIndex<T> newGroupIndex(Function<T, Object> groupKeyExtractor, Comparator<T> comparator) {
+            return new GroupIndex<>(groupKeyExtractor, comparator, PersistentHashMap.empty());
+        }
+    }
+
+    private static <T> PersistentSortedSet<T> removeIfSame(PersistentSortedSet<T> ordered, T element) {
+        return ordered.find(element) == element ? ordered.remove(element) : ordered;
+    }
 }
@@ -22,6 +22,12 @@ public interface InternalReconciliationEngine<EVENT>  extends ReconciliationEngi
 
     boolean hasPendingTransactions();
 
+    /**
+     * Sets a callback, which is invoked each time a new change action is queued in this engine. Outside of the full
+     * reconciliation cycle, the framework visits only the engines that signalled new work or have actions running.
+     */
+    void setDirtyListener(Runnable dirtyListener);
+
     /**
      * Apply pending model updates. The model updates come from recently completed change actions (either requested or reconcile),
      * and must be processed by the event loop before next action(s) are started.
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.common.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import com.netflix.titus.common.util.tuple.Pair;
+
+/**
+ * A field selection compiled against a protobuf message descriptor. It produces the same result as
+ * {@link ProtobufExt#copy(Message, Set)}, but the field names are resolved once, so applying it to a message only
+ * copies the selected fields into a new builder, instead of copying the whole message and clearing the rest.
+ * <p>
+ * A top level field name selects the whole field. A dot separated name selects a field of a nested message (also
+ * for repeated fields), or a key of a map field with string keys. If a field is selected both in whole and partially,
+ * it is included in whole.
+ */
+public final class ProtobufProjection {
+
+    private static final int MAX_CACHED_PROJECTIONS = 1_000;
+
+    private static final Cache<Pair<Descriptor, Set<String>>, ProtobufProjection> PROJECTIONS = Caffeine.newBuilder()
+            .maximumSize(MAX_CACHED_PROJECTIONS)
+            .build();
+
+    private final Set<String> fieldNames;
+    private final FieldSelection[] selections;
+    private final boolean nestedSelection;
+
+    private ProtobufProjection(List<FieldSelection> selections) {
+        this.selections = selections.toArray(new FieldSelection[0]);
+        this.fieldNames = new HashSet<>();
+        boolean nestedSelection = false;
+        for (FieldSelection selection : selections) {
+            fieldNames.add(selection.field.getName());
+            nestedSelection = nestedSelection || selection.nested != null || selection.mapKeys != null;
+        }
+        this.nestedSelection = nestedSelection;
+    }
+
+    /**
+     * Returns true if the given top level field is included in whole or partially.
+     */
+    public boolean includes(String fieldName) {
+        return fieldNames.contains(fieldName);
+    }
+
+    /**
+     * Returns true if at least one field is included only partially.
+     */
+    public boolean hasNestedSelection() {
+        return nestedSelection;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Message> T apply(T message) {
+        Message.Builder builder = message.newBuilderForType();
+        for (FieldSelection selection : selections) {
+            FieldDescriptor field = selection.field;
+            if (field.isRepeated()) {
+                int count = message.getRepeatedFieldCount(field);
+                if (count == 0) {
+                    continue;
+                }
+                if (selection.mapKeys != null) {
+                    for (int i = 0; i < count; i++) {
+                        Message entry = (Message) message.getRepeatedField(field, i);
+                        if (selection.mapKeys.contains(entry.getField(selection.mapKeyField))) {
+                            builder.addRepeatedField(field, entry);
+                        }
+                    }
+                } else if (selection.nested != null) {
+                    for (int i = 0; i < count; i++) {
+                        builder.addRepeatedField(field, selection.nested.apply((Message) message.getRepeatedField(field, i)));
+                    }
+                } else {
+                    builder.setField(field, message.getField(field));
+                }
+            } else if (message.hasField(field)) {
+                Object value = message.getField(field);
+                builder.setField(field, selection.nested == null ? value : selection.nested.apply((Message) value));
+            }
+        }
+        return (T) builder.build();
+    }
+
+    /**
+     * Returns a cached projection for the given message type and field names, compiling it on the first use.
+     */
+    public static ProtobufProjection of(Descriptor descriptor, Collection<String> fieldNames) {
+        return PROJECTIONS.get(Pair.of(descriptor, new HashSet<>(fieldNames)), key -> compile(key.getLeft(), key.getRight()));
+    }
+
+    public static ProtobufProjection compile(Descriptor descriptor, Collection<String> fieldNames) {
+        Set<String> wholeFields = new HashSet<>();
+        Map<String, Set<String>> nestedFields = new HashMap<>();
+        for (String name : fieldNames) {
+            int idx = name.indexOf('.');
+            if (idx < 0 || idx == name.length() - 1) {
+                wholeFields.add(name);
+            } else {
+                nestedFields.computeIfAbsent(name.substring(0, idx), n -> new HashSet<>()).add(name.substring(idx + 1));
+            }
+        }
+
+        List<FieldSelection> selections = new ArrayList<>();
+        for (FieldDescriptor field : descriptor.getFields()) {
+            String name = field.getName();
+            Set<String> nested = nestedFields.get(name);
+            if (wholeFields.contains(name)) {
+                selections.add(new FieldSelection(field, null, null, null));
+            } else if (nested != null) {
+                selections.add(compileNested(field, nested));
+            }
+        }
+        return new ProtobufProjection(selections);
+    }
+
+    private static FieldSelection compileNested(FieldDescriptor field, Set<String> nested) {
+        if (field.isMapField()) {
+            FieldDescriptor keyField = field.getMessageType().findFieldByName("key");
+            if (keyField.getJavaType() == FieldDescriptor.JavaType.STRING) {
+                return new FieldSelection(field, null, keyField, nested);
+            }
+            return new FieldSelection(field, null, null, null);
+        }
+        if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+            return new FieldSelection(field, compile(field.getMessageType(), nested), null, null);
+        }
+        return new FieldSelection(field, null, null, null);
+    }
+
+    private static class FieldSelection {
+
+        private final FieldDescriptor field;
+        private final ProtobufProjection nested;
+        private final FieldDescriptor mapKeyField;
+        private final Set<String> mapKeys;
+
+        private FieldSelection(FieldDescriptor field, ProtobufProjection nested, FieldDescriptor mapKeyField, Set<String> mapKeys) {
+            this.field = field;
+            this.nested = nested;
+            this.mapKeyField = mapKeyField;
+            this.mapKeys = mapKeys;
+        }
+    }
+}
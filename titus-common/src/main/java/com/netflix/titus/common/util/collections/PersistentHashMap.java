@@ -0,0 +1,550 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.common.util.collections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable hash map, implemented as a hash array mapped trie (HAMT). Each modification creates a new version
+ * of the map in O(log32(n)) time, sharing all unmodified nodes with the previous version. Null keys and values are not
+ * supported.
+ */
+public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+    private final Node<K, V> root;
+    private final int size;
+
+    private final MapView<K, V> mapView;
+
+    private PersistentHashMap(Node<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+        this.mapView = new MapView<>(this);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public V get(Object key) {
+        if (root == null || key == null) {
+            return null;
+        }
+        return root.find(0, hashOf(key), key);
+    }
+
+    public V getOrDefault(Object key, V defaultValue) {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns a new version of the map with the given entry added or replaced. If the key is already associated
+     * with the same value instance, returns this map.
+     */
+    public PersistentHashMap<K, V> put(K key, V value) {
+        Objects.requireNonNull(key, "null key");
+        Objects.requireNonNull(value, "null value");
+
+        Leaf<K, V> leaf = new Leaf<>(hashOf(key), key, value);
+        if (root == null) {
+            return new PersistentHashMap<>(leaf, 1);
+        }
+        boolean[] added = new boolean[1];
+        Node<K, V> newRoot = root.put(0, leaf, added);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a new version of the map without the given key, or this map if the key is not present.
+     */
+    public PersistentHashMap<K, V> remove(Object key) {
+        if (root == null || key == null) {
+            return this;
+        }
+        Node<K, V> newRoot = root.remove(0, hashOf(key), key);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? empty() : new PersistentHashMap<>(newRoot, size - 1);
+    }
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (Map.Entry<K, V> entry : this) {
+            action.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Calls the action for each entry of this map, which is not present in the other map with the same value instance.
+     * Nodes shared by the two maps are skipped, so if one map is a modified version of the other, the cost depends on
+     * the number of modifications, not on the map size.
+     */
+    public void forEachNotIn(PersistentHashMap<K, V> other, BiConsumer<? super K, ? super V> action) {
+        forEachNotIn(0, root, other.root, action);
+    }
+
+    /**
+     * Returns an immutable {@link Map} view of this map. No data are copied.
+     */
+    public Map<K, V> asMap() {
+        return mapView;
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator<>(root);
+    }
+
+    @Override
+    public String toString() {
+        return mapView.toString();
+    }
+
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    public static <K, V> PersistentHashMap<K, V> of(Map<K, V> map) {
+        PersistentHashMap<K, V> result = empty();
+        for (Map.Entry<K, V> entry : map.entrySet()) {
+            result = result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    private static <K, V> void forEachNotIn(int shift, Node<K, V> node, Node<K, V> other, BiConsumer<? super K, ? super V> action) {
+        if (node == other || node == null) {
+            return;
+        }
+        if (node instanceof Branch && other instanceof Branch) {
+            Branch<K, V> branch = (Branch<K, V>) node;
+            Branch<K, V> otherBranch = (Branch<K, V>) other;
+            int remainingBits = branch.bitmap;
+            for (int pos = 0; pos < branch.children.length; pos++) {
+                int bit = Integer.lowestOneBit(remainingBits);
+                remainingBits &= ~bit;
+                forEachNotIn(shift + BITS, branch.children[pos], otherBranch.childAt(bit), action);
+            }
+            return;
+        }
+        Iterator<Map.Entry<K, V>> it = new EntryIterator<>(node);
+        while (it.hasNext()) {
+            Leaf<K, V> leaf = (Leaf<K, V>) it.next();
+            if (other == null || other.find(shift, leaf.hash, leaf.key) != leaf.value) {
+                action.accept(leaf.key, leaf.value);
+            }
+        }
+    }
+
+    private static int hashOf(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int indexOf(int shift, int hash) {
+        return (hash >>> shift) & MASK;
+    }
+
+    private static abstract class Node<K, V> {
+
+        abstract V find(int shift, int hash, Object key);
+
+        abstract Node<K, V> put(int shift, Leaf<K, V> leaf, boolean[] added);
+
+        /**
+         * @return a new node, this node if the key was not found, or null if the node became empty
+         */
+        abstract Node<K, V> remove(int shift, int hash, Object key);
+    }
+
+    /**
+     * Leaf and collision nodes have a single hash value, and can be placed at any trie level.
+     */
+    private static abstract class HashNode<K, V> extends Node<K, V> {
+
+        abstract int hash();
+
+        /**
+         * Creates a branch at the given level holding two nodes with different hashes.
+         */
+        static <K, V> Node<K, V> merge(int shift, HashNode<K, V> first, HashNode<K, V> second) {
+            int firstIdx = indexOf(shift, first.hash());
+            int secondIdx = indexOf(shift, second.hash());
+            if (firstIdx == secondIdx) {
+                return new Branch<>(1 << firstIdx, new Node[]{merge(shift + BITS, first, second)});
+            }
+            Node[] children = firstIdx < secondIdx ? new Node[]{first, second} : new Node[]{second, first};
+            return new Branch<>((1 << firstIdx) | (1 << secondIdx), children);
+        }
+    }
+
+    private static final class Leaf<K, V> extends HashNode<K, V> implements Map.Entry<K, V> {
+
+        private final int hash;
+        private final K key;
+        private final V value;
+
+        private Leaf(int hash, K key, V value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        int hash() {
+            return hash;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException("Immutable map entry");
+        }
+
+        @Override
+        V find(int shift, int hash, Object key) {
+            return this.hash == hash && this.key.equals(key) ? value : null;
+        }
+
+        @Override
+        Node<K, V> put(int shift, Leaf<K, V> leaf, boolean[] added) {
+            if (hash == leaf.hash) {
+                if (key.equals(leaf.key)) {
+                    return value == leaf.value ? this : leaf;
+                }
+                added[0] = true;
+                return new Collision<>(hash, new Leaf[]{this, leaf});
+            }
+            added[0] = true;
+            return merge(shift, this, leaf);
+        }
+
+        @Override
+        Node<K, V> remove(int shift, int hash, Object key) {
+            return this.hash == hash && this.key.equals(key) ? null : this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            return key.equals(other.getKey()) && value.equals(other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    private static final class Collision<K, V> extends HashNode<K, V> {
+
+        private final int hash;
+        private final Leaf<K, V>[] leaves;
+
+        private Collision(int hash, Leaf<K, V>[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        @Override
+        int hash() {
+            return hash;
+        }
+
+        @Override
+        V find(int shift, int hash, Object key) {
+            if (this.hash != hash) {
+                return null;
+            }
+            for (Leaf<K, V> leaf : leaves) {
+                if (leaf.key.equals(key)) {
+                    return leaf.value;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        Node<K, V> put(int shift, Leaf<K, V> leaf, boolean[] added) {
+            if (hash != leaf.hash) {
+                added[0] = true;
+                return merge(shift, this, leaf);
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(leaf.key)) {
+                    if (leaves[i].value == leaf.value) {
+                        return this;
+                    }
+                    Leaf<K, V>[] newLeaves = leaves.clone();
+                    newLeaves[i] = leaf;
+                    return new Collision<>(hash, newLeaves);
+                }
+            }
+            Leaf<K, V>[] newLeaves = new Leaf[leaves.length + 1];
+            System.arraycopy(leaves, 0, newLeaves, 0, leaves.length);
+            newLeaves[leaves.length] = leaf;
+            added[0] = true;
+            return new Collision<>(hash, newLeaves);
+        }
+
+        @Override
+        Node<K, V> remove(int shift, int hash, Object key) {
+            if (this.hash != hash) {
+                return this;
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(key)) {
+                    if (leaves.length == 2) {
+                        return leaves[1 - i];
+                    }
+                    Leaf<K, V>[] newLeaves = new Leaf[leaves.length - 1];
+                    System.arraycopy(leaves, 0, newLeaves, 0, i);
+                    System.arraycopy(leaves, i + 1, newLeaves, i, leaves.length - i - 1);
+                    return new Collision<>(hash, newLeaves);
+                }
+            }
+            return this;
+        }
+    }
+
+    private static final class Branch<K, V> extends Node<K, V> {
+
+        private final int bitmap;
+        private final Node<K, V>[] children;
+
+        private Branch(int bitmap, Node<K, V>[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        @Override
+        V find(int shift, int hash, Object key) {
+            int bit = 1 << indexOf(shift, hash);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            return children[position(bit)].find(shift + BITS, hash, key);
+        }
+
+        @Override
+        Node<K, V> put(int shift, Leaf<K, V> leaf, boolean[] added) {
+            int bit = 1 << indexOf(shift, leaf.hash);
+            int pos = position(bit);
+            if ((bitmap & bit) == 0) {
+                Node<K, V>[] newChildren = new Node[children.length + 1];
+                System.arraycopy(children, 0, newChildren, 0, pos);
+                newChildren[pos] = leaf;
+                System.arraycopy(children, pos, newChildren, pos + 1, children.length - pos);
+                added[0] = true;
+                return new Branch<>(bitmap | bit, newChildren);
+            }
+            Node<K, V> child = children[pos];
+            Node<K, V> newChild = child.put(shift + BITS, leaf, added);
+            if (newChild == child) {
+                return this;
+            }
+            Node<K, V>[] newChildren = children.clone();
+            newChildren[pos] = newChild;
+            return new Branch<>(bitmap, newChildren);
+        }
+
+        @Override
+        Node<K, V> remove(int shift, int hash, Object key) {
+            int bit = 1 << indexOf(shift, hash);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int pos = position(bit);
+            Node<K, V> child = children[pos];
+            Node<K, V> newChild = child.remove(shift + BITS, hash, key);
+            if (newChild == child) {
+                return this;
+            }
+            if (newChild == null) {
+                if (children.length == 1) {
+                    return null;
+                }
+                if (children.length == 2 && children[1 - pos] instanceof HashNode) {
+                    return children[1 - pos];
+                }
+                Node<K, V>[] newChildren = new Node[children.length - 1];
+                System.arraycopy(children, 0, newChildren, 0, pos);
+                System.arraycopy(children, pos + 1, newChildren, pos, children.length - pos - 1);
+                return new Branch<>(bitmap & ~bit, newChildren);
+            }
+            if (children.length == 1 && newChild instanceof HashNode) {
+                return newChild;
+            }
+            Node<K, V>[] newChildren = children.clone();
+            newChildren[pos] = newChild;
+            return new Branch<>(bitmap, newChildren);
+        }
+
+        private Node<K, V> childAt(int bit) {
+            return (bitmap & bit) == 0 ? null : children[position(bit)];
+        }
+
+        private int position(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+
+        private final Deque<Node<K, V>[]> arrays = new ArrayDeque<>();
+        private final Deque<Integer> positions = new ArrayDeque<>();
+
+        private Leaf<K, V> next;
+
+        private EntryIterator(Node<K, V> root) {
+            if (root != null) {
+                arrays.push(new Node[]{root});
+                positions.push(0);
+                advance();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Leaf<K, V> result = next;
+            advance();
+            return result;
+        }
+
+        private void advance() {
+            next = null;
+            while (!arrays.isEmpty()) {
+                Node<K, V>[] array = arrays.peek();
+                int pos = positions.pop();
+                if (pos >= array.length) {
+                    arrays.pop();
+                    continue;
+                }
+                positions.push(pos + 1);
+
+                Node<K, V> node = array[pos];
+                if (node instanceof Leaf) {
+                    next = (Leaf<K, V>) node;
+                    return;
+                }
+                arrays.push(node instanceof Branch ? ((Branch<K, V>) node).children : ((Collision<K, V>) node).leaves);
+                positions.push(0);
+            }
+        }
+    }
+
+    private static final class MapView<K, V> extends AbstractMap<K, V> {
+
+        private final PersistentHashMap<K, V> map;
+        private final EntrySet<K, V> entrySet;
+
+        private MapView(PersistentHashMap<K, V> map) {
+            this.map = map;
+            this.entrySet = new EntrySet<>(map);
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public V get(Object key) {
+            return map.get(key);
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return entrySet;
+        }
+    }
+
+    private static final class EntrySet<K, V> extends AbstractSet<Map.Entry<K, V>> {
+
+        private final PersistentHashMap<K, V> map;
+
+        private EntrySet(PersistentHashMap<K, V> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return map.iterator();
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+    }
+}
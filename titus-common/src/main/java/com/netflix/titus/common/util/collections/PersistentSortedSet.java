@@ -0,0 +1,281 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.common.util.collections;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Immutable sorted set, implemented as a treap with path copying. Each modification creates a new version of the set
+ * in O(log(n)) expected time, sharing all unmodified nodes with the previous version. Elements for which the comparator
+ * returns 0 are considered the same, so the comparator should provide a total order (for example by adding an identity
+ * tie breaker).
+ */
+public final class PersistentSortedSet<T> implements Iterable<T> {
+
+    private final Comparator<T> comparator;
+    private final Node<T> root;
+
+    private final ListView<T> listView;
+
+    private PersistentSortedSet(Comparator<T> comparator, Node<T> root) {
+        this.comparator = comparator;
+        this.root = root;
+        this.listView = new ListView<>(this);
+    }
+
+    public Comparator<T> getComparator() {
+        return comparator;
+    }
+
+    public int size() {
+        return sizeOf(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public boolean contains(T value) {
+        return find(value) != null;
+    }
+
+    /**
+     * Returns the element equal to the given one (according to the comparator), or null if there is no such element.
+     */
+    public T find(T value) {
+        Node<T> current = root;
+        while (current != null) {
+            int result = comparator.compare(value, current.value);
+            if (result == 0) {
+                return current.value;
+            }
+            current = result < 0 ? current.left : current.right;
+        }
+        return null;
+    }
+
+    /**
+     * Returns element at the given position in O(log(n)) time.
+     */
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range [0, " + size() + ')');
+        }
+        Node<T> current = root;
+        while (true) {
+            int leftSize = sizeOf(current.left);
+            if (index < leftSize) {
+                current = current.left;
+            } else if (index == leftSize) {
+                return current.value;
+            } else {
+                index -= leftSize + 1;
+                current = current.right;
+            }
+        }
+    }
+
+    /**
+     * Adds a new element to the set. If an element equal to the given one (according to the comparator) exists,
+     * it is replaced.
+     */
+    public PersistentSortedSet<T> add(T value) {
+        Split<T> split = split(root, value);
+        Node<T> newNode = new Node<>(value, ThreadLocalRandom.current().nextInt(), null, null);
+        return new PersistentSortedSet<>(comparator, merge(merge(split.less, newNode), split.greater));
+    }
+
+    /**
+     * Removes an element equal to the given one (according to the comparator). If there is no such element, returns
+     * the same set instance.
+     */
+    public PersistentSortedSet<T> remove(T value) {
+        if (!contains(value)) {
+            return this;
+        }
+        Split<T> split = split(root, value);
+        return new PersistentSortedSet<>(comparator, merge(split.less, split.greater));
+    }
+
+    /**
+     * Returns an immutable {@link List} view of this set. The list is backed by the tree, so no copy is made. Random
+     * access is O(log(n)), and the iteration over the whole list is O(n).
+     */
+    public List<T> asList() {
+        return listView;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new InOrderIterator<>(root);
+    }
+
+    @Override
+    public String toString() {
+        return listView.toString();
+    }
+
+    public static <T> PersistentSortedSet<T> empty(Comparator<T> comparator) {
+        return new PersistentSortedSet<>(comparator, null);
+    }
+
+    public static <T> PersistentSortedSet<T> of(Comparator<T> comparator, Iterable<T> values) {
+        PersistentSortedSet<T> result = empty(comparator);
+        for (T value : values) {
+            result = result.add(value);
+        }
+        return result;
+    }
+
+    /**
+     * Splits a tree into nodes strictly less and strictly greater than the given key. An equal node (if any) is dropped.
+     */
+    private Split<T> split(Node<T> node, T key) {
+        if (node == null) {
+            return new Split<>(null, null);
+        }
+        int result = comparator.compare(key, node.value);
+        if (result == 0) {
+            return new Split<>(node.left, node.right);
+        }
+        if (result < 0) {
+            Split<T> leftSplit = split(node.left, key);
+            return new Split<>(leftSplit.less, node.withChildren(leftSplit.greater, node.right));
+        }
+        Split<T> rightSplit = split(node.right, key);
+        return new Split<>(node.withChildren(node.left, rightSplit.less), rightSplit.greater);
+    }
+
+    /**
+     * Merges two trees, with all elements of the left tree less than the elements of the right tree.
+     */
+    private static <T> Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            return left.withChildren(left.left, merge(left.right, right));
+        }
+        return right.withChildren(merge(left, right.left), right.right);
+    }
+
+    private static int sizeOf(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node<T> {
+
+        private final T value;
+        private final int priority;
+        private final Node<T> left;
+        private final Node<T> right;
+        private final int size;
+
+        private Node(T value, int priority, Node<T> left, Node<T> right) {
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = sizeOf(left) + sizeOf(right) + 1;
+        }
+
+        private Node<T> withChildren(Node<T> newLeft, Node<T> newRight) {
+            if (newLeft == left && newRight == right) {
+                return this;
+            }
+            return new Node<>(value, priority, newLeft, newRight);
+        }
+    }
+
+    private static final class Split<T> {
+
+        private final Node<T> less;
+        private final Node<T> greater;
+
+        private Split(Node<T> less, Node<T> greater) {
+            this.less = less;
+            this.greater = greater;
+        }
+    }
+
+    private static final class InOrderIterator<T> implements Iterator<T> {
+
+        private final Deque<Node<T>> stack = new ArrayDeque<>();
+
+        private InOrderIterator(Node<T> root) {
+            pushLeft(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node<T> next = stack.pop();
+            pushLeft(next.right);
+            return next.value;
+        }
+
+        private void pushLeft(Node<T> node) {
+            Node<T> current = node;
+            while (current != null) {
+                stack.push(current);
+                current = current.left;
+            }
+        }
+    }
+
+    private static final class ListView<T> extends AbstractList<T> implements RandomAccess {
+
+        private final PersistentSortedSet<T> set;
+
+        private ListView(PersistentSortedSet<T> set) {
+            this.set = set;
+        }
+
+        @Override
+        public T get(int index) {
+            return set.get(index);
+        }
+
+        @Override
+        public int size() {
+            return set.size();
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return set.iterator();
+        }
+    }
+}
@@ -35,14 +35,17 @@ public class DatabaseMetrics {
 
     private static final String ROOT_NAME = "titus.jooq.";
     private static final String OPERATION_LATENCY = "latency";
+    private static final String BATCH_SIZE = "batchSize";
 
     private static final String RECORD_OP_TAG = "operation";
     private static final String RECORD_COUNT_TAG = "count";
 
     private final Id operationLatency;
+    private final Id batchSize;
 
     private enum Operations {
         INSERT,
+        BATCH_INSERT,
         SELECT,
         SCAN,
     }
@@ -55,6 +58,7 @@ public class DatabaseMetrics {
         this.registry = registry;
 
         this.operationLatency = registry.createId(ROOT_NAME + databaseName + "." + OPERATION_LATENCY, commonTags);
+        this.batchSize = registry.createId(ROOT_NAME + databaseName + "." + BATCH_SIZE, commonTags);
     }
 
     public void registerInsertLatency(long startTimeMs, int numRecordsInserted, List<Tag> additionalTags) {
@@ -66,6 +70,15 @@ public class DatabaseMetrics {
                 System.currentTimeMillis() - startTimeMs);
     }
 
+    /**
+     * Records the latency of a single write of multiple records, and the number of records written. The record
+     * count is not used as a tag, as it would create a separate metric for each batch size.
+     */
+    public void registerBatchInsertLatency(long startTimeMs, int numRecordsInserted, List<Tag> additionalTags) {
+        registerLatency(Operations.BATCH_INSERT, additionalTags, System.currentTimeMillis() - startTimeMs);
+        registry.distributionSummary(batchSize.withTags(additionalTags)).record(numRecordsInserted);
+    }
+
     public void registerScanLatency(long startTimeMs, List<Tag> additionalTags) {
         registerLatency(Operations.SCAN, additionalTags, System.currentTimeMillis() - startTimeMs);
     }
@@ -65,4 +65,59 @@ public class EntityHolderTest {
         assertThat(first(rootV2.getChildren()).getId()).isEqualTo("myChild2");
         assertThat(child1.getId()).isEqualTo("myChild1");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testFindDescendantById() throws Exception {
+        EntityHolder grandChild = newRoot("myGrandChild", "g1");
+        EntityHolder rootV1 = newRoot("myRoot", "as").addChild(newRoot("myChild", "a1").addChild(grandChild));
+
+        assertThat(rootV1.findChildById("myGrandChild")).contains(grandChild);
+
+        // Replace the child sub-tree
+        EntityHolder rootV2 = rootV1.addChild(newRoot("myChild", "a1_v2").addChild(newRoot("myGrandChild2", "g2")));
+        assertThat(rootV2.findChildById("myGrandChild")).isEmpty();
+        assertThat(rootV2.findChildById("myGrandChild2")).isPresent();
+        assertThat(rootV1.findChildById("myGrandChild")).contains(grandChild);
+
+        // Remove the child sub-tree
+        EntityHolder rootV3 = rootV2.removeChild("myChild").getLeft();
+        assertThat(rootV3.findChildById("myChild")).isEmpty();
+        assertThat(rootV3.findChildById("myGrandChild2")).isEmpty();
+    }
+
+    @Test
+    public void testGetChildrenNotIn() throws Exception {
+        EntityHolder child1 = newRoot("myChild1", "a1");
+        EntityHolder child2 = newRoot("myChild2", "a2");
+        EntityHolder rootV1 = newRoot("myRoot", "as").addChild(child1).addChild(child2);
+
+        EntityHolder updatedChild1 = child1.setEntity("b1");
+        EntityHolder child3 = newRoot("myChild3", "a3");
+        EntityHolder rootV2 = rootV1.addChild(updatedChild1).removeChild("myChild2").getLeft().addChild(child3);
+
+        assertThat(rootV2.getChildrenNotIn(rootV1)).containsExactlyInAnyOrder(updatedChild1, child3);
+        assertThat(rootV1.getChildrenNotIn(rootV2)).containsExactlyInAnyOrder(child1, child2);
+        assertThat(rootV2.getChildrenNotIn(rootV2)).isEmpty();
+    }
+
+    @Test
+    public void testChildrenViewIsNotCopied() throws Exception {
+        EntityHolder child1 = newRoot("myChild1", "a1");
+        EntityHolder child2 = newRoot("myChild2", "a2");
+        EntityHolder rootV1 = newRoot("myRoot", "as").addChild(child1);
+        EntityHolder rootV2 = rootV1.addChild(child2);
+
+        assertThat(rootV1.getChildrenView()).containsExactly(child1);
+        assertThat(rootV2.getChildrenView()).containsExactlyInAnyOrder(child1, child2);
+        assertThat(rootV2.getChildrenView()).containsExactlyElementsOf(rootV2.getChildren());
+        assertThat(rootV2.removeChild("myChild2").getLeft().getChildrenView()).containsExactly(child1);
+    }
+
+    @Test
+    public void testAddSameChildReturnsSameInstance() throws Exception {
+        EntityHolder child = newRoot("myChild", "a1");
+        EntityHolder root = newRoot("myRoot", "as").addChild(child);
+
+        assertThat(root.addChild(child)).isSameAs(root);
+    }
+}
@@ -38,6 +38,7 @@ import com.netflix.titus.testkit.rx.ExtTestSubscriber;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import rx.Observable;
 import rx.observers.AssertableSubscriber;
 import rx.schedulers.Schedulers;
@@ -289,6 +290,53 @@ public class DefaultReconciliationFrameworkTest {
         assertThat(framework.orderedView("descending").stream().map(EntityHolder::getEntity)).containsExactly("myEntity2", "myEntity1");
     }
 
+    @Test
+    public void testGroupAndChildIndexes() {
+        InternalReconciliationEngine<SimpleReconcilerEvent> bootstrapEngine = mock(InternalReconciliationEngine.class);
+        when(bootstrapEngine.events()).thenReturn(PublishSubject.create());
+        when(bootstrapEngine.triggerActions()).thenReturn(true);
+        EntityHolder child1 = EntityHolder.newRoot("myChild1", "a-child1");
+        EntityHolder child2 = EntityHolder.newRoot("myChild2", "b-child2");
+        when(bootstrapEngine.getReferenceView()).thenReturn(EntityHolder.newRoot("myRoot1", "a-myEntity1").addChild(child1).addChild(child2));
+
+        Map<Object, Function<EntityHolder, Object>> groupings = Collections.singletonMap("firstLetter", holder -> holder.<String>getEntity().substring(0, 1));
+        DefaultReconciliationFramework<SimpleReconcilerEvent> framework = new DefaultReconciliationFramework<>(
+                Collections.singletonList(bootstrapEngine),
+                engineFactory,
+                IDLE_TIMEOUT_MS,
+                ACTIVE_TIMEOUT_MS,
+                IndexSet.newIndexSet(indexComparators, groupings, Comparator.comparing(EntityHolder::getEntity), EntityHolder::getId),
+                IndexSet.newIndexSet(indexComparators, groupings, Comparator.comparing(EntityHolder::getEntity), EntityHolder::getId),
+                1,
+                new DefaultRegistry(),
+                Optional.of(testScheduler)
+        );
+        framework.start();
+        try {
+            assertThat(framework.groupedView("firstLetter", "a")).hasSize(1);
+            assertThat(framework.groupedView("firstLetter", "b")).isEmpty();
+            assertThat(framework.orderedChildView("descending")).containsExactly(child2, child1);
+            assertThat(framework.groupedChildView("firstLetter", "a")).containsExactly(child1);
+            assertThat(framework.findEngineByChildId("myChild2")).isPresent();
+
+            // Replace one child, and remove the other one
+            EntityHolder updatedChild1 = child1.setEntity("b-child1");
+            when(bootstrapEngine.getReferenceView()).thenReturn(EntityHolder.newRoot("myRoot1", "b-myEntity1").addChild(updatedChild1));
+            when(bootstrapEngine.applyModelUpdates()).thenReturn(true);
+            testScheduler.triggerActions();
+
+            assertThat(framework.groupedView("firstLetter", "a")).isEmpty();
+            assertThat(framework.groupedView("firstLetter", "b")).hasSize(1);
+            assertThat(framework.orderedChildView("ascending")).containsExactly(updatedChild1);
+            assertThat(framework.groupedChildView("firstLetter", "a")).isEmpty();
+            assertThat(framework.groupedChildView("firstLetter", "b")).containsExactly(updatedChild1);
+            assertThat(framework.findEngineByChildId("myChild1").map(pair -> pair.getRight())).contains(updatedChild1);
+            assertThat(framework.findEngineByChildId("myChild2")).isEmpty();
+        } finally {
+            framework.stop(STOP_TIMEOUT_MS);
+        }
+    }
+
     @Test
     public void testEventsPublishing() {
         framework.newEngine(EntityHolder.newRoot("myRoot1", "myEntity1")).subscribe();
@@ -307,6 +355,62 @@ public class DefaultReconciliationFrameworkTest {
         assertThat(eventSubscriber.takeNext().getMessage()).isEqualTo("event2");
     }
 
+    @Test
+    public void testOnlyDirtyOrActiveEnginesAreVisitedOutsideOfFullCycle() {
+        when(engine1.triggerActions()).thenReturn(false);
+
+        framework.newEngine(EntityHolder.newRoot("myRoot1", "myEntity1")).subscribe();
+        testScheduler.triggerActions();
+
+        ArgumentCaptor<Runnable> dirtyListenerCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(engine1, times(1)).setDirtyListener(dirtyListenerCaptor.capture());
+
+        // No actions running, and no new change actions, so the engine is not visited.
+        testScheduler.advanceTimeBy(ACTIVE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        verify(engine1, times(0)).applyModelUpdates();
+
+        // Signal new change action
+        dirtyListenerCaptor.getValue().run();
+        testScheduler.advanceTimeBy(ACTIVE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        verify(engine1, times(1)).applyModelUpdates();
+        verify(engine1, times(2)).emitEvents();
+
+        testScheduler.advanceTimeBy(ACTIVE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        verify(engine1, times(1)).applyModelUpdates();
+    }
+
+    @Test
+    public void testShardedReconciliationLoop() {
+        DefaultReconciliationFramework<SimpleReconcilerEvent> shardedFramework = new DefaultReconciliationFramework<>(
+                Collections.emptyList(),
+                engineFactory,
+                IDLE_TIMEOUT_MS,
+                ACTIVE_TIMEOUT_MS,
+                indexComparators,
+                4,
+                new DefaultRegistry(),
+                Optional.of(testScheduler)
+        );
+        shardedFramework.start();
+        try {
+            shardedFramework.newEngine(EntityHolder.newRoot("myRoot1", "myEntity1")).subscribe();
+            shardedFramework.newEngine(EntityHolder.newRoot("myRoot2", "myEntity2")).subscribe();
+            testScheduler.triggerActions();
+
+            verify(engine1, times(1)).triggerActions();
+            verify(engine2, times(1)).triggerActions();
+            assertThat(shardedFramework.findEngineByRootId("myRoot1")).isPresent();
+            assertThat(shardedFramework.findEngineByRootId("myRoot2")).isPresent();
+            assertThat(shardedFramework.orderedView("ascending").stream().map(EntityHolder::getEntity)).containsExactly("myEntity1", "myEntity2");
+
+            testScheduler.advanceTimeBy(IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            verify(engine1, times(2)).triggerActions();
+            verify(engine2, times(2)).triggerActions();
+        } finally {
+            shardedFramework.stop(STOP_TIMEOUT_MS);
+        }
+    }
+
     private SimpleReconcilerEvent newEvent(String message) {
         return new SimpleReconcilerEvent(EventType.Changed, message, Optional.empty());
     }
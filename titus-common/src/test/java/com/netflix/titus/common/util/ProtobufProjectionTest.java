@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.common.util;
+
+import java.util.Set;
+
+import com.google.protobuf.Message;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static com.netflix.titus.common.util.CollectionsExt.asSet;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProtobufProjectionTest {
+
+    private static Message OUTER_VALUE;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        Message innerValue = ProtoMessageBuilder.newInner("innerValue1", "innerValue2");
+        Message innerValue2 = ProtoMessageBuilder.newInner("inner2Value1", "inner2Value2");
+        OUTER_VALUE = ProtoMessageBuilder.newOuter(innerValue, 10, innerValue, innerValue2);
+    }
+
+    @Test
+    public void testTopLevelFieldSelection() {
+        assertSameAsCopy(asSet("objectField", "primitiveField"));
+        assertSameAsCopy(asSet("primitiveField"));
+    }
+
+    @Test
+    public void testNestedFieldSelection() {
+        assertSameAsCopy(asSet("objectField.stringField1", "primitiveField"));
+        assertSameAsCopy(asSet("objectArrayField", "primitiveField"));
+        assertSameAsCopy(asSet("objectArrayField.stringField1", "primitiveField"));
+    }
+
+    @Test
+    public void testUnknownFieldsAreIgnored() {
+        assertSameAsCopy(asSet("primitiveField", "unknownField", "unknownField.nested"));
+    }
+
+    @Test
+    public void testIncludes() {
+        ProtobufProjection projection = ProtobufProjection.compile(OUTER_VALUE.getDescriptorForType(), asSet("objectField.stringField1", "primitiveField"));
+
+        assertThat(projection.includes("objectField")).isTrue();
+        assertThat(projection.includes("primitiveField")).isTrue();
+        assertThat(projection.includes("objectArrayField")).isFalse();
+        assertThat(projection.hasNestedSelection()).isTrue();
+    }
+
+    @Test
+    public void testProjectionsAreCachedPerFieldSet() {
+        ProtobufProjection first = ProtobufProjection.of(OUTER_VALUE.getDescriptorForType(), asSet("primitiveField", "objectField"));
+        ProtobufProjection second = ProtobufProjection.of(OUTER_VALUE.getDescriptorForType(), asSet("objectField", "primitiveField"));
+        ProtobufProjection other = ProtobufProjection.of(OUTER_VALUE.getDescriptorForType(), asSet("primitiveField"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(other).isNotSameAs(first);
+    }
+
+    private void assertSameAsCopy(Set<String> fields) {
+        Message projected = ProtobufProjection.compile(OUTER_VALUE.getDescriptorForType(), fields).apply(OUTER_VALUE);
+        assertThat(projected).isEqualTo(ProtobufExt.copy(OUTER_VALUE, fields));
+    }
+}
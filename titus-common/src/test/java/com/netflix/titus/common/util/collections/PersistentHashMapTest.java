@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.common.util.collections;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class PersistentHashMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty().put("a", 1).put("b", 2);
+
+        assertThat(map.size()).isEqualTo(2);
+        assertThat(map.get("a")).isEqualTo(1);
+        assertThat(map.get("c")).isNull();
+
+        PersistentHashMap<String, Integer> removed = map.remove("a");
+        assertThat(removed.size()).isEqualTo(1);
+        assertThat(removed.containsKey("a")).isFalse();
+        assertThat(removed.remove("a")).isSameAs(removed);
+    }
+
+    @Test
+    public void testPreviousVersionsAreNotModified() {
+        PersistentHashMap<String, Integer> version1 = PersistentHashMap.<String, Integer>empty().put("a", 1);
+        PersistentHashMap<String, Integer> version2 = version1.put("a", 2).put("b", 3);
+
+        assertThat(version1.asMap()).containsOnly(entry("a", 1));
+        assertThat(version2.asMap()).containsOnly(entry("a", 2), entry("b", 3));
+    }
+
+    @Test
+    public void testPutOfSameValueReturnsSameMap() {
+        Integer value = 1000;
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty().put("a", value);
+        assertThat(map.put("a", value)).isSameAs(map);
+    }
+
+    @Test
+    public void testHashCollisions() {
+        PersistentHashMap<CollidingKey, String> map = PersistentHashMap.empty();
+        for (int i = 0; i < 100; i++) {
+            map = map.put(new CollidingKey(i), "value" + i);
+        }
+        assertThat(map.size()).isEqualTo(100);
+        assertThat(map.get(new CollidingKey(50))).isEqualTo("value50");
+
+        for (int i = 0; i < 99; i++) {
+            map = map.remove(new CollidingKey(i));
+        }
+        assertThat(map.asMap()).containsOnly(entry(new CollidingKey(99), "value99"));
+    }
+
+    @Test
+    public void testRandomOperationsAgainstHashMap() {
+        Random random = new Random(123);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentHashMap<Integer, Integer> actual = PersistentHashMap.empty();
+
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(5_000);
+            if (random.nextInt(3) > 0) {
+                int value = random.nextInt();
+                expected.put(key, value);
+                actual = actual.put(key, value);
+            } else {
+                expected.remove(key);
+                actual = actual.remove(key);
+            }
+        }
+
+        assertThat(actual.size()).isEqualTo(expected.size());
+        assertThat(actual.asMap()).isEqualTo(expected);
+    }
+
+    @Test
+    public void testForEachNotIn() {
+        Random random = new Random(123);
+        PersistentHashMap<Integer, Integer> original = PersistentHashMap.empty();
+        for (int i = 0; i < 5_000; i++) {
+            original = original.put(i, i);
+        }
+
+        PersistentHashMap<Integer, Integer> modified = original;
+        for (int i = 0; i < 100; i++) {
+            int key = 1 + random.nextInt(10_000);
+            modified = random.nextBoolean() ? modified.put(key, -key) : modified.remove(key);
+        }
+
+        assertThat(notIn(modified, original)).isEqualTo(difference(modified.asMap(), original.asMap()));
+        assertThat(notIn(original, modified)).isEqualTo(difference(original.asMap(), modified.asMap()));
+    }
+
+    @Test
+    public void testForEachNotInWithHashCollisions() {
+        PersistentHashMap<CollidingKey, String> original = PersistentHashMap.empty();
+        for (int i = 0; i < 10; i++) {
+            original = original.put(new CollidingKey(i), "value" + i);
+        }
+        PersistentHashMap<CollidingKey, String> modified = original.put(new CollidingKey(4), "updated4").remove(new CollidingKey(5));
+
+        assertThat(notIn(modified, original)).containsOnly(entry(new CollidingKey(4), "updated4"));
+        assertThat(notIn(original, modified)).containsOnly(entry(new CollidingKey(4), "value4"), entry(new CollidingKey(5), "value5"));
+    }
+
+    private static <K, V> Map<K, V> notIn(PersistentHashMap<K, V> map, PersistentHashMap<K, V> other) {
+        Map<K, V> result = new HashMap<>();
+        map.forEachNotIn(other, result::put);
+        return result;
+    }
+
+    private static <K, V> Map<K, V> difference(Map<K, V> map, Map<K, V> other) {
+        Map<K, V> result = new HashMap<>();
+        map.forEach((key, value) -> {
+            if (!value.equals(other.get(key))) {
+                result.put(key, value);
+            }
+        });
+        return result;
+    }
+
+    private static class CollidingKey {
+
+        private final int id;
+
+        private CollidingKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey && ((CollidingKey) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id % 3;
+        }
+    }
+}
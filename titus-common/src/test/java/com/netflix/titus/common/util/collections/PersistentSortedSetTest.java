@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.common.util.collections;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PersistentSortedSetTest {
+
+    @Test
+    public void testAddAndRemove() {
+        PersistentSortedSet<Integer> set = PersistentSortedSet.empty(Comparator.<Integer>naturalOrder());
+        set = set.add(3).add(1).add(2);
+
+        assertThat(set.asList()).containsExactly(1, 2, 3);
+        assertThat(set.size()).isEqualTo(3);
+        assertThat(set.contains(2)).isTrue();
+
+        PersistentSortedSet<Integer> removed = set.remove(2);
+        assertThat(removed.asList()).containsExactly(1, 3);
+        assertThat(removed.remove(2)).isSameAs(removed);
+    }
+
+    @Test
+    public void testPreviousVersionsAreNotModified() {
+        PersistentSortedSet<Integer> version1 = PersistentSortedSet.of(Comparator.<Integer>naturalOrder(), Arrays.asList(5, 1, 3));
+        PersistentSortedSet<Integer> version2 = version1.add(2).remove(5);
+
+        assertThat(version1.asList()).containsExactly(1, 3, 5);
+        assertThat(version2.asList()).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void testAddReplacesEqualElement() {
+        Comparator<String> byFirstLetter = Comparator.comparing(s -> s.charAt(0));
+        PersistentSortedSet<String> set = PersistentSortedSet.<String>empty(byFirstLetter).add("a1").add("b1").add("a2");
+
+        assertThat(set.asList()).containsExactly("a2", "b1");
+    }
+
+    @Test
+    public void testFindReturnsEqualElement() {
+        Comparator<String> byFirstLetter = Comparator.comparing(s -> s.charAt(0));
+        PersistentSortedSet<String> set = PersistentSortedSet.<String>empty(byFirstLetter).add("a1").add("b1");
+
+        assertThat(set.find("a2")).isEqualTo("a1");
+        assertThat(set.find("c1")).isNull();
+    }
+
+    @Test
+    public void testPositionalAccess() {
+        PersistentSortedSet<Integer> set = PersistentSortedSet.of(Comparator.<Integer>naturalOrder(), Arrays.asList(40, 10, 30, 20));
+
+        assertThat(set.get(0)).isEqualTo(10);
+        assertThat(set.get(3)).isEqualTo(40);
+        assertThat(set.asList().subList(1, 3)).containsExactly(20, 30);
+    }
+
+    @Test
+    public void testRandomOperationsAgainstTreeSet() {
+        Random random = new Random(123);
+        TreeSet<Integer> expected = new TreeSet<>();
+        PersistentSortedSet<Integer> actual = PersistentSortedSet.empty(Comparator.<Integer>naturalOrder());
+
+        for (int i = 0; i < 10_000; i++) {
+            int value = random.nextInt(1_000);
+            if (random.nextBoolean()) {
+                expected.add(value);
+                actual = actual.add(value);
+            } else {
+                expected.remove(value);
+                actual = actual.remove(value);
+            }
+        }
+
+        assertThat(actual.size()).isEqualTo(expected.size());
+        assertThat(actual.asList()).containsExactlyElementsOf(expected);
+    }
+}
@@ -16,10 +16,15 @@
 
 package com.netflix.titus.ext.cassandra.store;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -54,6 +59,7 @@ import com.netflix.titus.api.jobmanager.model.job.disruptionbudget.DisruptionBud
 import com.netflix.titus.api.jobmanager.model.job.ext.ServiceJobExt;
 import com.netflix.titus.api.jobmanager.model.job.migration.SystemDefaultMigrationPolicy;
 import com.netflix.titus.api.jobmanager.service.V3JobOperations;
+import com.netflix.titus.api.jobmanager.store.ActiveRecordVersions;
 import com.netflix.titus.api.jobmanager.store.JobStore;
 import com.netflix.titus.api.jobmanager.store.JobStoreException;
 import com.netflix.titus.api.jobmanager.store.JobStoreFitAction;
@@ -83,43 +89,30 @@ public class CassandraJobStore implements JobStore {
 
     private static final int INITIAL_BUCKET_COUNT = 100;
     private static final int MAX_BUCKET_SIZE = 2_000;
+    private static final int RECORD_VERSIONS_FETCH_SIZE = 5_000;
     private static final String METRIC_NAME_ROOT = "titusMaster.jobManager.cassandra";
 
     // SELECT Queries
     private static final String RETRIEVE_ACTIVE_JOB_ID_BUCKETS_STRING = "SELECT distinct bucket FROM active_job_ids";
     private static final String RETRIEVE_ACTIVE_JOB_IDS_STRING = "SELECT job_id FROM active_job_ids WHERE bucket = ?;";
-    private static final String RETRIEVE_ACTIVE_JOB_STRING = "SELECT value FROM active_jobs WHERE job_id = ?;";
-    private static final String RETRIEVE_ARCHIVED_JOB_STRING = "SELECT value FROM archived_jobs WHERE job_id = ?;";
     private static final String RETRIEVE_ACTIVE_TASK_IDS_FOR_JOB_STRING = "SELECT task_id FROM active_task_ids WHERE job_id = ?;";
     private static final String RETRIEVE_ARCHIVED_TASK_IDS_FOR_JOB_STRING = "SELECT task_id FROM archived_task_ids WHERE job_id = ?;";
-    private static final String RETRIEVE_ACTIVE_TASK_STRING = "SELECT value FROM active_tasks WHERE task_id = ?;";
-    private static final String RETRIEVE_ARCHIVED_TASK_STRING = "SELECT value FROM archived_tasks WHERE task_id = ?;";
+    private static final String RETRIEVE_ALL_ACTIVE_TASK_IDS_STRING = "SELECT job_id, task_id FROM active_task_ids;";
 
     private final PreparedStatement retrieveActiveJobIdBucketsStatement;
     private final PreparedStatement retrieveActiveJobIdsStatement;
-    private final PreparedStatement retrieveActiveJobStatement;
-    private final PreparedStatement retrieveArchivedJobStatement;
     private final PreparedStatement retrieveActiveTaskIdsForJobStatement;
     private final PreparedStatement retrieveArchivedTaskIdsForJobStatement;
-    private final PreparedStatement retrieveActiveTaskStatement;
-    private final PreparedStatement retrieveArchivedTaskStatement;
+    private final PreparedStatement retrieveAllActiveTaskIdsStatement;
 
     // INSERT Queries
     private static final String INSERT_ACTIVE_JOB_ID_STRING = "INSERT INTO active_job_ids (bucket, job_id) VALUES (?, ?);";
-    private static final String INSERT_ACTIVE_JOB_STRING = "INSERT INTO active_jobs (job_id, value) VALUES (?, ?);";
-    private static final String INSERT_ARCHIVED_JOB_STRING = "INSERT INTO archived_jobs (job_id, value) VALUES (?, ?);";
     private static final String INSERT_ACTIVE_TASK_ID_STRING = "INSERT INTO active_task_ids (job_id, task_id) VALUES (?, ?);";
-    private static final String INSERT_ACTIVE_TASK_STRING = "INSERT INTO active_tasks (task_id, value) VALUES (?, ?);";
     private static final String INSERT_ARCHIVED_TASK_ID_STRING = "INSERT INTO archived_task_ids (job_id, task_id) VALUES (?, ?);";
-    private static final String INSERT_ARCHIVED_TASK_STRING = "INSERT INTO archived_tasks (task_id, value) VALUES (?, ?);";
 
-    private final PreparedStatement insertActiveJobStatement;
     private final PreparedStatement insertActiveJobIdStatement;
-    private final PreparedStatement insertArchivedJobStatement;
-    private final PreparedStatement insertActiveTaskStatement;
     private final PreparedStatement insertActiveTaskIdStatement;
     private final PreparedStatement insertArchivedTaskIdStatement;
-    private final PreparedStatement insertArchivedTaskStatement;
 
     // DELETE Queries
     private static final String DELETE_ACTIVE_JOB_ID_STRING = "DELETE FROM active_job_ids WHERE bucket = ? and job_id = ?";
@@ -132,9 +125,19 @@ public class CassandraJobStore implements JobStore {
     private final PreparedStatement deleteActiveTaskIdStatement;
     private final PreparedStatement deleteActiveTaskStatement;
 
+    private final StoreRecordTable activeJobsTable;
+    private final StoreRecordTable archivedJobsTable;
+    private final StoreRecordTable activeTasksTable;
+    private final StoreRecordTable archivedTasksTable;
+
+    private final StoreRecordCodec.Format activeJobsFormat;
+    private final StoreRecordCodec.Format activeTasksFormat;
+    private final StoreRecordCodec.Format archivedJobsFormat;
+    private final StoreRecordCodec.Format archivedTasksFormat;
+
     private final TitusRuntime titusRuntime;
     private final Session session;
-    private final ObjectMapper mapper;
+    private final StoreRecordCodec codec;
     private final BalancedBucketManager<String> activeJobIdsBucketManager;
     private final CassandraStoreConfiguration configuration;
     private final Optional<FitInjection> fitDriverInjection;
@@ -182,25 +185,30 @@ public class CassandraJobStore implements JobStore {
             this.fitBadDataInjection = Optional.empty();
         }
 
-        this.mapper = mapper;
+        this.codec = new StoreRecordCodec(mapper);
         this.activeJobIdsBucketManager = new BalancedBucketManager<>(initialBucketCount, maxBucketSize, METRIC_NAME_ROOT, titusRuntime.getRegistry());
 
+        this.activeJobsFormat = StoreRecordCodec.Format.parse(configuration.getActiveJobsRecordFormat());
+        this.activeTasksFormat = StoreRecordCodec.Format.parse(configuration.getActiveTasksRecordFormat());
+        this.archivedJobsFormat = StoreRecordCodec.Format.parse(configuration.getArchivedJobsRecordFormat());
+        this.archivedTasksFormat = StoreRecordCodec.Format.parse(configuration.getArchivedTasksRecordFormat());
+        boolean binaryEnabled = configuration.isBinaryRecordsEnabled()
+                || Stream.of(activeJobsFormat, activeTasksFormat, archivedJobsFormat, archivedTasksFormat).anyMatch(format -> format == StoreRecordCodec.Format.Smile);
+
+        this.activeJobsTable = new StoreRecordTable(session, codec, "active_jobs", "job_id", binaryEnabled);
+        this.archivedJobsTable = new StoreRecordTable(session, codec, "archived_jobs", "job_id", binaryEnabled);
+        this.activeTasksTable = new StoreRecordTable(session, codec, "active_tasks", "task_id", binaryEnabled);
+        this.archivedTasksTable = new StoreRecordTable(session, codec, "archived_tasks", "task_id", binaryEnabled);
+
         retrieveActiveJobIdBucketsStatement = session.prepare(RETRIEVE_ACTIVE_JOB_ID_BUCKETS_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
         retrieveActiveJobIdsStatement = session.prepare(RETRIEVE_ACTIVE_JOB_IDS_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
-        retrieveActiveJobStatement = session.prepare(RETRIEVE_ACTIVE_JOB_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
-        retrieveArchivedJobStatement = session.prepare(RETRIEVE_ARCHIVED_JOB_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
         retrieveActiveTaskIdsForJobStatement = session.prepare(RETRIEVE_ACTIVE_TASK_IDS_FOR_JOB_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
         retrieveArchivedTaskIdsForJobStatement = session.prepare(RETRIEVE_ARCHIVED_TASK_IDS_FOR_JOB_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
-        retrieveActiveTaskStatement = session.prepare(RETRIEVE_ACTIVE_TASK_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
-        retrieveArchivedTaskStatement = session.prepare(RETRIEVE_ARCHIVED_TASK_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
+        retrieveAllActiveTaskIdsStatement = session.prepare(RETRIEVE_ALL_ACTIVE_TASK_IDS_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
 
-        insertActiveJobStatement = session.prepare(INSERT_ACTIVE_JOB_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
         insertActiveJobIdStatement = session.prepare(INSERT_ACTIVE_JOB_ID_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
-        insertArchivedJobStatement = session.prepare(INSERT_ARCHIVED_JOB_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
-        insertActiveTaskStatement = session.prepare(INSERT_ACTIVE_TASK_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
         insertActiveTaskIdStatement = session.prepare(INSERT_ACTIVE_TASK_ID_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
         insertArchivedTaskIdStatement = session.prepare(INSERT_ARCHIVED_TASK_ID_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
-        insertArchivedTaskStatement = session.prepare(INSERT_ARCHIVED_TASK_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
 
         deleteActiveJobIdStatement = session.prepare(DELETE_ACTIVE_JOB_ID_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
         deleteActiveJobStatement = session.prepare(DELETE_ACTIVE_JOB_STRING).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
@@ -248,7 +256,7 @@ public class CassandraJobStore implements JobStore {
     public Observable<Pair<List<Job<?>>, Integer>> retrieveJobs() {
         Observable result = Observable.fromCallable(() -> {
             List<String> jobIds = activeJobIdsBucketManager.getItems();
-            return jobIds.stream().map(retrieveActiveJobStatement::bind).map(this::execute).collect(Collectors.toList());
+            return jobIds.stream().map(activeJobsTable::bindRetrieve).map(this::execute).collect(Collectors.toList());
         }).flatMap(observables -> Observable.merge(observables, getConcurrencyLimit()).flatMapIterable(resultSet -> {
             List<Row> allRows = resultSet.all();
             if (allRows.isEmpty()) {
@@ -256,10 +264,12 @@ public class CassandraJobStore implements JobStore {
                 return Collections.emptyList();
             }
             return allRows.stream()
-                    .map(row -> row.getString(0))
-                    .map(value -> {
+                    .map(row -> {
+                        String value = activeJobsTable.getValue(row);
+                        ByteBuffer binaryValue = activeJobsTable.getBinaryValue(row);
+
                         String effectiveValue;
-                        if (fitBadDataInjection.isPresent()) {
+                        if (fitBadDataInjection.isPresent() && binaryValue == null) {
                             effectiveValue = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.CorruptedRawJobRecords.name(), value);
                         } else {
                             effectiveValue = value;
@@ -267,37 +277,13 @@ public class CassandraJobStore implements JobStore {
 
                         Job<?> job;
                         try {
-                            job = ObjectMappers.readValue(mapper, effectiveValue, Job.class);
+                            job = codec.decode(effectiveValue, binaryValue, Job.class);
                         } catch (Exception e) {
-                            logger.error("Cannot map serialized job data to Job class: {}", effectiveValue, e);
+                            logger.error("Cannot map serialized job data to Job class: {}", StoreRecordCodec.toDebugString(effectiveValue, binaryValue), e);
                             return Either.ofError(e);
                         }
 
-                        if (job.getJobDescriptor().getDisruptionBudget() == null) {
-                            if (disruptionBudgetEnabledPredicate.test(job)) {
-                                titusRuntime.getCodeInvariants().inconsistent("jobWithNoDisruptionBudget: jobId=%s", job.getId());
-                            }
-                            job = JobFunctions.changeDisruptionBudget(job, DisruptionBudget.none());
-                        } else if (!disruptionBudgetEnabledPredicate.test(job)) {
-                            if (!DisruptionBudgetFunctions.isLegacyJob(job)) {
-                                logger.warn("Loaded job from store with disruption budget not enabled; resetting it to none: jobId={}", job.getId());
-                            }
-                            job = JobFunctions.changeDisruptionBudget(job, DisruptionBudget.none());
-                        }
-
-                        // TODO Remove this code when there are no more jobs with missing migration data (caused by a bug in ServiceJobExt builder).
-                        if (job.getJobDescriptor().getExtensions() instanceof ServiceJobExt) {
-                            Job<ServiceJobExt> serviceJob = (Job<ServiceJobExt>) job;
-                            ServiceJobExt ext = serviceJob.getJobDescriptor().getExtensions();
-                            if (ext.getMigrationPolicy() == null) {
-                                titusRuntime.getCodePointTracker().markReachable("Corrupted task migration record in Cassandra: " + job.getId());
-                                ServiceJobExt fixedExt = ext.toBuilder().withMigrationPolicy(SystemDefaultMigrationPolicy.newBuilder().build()).build();
-                                logger.warn("Service job with no migration policy defined. Setting system default: {}", job.getId());
-                                job = serviceJob.toBuilder().withJobDescriptor(
-                                        serviceJob.getJobDescriptor().toBuilder().withExtensions(fixedExt).build()
-                                ).build();
-                            }
-                        }
+                        job = fixLegacyJobRecord(job);
 
                         if (!fitBadDataInjection.isPresent()) {
                             return Either.ofValue(job);
@@ -316,21 +302,96 @@ public class CassandraJobStore implements JobStore {
         return result;
     }
 
+    /**
+     * Record versions are Cassandra write timestamps of the record value columns, so they are read with three
+     * table scans (active jobs, active tasks, and job to task id mapping) that do not transfer the records themselves.
+     * The scans are paged with {@link #RECORD_VERSIONS_FETCH_SIZE} rows per page, and each page is requested only
+     * after the previous one is processed. Only jobs known to the active job id bucket manager are included, so
+     * {@link #init()} must be called first.
+     */
+    @Override
+    public Observable<ActiveRecordVersions> retrieveActiveRecordVersions() {
+        Observable<Map<String, Long>> jobVersions = fetchAllRows(activeJobsTable.bindRetrieveVersions())
+                .collect(HashMap::new, (versions, row) -> addRecordVersion(activeJobsTable, versions, row));
+        Observable<Map<String, Long>> taskVersions = fetchAllRows(activeTasksTable.bindRetrieveVersions())
+                .collect(HashMap::new, (versions, row) -> addRecordVersion(activeTasksTable, versions, row));
+
+        return Observable.zip(jobVersions, taskVersions, Pair::of).flatMap(allVersions -> {
+            Set<String> activeJobIds = new HashSet<>(activeJobIdsBucketManager.getItems());
+            Map<String, Long> activeJobVersions = new HashMap<>();
+            allVersions.getLeft().forEach((jobId, version) -> {
+                if (activeJobIds.contains(jobId)) {
+                    activeJobVersions.put(jobId, version);
+                }
+            });
+
+            Map<String, Long> allTaskVersions = allVersions.getRight();
+            return fetchAllRows(retrieveAllActiveTaskIdsStatement.bind())
+                    .<Map<String, Map<String, Long>>>collect(HashMap::new, (activeTaskVersions, row) -> {
+                        String jobId = row.getString(0);
+                        String taskId = row.getString(1);
+                        Long version = allTaskVersions.get(taskId);
+                        if (version != null && activeJobVersions.containsKey(jobId)) {
+                            activeTaskVersions.computeIfAbsent(jobId, id -> new HashMap<>()).put(taskId, version);
+                        }
+                    })
+                    .map(activeTaskVersions -> new ActiveRecordVersions(activeJobVersions, activeTaskVersions));
+        });
+    }
+
+    private void addRecordVersion(StoreRecordTable table, Map<String, Long> versions, Row row) {
+        long writeTimeUs = table.getWriteTime(row);
+        if (writeTimeUs > 0) {
+            versions.put(row.getString(0), writeTimeUs / 1000);
+        }
+    }
+
     @Override
     public Observable<Job<?>> retrieveJob(String jobId) {
         return Observable.fromCallable((Callable<Statement>) () -> {
             checkIfJobIsActive(jobId);
-            return retrieveActiveJobStatement.bind(jobId);
+            return activeJobsTable.bindRetrieve(jobId);
         }).flatMap(statement -> execute(statement).map(resultSet -> {
             Row row = resultSet.one();
             if (row == null) {
                 throw JobStoreException.jobDoesNotExist(jobId);
             }
-            String value = row.getString(0);
-            return (Job<?>) ObjectMappers.readValue(mapper, value, Job.class);
+            return fixLegacyJobRecord(activeJobsTable.decode(row, Job.class));
         }));
     }
 
+    /**
+     * Applies the fixes needed by job records written by older versions of the code.
+     */
+    private Job<?> fixLegacyJobRecord(Job<?> job) {
+        if (job.getJobDescriptor().getDisruptionBudget() == null) {
+            if (disruptionBudgetEnabledPredicate.test(job)) {
+                titusRuntime.getCodeInvariants().inconsistent("jobWithNoDisruptionBudget: jobId=%s", job.getId());
+            }
+            job = JobFunctions.changeDisruptionBudget(job, DisruptionBudget.none());
+        } else if (!disruptionBudgetEnabledPredicate.test(job)) {
+            if (!DisruptionBudgetFunctions.isLegacyJob(job)) {
+                logger.warn("Loaded job from store with disruption budget not enabled; resetting it to none: jobId={}", job.getId());
+            }
+            job = JobFunctions.changeDisruptionBudget(job, DisruptionBudget.none());
+        }
+
+        // TODO Remove this code when there are no more jobs with missing migration data (caused by a bug in ServiceJobExt builder).
+        if (job.getJobDescriptor().getExtensions() instanceof ServiceJobExt) {
+            Job<ServiceJobExt> serviceJob = (Job<ServiceJobExt>) job;
+            ServiceJobExt ext = serviceJob.getJobDescriptor().getExtensions();
+            if (ext.getMigrationPolicy() == null) {
+                titusRuntime.getCodePointTracker().markReachable("Corrupted task migration record in Cassandra: " + job.getId());
+                ServiceJobExt fixedExt = ext.toBuilder().withMigrationPolicy(SystemDefaultMigrationPolicy.newBuilder().build()).build();
+                logger.warn("Service job with no migration policy defined. Setting system default: {}", job.getId());
+                job = serviceJob.toBuilder().withJobDescriptor(
+                        serviceJob.getJobDescriptor().toBuilder().withExtensions(fixedExt).build()
+                ).build();
+            }
+        }
+        return job;
+    }
+
     @Override
     public Completable storeJob(Job job) {
         return Observable
@@ -338,31 +399,30 @@ public class CassandraJobStore implements JobStore {
                     String jobId = job.getId();
                     checkIfJobAlreadyExists(jobId);
 
-                    String jobJsonString = writeJobToString(job);
+                    Statement jobStatement = bindJob(activeJobsTable, activeJobsFormat, job);
 
                     int bucket = activeJobIdsBucketManager.getNextBucket();
                     activeJobIdsBucketManager.addItem(bucket, jobId);
-                    Statement jobStatement = insertActiveJobStatement.bind(jobId, jobJsonString);
                     Statement jobIdStatement = insertActiveJobIdStatement.bind(bucket, jobId);
 
                     BatchStatement batchStatement = new BatchStatement();
                     batchStatement.add(jobStatement);
                     batchStatement.add(jobIdStatement);
 
-                    transactionLogger().logBeforeCreate(insertActiveJobStatement, "storeJob", job);
+                    transactionLogger().logBeforeCreate(activeJobsTable.getInsertStatement(), "storeJob", job);
 
                     return batchStatement;
                 })
                 .flatMap(statement -> execute(statement)
-                        .doOnNext(rs -> transactionLogger().logAfterCreate(insertActiveJobStatement, "storeJob", job))
+                        .doOnNext(rs -> transactionLogger().logAfterCreate(activeJobsTable.getInsertStatement(), "storeJob", job))
                         .doOnError(throwable -> activeJobIdsBucketManager.deleteItem(job.getId()))
                 )
                 .toCompletable();
     }
 
-    private String writeJobToString(Job job) {
+    private Statement bindJob(StoreRecordTable table, StoreRecordCodec.Format format, Job job) {
         if (disruptionBudgetEnabledPredicate.test(job)) {
-            return ObjectMappers.writeValueAsString(mapper, job);
+            return table.bindInsert(job.getId(), job, format);
         }
 
         if (!DisruptionBudgetFunctions.isLegacyJob(job)) {
@@ -370,7 +430,7 @@ public class CassandraJobStore implements JobStore {
         }
 
         JobDescriptor jobWithDisruptionBudgetNull = job.getJobDescriptor().toBuilder().withDisruptionBudget(null).build();
-        return ObjectMappers.writeValueAsString(mapper, job.toBuilder().withJobDescriptor(jobWithDisruptionBudgetNull).build());
+        return table.bindInsert(job.getId(), job.toBuilder().withJobDescriptor(jobWithDisruptionBudgetNull).build(), format);
     }
 
     @Override
@@ -379,13 +439,13 @@ public class CassandraJobStore implements JobStore {
                 .fromCallable((Callable<Statement>) () -> {
                     String jobId = job.getId();
                     checkIfJobIsActive(jobId);
-                    String jobJsonString = writeJobToString(job);
+                    Statement jobStatement = bindJob(activeJobsTable, activeJobsFormat, job);
 
-                    transactionLogger().logBeforeUpdate(insertActiveJobStatement, "updateJob", job);
-                    return insertActiveJobStatement.bind(jobId, jobJsonString);
+                    transactionLogger().logBeforeUpdate(activeJobsTable.getInsertStatement(), "updateJob", job);
+                    return jobStatement;
                 })
                 .flatMap(statement ->
-                        execute(statement).doOnNext(rs -> transactionLogger().logAfterUpdate(insertActiveJobStatement, "updateJob", job))
+                        execute(statement).doOnNext(rs -> transactionLogger().logAfterUpdate(activeJobsTable.getInsertStatement(), "updateJob", job))
                 )
                 .toCompletable();
     }
@@ -459,15 +519,16 @@ public class CassandraJobStore implements JobStore {
                     })
                     .collect(Collectors.toList());
 
-            List<Observable<ResultSet>> observables = taskIds.stream().map(retrieveActiveTaskStatement::bind).map(this::execute).collect(Collectors.toList());
+            List<Observable<ResultSet>> observables = taskIds.stream().map(activeTasksTable::bindRetrieve).map(this::execute).collect(Collectors.toList());
 
             return Observable.merge(observables, getConcurrencyLimit()).flatMapIterable(tasksResultSet -> {
                 List<Either<Task, Throwable>> tasks = new ArrayList<>();
                 for (Row row : tasksResultSet.all()) {
-                    String value = row.getString(0);
+                    String value = activeTasksTable.getValue(row);
+                    ByteBuffer binaryValue = activeTasksTable.getBinaryValue(row);
 
                     String effectiveValue;
-                    if (fitBadDataInjection.isPresent()) {
+                    if (fitBadDataInjection.isPresent() && binaryValue == null) {
                         effectiveValue = fitBadDataInjection.get().afterImmediate(JobStoreFitAction.ErrorKind.CorruptedRawTaskRecords.name(), value);
                     } else {
                         effectiveValue = value;
@@ -475,7 +536,7 @@ public class CassandraJobStore implements JobStore {
 
                     Task task;
                     try {
-                        task = deserializeTask(effectiveValue);
+                        task = deserializeTask(effectiveValue, binaryValue);
 
                         if (!fitBadDataInjection.isPresent()) {
                             tasks.add(Either.ofValue(task));
@@ -486,9 +547,9 @@ public class CassandraJobStore implements JobStore {
                             tasks.add(Either.ofValue(effectiveTask));
                         }
 
-                        transactionLogger().logAfterRead(retrieveActiveTaskStatement, "retrieveTasksForJob", task);
+                        transactionLogger().logAfterRead(activeTasksTable.getRetrieveStatement(), "retrieveTasksForJob", task);
                     } catch (Exception e) {
-                        logger.error("Cannot map serialized task data to Task class: {}", effectiveValue, e);
+                        logger.error("Cannot map serialized task data to Task class: {}", StoreRecordCodec.toDebugString(effectiveValue, binaryValue), e);
                         tasks.add(Either.ofError(e));
                     }
                 }
@@ -505,16 +566,15 @@ public class CassandraJobStore implements JobStore {
     public Observable<Task> retrieveTask(String taskId) {
         return Observable
                 .fromCallable((Callable<Statement>) () -> {
-                    transactionLogger().logBeforeRead(retrieveActiveTaskStatement, "retrieveTask", taskId);
-                    return retrieveActiveTaskStatement.bind(taskId);
+                    transactionLogger().logBeforeRead(activeTasksTable.getRetrieveStatement(), "retrieveTask", taskId);
+                    return activeTasksTable.bindRetrieve(taskId);
                 })
                 .flatMap(statement -> execute(statement).flatMap(resultSet -> {
                     Row row = resultSet.one();
                     if (row != null) {
-                        String value = row.getString(0);
-                        Task task = deserializeTask(value);
+                        Task task = deserializeTask(activeTasksTable.getValue(row), activeTasksTable.getBinaryValue(row));
 
-                        transactionLogger().logAfterRead(retrieveActiveTaskStatement, "retrieveTask", task);
+                        transactionLogger().logAfterRead(activeTasksTable.getRetrieveStatement(), "retrieveTask", task);
 
                         return Observable.just(task);
                     } else {
@@ -529,19 +589,18 @@ public class CassandraJobStore implements JobStore {
             String jobId = task.getJobId();
             String taskId = task.getId();
             checkIfJobIsActive(jobId);
-            String taskJsonString = ObjectMappers.writeValueAsString(mapper, task);
-            Statement taskStatement = insertActiveTaskStatement.bind(taskId, taskJsonString);
+            Statement taskStatement = activeTasksTable.bindInsert(task.getId(), task, activeTasksFormat);
             Statement taskIdStatement = insertActiveTaskIdStatement.bind(jobId, taskId);
 
             BatchStatement batchStatement = new BatchStatement();
             batchStatement.add(taskStatement);
             batchStatement.add(taskIdStatement);
 
-            transactionLogger().logBeforeCreate(insertActiveTaskStatement, "storeTask", task);
+            transactionLogger().logBeforeCreate(activeTasksTable.getInsertStatement(), "storeTask", task);
 
             return batchStatement;
         }).flatMap(statement ->
-                execute(statement).doOnNext(rs -> transactionLogger().logAfterCreate(insertActiveTaskStatement, "storeTask", task))
+                execute(statement).doOnNext(rs -> transactionLogger().logAfterCreate(activeTasksTable.getInsertStatement(), "storeTask", task))
         ).toCompletable();
     }
 
@@ -549,15 +608,14 @@ public class CassandraJobStore implements JobStore {
     public Completable updateTask(Task task) {
         return Observable.fromCallable((Callable<Statement>) () -> {
             String jobId = task.getJobId();
-            String taskId = task.getId();
             checkIfJobIsActive(jobId);
-            String taskJsonString = ObjectMappers.writeValueAsString(mapper, task);
+            Statement taskStatement = activeTasksTable.bindInsert(task.getId(), task, activeTasksFormat);
 
-            transactionLogger().logBeforeUpdate(insertActiveTaskStatement, "updateTask", task);
+            transactionLogger().logBeforeUpdate(activeTasksTable.getInsertStatement(), "updateTask", task);
 
-            return insertActiveTaskStatement.bind(taskId, taskJsonString);
+            return taskStatement;
         }).flatMap(statement -> {
-                    transactionLogger().logAfterUpdate(insertActiveTaskStatement, "updateTask", task);
+                    transactionLogger().logAfterUpdate(activeTasksTable.getInsertStatement(), "updateTask", task);
                     return execute(statement);
                 }
         ).toCompletable();
@@ -569,11 +627,10 @@ public class CassandraJobStore implements JobStore {
             String jobId = newTask.getJobId();
             checkIfJobIsActive(jobId);
             String taskId = newTask.getId();
-            String taskJsonString = ObjectMappers.writeValueAsString(mapper, newTask);
 
             BatchStatement batchStatement = getArchiveTaskBatchStatement(oldTask);
 
-            Statement insertTaskStatement = insertActiveTaskStatement.bind(taskId, taskJsonString);
+            Statement insertTaskStatement = activeTasksTable.bindInsert(newTask.getId(), newTask, activeTasksFormat);
             Statement insertTaskIdStatement = insertActiveTaskIdStatement.bind(jobId, taskId);
 
             batchStatement.add(insertTaskStatement);
@@ -599,18 +656,17 @@ public class CassandraJobStore implements JobStore {
             checkIfJobIsActive(jobFrom.getId());
             checkIfJobIsActive(jobTo.getId());
 
-            String taskJsonString = ObjectMappers.writeValueAsString(mapper, taskAfter);
-            transactionLogger().logBeforeUpdate(insertActiveTaskStatement, "moveTask", taskJsonString);
+            transactionLogger().logBeforeUpdate(activeTasksTable.getInsertStatement(), "moveTask", taskAfter);
 
             BatchStatement batchStatement = new BatchStatement();
-            batchStatement.add(insertActiveJobStatement.bind(jobFrom.getId(), ObjectMappers.writeValueAsString(mapper, jobFrom)));
-            batchStatement.add(insertActiveJobStatement.bind(jobTo.getId(), ObjectMappers.writeValueAsString(mapper, jobTo)));
-            batchStatement.add(insertActiveTaskStatement.bind(taskAfter.getId(), taskJsonString));
+            batchStatement.add(activeJobsTable.bindInsert(jobFrom.getId(), jobFrom, activeJobsFormat));
+            batchStatement.add(activeJobsTable.bindInsert(jobTo.getId(), jobTo, activeJobsFormat));
+            batchStatement.add(activeTasksTable.bindInsert(taskAfter.getId(), taskAfter, activeTasksFormat));
             batchStatement.add(deleteActiveTaskIdStatement.bind(jobFrom.getId(), taskAfter.getId()));
             batchStatement.add(insertActiveTaskIdStatement.bind(jobTo.getId(), taskAfter.getId()));
 
             return batchStatement;
-        }).flatMap(this::execute).toCompletable().doOnCompleted(() -> transactionLogger().logAfterUpdate(insertActiveTaskStatement, "moveTask", taskAfter));
+        }).flatMap(this::execute).toCompletable().doOnCompleted(() -> transactionLogger().logAfterUpdate(activeTasksTable.getInsertStatement(), "moveTask", taskAfter));
     }
 
     @Override
@@ -631,14 +687,13 @@ public class CassandraJobStore implements JobStore {
 
     @Override
     public Observable<Job<?>> retrieveArchivedJob(String jobId) {
-        return Observable.fromCallable((Callable<Statement>) () -> retrieveArchivedJobStatement.bind(jobId)).flatMap(statement -> execute(statement)
+        return Observable.fromCallable((Callable<Statement>) () -> archivedJobsTable.bindRetrieve(jobId)).flatMap(statement -> execute(statement)
                 .map(resultSet -> {
                     Row row = resultSet.one();
                     if (row == null) {
                         throw JobStoreException.jobDoesNotExist(jobId);
                     }
-                    String value = row.getString(0);
-                    return (Job<?>) ObjectMappers.readValue(mapper, value, Job.class);
+                    return (Job<?>) archivedJobsTable.decode(row, Job.class);
                 }));
     }
 
@@ -647,22 +702,20 @@ public class CassandraJobStore implements JobStore {
         return Observable.fromCallable(() -> retrieveArchivedTaskIdsForJobStatement.bind(jobId).setFetchSize(Integer.MAX_VALUE))
                 .flatMap(retrieveActiveTaskIdsForJob -> execute(retrieveActiveTaskIdsForJob).flatMap(taskIdsResultSet -> {
                     List<String> taskIds = taskIdsResultSet.all().stream().map(row -> row.getString(0)).collect(Collectors.toList());
-                    List<Observable<ResultSet>> observables = taskIds.stream().map(retrieveArchivedTaskStatement::bind).map(this::execute).collect(Collectors.toList());
+                    List<Observable<ResultSet>> observables = taskIds.stream().map(archivedTasksTable::bindRetrieve).map(this::execute).collect(Collectors.toList());
                     return Observable.merge(observables, getConcurrencyLimit()).flatMapIterable(tasksResultSet -> tasksResultSet.all().stream()
-                            .map(row -> row.getString(0))
-                            .map(value -> deserializeTask(value))
+                            .map(row -> deserializeTask(archivedTasksTable.getValue(row), archivedTasksTable.getBinaryValue(row)))
                             .collect(Collectors.toList()));
                 }));
     }
 
     @Override
     public Observable<Task> retrieveArchivedTask(String taskId) {
-        return Observable.fromCallable((Callable<Statement>) () -> retrieveArchivedTaskStatement.bind(taskId))
+        return Observable.fromCallable((Callable<Statement>) () -> archivedTasksTable.bindRetrieve(taskId))
                 .flatMap(statement -> execute(statement).flatMap(resultSet -> {
                     Row row = resultSet.one();
                     if (row != null) {
-                        String value = row.getString(0);
-                        Task task = deserializeTask(value);
+                        Task task = deserializeTask(archivedTasksTable.getValue(row), archivedTasksTable.getBinaryValue(row));
                         return Observable.just(task);
                     } else {
                         return Observable.error(JobStoreException.taskDoesNotExist(taskId));
@@ -670,8 +723,8 @@ public class CassandraJobStore implements JobStore {
                 }));
     }
 
-    private Task deserializeTask(String value) {
-        Task task = ObjectMappers.readValue(mapper, value, Task.class);
+    private Task deserializeTask(String value, ByteBuffer binaryValue) {
+        Task task = codec.decode(value, binaryValue, Task.class);
 
         // Task attributes field check
         if (task.getAttributes() == null) {
@@ -688,11 +741,10 @@ public class CassandraJobStore implements JobStore {
     private BatchStatement getArchiveJobBatchStatement(Job job) {
         String jobId = job.getId();
         int bucket = activeJobIdsBucketManager.getItemBucket(jobId);
-        String jobJsonString = writeJobToString(job);
 
         Statement deleteJobStatement = deleteActiveJobStatement.bind(jobId);
         Statement deleteJobIdStatement = deleteActiveJobIdStatement.bind(bucket, jobId);
-        Statement insertJobStatement = insertArchivedJobStatement.bind(jobId, jobJsonString);
+        Statement insertJobStatement = bindJob(archivedJobsTable, archivedJobsFormat, job);
 
         BatchStatement statement = new BatchStatement();
         statement.add(deleteJobStatement);
@@ -705,11 +757,10 @@ public class CassandraJobStore implements JobStore {
     private BatchStatement getArchiveTaskBatchStatement(Task task) {
         String jobId = task.getJobId();
         String taskId = task.getId();
-        String taskJsonString = ObjectMappers.writeValueAsString(mapper, task);
 
         Statement deleteTaskStatement = deleteActiveTaskStatement.bind(taskId);
         Statement deleteTaskIdStatement = deleteActiveTaskIdStatement.bind(jobId, taskId);
-        Statement insertTaskStatement = insertArchivedTaskStatement.bind(taskId, taskJsonString);
+        Statement insertTaskStatement = archivedTasksTable.bindInsert(taskId, task, archivedTasksFormat);
         Statement insertTaskIdStatement = insertArchivedTaskIdStatement.bind(jobId, taskId);
 
         BatchStatement batchStatement = new BatchStatement();
@@ -756,6 +807,47 @@ public class CassandraJobStore implements JobStore {
         ).doOnError(e -> logger.error("Cassandra operation error: {}", e.getMessage()));
     }
 
+    /**
+     * Emits all rows of a multi-page result. Pages are fetched asynchronously, so no driver I/O thread is blocked
+     * waiting for the next page, and only one page is held in memory at a time.
+     */
+    private Observable<Row> fetchAllRows(Statement statement) {
+        return execute(statement.setFetchSize(RECORD_VERSIONS_FETCH_SIZE)).concatMap(this::takeFetchedRows);
+    }
+
+    private Observable<Row> takeFetchedRows(ResultSet resultSet) {
+        List<Row> rows = new ArrayList<>(resultSet.getAvailableWithoutFetching());
+        while (resultSet.getAvailableWithoutFetching() > 0) {
+            rows.add(resultSet.one());
+        }
+        if (resultSet.isFullyFetched()) {
+            return Observable.from(rows);
+        }
+        return Observable.from(rows).concatWith(fetchMoreResults(resultSet).concatMap(this::takeFetchedRows));
+    }
+
+    private Observable<ResultSet> fetchMoreResults(ResultSet resultSet) {
+        return Observable.<ResultSet>create(
+                emitter -> {
+                    ListenableFuture<ResultSet> resultSetFuture = resultSet.fetchMoreResults();
+                    Futures.addCallback(resultSetFuture, new FutureCallback<ResultSet>() {
+                        @Override
+                        public void onSuccess(@Nullable ResultSet result) {
+                            emitter.onNext(result);
+                            emitter.onCompleted();
+                        }
+
+                        @Override
+                        public void onFailure(@Nonnull Throwable e) {
+                            emitter.onError(JobStoreException.cassandraDriverError(e));
+                        }
+                    });
+                    emitter.setCancellation(() -> resultSetFuture.cancel(true));
+                },
+                Emitter.BackpressureMode.NONE
+        ).doOnError(e -> logger.error("Cassandra operation error: {}", e.getMessage()));
+    }
+
     private int getConcurrencyLimit() {
         return Math.max(2, configuration.getConcurrencyLimit());
     }
@@ -53,4 +53,37 @@ public interface CassandraStoreConfiguration {
      */
     @DefaultValue("false")
     boolean isTracingEnabled();
+
+    /**
+     * If set, binary records are read (and may be written) by the job store, which requires the 'value_bin' column
+     * in the job and task tables. Enabled implicitly if any of the record formats below is 'smile'. Must stay enabled
+     * as long as binary records may exist, so that changing the format back to JSON does not make them unreadable.
+     */
+    @DefaultValue("false")
+    boolean isBinaryRecordsEnabled();
+
+    /**
+     * Serialization format of the active job records ('json' or 'smile'). An unknown value fails the job store
+     * initialization. See {@link StoreRecordCodec}.
+     */
+    @DefaultValue("json")
+    String getActiveJobsRecordFormat();
+
+    /**
+     * Serialization format of the active task records ('json' or 'smile').
+     */
+    @DefaultValue("json")
+    String getActiveTasksRecordFormat();
+
+    /**
+     * Serialization format of the archived job records ('json' or 'smile').
+     */
+    @DefaultValue("json")
+    String getArchivedJobsRecordFormat();
+
+    /**
+     * Serialization format of the archived task records ('json' or 'smile').
+     */
+    @DefaultValue("json")
+    String getArchivedTasksRecordFormat();
 }
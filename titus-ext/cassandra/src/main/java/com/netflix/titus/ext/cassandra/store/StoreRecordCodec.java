@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.ext.cassandra.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.netflix.titus.api.json.ObjectMappers;
+import rx.exceptions.Exceptions;
+
+/**
+ * Encodes and decodes records kept in the job store tables. Each table has two value columns, 'value' holding
+ * a JSON document, and 'value_bin' holding a versioned binary document. A write sets only the column of the configured
+ * format, and when both are set, the most recently written one is the current record (see {@link StoreRecordTable}).
+ * Binary records are readable only if binary records are enabled in {@link CassandraStoreConfiguration}, so this
+ * must be the case as long as any binary record exists, including after the write format is changed back to JSON.
+ * <p>
+ * The binary value is a single version byte followed by the record encoded in Jackson Smile format, using the same
+ * mixins as the JSON store mapper.
+ */
+public class StoreRecordCodec {
+
+    public enum Format {
+        Json,
+        Smile;
+
+        /**
+         * Resolves a configured format name (case insensitive).
+         *
+         * @throws IllegalArgumentException if the value is not a known format name
+         */
+        public static Format parse(String value) {
+            if (value != null) {
+                String trimmed = value.trim();
+                for (Format format : values()) {
+                    if (format.name().equalsIgnoreCase(trimmed)) {
+                        return format;
+                    }
+                }
+            }
+            throw new IllegalArgumentException("Unknown store record format: " + value);
+        }
+    }
+
+    static final byte SMILE_V1 = 1;
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+
+    public StoreRecordCodec(ObjectMapper jsonMapper) {
+        this.jsonMapper = jsonMapper;
+        this.smileMapper = ObjectMappers.newStoreMapper(new SmileFactory());
+    }
+
+    public String encodeJson(Object record) {
+        return ObjectMappers.writeValueAsString(jsonMapper, record);
+    }
+
+    public ByteBuffer encodeBinary(Object record) {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(512);
+            output.write(SMILE_V1);
+            smileMapper.writeValue(output, record);
+            return ByteBuffer.wrap(output.toByteArray());
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    /**
+     * Decodes a record read from the (value, value_bin) column pair. The binary value takes precedence if set.
+     */
+    public <T> T decode(String value, ByteBuffer binaryValue, Class<T> type) {
+        if (binaryValue == null) {
+            return ObjectMappers.readValue(jsonMapper, value, type);
+        }
+        return decodeBinary(binaryValue, type);
+    }
+
+    public <T> T decodeBinary(ByteBuffer binaryValue, Class<T> type) {
+        ByteBuffer buffer = binaryValue.duplicate();
+        if (!buffer.hasRemaining()) {
+            throw new IllegalArgumentException("Empty binary record");
+        }
+        byte version = buffer.get();
+        if (version != SMILE_V1) {
+            throw new IllegalArgumentException("Unsupported binary record version: " + version);
+        }
+        try {
+            if (buffer.hasArray()) {
+                return smileMapper.readValue(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), type);
+            }
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return smileMapper.readValue(bytes, type);
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    /**
+     * Returns a short description of a stored record, for use in error messages.
+     */
+    public static String toDebugString(String value, ByteBuffer binaryValue) {
+        return binaryValue == null ? value : "<binary record of " + binaryValue.remaining() + " bytes>";
+    }
+}
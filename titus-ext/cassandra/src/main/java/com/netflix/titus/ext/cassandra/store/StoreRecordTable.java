@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.ext.cassandra.store;
+
+import java.nio.ByteBuffer;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.base.Preconditions;
+
+/**
+ * Prepared statements for a job store table with the (value, value_bin) record columns. The 'value_bin' column is
+ * only referenced if binary records are enabled, so tables without it keep working with the JSON format. Inserts
+ * set only the column of the requested format. If both columns are set, the most recently written one is used.
+ */
+final class StoreRecordTable {
+
+    private final String tableName;
+    private final StoreRecordCodec codec;
+    private final boolean binaryEnabled;
+
+    private final PreparedStatement retrieveStatement;
+    private final PreparedStatement retrieveVersionsStatement;
+    private final PreparedStatement insertJsonStatement;
+    private final PreparedStatement insertBinaryStatement;
+
+    StoreRecordTable(Session session, StoreRecordCodec codec, String tableName, String idColumn, boolean binaryEnabled) {
+        this.tableName = tableName;
+        this.codec = codec;
+        this.binaryEnabled = binaryEnabled;
+
+        String valueColumns = binaryEnabled ? "value, writetime(value), value_bin, writetime(value_bin)" : "value";
+        String versionColumns = binaryEnabled ? "writetime(value), writetime(value_bin)" : "writetime(value)";
+
+        this.retrieveStatement = prepare(session, String.format("SELECT %s FROM %s WHERE %s = ?;", valueColumns, tableName, idColumn));
+        this.retrieveVersionsStatement = prepare(session, String.format("SELECT %s, %s FROM %s;", idColumn, versionColumns, tableName));
+        this.insertJsonStatement = prepare(session, String.format("INSERT INTO %s (%s, value) VALUES (?, ?);", tableName, idColumn));
+        this.insertBinaryStatement = binaryEnabled
+                ? prepare(session, String.format("INSERT INTO %s (%s, value_bin) VALUES (?, ?);", tableName, idColumn))
+                : null;
+    }
+
+    /**
+     * Statement used for reading a record. Also used to identify the table in the transaction log.
+     */
+    PreparedStatement getRetrieveStatement() {
+        return retrieveStatement;
+    }
+
+    /**
+     * Statement used for writing a record in the JSON format. Also used to identify the table in the transaction log.
+     */
+    PreparedStatement getInsertStatement() {
+        return insertJsonStatement;
+    }
+
+    Statement bindRetrieve(String id) {
+        return retrieveStatement.bind(id);
+    }
+
+    Statement bindRetrieveVersions() {
+        return retrieveVersionsStatement.bind();
+    }
+
+    Statement bindInsert(String id, Object record, StoreRecordCodec.Format format) {
+        if (format == StoreRecordCodec.Format.Smile) {
+            Preconditions.checkState(binaryEnabled, "Binary records not enabled for table %s", tableName);
+            return insertBinaryStatement.bind(id, codec.encodeBinary(record));
+        }
+        return insertJsonStatement.bind(id, codec.encodeJson(record));
+    }
+
+    String getValue(Row row) {
+        return row.getString(0);
+    }
+
+    /**
+     * Returns the binary value of a row read with {@link #bindRetrieve(String)}, or null if not set, or if the JSON
+     * value was written after it.
+     */
+    ByteBuffer getBinaryValue(Row row) {
+        if (!binaryEnabled || row.isNull(2)) {
+            return null;
+        }
+        if (!row.isNull(0) && row.getLong(1) > row.getLong(3)) {
+            return null;
+        }
+        return row.getBytes(2);
+    }
+
+    /**
+     * Returns the record version (write timestamp in microseconds) of a row read with {@link #bindRetrieveVersions()}.
+     */
+    long getWriteTime(Row row) {
+        long writeTimeUs = row.isNull(1) ? 0 : row.getLong(1);
+        if (binaryEnabled && !row.isNull(2)) {
+            writeTimeUs = Math.max(writeTimeUs, row.getLong(2));
+        }
+        return writeTimeUs;
+    }
+
+    <T> T decode(Row row, Class<T> type) {
+        return codec.decode(getValue(row), getBinaryValue(row), type);
+    }
+
+    private static PreparedStatement prepare(Session session, String query) {
+        return session.prepare(query).setConsistencyLevel(ConsistencyLevel.LOCAL_QUORUM);
+    }
+}
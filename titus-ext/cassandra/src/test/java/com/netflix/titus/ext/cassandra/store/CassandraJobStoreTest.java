@@ -17,6 +17,7 @@
 package com.netflix.titus.ext.cassandra.store;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
@@ -36,6 +37,7 @@ import com.netflix.titus.api.jobmanager.model.job.TaskStatus;
 import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
 import com.netflix.titus.api.jobmanager.model.job.ext.ServiceJobExt;
 import com.netflix.titus.api.jobmanager.model.job.retry.ExponentialBackoffRetryPolicy;
+import com.netflix.titus.api.jobmanager.store.ActiveRecordVersions;
 import com.netflix.titus.api.jobmanager.store.JobStore;
 import com.netflix.titus.api.json.ObjectMappers;
 import com.netflix.titus.common.runtime.TitusRuntimes;
@@ -76,6 +78,35 @@ public class CassandraJobStoreTest {
 
     private static final CassandraStoreConfiguration CONFIGURATION = new TestCassandraStoreConfiguration();
 
+    private static final CassandraStoreConfiguration SMILE_CONFIGURATION = new TestCassandraStoreConfiguration() {
+        @Override
+        public String getActiveJobsRecordFormat() {
+            return "smile";
+        }
+
+        @Override
+        public String getActiveTasksRecordFormat() {
+            return "smile";
+        }
+
+        @Override
+        public String getArchivedJobsRecordFormat() {
+            return "smile";
+        }
+
+        @Override
+        public String getArchivedTasksRecordFormat() {
+            return "smile";
+        }
+    };
+
+    private static final CassandraStoreConfiguration BINARY_READ_CONFIGURATION = new TestCassandraStoreConfiguration() {
+        @Override
+        public boolean isBinaryRecordsEnabled() {
+            return true;
+        }
+    };
+
     @Test
     public void testRetrieveJobs() {
         Session session = cassandraCqlUnit.getSession();
@@ -215,6 +246,32 @@ public class CassandraJobStoreTest {
         assertThat(tasks.getLeft().get(0)).isEqualTo(task);
     }
 
+    @Test
+    public void testRetrieveActiveRecordVersions() {
+        JobStore store = getJobStore();
+        Job<BatchJobExt> job = createBatchJobObject();
+        store.init().await();
+        store.storeJob(job).await();
+        Task task = createTaskObject(job);
+        store.storeTask(task).await();
+
+        ActiveRecordVersions versions = store.retrieveActiveRecordVersions().toBlocking().first();
+        assertThat(versions.getJobVersions()).containsOnlyKeys(job.getId());
+        assertThat(versions.getTaskVersions(job.getId())).containsOnlyKeys(task.getId());
+        long taskVersion = versions.getTaskVersions(job.getId()).get(task.getId());
+
+        Task updatedTask = task.toBuilder().withStatus(TaskStatus.newBuilder().withState(TaskState.Launched).build()).build();
+        store.updateTask(updatedTask).await();
+        ActiveRecordVersions updatedVersions = store.retrieveActiveRecordVersions().toBlocking().first();
+        assertThat(updatedVersions.getTaskVersions(job.getId()).get(task.getId())).isGreaterThanOrEqualTo(taskVersion);
+
+        store.deleteTask(updatedTask).await();
+        store.deleteJob(job).await();
+        ActiveRecordVersions afterDelete = store.retrieveActiveRecordVersions().toBlocking().first();
+        assertThat(afterDelete.getJobVersions()).isEmpty();
+        assertThat(afterDelete.getTaskVersions()).isEmpty();
+    }
+
     @Test
     public void testRetrieveTask() {
         JobStore store = getJobStore();
@@ -376,15 +433,76 @@ public class CassandraJobStoreTest {
         jobToTasksLoaded.getLeft().forEach(t -> assertThat(t.getJobId()).isEqualTo(jobTo.getId()));
     }
 
+    @Test
+    public void testRecordsAreReadableAfterFormatChange() {
+        Session session = cassandraCqlUnit.getSession();
+        JobStore smileStore = getJobStore(session, SMILE_CONFIGURATION);
+        smileStore.init().await();
+
+        Job<BatchJobExt> job = createBatchJobObject();
+        smileStore.storeJob(job).await();
+        Task task = createTaskObject(job);
+        smileStore.storeTask(task).await();
+
+        // Records written in the binary format are readable by a store writing JSON records with binary reads enabled
+        JobStore jsonStore = getJobStore(session, BINARY_READ_CONFIGURATION);
+        jsonStore.init().await();
+        assertThat(jsonStore.retrieveJobs().toBlocking().first().getLeft()).containsExactly(job);
+        assertThat(jsonStore.retrieveTask(task.getId()).toBlocking().first()).isEqualTo(task);
+
+        // JSON update replaces the binary record
+        Task updatedTask = BatchJobTask.newBuilder((BatchJobTask) task)
+                .withStatus(TaskStatus.newBuilder().withState(TaskState.Finished).build())
+                .build();
+        jsonStore.updateTask(updatedTask).await();
+        assertThat(smileStore.retrieveTask(task.getId()).toBlocking().first()).isEqualTo(updatedTask);
+
+        // Archived records are written in the binary format, and read back by the JSON store
+        smileStore.deleteJob(job).await();
+        assertThat(jsonStore.retrieveArchivedJob(job.getId()).toBlocking().first()).isEqualTo(job);
+        assertThat(jsonStore.retrieveArchivedTask(task.getId()).toBlocking().first()).isEqualTo(updatedTask);
+    }
+
+    @Test
+    public void testJsonRecordsDoNotRequireBinaryColumn() {
+        Session session = cassandraCqlUnit.getSession();
+        for (String table : Arrays.asList("active_jobs", "archived_jobs", "active_tasks", "archived_tasks")) {
+            session.execute("ALTER TABLE " + table + " DROP value_bin;");
+        }
+        JobStore store = getJobStore(session);
+        store.init().await();
+
+        Job<BatchJobExt> job = createBatchJobObject();
+        store.storeJob(job).await();
+        Task task = createTaskObject(job);
+        store.storeTask(task).await();
+        Task updatedTask = BatchJobTask.newBuilder((BatchJobTask) task)
+                .withStatus(TaskStatus.newBuilder().withState(TaskState.Finished).build())
+                .build();
+        store.updateTask(updatedTask).await();
+
+        assertThat(store.retrieveJob(job.getId()).toBlocking().first()).isEqualTo(job);
+        assertThat(store.retrieveTask(task.getId()).toBlocking().first()).isEqualTo(updatedTask);
+        assertThat(store.retrieveActiveRecordVersions().toBlocking().first().getTaskVersions(job.getId())).containsKey(task.getId());
+
+        store.deleteJob(job).await();
+        assertThat(store.retrieveArchivedJob(job.getId()).toBlocking().first()).isEqualTo(job);
+        assertThat(store.retrieveArchivedTask(task.getId()).toBlocking().first()).isEqualTo(updatedTask);
+    }
+
     private JobStore getJobStore() {
         return getJobStore(null);
     }
 
     private JobStore getJobStore(Session session) {
+        return getJobStore(session, CONFIGURATION);
+    }
+
+    private JobStore getJobStore(Session session, CassandraStoreConfiguration configuration) {
         if (session == null) {
             session = cassandraCqlUnit.getSession();
         }
-        return new CassandraJobStore(CONFIGURATION, job -> true, session, TitusRuntimes.internal(),
+        return new CassandraJobStore(configuration, job -> true, session, TitusRuntimes.internal(),
                 ObjectMappers.storeMapper(), INITIAL_BUCKET_COUNT, MAX_BUCKET_SIZE);
     }
 
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.ext.cassandra.store;
+
+import java.nio.ByteBuffer;
+
+import com.netflix.titus.api.jobmanager.model.job.BatchJobTask;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
+import com.netflix.titus.api.json.ObjectMappers;
+import com.netflix.titus.testkit.model.job.JobGenerator;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StoreRecordCodecTest {
+
+    private final StoreRecordCodec codec = new StoreRecordCodec(ObjectMappers.storeMapper());
+
+    private final Job<BatchJobExt> job = JobGenerator.oneBatchJob();
+    private final BatchJobTask task = JobGenerator.oneBatchTask();
+
+    @Test
+    public void testBinaryRoundTrip() {
+        ByteBuffer jobValue = codec.encodeBinary(job);
+        ByteBuffer taskValue = codec.encodeBinary(task);
+
+        assertThat(jobValue.get(0)).isEqualTo(StoreRecordCodec.SMILE_V1);
+        assertThat(codec.decode(null, jobValue, Job.class)).isEqualTo(job);
+        assertThat(codec.decode(null, taskValue, Task.class)).isEqualTo(task);
+    }
+
+    @Test
+    public void testBinaryValueIsSmallerThanJson() {
+        int jsonSize = codec.encodeJson(job).getBytes().length;
+        int binarySize = codec.encodeBinary(job).remaining();
+
+        assertThat(binarySize).isLessThan(jsonSize);
+    }
+
+    @Test
+    public void testLegacyJsonRecordIsReadable() {
+        String legacyValue = ObjectMappers.writeValueAsString(ObjectMappers.storeMapper(), task);
+        assertThat(codec.decode(legacyValue, null, Task.class)).isEqualTo(task);
+    }
+
+    @Test
+    public void testBinaryValueTakesPrecedence() {
+        BatchJobTask otherTask = task.toBuilder().withId(task.getId() + "-stale").build();
+        String staleValue = codec.encodeJson(otherTask);
+
+        assertThat(codec.decode(staleValue, codec.encodeBinary(task), Task.class)).isEqualTo(task);
+    }
+
+    @Test
+    public void testUnknownBinaryVersionIsRejected() {
+        ByteBuffer value = codec.encodeBinary(task);
+        value.put(0, (byte) 99);
+
+        assertThatThrownBy(() -> codec.decode(null, value, Task.class))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("99");
+    }
+
+    @Test
+    public void testFormatParsing() {
+        assertThat(StoreRecordCodec.Format.parse("smile")).isEqualTo(StoreRecordCodec.Format.Smile);
+        assertThat(StoreRecordCodec.Format.parse(" Smile ")).isEqualTo(StoreRecordCodec.Format.Smile);
+        assertThat(StoreRecordCodec.Format.parse("json")).isEqualTo(StoreRecordCodec.Format.Json);
+        assertThatThrownBy(() -> StoreRecordCodec.Format.parse("protobuf")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> StoreRecordCodec.Format.parse(null)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -51,4 +51,29 @@ public class TestCassandraStoreConfiguration implements CassandraStoreConfigurat
     public boolean isTracingEnabled() {
         return false;
     }
+
+    @Override
+    public boolean isBinaryRecordsEnabled() {
+        return false;
+    }
+
+    @Override
+    public String getActiveJobsRecordFormat() {
+        return "json";
+    }
+
+    @Override
+    public String getActiveTasksRecordFormat() {
+        return "json";
+    }
+
+    @Override
+    public String getArchivedJobsRecordFormat() {
+        return "json";
+    }
+
+    @Override
+    public String getArchivedTasksRecordFormat() {
+        return "json";
+    }
 }
@@ -27,4 +27,17 @@ public interface JooqConfiguration {
 
     @DefaultValue("false")
     boolean isInMemoryDb();
+
+    /**
+     * Maximum number of job activity records written to the database in a single insert. Set to 1 to write each
+     * record separately.
+     */
+    @DefaultValue("100")
+    int getActivityPublisherBatchSize();
+
+    /**
+     * Maximum amount of time a job activity record waits for other records to be written with it.
+     */
+    @DefaultValue("10")
+    long getActivityPublisherBatchWindowMs();
 }
@@ -43,4 +43,14 @@ public class JooqConfigurationBean implements JooqConfiguration {
     public boolean isInMemoryDb() {
         return SpringConfigurationUtil.getBoolean(environment, PREFIX + "inMemoryDb", false);
     }
+
+    @Override
+    public int getActivityPublisherBatchSize() {
+        return SpringConfigurationUtil.getInt(environment, PREFIX + "activityPublisherBatchSize", 100);
+    }
+
+    @Override
+    public long getActivityPublisherBatchWindowMs() {
+        return SpringConfigurationUtil.getLong(environment, PREFIX + "activityPublisherBatchWindowMs", 10);
+    }
 }
@@ -16,6 +16,8 @@
 
 package com.netflix.titus.ext.jooq.jobactivity;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
@@ -30,17 +32,20 @@ import com.netflix.titus.api.jobmanager.model.job.Job;
 import com.netflix.titus.api.jobmanager.model.job.Task;
 import com.netflix.titus.common.runtime.TitusRuntime;
 import com.netflix.titus.common.util.spectator.DatabaseMetrics;
+import com.netflix.titus.ext.jooq.JooqConfiguration;
 import com.netflix.titus.ext.jooq.JooqUtils;
 import com.netflix.titus.ext.jooq.activity.schema.JActivity;
 import com.netflix.titus.runtime.endpoint.common.LogStorageInfo;
 import com.netflix.titus.runtime.jobactivity.JobActivityPublisherRecordUtils;
 import org.jooq.DSLContext;
+import org.jooq.InsertValuesStep3;
 import org.jooq.Record1;
 import org.jooq.impl.DSL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
 
 import static com.netflix.titus.ext.jooq.activity.schema.tables.JActivityQueue.ACTIVITY_QUEUE;
 import static org.jooq.impl.DSL.max;
@@ -71,18 +76,36 @@ public class JooqJobActivityPublisherStore implements JobActivityPublisherStore
      */
     private AtomicLong queueIndex;
 
+    private final int maxBatchSize;
+    private final Duration batchWindow;
+
+    /**
+     * Records waiting to be written, in the queue index order. A queue index is assigned when a record is added,
+     * and records are written by a single batch at a time, so they are inserted in the queue index order.
+     */
+    private final Object lock = new Object();
+    private List<PendingRecord> pendingRecords = new ArrayList<>(); // Guarded by lock
+    private boolean writeInProgress; // Guarded by lock
+
     @Inject
     public JooqJobActivityPublisherStore(DSLContext dslContext,
+                                         JooqConfiguration configuration,
                                          TitusRuntime runtime,
                                          LogStorageInfo<Task> logStorageInfo) {
-        this(dslContext, runtime, logStorageInfo,true);
+        this(dslContext, configuration, runtime, logStorageInfo, true);
     }
 
     @VisibleForTesting
-    public JooqJobActivityPublisherStore(DSLContext dslContext, TitusRuntime runtime, LogStorageInfo<Task> logStorageInfo, boolean createIfNotExist) {
+    public JooqJobActivityPublisherStore(DSLContext dslContext,
+                                         JooqConfiguration configuration,
+                                         TitusRuntime runtime,
+                                         LogStorageInfo<Task> logStorageInfo,
+                                         boolean createIfNotExist) {
         this.logStorageInfo = logStorageInfo;
         this.dslContext = dslContext;
         this.databaseMetrics = new DatabaseMetrics(runtime.getRegistry(), JOOQ_METRICS_DATABASE_NAME);
+        this.maxBatchSize = Math.max(1, configuration.getActivityPublisherBatchSize());
+        this.batchWindow = Duration.ofMillis(Math.max(0, configuration.getActivityPublisherBatchWindowMs()));
 
         if (createIfNotExist) {
             createSchemaIfNotExist();
@@ -147,25 +170,107 @@ public class JooqJobActivityPublisherStore implements JobActivityPublisherStore
                 JobActivityPublisherRecordUtils.taskToByteArray(task, logStorageInfo));
     }
 
+    /**
+     * Nothing is written until the returned {@link Mono} is subscribed to. The record is added to the pending batch,
+     * and gets its queue index, on subscription, so the subscription order determines the queue order.
+     */
     private Mono<Void> publishByteString(JobActivityPublisherRecord.RecordType recordType, String recordId, byte[] serializedRecord) {
-        long assignedQueueIndex = queueIndex.getAndIncrement();
+        return Mono.defer(() -> addPendingRecord(recordType, recordId, serializedRecord));
+    }
 
-        return JooqUtils.executeAsyncMono(() -> {
-            long startTimeMs = System.currentTimeMillis();
-            int numInserts = dslContext
-                    .insertInto(ACTIVITY_QUEUE,
-                            ACTIVITY_QUEUE.QUEUE_INDEX,
-                            ACTIVITY_QUEUE.EVENT_TYPE,
-                            ACTIVITY_QUEUE.SERIALIZED_EVENT)
-                    .values(assignedQueueIndex,
-                            (short) recordType.ordinal(),
-                            serializedRecord)
-                    .execute();
+    private Mono<Void> addPendingRecord(JobActivityPublisherRecord.RecordType recordType, String recordId, byte[] serializedRecord) {
+        PendingRecord record;
+        boolean writeNow;
+        boolean firstInBatch;
+        synchronized (lock) {
+            record = new PendingRecord(queueIndex.getAndIncrement(), recordType, recordId, serializedRecord);
+            pendingRecords.add(record);
+            writeNow = pendingRecords.size() >= maxBatchSize;
+            firstInBatch = pendingRecords.size() == 1;
+        }
+
+        if (writeNow) {
+            writePendingRecords();
+        } else if (firstInBatch) {
+            Mono.delay(batchWindow).subscribe(tick -> writePendingRecords());
+        }
+        return record.result;
+    }
+
+    /**
+     * Writes up to {@link #maxBatchSize} pending records, unless another write is in progress. When a write
+     * completes, the records that arrived in the meantime are written immediately.
+     */
+    private void writePendingRecords() {
+        List<PendingRecord> batch;
+        synchronized (lock) {
+            if (writeInProgress || pendingRecords.isEmpty()) {
+                return;
+            }
+            writeInProgress = true;
+            if (pendingRecords.size() <= maxBatchSize) {
+                batch = pendingRecords;
+                pendingRecords = new ArrayList<>();
+            } else {
+                batch = new ArrayList<>(pendingRecords.subList(0, maxBatchSize));
+                pendingRecords = new ArrayList<>(pendingRecords.subList(maxBatchSize, pendingRecords.size()));
+            }
+        }
+
+        JooqUtils.executeAsyncMono(() -> insertRecords(batch), dslContext)
+                .onErrorResume(e -> {
+                    if (batch.size() == 1) {
+                        return Mono.error(e);
+                    }
+                    // Fall back to independent writes, so a single bad record does not fail the others.
+                    logger.warn("Job activity batch insert of {} records failed, writing them one by one: {}", batch.size(), e.getMessage());
+                    return Flux.fromIterable(batch)
+                            .concatMap(record -> JooqUtils.executeAsyncMono(() -> insertRecords(Collections.singletonList(record)), dslContext)
+                                    .doOnSuccess(count -> record.complete())
+                                    .onErrorResume(recordError -> {
+                                        record.fail(recordError);
+                                        return Mono.empty();
+                                    })
+                            )
+                            .then(Mono.empty());
+                })
+                .subscribe(
+                        count -> {
+                        },
+                        e -> {
+                            batch.forEach(record -> record.fail(e));
+                            onBatchWritten();
+                        },
+                        () -> {
+                            batch.forEach(PendingRecord::complete);
+                            onBatchWritten();
+                        }
+                );
+    }
+
+    private void onBatchWritten() {
+        synchronized (lock) {
+            writeInProgress = false;
+        }
+        writePendingRecords();
+    }
+
+    private int insertRecords(List<PendingRecord> records) {
+        long startTimeMs = System.currentTimeMillis();
+        InsertValuesStep3<?, Long, Short, byte[]> insert = dslContext.insertInto(ACTIVITY_QUEUE,
+                ACTIVITY_QUEUE.QUEUE_INDEX,
+                ACTIVITY_QUEUE.EVENT_TYPE,
+                ACTIVITY_QUEUE.SERIALIZED_EVENT);
+        for (PendingRecord record : records) {
+            insert = insert.values(record.queueIndex, (short) record.recordType.ordinal(), record.serializedRecord);
+        }
+        int numInserts = insert.execute();
+        if (records.size() == 1) {
             databaseMetrics.registerInsertLatency(startTimeMs, 1, Collections.emptyList());
-            return numInserts;
-        }, dslContext)
-                .onErrorMap(e -> JobActivityStoreException.jobActivityUpdateRecordException(recordId, e))
-                .then();
+        } else {
+            databaseMetrics.registerBatchInsertLatency(startTimeMs, records.size(), Collections.emptyList());
+        }
+        return numInserts;
     }
 
     @VisibleForTesting
@@ -186,4 +291,32 @@ public class JooqJobActivityPublisherStore implements JobActivityPublisherStore
     public Mono<Integer> getSize() {
         return JooqUtils.executeAsyncMono(() -> dslContext.fetchCount(ACTIVITY_QUEUE), dslContext);
     }
+
+    private static class PendingRecord {
+
+        private final long queueIndex;
+        private final JobActivityPublisherRecord.RecordType recordType;
+        private final String recordId;
+        private final byte[] serializedRecord;
+        private final MonoProcessor<Void> result = MonoProcessor.create();
+
+        private PendingRecord(long queueIndex, JobActivityPublisherRecord.RecordType recordType, String recordId, byte[] serializedRecord) {
+            this.queueIndex = queueIndex;
+            this.recordType = recordType;
+            this.recordId = recordId;
+            this.serializedRecord = serializedRecord;
+        }
+
+        private void complete() {
+            if (!result.isTerminated()) {
+                result.onComplete();
+            }
+        }
+
+        private void fail(Throwable error) {
+            if (!result.isTerminated()) {
+                result.onError(JobActivityStoreException.jobActivityUpdateRecordException(recordId, error));
+            }
+        }
+    }
 }
@@ -16,6 +16,9 @@
 
 package com.netflix.titus.ext.jooq.activity;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Stopwatch;
@@ -26,12 +29,19 @@ import com.netflix.titus.api.jobmanager.model.job.Job;
 import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
 import com.netflix.titus.common.data.generator.DataGenerator;
 import com.netflix.titus.common.runtime.TitusRuntimes;
+import com.netflix.titus.ext.jooq.JooqConfiguration;
 import com.netflix.titus.ext.jooq.jobactivity.JooqJobActivityPublisherStore;
 import com.netflix.titus.ext.jooq.relocation.JooqResource;
 import com.netflix.titus.runtime.endpoint.common.EmptyLogStorageInfo;
 import com.netflix.titus.runtime.jobactivity.JobActivityPublisherRecordUtils;
 import com.netflix.titus.testkit.model.job.JobDescriptorGenerator;
 import com.netflix.titus.testkit.model.job.JobGenerator;
+import org.jooq.DSLContext;
+import org.jooq.ExecuteContext;
+import org.jooq.Insert;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultExecuteListener;
+import org.jooq.impl.DefaultExecuteListenerProvider;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -43,20 +53,28 @@ import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class JooqJobActivityPublisherStoreTest {
     private final static Logger logger = LoggerFactory.getLogger(JooqJobActivityPublisherStoreTest.class);
 
+    private static final int BATCH_SIZE = 10;
+
     private DataGenerator<Job<BatchJobExt>> batchJobsGenerator = JobGenerator.batchJobs(JobDescriptorGenerator.oneTaskBatchJobDescriptor());
     private DataGenerator<BatchJobTask> batchTasksGenerator = JobGenerator.batchTasks(JobGenerator.batchJobs(JobDescriptorGenerator.oneTaskBatchJobDescriptor()).getValue());
 
     @Rule
     public final JooqResource jooqResource = new JooqResource();
 
+    private final JooqConfiguration configuration = mock(JooqConfiguration.class);
+
     private JooqJobActivityPublisherStore publisher;
 
     @Before
     public void  setUp() {
+        when(configuration.getActivityPublisherBatchSize()).thenReturn(BATCH_SIZE);
+        when(configuration.getActivityPublisherBatchWindowMs()).thenReturn(10L);
         createJooqPublisherStore();
     }
 
@@ -93,6 +111,57 @@ public class JooqJobActivityPublisherStoreTest {
                 .verifyComplete();
     }
 
+    @Test
+    public void testBatchedRecordsAreInsertedInQueueIndexOrder() {
+        List<Long> insertedQueueIndexes = new CopyOnWriteArrayList<>();
+        DSLContext recordingDslContext = DSL.using(jooqResource.getDslContext().configuration().derive(
+                new DefaultExecuteListenerProvider(new DefaultExecuteListener() {
+                    @Override
+                    public void executeStart(ExecuteContext ctx) {
+                        if (ctx.query() instanceof Insert) {
+                            List<Object> bindValues = ctx.query().getBindValues();
+                            for (int i = 0; i < bindValues.size(); i += 3) {
+                                insertedQueueIndexes.add((Long) bindValues.get(i));
+                            }
+                        }
+                    }
+                })
+        ));
+        publisher = new JooqJobActivityPublisherStore(recordingDslContext, configuration, TitusRuntimes.internal(), EmptyLogStorageInfo.empty());
+
+        int numTasks = 3 * BATCH_SIZE + 5;
+        StepVerifier.create(publishTasks(numTasks))
+                .verifyComplete();
+
+        assertThat(insertedQueueIndexes).hasSize(numTasks);
+        for (int i = 0; i < numTasks; i++) {
+            assertThat(insertedQueueIndexes.get(i)).isEqualTo((long) i);
+        }
+    }
+
+    @Test
+    public void testNothingIsWrittenWithoutSubscription() {
+        publisher.publishJob(batchJobsGenerator.getValue());
+
+        StepVerifier.create(Mono.delay(Duration.ofMillis(50)).then(publisher.getSize()))
+                .expectNext(0)
+                .verifyComplete();
+        assertThat(publisher.getQueueIndex()).isEqualTo(0);
+    }
+
+    @Test
+    public void testRecordsAreWrittenWithBatchingDisabled() {
+        when(configuration.getActivityPublisherBatchSize()).thenReturn(1);
+        createJooqPublisherStore();
+
+        StepVerifier.create(publishJobs(5))
+                .verifyComplete();
+
+        StepVerifier.create(publisher.getSize())
+                .expectNext(5)
+                .verifyComplete();
+    }
+
     @Test
     public void testActivityTableScan() {
         StepVerifier.create(publishJobs(20)).verifyComplete();
@@ -134,7 +203,7 @@ public class JooqJobActivityPublisherStoreTest {
     }
 
     private void createJooqPublisherStore() {
-        publisher = new JooqJobActivityPublisherStore(jooqResource.getDslContext(), TitusRuntimes.internal(), EmptyLogStorageInfo.empty());
+        publisher = new JooqJobActivityPublisherStore(jooqResource.getDslContext(), configuration, TitusRuntimes.internal(), EmptyLogStorageInfo.empty());
     }
 
     private Mono<Void> publishJobs(int count) {
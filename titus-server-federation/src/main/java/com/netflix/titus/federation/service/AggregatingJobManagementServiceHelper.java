@@ -15,16 +15,21 @@
  */
 package com.netflix.titus.federation.service;
 
+import java.util.Optional;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import com.netflix.titus.api.federation.model.Cell;
 import com.netflix.titus.common.util.rx.ReactorExt;
 import com.netflix.titus.federation.startup.GrpcConfiguration;
 import com.netflix.titus.grpc.protogen.Job;
 import com.netflix.titus.grpc.protogen.JobId;
 import com.netflix.titus.grpc.protogen.JobManagementServiceGrpc;
 import com.netflix.titus.grpc.protogen.JobManagementServiceGrpc.JobManagementServiceStub;
+import com.netflix.titus.grpc.protogen.Task;
+import com.netflix.titus.grpc.protogen.TaskId;
 import com.netflix.titus.runtime.endpoint.metadata.CallMetadataResolver;
 import io.grpc.stub.AbstractStub;
 import io.grpc.stub.StreamObserver;
@@ -33,6 +38,8 @@ import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Mono;
 import rx.Observable;
 
+import static com.netflix.titus.runtime.endpoint.common.grpc.GrpcUtil.createRequestObservable;
+import static com.netflix.titus.runtime.endpoint.common.grpc.GrpcUtil.createSimpleClientResponseObserver;
 import static com.netflix.titus.runtime.endpoint.common.grpc.GrpcUtil.createWrappedStub;
 
 
@@ -40,14 +47,20 @@ import static com.netflix.titus.runtime.endpoint.common.grpc.GrpcUtil.createWrap
 public class AggregatingJobManagementServiceHelper {
     private static final Logger logger = LoggerFactory.getLogger(AggregatingJobManagementServiceHelper.class);
     private AggregatingCellClient aggregatingCellClient;
+    private final CellConnector connector;
+    private final CellLocationCache locationCache;
     private final GrpcConfiguration grpcConfiguration;
     private final CallMetadataResolver callMetadataResolver;
 
     @Inject
     public AggregatingJobManagementServiceHelper(AggregatingCellClient aggregatingCellClient,
+                                                 CellConnector connector,
+                                                 CellLocationCache locationCache,
                                                  GrpcConfiguration grpcConfiguration,
                                                  CallMetadataResolver callMetadataResolver) {
         this.aggregatingCellClient = aggregatingCellClient;
+        this.connector = connector;
+        this.locationCache = locationCache;
         this.grpcConfiguration = grpcConfiguration;
         this.callMetadataResolver = callMetadataResolver;
 
@@ -58,23 +71,79 @@ public class AggregatingJobManagementServiceHelper {
     }
 
     public Observable<CellResponse<JobManagementServiceStub, Job>> findJobInAllCells(String jobId) {
-        return aggregatingCellClient.callExpectingErrors(JobManagementServiceGrpc::newStub, findJobInCell(jobId))
-                .reduce(ResponseMerger.singleValue())
-                .flatMap(response -> response.getResult()
-                        .map(v -> Observable.just(CellResponse.ofValue(response)))
-                        .onErrorGet(Observable::error)
-                );
+        return findInCells(
+                locationCache.getJobCell(jobId),
+                findJobInCell(jobId),
+                cell -> locationCache.putJob(jobId, cell),
+                () -> locationCache.invalidateJob(jobId)
+        );
     }
 
     public Mono<CellResponse<JobManagementServiceStub, Job>> findJobInAllCellsReact(String jobId) {
         return ReactorExt.toMono(findJobInAllCells(jobId).toSingle());
     }
 
+    public Observable<CellResponse<JobManagementServiceStub, Task>> findTaskInAllCells(String taskId) {
+        return findInCells(
+                locationCache.getTaskCell(taskId),
+                findTaskInCell(taskId),
+                cell -> locationCache.putTask(taskId, cell),
+                () -> locationCache.invalidateTask(taskId)
+        );
+    }
+
     public ClientCall<Job> findJobInCell(String jobId) {
         JobId id = JobId.newBuilder().setId(jobId).build();
         return (client, streamObserver) -> wrap(client).findJob(id, streamObserver);
     }
 
+    public ClientCall<Task> findTaskInCell(String taskId) {
+        TaskId id = TaskId.newBuilder().setId(taskId).build();
+        return (client, streamObserver) -> wrap(client).findTask(id, streamObserver);
+    }
+
+    /**
+     * Sends the request to the cached cell location first, if there is one. If the entity is not found there (or
+     * the call fails for any other reason), the location is invalidated, and the request is broadcast to all cells.
+     */
+    private <T> Observable<CellResponse<JobManagementServiceStub, T>> findInCells(Optional<Cell> cachedCell,
+                                                                                  ClientCall<T> clientCall,
+                                                                                  Consumer<Cell> onFound,
+                                                                                  Runnable onStaleLocation) {
+        Observable<CellResponse<JobManagementServiceStub, T>> broadcast = Observable.defer(() ->
+                aggregatingCellClient.callExpectingErrors(JobManagementServiceGrpc::newStub, clientCall)
+                        .reduce(ResponseMerger.singleValue())
+                        .flatMap(response -> response.getResult()
+                                .map(v -> Observable.just(CellResponse.ofValue(response)))
+                                .onErrorGet(Observable::error)
+                        )
+                        .doOnNext(response -> onFound.accept(response.getCell()))
+        );
+        if (!cachedCell.isPresent()) {
+            return broadcast;
+        }
+
+        Cell cell = cachedCell.get();
+        Optional<JobManagementServiceStub> optionalClient = CellConnectorUtil.toStub(cell, connector, JobManagementServiceGrpc::newStub);
+        if (!optionalClient.isPresent()) {
+            onStaleLocation.run();
+            return broadcast;
+        }
+        JobManagementServiceStub client = optionalClient.get();
+
+        Observable<T> request = createRequestObservable(emitter -> {
+            StreamObserver<T> streamObserver = createSimpleClientResponseObserver(emitter);
+            clientCall.accept(client, streamObserver);
+        });
+        return request
+                .map(result -> new CellResponse<>(cell, client, result))
+                .onErrorResumeNext(error -> {
+                    logger.debug("Entity not found in its cached cell location {}, broadcasting the request to all cells", cell.getName(), error);
+                    onStaleLocation.run();
+                    return broadcast;
+                });
+    }
+
     public interface ClientCall<T> extends BiConsumer<JobManagementServiceStub, StreamObserver<T>> {
         // generics sanity
     }
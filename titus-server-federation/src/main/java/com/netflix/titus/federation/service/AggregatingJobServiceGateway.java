@@ -19,10 +19,8 @@ package com.netflix.titus.federation.service;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
@@ -32,10 +30,8 @@ import com.google.protobuf.Empty;
 import com.netflix.titus.api.federation.model.Cell;
 import com.netflix.titus.api.service.TitusServiceException;
 import com.netflix.titus.common.util.CollectionsExt;
-import com.netflix.titus.common.util.ProtobufExt;
+import com.netflix.titus.common.util.ProtobufProjection;
 import com.netflix.titus.common.util.StringExt;
-import com.netflix.titus.common.util.concurrency.CallbackCountDownLatch;
-import com.netflix.titus.common.util.rx.EmitterWithMultipleSubscriptions;
 import com.netflix.titus.common.util.rx.ReactorExt;
 import com.netflix.titus.common.util.tuple.Pair;
 import com.netflix.titus.federation.startup.GrpcConfiguration;
@@ -45,8 +41,6 @@ import com.netflix.titus.grpc.protogen.JobAttributesDeleteRequest;
 import com.netflix.titus.grpc.protogen.JobAttributesUpdate;
 import com.netflix.titus.grpc.protogen.JobCapacityUpdate;
 import com.netflix.titus.grpc.protogen.JobChangeNotification;
-import com.netflix.titus.grpc.protogen.JobChangeNotification.JobUpdate;
-import com.netflix.titus.grpc.protogen.JobChangeNotification.TaskUpdate;
 import com.netflix.titus.grpc.protogen.JobDescriptor;
 import com.netflix.titus.grpc.protogen.JobDisruptionBudgetUpdate;
 import com.netflix.titus.grpc.protogen.JobId;
@@ -61,7 +55,6 @@ import com.netflix.titus.grpc.protogen.Pagination;
 import com.netflix.titus.grpc.protogen.Task;
 import com.netflix.titus.grpc.protogen.TaskAttributesDeleteRequest;
 import com.netflix.titus.grpc.protogen.TaskAttributesUpdate;
-import com.netflix.titus.grpc.protogen.TaskId;
 import com.netflix.titus.grpc.protogen.TaskKillRequest;
 import com.netflix.titus.grpc.protogen.TaskMoveRequest;
 import com.netflix.titus.grpc.protogen.TaskQuery;
@@ -77,7 +70,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Mono;
 import rx.Completable;
-import rx.Emitter;
 import rx.Observable;
 
 import static com.netflix.titus.api.jobmanager.JobAttributes.JOB_ATTRIBUTES_STACK;
@@ -104,6 +96,8 @@ public class AggregatingJobServiceGateway implements JobServiceGateway {
     private AggregatingJobManagementServiceHelper jobManagementServiceHelper;
     private final CellRouter router;
     private final CallMetadataResolver callMetadataResolver;
+    private final CellLocationCache locationCache;
+    private final CellJobStreamMultiplexer jobStreamMultiplexer;
 
     @Inject
     public AggregatingJobServiceGateway(GrpcConfiguration grpcConfiguration,
@@ -112,7 +106,9 @@ public class AggregatingJobServiceGateway implements JobServiceGateway {
                                         CellRouter router,
                                         CallMetadataResolver callMetadataResolver,
                                         AggregatingCellClient aggregatingClient,
-                                        AggregatingJobManagementServiceHelper jobManagementServiceHelper) {
+                                        AggregatingJobManagementServiceHelper jobManagementServiceHelper,
+                                        CellLocationCache locationCache,
+                                        CellJobStreamMultiplexer jobStreamMultiplexer) {
 
         this.grpcConfiguration = grpcConfiguration;
         this.federationConfiguration = federationConfiguration;
@@ -121,6 +117,8 @@ public class AggregatingJobServiceGateway implements JobServiceGateway {
         this.callMetadataResolver = callMetadataResolver;
         this.aggregatingClient = aggregatingClient;
         this.jobManagementServiceHelper = jobManagementServiceHelper;
+        this.locationCache = locationCache;
+        this.jobStreamMultiplexer = jobStreamMultiplexer;
     }
 
     @Override
@@ -139,7 +137,10 @@ public class AggregatingJobServiceGateway implements JobServiceGateway {
         return createRequestObservable(emitter -> {
             StreamObserver<JobId> streamObserver = GrpcUtil.createClientResponseObserver(
                     emitter,
-                    jobId -> emitter.onNext(jobId.getId()),
+                    jobId -> {
+                        locationCache.putJob(jobId.getId(), cell);
+                        emitter.onNext(jobId.getId());
+                    },
                     emitter::onError,
                     emitter::onCompleted
             );
@@ -247,6 +248,7 @@ public class AggregatingJobServiceGateway implements JobServiceGateway {
 
     private Observable<JobQueryResult> findJobsWithCursorPagination(JobQuery request, Set<String> fields) {
         return aggregatingClient.call(JobManagementServiceGrpc::newStub, findJobsInCell(request))
+                .doOnNext(response -> response.getResult().getItemsList().forEach(job -> locationCache.recordJob(response.getCell(), job)))
                 .map(CellResponse::getResult)
                 .map(this::addStackName)
                 .reduce(this::combineJobResults)
@@ -260,8 +262,9 @@ public class AggregatingJobServiceGateway implements JobServiceGateway {
                     );
 
                     if (!CollectionsExt.isNullOrEmpty(fields)) {
+                        ProtobufProjection projection = ProtobufProjection.of(Job.getDescriptor(), fields);
                         combinedPage = combinedPage.mapLeft(jobs -> jobs.stream()
-                                .map(job -> ProtobufExt.copy(job, fields))
+                                .map(projection::apply)
                                 .collect(Collectors.toList())
                         );
                     }
@@ -297,18 +300,7 @@ public class AggregatingJobServiceGateway implements JobServiceGateway {
 
     @Override
     public Observable<JobChangeNotification> observeJobs(ObserveJobsQuery query) {
-        final Observable<JobChangeNotification> observable = createRequestObservable(delegate -> {
-            Emitter<JobChangeNotification> emitter = new EmitterWithMultipleSubscriptions<>(delegate);
-            Map<Cell, JobManagementServiceStub> clients = CellConnectorUtil.stubs(connector, JobManagementServiceGrpc::newStub);
-            final CountDownLatch markersEmitted = new CallbackCountDownLatch(clients.size(),
-                    () -> emitter.onNext(buildJobSnapshotEndMarker())
-            );
-            clients.forEach((cell, client) -> {
-                StreamObserver<JobChangeNotification> streamObserver = new FilterOutFirstMarker(emitter, markersEmitted);
-                wrapWithNoDeadline(client).observeJobs(query, streamObserver);
-            });
-        });
-        return observable.map(this::addStackName);
+        return jobStreamMultiplexer.observeJobs(query);
     }
 
     @Override
@@ -325,21 +317,7 @@ public class AggregatingJobServiceGateway implements JobServiceGateway {
 
     @Override
     public Observable<Task> findTask(String taskId) {
-        return findTaskInAllCells(taskId).map(CellResponse::getResult).map(this::addStackName);
-    }
-
-    private Observable<CellResponse<JobManagementServiceStub, Task>> findTaskInAllCells(String taskId) {
-        return aggregatingClient.callExpectingErrors(JobManagementServiceGrpc::newStub, findTaskInCell(taskId))
-                .reduce(ResponseMerger.singleValue())
-                .flatMap(response -> response.getResult()
-                        .map(v -> Observable.just(CellResponse.ofValue(response)))
-                        .onErrorGet(Observable::error)
-                );
-    }
-
-    private ClientCall<Task> findTaskInCell(String taskId) {
-        TaskId id = TaskId.newBuilder().setId(taskId).build();
-        return (client, streamObserver) -> wrap(client).findTask(id, streamObserver);
+        return jobManagementServiceHelper.findTaskInAllCells(taskId).map(CellResponse::getResult).map(this::addStackName);
     }
 
     @Override
@@ -369,6 +347,7 @@ public class AggregatingJobServiceGateway implements JobServiceGateway {
 
     private Observable<TaskQueryResult> findTasksWithCursorPagination(TaskQuery request, Set<String> fields) {
         return aggregatingClient.call(JobManagementServiceGrpc::newStub, findTasksInCell(request))
+                .doOnNext(response -> response.getResult().getItemsList().forEach(task -> locationCache.recordTask(response.getCell(), task)))
                 .map(CellResponse::getResult)
                 .map(this::addStackName)
                 .reduce(this::combineTaskResults)
@@ -382,8 +361,9 @@ public class AggregatingJobServiceGateway implements JobServiceGateway {
                     );
 
                     if (!CollectionsExt.isNullOrEmpty(fields)) {
+                        ProtobufProjection projection = ProtobufProjection.of(Task.getDescriptor(), fields);
                         combinedPage = combinedPage.mapLeft(tasks -> tasks.stream()
-                                .map(task -> ProtobufExt.copy(task, fields))
+                                .map(projection::apply)
                                 .collect(Collectors.toList())
                         );
                     }
@@ -412,7 +392,7 @@ public class AggregatingJobServiceGateway implements JobServiceGateway {
     public Completable killTask(TaskKillRequest request) {
         Optional<CallMetadata> context = callMetadataResolver.resolve();
 
-        Observable<Empty> result = findTaskInAllCells(request.getTaskId())
+        Observable<Empty> result = jobManagementServiceHelper.findTaskInAllCells(request.getTaskId())
                 .flatMap(response -> singleCellCall(response.getCell(),
                         (client, streamObserver) -> wrap(context, client).killTask(request, streamObserver))
                 );
@@ -421,7 +401,7 @@ public class AggregatingJobServiceGateway implements JobServiceGateway {
 
     @Override
     public Completable updateTaskAttributes(TaskAttributesUpdate attributesUpdate) {
-        Observable<Empty> result = findTaskInAllCells(attributesUpdate.getTaskId())
+        Observable<Empty> result = jobManagementServiceHelper.findTaskInAllCells(attributesUpdate.getTaskId())
                 .flatMap(response -> singleCellCall(response.getCell(),
                         (client, streamObserver) -> client.updateTaskAttributes(attributesUpdate, streamObserver)));
         return result.toCompletable();
@@ -429,7 +409,7 @@ public class AggregatingJobServiceGateway implements JobServiceGateway {
 
     @Override
     public Completable deleteTaskAttributes(TaskAttributesDeleteRequest deleteRequest) {
-        Observable<Empty> result = findTaskInAllCells(deleteRequest.getTaskId())
+        Observable<Empty> result = jobManagementServiceHelper.findTaskInAllCells(deleteRequest.getTaskId())
                 .flatMap(response -> singleCellCall(response.getCell(),
                         (client, streamObserver) -> client.deleteTaskAttributes(deleteRequest, streamObserver)));
         return result.toCompletable();
@@ -437,7 +417,7 @@ public class AggregatingJobServiceGateway implements JobServiceGateway {
 
     @Override
     public Completable moveTask(TaskMoveRequest taskMoveRequest) {
-        Observable<Empty> result = findTaskInAllCells(taskMoveRequest.getTaskId())
+        Observable<Empty> result = jobManagementServiceHelper.findTaskInAllCells(taskMoveRequest.getTaskId())
                 .flatMap(response -> singleCellCall(response.getCell(),
                         (client, streamObserver) -> client.moveTask(taskMoveRequest, streamObserver)));
         return result.toCompletable();
@@ -470,26 +450,6 @@ public class AggregatingJobServiceGateway implements JobServiceGateway {
                 .build();
     }
 
-    private JobChangeNotification addStackName(JobChangeNotification notification) {
-        switch (notification.getNotificationCase()) {
-            case JOBUPDATE:
-                Job job = addStackName(notification.getJobUpdate().getJob());
-                JobUpdate jobUpdate = notification.getJobUpdate().toBuilder().setJob(job).build();
-                return notification.toBuilder().setJobUpdate(jobUpdate).build();
-            case TASKUPDATE:
-                Task task = addStackName(notification.getTaskUpdate().getTask());
-                TaskUpdate taskUpdate = notification.getTaskUpdate().toBuilder().setTask(task).build();
-                return notification.toBuilder().setTaskUpdate(taskUpdate).build();
-            default:
-                return notification;
-        }
-    }
-
-    private static JobChangeNotification buildJobSnapshotEndMarker() {
-        final JobChangeNotification.SnapshotEnd marker = JobChangeNotification.SnapshotEnd.newBuilder().build();
-        return JobChangeNotification.newBuilder().setSnapshotEnd(marker).build();
-    }
-
     private JobManagementServiceStub wrap(Optional<CallMetadata> context, JobManagementServiceStub client) {
         return context.map(c -> V3HeaderInterceptor.attachCallMetadata(client, c)).orElse(client);
     }
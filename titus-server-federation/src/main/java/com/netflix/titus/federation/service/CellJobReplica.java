@@ -0,0 +1,382 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.federation.service;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.netflix.titus.api.federation.model.Cell;
+import com.netflix.titus.api.jobmanager.model.CallMetadata;
+import com.netflix.titus.common.util.retry.Retryer;
+import com.netflix.titus.grpc.protogen.Job;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.grpc.protogen.JobManagementServiceGrpc;
+import com.netflix.titus.grpc.protogen.JobManagementServiceGrpc.JobManagementServiceStub;
+import com.netflix.titus.grpc.protogen.JobStatus;
+import com.netflix.titus.grpc.protogen.ObserveJobsQuery;
+import com.netflix.titus.grpc.protogen.Task;
+import com.netflix.titus.grpc.protogen.TaskStatus;
+import com.netflix.titus.runtime.endpoint.metadata.V3HeaderInterceptor;
+import com.netflix.titus.runtime.endpoint.v3.grpc.V3GrpcModelConverters;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Completable;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscription;
+import rx.subjects.AsyncSubject;
+
+/**
+ * A replicated view of all jobs and tasks of a single cell, kept up to date by one long-lived observeJobs stream.
+ * The stream is opened on the first request. When it terminates, the termination is passed to the event sink, and
+ * the stream is reopened with a new snapshot, after a delay growing exponentially with the consecutive failures.
+ * Updates received after the initial snapshot are passed to the event sink, after they are applied to the view.
+ */
+class CellJobReplica {
+
+    private static final Logger logger = LoggerFactory.getLogger(CellJobReplica.class);
+
+    private static final CallMetadata CALL_METADATA = CallMetadata.newBuilder()
+            .withCallerId("titusFederation")
+            .withCallReason("Replicating cell job state")
+            .build();
+
+    private final Cell cell;
+    private final CellConnector connector;
+    private final Function<JobChangeNotification, JobChangeNotification> decorator;
+    private final CellLocationCache locationCache;
+    private final Consumer<ReplicaEvent> eventSink;
+    private final Retryer initialRetryer;
+    private final Scheduler scheduler;
+
+    private final Object lock = new Object();
+
+    // Guarded by lock
+    private Connection connection;
+    private Retryer retryer;
+    private Subscription reconnectSubscription;
+    private boolean shutdown;
+
+    CellJobReplica(Cell cell,
+                   CellConnector connector,
+                   Function<JobChangeNotification, JobChangeNotification> decorator,
+                   CellLocationCache locationCache,
+                   Consumer<ReplicaEvent> eventSink,
+                   Retryer retryer,
+                   Scheduler scheduler) {
+        this.cell = cell;
+        this.connector = connector;
+        this.decorator = decorator;
+        this.locationCache = locationCache;
+        this.eventSink = eventSink;
+        this.initialRetryer = retryer;
+        this.retryer = retryer;
+        this.scheduler = scheduler;
+    }
+
+    Cell getCell() {
+        return cell;
+    }
+
+    /**
+     * Opens the cell stream if it is not open yet. The returned {@link Completable} completes when the cell snapshot
+     * is loaded, or fails if the stream terminates before that. If the stream is being reopened, the new snapshot
+     * is awaited.
+     */
+    Completable connect() {
+        Connection current;
+        boolean opening = false;
+        synchronized (lock) {
+            if (shutdown) {
+                return Completable.error(new IllegalStateException("Job replica of cell " + cell.getName() + " is shut down"));
+            }
+            if (connection == null) {
+                this.connection = new Connection();
+                opening = true;
+            }
+            current = connection;
+        }
+        if (opening) {
+            open(current);
+        }
+        return current.snapshotLoaded.toCompletable();
+    }
+
+    /**
+     * Jobs (with their tasks) of the loaded cell snapshot.
+     *
+     * @throws IllegalStateException if the snapshot is not loaded, as the cell stream terminated, and is not reopened yet
+     */
+    Collection<JobEntry> getJobEntries() {
+        Connection current;
+        synchronized (lock) {
+            current = connection;
+        }
+        if (current == null || !current.loaded) {
+            throw new IllegalStateException("Job snapshot of cell " + cell.getName() + " not loaded");
+        }
+        return current.jobs.values();
+    }
+
+    void shutdown() {
+        Connection current;
+        synchronized (lock) {
+            shutdown = true;
+            current = connection;
+            connection = null;
+            if (reconnectSubscription != null) {
+                reconnectSubscription.unsubscribe();
+            }
+        }
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    private void open(Connection newConnection) {
+        synchronized (lock) {
+            if (connection != newConnection) {
+                return;
+            }
+        }
+        Optional<JobManagementServiceStub> stub = CellConnectorUtil.toStub(cell, connector, JobManagementServiceGrpc::newStub);
+        if (!stub.isPresent()) {
+            newConnection.onError(new IllegalStateException("No channel to cell " + cell.getName()));
+            return;
+        }
+        V3HeaderInterceptor.attachCallMetadata(stub.get(), CALL_METADATA).observeJobs(ObserveJobsQuery.getDefaultInstance(), newConnection);
+    }
+
+    private void onLoaded() {
+        synchronized (lock) {
+            retryer = initialRetryer;
+        }
+    }
+
+    private void onTerminated(Connection terminated) {
+        synchronized (lock) {
+            if (connection != terminated || shutdown) {
+                return;
+            }
+            long delayMs = retryer.getDelayMs().orElse(0L);
+            retryer = retryer.retry();
+
+            Connection nextConnection = new Connection();
+            this.connection = nextConnection;
+            logger.info("Reopening job event stream of cell {} in {}ms", cell.getName(), delayMs);
+            this.reconnectSubscription = Observable.timer(delayMs, TimeUnit.MILLISECONDS, scheduler).subscribe(
+                    tick -> open(nextConnection),
+                    nextConnection::onError
+            );
+        }
+    }
+
+    /**
+     * A job, and its tasks, as known by the cell. The job is null if a task update was received before its job.
+     */
+    static class JobEntry {
+
+        private volatile ReplicatedEntity<com.netflix.titus.api.jobmanager.model.job.Job<?>> job;
+        private final ConcurrentMap<String, ReplicatedEntity<com.netflix.titus.api.jobmanager.model.job.Task>> tasks = new ConcurrentHashMap<>();
+
+        ReplicatedEntity<com.netflix.titus.api.jobmanager.model.job.Job<?>> getJob() {
+            return job;
+        }
+
+        Collection<ReplicatedEntity<com.netflix.titus.api.jobmanager.model.job.Task>> getTasks() {
+            return tasks.values();
+        }
+    }
+
+    /**
+     * A cell notification with its lazily converted core model. The conversion is done at most once, and only if
+     * a subscriber with filtering criteria needs it.
+     */
+    static class ReplicatedEntity<CORE> {
+
+        private final JobChangeNotification notification;
+        private final Function<JobChangeNotification, CORE> converter;
+        private volatile Optional<CORE> core;
+
+        private ReplicatedEntity(JobChangeNotification notification, Function<JobChangeNotification, CORE> converter) {
+            this.notification = notification;
+            this.converter = converter;
+        }
+
+        JobChangeNotification getNotification() {
+            return notification;
+        }
+
+        Optional<CORE> getCore() {
+            if (core == null) {
+                try {
+                    core = Optional.of(converter.apply(notification));
+                } catch (Exception e) {
+                    logger.debug("Cannot convert notification to the core model: {}", notification, e);
+                    core = Optional.empty();
+                }
+            }
+            return core;
+        }
+    }
+
+    /**
+     * A live update (or stream termination) of a cell.
+     */
+    static class ReplicaEvent {
+
+        private final JobEntry jobEntry;
+        private final ReplicatedEntity<com.netflix.titus.api.jobmanager.model.job.Task> task;
+        private final Throwable error;
+        private final boolean completed;
+
+        private ReplicaEvent(JobEntry jobEntry,
+                             ReplicatedEntity<com.netflix.titus.api.jobmanager.model.job.Task> task,
+                             Throwable error,
+                             boolean completed) {
+            this.jobEntry = jobEntry;
+            this.task = task;
+            this.error = error;
+            this.completed = completed;
+        }
+
+        JobEntry getJobEntry() {
+            return jobEntry;
+        }
+
+        /**
+         * Task, if this is a task update, or null for a job update.
+         */
+        ReplicatedEntity<com.netflix.titus.api.jobmanager.model.job.Task> getTask() {
+            return task;
+        }
+
+        JobChangeNotification getNotification() {
+            return task != null ? task.getNotification() : jobEntry.getJob().getNotification();
+        }
+
+        Throwable getError() {
+            return error;
+        }
+
+        boolean isCompleted() {
+            return completed;
+        }
+    }
+
+    private class Connection implements ClientResponseObserver<ObserveJobsQuery, JobChangeNotification> {
+
+        private final AsyncSubject<Void> snapshotLoaded = AsyncSubject.create();
+        private final ConcurrentMap<String, JobEntry> jobs = new ConcurrentHashMap<>();
+
+        private volatile ClientCallStreamObserver<ObserveJobsQuery> requestStream;
+        private volatile boolean loaded;
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<ObserveJobsQuery> requestStream) {
+            this.requestStream = requestStream;
+        }
+
+        @Override
+        public void onNext(JobChangeNotification notification) {
+            switch (notification.getNotificationCase()) {
+                case JOBUPDATE:
+                    onJobUpdate(decorator.apply(notification));
+                    break;
+                case TASKUPDATE:
+                    onTaskUpdate(decorator.apply(notification));
+                    break;
+                case SNAPSHOTEND:
+                    if (!loaded) {
+                        loaded = true;
+                        logger.info("Loaded job snapshot of cell {}: jobs={}", cell.getName(), jobs.size());
+                        onLoaded();
+                        snapshotLoaded.onCompleted();
+                    }
+                    break;
+                default:
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            logger.warn("Job event stream of cell {} terminated with an error: {}", cell.getName(), error.getMessage());
+            onTerminated(this);
+            if (loaded) {
+                eventSink.accept(new ReplicaEvent(null, null, error, false));
+            } else {
+                snapshotLoaded.onError(error);
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            logger.info("Job event stream of cell {} completed", cell.getName());
+            onTerminated(this);
+            if (loaded) {
+                eventSink.accept(new ReplicaEvent(null, null, null, true));
+            } else {
+                snapshotLoaded.onError(new IllegalStateException("Job event stream of cell " + cell.getName() + " completed before the snapshot end"));
+            }
+        }
+
+        private void onJobUpdate(JobChangeNotification notification) {
+            Job job = notification.getJobUpdate().getJob();
+            locationCache.recordJob(cell, job);
+
+            JobEntry entry = jobs.computeIfAbsent(job.getId(), id -> new JobEntry());
+            entry.job = new ReplicatedEntity<>(notification, n -> V3GrpcModelConverters.toCoreJob(n.getJobUpdate().getJob()));
+            if (loaded) {
+                eventSink.accept(new ReplicaEvent(entry, null, null, false));
+            }
+            if (job.getStatus().getState() == JobStatus.JobState.Finished) {
+                jobs.remove(job.getId());
+            }
+        }
+
+        private void onTaskUpdate(JobChangeNotification notification) {
+            Task task = notification.getTaskUpdate().getTask();
+            locationCache.recordTask(cell, task);
+
+            JobEntry entry = jobs.computeIfAbsent(task.getJobId(), id -> new JobEntry());
+            ReplicatedEntity<com.netflix.titus.api.jobmanager.model.job.Task> replicatedTask = new ReplicatedEntity<>(
+                    notification, n -> V3GrpcModelConverters.toCoreTask(n.getTaskUpdate().getTask())
+            );
+            entry.tasks.put(task.getId(), replicatedTask);
+            if (loaded) {
+                eventSink.accept(new ReplicaEvent(entry, replicatedTask, null, false));
+            }
+            if (task.getStatus().getState() == TaskStatus.TaskState.Finished) {
+                entry.tasks.remove(task.getId());
+            }
+        }
+
+        private void cancel() {
+            ClientCallStreamObserver<ObserveJobsQuery> current = requestStream;
+            if (current != null) {
+                current.cancel("Job replica shutdown", null);
+            }
+        }
+    }
+}
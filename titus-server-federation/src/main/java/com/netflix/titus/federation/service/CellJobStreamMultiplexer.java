@@ -0,0 +1,243 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.federation.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.netflix.spectator.api.Registry;
+import com.netflix.spectator.api.patterns.PolledMeter;
+import com.netflix.titus.api.federation.model.Cell;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.common.runtime.TitusRuntime;
+import com.netflix.titus.common.util.retry.Retryer;
+import com.netflix.titus.common.util.retry.Retryers;
+import com.netflix.titus.common.util.rx.ObservableExt;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.federation.service.CellJobReplica.JobEntry;
+import com.netflix.titus.federation.service.CellJobReplica.ReplicaEvent;
+import com.netflix.titus.federation.service.CellJobReplica.ReplicatedEntity;
+import com.netflix.titus.federation.startup.TitusFederationConfiguration;
+import com.netflix.titus.grpc.protogen.Job;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.grpc.protogen.JobChangeNotification.JobUpdate;
+import com.netflix.titus.grpc.protogen.JobChangeNotification.TaskUpdate;
+import com.netflix.titus.grpc.protogen.JobDescriptor;
+import com.netflix.titus.grpc.protogen.ObserveJobsQuery;
+import com.netflix.titus.grpc.protogen.TaskStatus;
+import com.netflix.titus.runtime.endpoint.JobQueryCriteria;
+import com.netflix.titus.runtime.endpoint.v3.grpc.query.V3JobQueryCriteriaEvaluator;
+import com.netflix.titus.runtime.endpoint.v3.grpc.query.V3TaskQueryCriteriaEvaluator;
+import rx.Completable;
+import rx.Observable;
+import rx.exceptions.Exceptions;
+import rx.schedulers.Schedulers;
+import rx.subjects.PublishSubject;
+import rx.subjects.Subject;
+
+import static com.netflix.titus.api.jobmanager.JobAttributes.JOB_ATTRIBUTES_STACK;
+import static com.netflix.titus.api.jobmanager.TaskAttributes.TASK_ATTRIBUTES_STACK;
+import static com.netflix.titus.runtime.endpoint.common.grpc.CommonGrpcModelConverters.toJobQueryCriteria;
+
+/**
+ * Serves all federation observeJobs subscribers from a single replicated view per cell ({@link CellJobReplica}).
+ * A new subscriber gets a snapshot built from the merged in-memory views, followed by the shared live updates, both
+ * filtered locally with the subscriber's {@link ObserveJobsQuery}. The number of streams opened to a cell does not
+ * depend on the number of federation subscribers.
+ * <p>
+ * If a cell stream terminates, all current subscribers are terminated the same way, and the replica reopens the
+ * stream (with a new snapshot) on its own. Subscribers arriving in the meantime wait for the new snapshot. A subscriber
+ * which was waiting for the snapshots of other cells when the stream terminated is failed, as the replicated view of
+ * that cell is not available.
+ */
+@Singleton
+public class CellJobStreamMultiplexer {
+
+    private static final String METRIC_ROOT = "titus.federation.jobStreamMultiplexer.";
+
+    private static final JobChangeNotification SNAPSHOT_END_MARKER = JobChangeNotification.newBuilder()
+            .setSnapshotEnd(JobChangeNotification.SnapshotEnd.newBuilder())
+            .build();
+
+    private final CellConnector connector;
+    private final TitusFederationConfiguration federationConfiguration;
+    private final CellLocationCache locationCache;
+    private final TitusRuntime titusRuntime;
+
+    private final ConcurrentMap<Cell, CellJobReplica> replicas = new ConcurrentHashMap<>();
+    private final Subject<ReplicaEvent, ReplicaEvent> events = PublishSubject.<ReplicaEvent>create().toSerialized();
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    @Inject
+    public CellJobStreamMultiplexer(CellConnector connector,
+                                    TitusFederationConfiguration federationConfiguration,
+                                    CellLocationCache locationCache,
+                                    TitusRuntime titusRuntime) {
+        this.connector = connector;
+        this.federationConfiguration = federationConfiguration;
+        this.locationCache = locationCache;
+        this.titusRuntime = titusRuntime;
+
+        Registry registry = titusRuntime.getRegistry();
+        PolledMeter.using(registry).withName(METRIC_ROOT + "subscribers").monitorValue(subscribers);
+        PolledMeter.using(registry).withName(METRIC_ROOT + "replicas").monitorSize(replicas);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        replicas.values().forEach(CellJobReplica::shutdown);
+    }
+
+    public Observable<JobChangeNotification> observeJobs(ObserveJobsQuery query) {
+        return Observable.defer(() -> {
+            EventFilter filter = new EventFilter(toJobQueryCriteria(query));
+            List<CellJobReplica> cellReplicas = connector.getChannels().keySet().stream()
+                    .map(cell -> replicas.computeIfAbsent(cell, this::newReplica))
+                    .collect(Collectors.toList());
+
+            Completable snapshotsLoaded = Completable.merge(cellReplicas.stream().map(CellJobReplica::connect).toArray(Completable[]::new));
+
+            Observable<JobChangeNotification> liveEvents = events
+                    .takeWhile(event -> !event.isCompleted())
+                    .map(event -> {
+                        if (event.getError() != null) {
+                            throw Exceptions.propagate(event.getError());
+                        }
+                        return event;
+                    })
+                    .filter(filter::matches)
+                    .map(ReplicaEvent::getNotification);
+
+            return snapshotsLoaded.andThen(liveEvents.compose(ObservableExt.head(() -> buildSnapshot(cellReplicas, filter))));
+        }).doOnSubscribe(subscribers::incrementAndGet).doOnUnsubscribe(subscribers::decrementAndGet);
+    }
+
+    private CellJobReplica newReplica(Cell cell) {
+        long initialDelayMs = federationConfiguration.getCellJobStreamRetryInitialDelayMs();
+        Retryer retryer = Retryers.exponentialBackoff(
+                initialDelayMs,
+                Math.max(initialDelayMs, federationConfiguration.getCellJobStreamRetryMaxDelayMs()),
+                TimeUnit.MILLISECONDS
+        );
+        return new CellJobReplica(cell, connector, this::addStackName, locationCache, events::onNext, retryer, Schedulers.computation());
+    }
+
+    private List<JobChangeNotification> buildSnapshot(List<CellJobReplica> cellReplicas, EventFilter filter) {
+        List<JobChangeNotification> jobs = new ArrayList<>();
+        List<JobChangeNotification> tasks = new ArrayList<>();
+        for (CellJobReplica replica : cellReplicas) {
+            for (JobEntry entry : replica.getJobEntries()) {
+                if (entry.getJob() != null && filter.matchesJob(entry)) {
+                    jobs.add(entry.getJob().getNotification());
+                }
+                for (ReplicatedEntity<Task> task : entry.getTasks()) {
+                    if (filter.matchesTask(entry, task)) {
+                        tasks.add(task.getNotification());
+                    }
+                }
+            }
+        }
+        List<JobChangeNotification> snapshot = new ArrayList<>(jobs.size() + tasks.size() + 1);
+        snapshot.addAll(jobs);
+        snapshot.addAll(tasks);
+        snapshot.add(SNAPSHOT_END_MARKER);
+        return snapshot;
+    }
+
+    private JobChangeNotification addStackName(JobChangeNotification notification) {
+        switch (notification.getNotificationCase()) {
+            case JOBUPDATE:
+                Job job = notification.getJobUpdate().getJob();
+                JobDescriptor jobDescriptor = job.getJobDescriptor().toBuilder()
+                        .putAttributes(JOB_ATTRIBUTES_STACK, federationConfiguration.getStack())
+                        .build();
+                JobUpdate jobUpdate = notification.getJobUpdate().toBuilder()
+                        .setJob(job.toBuilder().setJobDescriptor(jobDescriptor))
+                        .build();
+                return notification.toBuilder().setJobUpdate(jobUpdate).build();
+            case TASKUPDATE:
+                com.netflix.titus.grpc.protogen.Task task = notification.getTaskUpdate().getTask().toBuilder()
+                        .putTaskContext(TASK_ATTRIBUTES_STACK, federationConfiguration.getStack())
+                        .build();
+                TaskUpdate taskUpdate = notification.getTaskUpdate().toBuilder().setTask(task).build();
+                return notification.toBuilder().setTaskUpdate(taskUpdate).build();
+            default:
+                return notification;
+        }
+    }
+
+    /**
+     * Applies the subscriber query to the replicated entities. Entities are converted to the core model only if
+     * the query has any filtering criteria.
+     */
+    private class EventFilter {
+
+        private final boolean matchAll;
+        private final V3JobQueryCriteriaEvaluator jobsPredicate;
+        private final V3TaskQueryCriteriaEvaluator tasksPredicate;
+
+        private EventFilter(JobQueryCriteria<TaskStatus.TaskState, JobDescriptor.JobSpecCase> criteria) {
+            this.matchAll = criteria.isEmpty();
+            this.jobsPredicate = new V3JobQueryCriteriaEvaluator(criteria, titusRuntime);
+            this.tasksPredicate = new V3TaskQueryCriteriaEvaluator(criteria, titusRuntime);
+        }
+
+        private boolean matches(ReplicaEvent event) {
+            return event.getTask() == null
+                    ? matchesJob(event.getJobEntry())
+                    : matchesTask(event.getJobEntry(), event.getTask());
+        }
+
+        private boolean matchesJob(JobEntry entry) {
+            if (matchAll) {
+                return true;
+            }
+            Optional<com.netflix.titus.api.jobmanager.model.job.Job<?>> job = entry.getJob().getCore();
+            if (!job.isPresent() || !jobsPredicate.testJob(job.get())) {
+                return false;
+            }
+            List<Task> tasks = entry.getTasks().isEmpty() ? Collections.emptyList() : new ArrayList<>();
+            for (ReplicatedEntity<Task> task : entry.getTasks()) {
+                task.getCore().ifPresent(tasks::add);
+            }
+            return jobsPredicate.testTasks(tasks);
+        }
+
+        private boolean matchesTask(JobEntry entry, ReplicatedEntity<Task> task) {
+            if (matchAll) {
+                return true;
+            }
+            if (entry.getJob() == null) {
+                return false;
+            }
+            Optional<com.netflix.titus.api.jobmanager.model.job.Job<?>> job = entry.getJob().getCore();
+            Optional<Task> coreTask = task.getCore();
+            return job.isPresent() && coreTask.isPresent() && tasksPredicate.test(Pair.of(job.get(), coreTask.get()));
+        }
+    }
+}
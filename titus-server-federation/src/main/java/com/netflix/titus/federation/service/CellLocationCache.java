@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.federation.service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.netflix.spectator.api.Counter;
+import com.netflix.spectator.api.Registry;
+import com.netflix.spectator.api.patterns.PolledMeter;
+import com.netflix.titus.api.federation.model.Cell;
+import com.netflix.titus.common.util.cache.Cache;
+import com.netflix.titus.common.util.cache.Caches;
+import com.netflix.titus.federation.startup.TitusFederationConfiguration;
+import com.netflix.titus.grpc.protogen.Job;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.grpc.protogen.Task;
+
+/**
+ * Remembers in which cell a job or a task is located, so single entity requests can be sent to one cell only, instead
+ * of being broadcast to all of them. The cache is populated from the job creation responses (which is the routing
+ * decision made by {@link CellRouter}), query results, and the job event streams. The cached location is a hint
+ * only. If the cell does not know the entity, the entry is invalidated and the caller falls back to a broadcast.
+ */
+@Singleton
+public class CellLocationCache {
+
+    private static final String METRIC_ROOT = "titus.federation.cellLocationCache.";
+
+    private final Cache<String, Cell> jobLocations;
+    private final Cache<String, Cell> taskLocations;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    @Inject
+    public CellLocationCache(TitusFederationConfiguration configuration, Registry registry) {
+        long maxSize = Math.max(0, configuration.getCellLocationCacheMaxSize());
+        Duration ttl = Duration.ofMillis(Math.max(0, configuration.getCellLocationCacheTtlMs()));
+        this.jobLocations = Caches.instrumentedCacheWithMaxSize(maxSize, ttl, METRIC_ROOT + "jobs", registry);
+        this.taskLocations = Caches.instrumentedCacheWithMaxSize(maxSize, ttl, METRIC_ROOT + "tasks", registry);
+
+        this.hitCounter = registry.counter(METRIC_ROOT + "lookups", "result", "hit");
+        this.missCounter = registry.counter(METRIC_ROOT + "lookups", "result", "miss");
+        PolledMeter.using(registry)
+                .withName(METRIC_ROOT + "hitRatio")
+                .monitorValue(this, CellLocationCache::getHitRatio);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobLocations.shutdown();
+        taskLocations.shutdown();
+    }
+
+    public Optional<Cell> getJobCell(String jobId) {
+        return lookup(jobLocations, jobId);
+    }
+
+    public Optional<Cell> getTaskCell(String taskId) {
+        return lookup(taskLocations, taskId);
+    }
+
+    public void putJob(String jobId, Cell cell) {
+        jobLocations.put(jobId, cell);
+    }
+
+    public void putTask(String taskId, Cell cell) {
+        taskLocations.put(taskId, cell);
+    }
+
+    public void invalidateJob(String jobId) {
+        jobLocations.invalidate(jobId);
+    }
+
+    public void invalidateTask(String taskId) {
+        taskLocations.invalidate(taskId);
+    }
+
+    public void recordJob(Cell cell, Job job) {
+        putJob(job.getId(), cell);
+    }
+
+    public void recordTask(Cell cell, Task task) {
+        putTask(task.getId(), cell);
+        if (!task.getJobId().isEmpty()) {
+            putJob(task.getJobId(), cell);
+        }
+    }
+
+    public void recordNotification(Cell cell, JobChangeNotification notification) {
+        switch (notification.getNotificationCase()) {
+            case JOBUPDATE:
+                recordJob(cell, notification.getJobUpdate().getJob());
+                break;
+            case TASKUPDATE:
+                recordTask(cell, notification.getTaskUpdate().getTask());
+                break;
+            default:
+        }
+    }
+
+    /**
+     * Ratio of lookups answered from the cache since the process started.
+     */
+    double getHitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private Optional<Cell> lookup(Cache<String, Cell> cache, String id) {
+        Cell cell = cache.getIfPresent(id);
+        if (cell == null) {
+            misses.incrementAndGet();
+            missCounter.increment();
+            return Optional.empty();
+        }
+        hits.incrementAndGet();
+        hitCounter.increment();
+        return Optional.of(cell);
+    }
+}
@@ -30,4 +30,26 @@ public interface TitusFederationConfiguration {
 
     @DefaultValue("cell1=(app1.*|app2.*);cell2=(.*)")
     String getRoutingRules();
+
+    /**
+     * Maximum number of job and task ids (each) kept in the id to cell location cache. Set to 0 to disable the cache.
+     */
+    @DefaultValue("100000")
+    long getCellLocationCacheMaxSize();
+
+    /**
+     * Time after which a cached job or task location expires.
+     */
+    @DefaultValue("1800000")
+    long getCellLocationCacheTtlMs();
+
+    /**
+     * Delay before the first attempt to reopen a terminated cell job event stream. The delay doubles with each
+     * consecutive failure, up to {@link #getCellJobStreamRetryMaxDelayMs()}.
+     */
+    @DefaultValue("1000")
+    long getCellJobStreamRetryInitialDelayMs();
+
+    @DefaultValue("30000")
+    long getCellJobStreamRetryMaxDelayMs();
 }
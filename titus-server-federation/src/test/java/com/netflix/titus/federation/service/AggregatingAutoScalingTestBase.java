@@ -27,6 +27,7 @@ import io.grpc.testing.GrpcServerRule;
 import org.junit.Before;
 import org.junit.Rule;
 
+import static com.netflix.titus.federation.service.ServiceTests.newLocationCache;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -63,7 +64,7 @@ public class AggregatingAutoScalingTestBase {
         final AggregatingCellClient aggregatingCellClient = new AggregatingCellClient(connector);
 
         service = new AggregatingAutoScalingService(connector, anonymousCallMetadataResolver, grpcConfiguration,
-                new AggregatingJobManagementServiceHelper(aggregatingCellClient, grpcConfiguration, anonymousCallMetadataResolver),
+                new AggregatingJobManagementServiceHelper(aggregatingCellClient, connector, newLocationCache(), grpcConfiguration, anonymousCallMetadataResolver),
                 aggregatingCellClient);
     }
 
@@ -26,6 +26,7 @@ import java.util.Optional;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -35,6 +36,7 @@ import com.netflix.titus.api.federation.model.Cell;
 import com.netflix.titus.api.jobmanager.service.JobManagerConstants;
 import com.netflix.titus.api.model.Page;
 import com.netflix.titus.api.service.TitusServiceException;
+import com.netflix.titus.common.runtime.TitusRuntimes;
 import com.netflix.titus.common.util.CollectionsExt;
 import com.netflix.titus.common.util.time.Clocks;
 import com.netflix.titus.common.util.time.TestClock;
@@ -60,22 +62,28 @@ import com.netflix.titus.grpc.protogen.Task;
 import com.netflix.titus.grpc.protogen.TaskKillRequest;
 import com.netflix.titus.grpc.protogen.TaskQuery;
 import com.netflix.titus.grpc.protogen.TaskQueryResult;
+import com.netflix.titus.runtime.endpoint.common.grpc.GrpcUtil;
 import com.netflix.titus.runtime.endpoint.metadata.AnonymousCallMetadataResolver;
 import com.netflix.titus.runtime.endpoint.v3.grpc.V3GrpcModelConverters;
 import com.netflix.titus.runtime.jobmanager.JobManagerCursors;
 import com.netflix.titus.testkit.grpc.TestStreamObserver;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
 import io.grpc.testing.GrpcServerRule;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import rx.Observable;
+import rx.Subscription;
 import rx.observers.AssertableSubscriber;
 import rx.subjects.PublishSubject;
 
+import static com.jayway.awaitility.Awaitility.await;
 import static com.netflix.titus.api.jobmanager.JobAttributes.JOB_ATTRIBUTES_CELL;
 import static com.netflix.titus.api.jobmanager.JobAttributes.JOB_ATTRIBUTES_STACK;
+import static com.netflix.titus.federation.service.ServiceTests.newLocationCache;
 import static com.netflix.titus.federation.service.ServiceTests.walkAllPages;
 import static com.netflix.titus.runtime.endpoint.common.grpc.CommonGrpcModelConverters.toGrpcPage;
 import static io.grpc.Status.DEADLINE_EXCEEDED;
@@ -104,7 +112,10 @@ public class AggregatingJobServiceGatewayTest {
     private final PublishSubject<JobChangeNotification> cellTwoUpdates = PublishSubject.create();
 
     private String stackName;
+    private TitusFederationConfiguration titusFederationConfiguration;
+    private CellJobStreamMultiplexer jobStreamMultiplexer;
     private AggregatingJobServiceGateway service;
+    private CellLocationCache locationCache;
     private List<Cell> cells;
     private Map<Cell, GrpcServerRule> cellToServiceMap;
     private TestClock clock;
@@ -117,10 +128,12 @@ public class AggregatingJobServiceGatewayTest {
         GrpcConfiguration grpcConfiguration = mock(GrpcConfiguration.class);
         when(grpcConfiguration.getRequestTimeoutMs()).thenReturn(GRPC_REQUEST_TIMEOUT_MS);
 
-        TitusFederationConfiguration titusFederationConfiguration = mock(TitusFederationConfiguration.class);
+        titusFederationConfiguration = mock(TitusFederationConfiguration.class);
         when(titusFederationConfiguration.getStack()).thenReturn(stackName);
         when(titusFederationConfiguration.getCells()).thenReturn("one=1;two=2");
         when(titusFederationConfiguration.getRoutingRules()).thenReturn("one=(app1.*|app2.*);two=(app3.*)");
+        when(titusFederationConfiguration.getCellJobStreamRetryInitialDelayMs()).thenReturn(10L);
+        when(titusFederationConfiguration.getCellJobStreamRetryMaxDelayMs()).thenReturn(100L);
 
         CellInfoResolver cellInfoResolver = new DefaultCellInfoResolver(titusFederationConfiguration);
         DefaultCellRouter cellRouter = new DefaultCellRouter(cellInfoResolver, titusFederationConfiguration);
@@ -139,8 +152,10 @@ public class AggregatingJobServiceGatewayTest {
                         .map(GrpcServerRule::getChannel)
         );
 
+        locationCache = newLocationCache();
         final AggregatingCellClient aggregatingCellClient = new AggregatingCellClient(connector);
         final AnonymousCallMetadataResolver anonymousCallMetadataResolver = new AnonymousCallMetadataResolver();
+        jobStreamMultiplexer = new CellJobStreamMultiplexer(connector, titusFederationConfiguration, locationCache, TitusRuntimes.internal());
         service = new AggregatingJobServiceGateway(
                 grpcConfiguration,
                 titusFederationConfiguration,
@@ -148,7 +163,9 @@ public class AggregatingJobServiceGatewayTest {
                 cellRouter,
                 anonymousCallMetadataResolver,
                 aggregatingCellClient,
-                new AggregatingJobManagementServiceHelper(aggregatingCellClient, grpcConfiguration, anonymousCallMetadataResolver)
+                new AggregatingJobManagementServiceHelper(aggregatingCellClient, connector, locationCache, grpcConfiguration, anonymousCallMetadataResolver),
+                locationCache,
+                jobStreamMultiplexer
         );
 
         clock = Clocks.test();
@@ -157,6 +174,7 @@ public class AggregatingJobServiceGatewayTest {
 
     @After
     public void tearDown() {
+        jobStreamMultiplexer.shutdown();
         cellOneUpdates.onCompleted();
         cellTwoUpdates.onCompleted();
     }
@@ -404,6 +422,39 @@ public class AggregatingJobServiceGatewayTest {
         assertThat(Status.fromThrowable(testSubscriber.getOnErrorEvents().get(0))).isEqualTo(UNAVAILABLE);
     }
 
+    @Test
+    public void findJobRecordsCellLocation() {
+        List<Job> cellOneSnapshot = new ArrayList<>(dataGenerator.newServiceJobs(5, V3GrpcModelConverters::toGrpcJob));
+        cellOne.getServiceRegistry().addService(new CellWithFixedJobsService(cellOneSnapshot, cellOneUpdates.serialize()));
+        cellTwo.getServiceRegistry().addService(new CellWithFixedJobsService(Collections.emptyList(), cellTwoUpdates.serialize()));
+
+        Job expected = withStackName(cellOneSnapshot.get(0));
+        for (int i = 0; i < 2; i++) {
+            AssertableSubscriber<Job> testSubscriber = service.findJob(expected.getId()).test();
+            testSubscriber.awaitTerminalEvent(1, TimeUnit.SECONDS);
+            testSubscriber.assertNoErrors();
+            testSubscriber.assertValue(expected);
+        }
+        assertThat(locationCache.getHitRatio()).isEqualTo(0.5);
+        assertThat(locationCache.getJobCell(expected.getId())).contains(cells.get(0));
+    }
+
+    @Test
+    public void findJobWithStaleCellLocationFallsBackToAllCells() {
+        List<Job> cellOneSnapshot = new ArrayList<>(dataGenerator.newServiceJobs(5, V3GrpcModelConverters::toGrpcJob));
+        cellOne.getServiceRegistry().addService(new CellWithFixedJobsService(cellOneSnapshot, cellOneUpdates.serialize()));
+        cellTwo.getServiceRegistry().addService(new CellWithFixedJobsService(Collections.emptyList(), cellTwoUpdates.serialize()));
+
+        Job expected = withStackName(cellOneSnapshot.get(0));
+        locationCache.putJob(expected.getId(), cells.get(1));
+
+        AssertableSubscriber<Job> testSubscriber = service.findJob(expected.getId()).test();
+        testSubscriber.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        testSubscriber.assertNoErrors();
+        testSubscriber.assertValue(expected);
+        assertThat(locationCache.getJobCell(expected.getId())).contains(cells.get(0));
+    }
+
     @Test
     public void killJob() {
         Random random = new Random();
@@ -650,6 +701,40 @@ public class AggregatingJobServiceGatewayTest {
         assertThat(onNextEvents).contains(withStackName(cellOneUpdate), withStackName(cellTwoUpdate));
     }
 
+    @Test
+    public void observeJobsSubscribersShareCellStreams() {
+        final List<Job> cellOneSnapshot = Collections.singletonList(Job.newBuilder().setId("cell-1-job-1").setStatus(ACCEPTED_STATE).build());
+        final List<Job> cellTwoSnapshot = Collections.singletonList(Job.newBuilder().setId("cell-2-job-1").setStatus(ACCEPTED_STATE).build());
+        CellWithFixedJobsService cellOneService = new CellWithFixedJobsService(cellOneSnapshot, cellOneUpdates.serialize());
+        CellWithFixedJobsService cellTwoService = new CellWithFixedJobsService(cellTwoSnapshot, cellTwoUpdates.serialize());
+        cellOne.getServiceRegistry().addService(cellOneService);
+        cellTwo.getServiceRegistry().addService(cellTwoService);
+
+        AssertableSubscriber<JobChangeNotification> subscriber1 = service.observeJobs(ObserveJobsQuery.getDefaultInstance()).test();
+        subscriber1.awaitValueCount(3, 1, TimeUnit.SECONDS);
+
+        // a late subscriber gets the snapshot from the replicated state, including updates received so far
+        final JobChangeNotification cellOneUpdate = toNotification(Job.newBuilder().setId("cell-1-job-2").setStatus(ACCEPTED_STATE).build());
+        cellOneUpdates.onNext(cellOneUpdate);
+        subscriber1.awaitValueCount(4, 1, TimeUnit.SECONDS);
+
+        AssertableSubscriber<JobChangeNotification> subscriber2 = service.observeJobs(ObserveJobsQuery.getDefaultInstance()).test();
+        subscriber2.awaitValueCount(4, 1, TimeUnit.SECONDS);
+        assertThat(subscriber2.getOnNextEvents()).contains(withStackName(cellOneUpdate));
+        assertThat(subscriber2.getOnNextEvents()).last().matches(JobChangeNotification::hasSnapshotEnd);
+
+        // live updates are delivered to both subscribers
+        final JobChangeNotification cellTwoUpdate = toNotification(Job.newBuilder().setId("cell-2-job-2").setStatus(ACCEPTED_STATE).build());
+        cellTwoUpdates.onNext(cellTwoUpdate);
+        subscriber1.awaitValueCount(5, 1, TimeUnit.SECONDS);
+        subscriber2.awaitValueCount(5, 1, TimeUnit.SECONDS);
+        assertThat(subscriber1.getOnNextEvents()).last().isEqualTo(withStackName(cellTwoUpdate));
+        assertThat(subscriber2.getOnNextEvents()).last().isEqualTo(withStackName(cellTwoUpdate));
+
+        assertThat(cellOneService.getObserveJobsCalls()).isEqualTo(1);
+        assertThat(cellTwoService.getObserveJobsCalls()).isEqualTo(1);
+    }
+
     @Test
     public void observeJobsStopsWhenAnyClientsTerminate() {
         cellOne.getServiceRegistry().addService(new CellWithFixedJobsService(Collections.emptyList(), cellOneUpdates.serialize()));
@@ -702,6 +787,64 @@ public class AggregatingJobServiceGatewayTest {
         assertThat(testSubscriber.getCompletions()).isEqualTo(0);
     }
 
+    @Test
+    public void observeJobsFailsWhenCellStreamTerminatesWhileOtherCellIsLoading() {
+        // Do not reopen the terminated stream before the other cell snapshot is loaded
+        when(titusFederationConfiguration.getCellJobStreamRetryInitialDelayMs()).thenReturn(60_000L);
+        when(titusFederationConfiguration.getCellJobStreamRetryMaxDelayMs()).thenReturn(60_000L);
+
+        final List<Job> cellOneSnapshot = Collections.singletonList(Job.newBuilder().setId("cell-1-job-1").setStatus(ACCEPTED_STATE).build());
+        cellOne.getServiceRegistry().addService(new CellWithFixedJobsService(cellOneSnapshot, cellOneUpdates.serialize()));
+        // The cell two snapshot is completed by the test
+        cellTwo.getServiceRegistry().addService(new JobManagementServiceGrpc.JobManagementServiceImplBase() {
+            @Override
+            public void observeJobs(ObserveJobsQuery query, StreamObserver<JobChangeNotification> responseObserver) {
+                Subscription subscription = cellTwoUpdates.subscribe(responseObserver::onNext, responseObserver::onError, responseObserver::onCompleted);
+                GrpcUtil.attachCancellingCallback(responseObserver, subscription);
+            }
+        });
+
+        AssertableSubscriber<JobChangeNotification> testSubscriber = service.observeJobs(ObserveJobsQuery.getDefaultInstance()).test();
+        testSubscriber.assertNoValues();
+
+        cellOneUpdates.onError(new RuntimeException("unexpected error"));
+        cellTwoUpdates.onNext(JobChangeNotification.newBuilder().setSnapshotEnd(SnapshotEnd.newBuilder()).build());
+
+        // A snapshot without the cell one jobs must not be emitted
+        testSubscriber.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        testSubscriber.assertNoValues();
+        assertThat(testSubscriber.getOnErrorEvents()).hasSize(1);
+    }
+
+    @Test
+    public void observeJobsCellStreamIsReopenedAfterTermination() {
+        final Job cellOneJob = Job.newBuilder().setId("cell-1-job-1").setStatus(ACCEPTED_STATE).build();
+        AtomicReference<PublishSubject<JobChangeNotification>> cellOneStream = new AtomicReference<>(PublishSubject.create());
+        CellWithFixedJobsService cellOneService = new CellWithFixedJobsService(
+                Collections.singletonList(cellOneJob),
+                Observable.defer(() -> cellOneStream.get().serialize())
+        );
+        cellOne.getServiceRegistry().addService(cellOneService);
+        cellTwo.getServiceRegistry().addService(new CellWithFixedJobsService(Collections.emptyList(), cellTwoUpdates.serialize()));
+
+        AssertableSubscriber<JobChangeNotification> subscriber1 = service.observeJobs(ObserveJobsQuery.getDefaultInstance()).test();
+        subscriber1.awaitValueCount(2, 1, TimeUnit.SECONDS);
+
+        // Active subscribers are terminated, and the stream is reopened without waiting for a new subscriber
+        cellOneStream.getAndSet(PublishSubject.create()).onError(new RuntimeException("unexpected error"));
+        subscriber1.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        assertThat(subscriber1.getOnErrorEvents()).hasSize(1);
+        await().timeout(1, TimeUnit.SECONDS).until(() -> cellOneService.getObserveJobsCalls() == 2);
+
+        AssertableSubscriber<JobChangeNotification> subscriber2 = service.observeJobs(ObserveJobsQuery.getDefaultInstance()).test();
+        subscriber2.awaitValueCount(2, 1, TimeUnit.SECONDS);
+        assertThat(subscriber2.getOnNextEvents()).containsExactly(
+                withStackName(toNotification(cellOneJob)),
+                JobChangeNotification.newBuilder().setSnapshotEnd(SnapshotEnd.newBuilder()).build()
+        );
+        assertThat(cellOneService.getObserveJobsCalls()).isEqualTo(2);
+    }
+
     @Test
     public void observeJob() {
         String cellOneJobId = UUID.randomUUID().toString();
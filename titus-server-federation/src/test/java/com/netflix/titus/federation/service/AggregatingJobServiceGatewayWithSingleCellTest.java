@@ -28,6 +28,7 @@ import java.util.stream.Collectors;
 import com.google.common.collect.ImmutableMap;
 import com.netflix.titus.api.federation.model.Cell;
 import com.netflix.titus.api.model.Page;
+import com.netflix.titus.common.runtime.TitusRuntimes;
 import com.netflix.titus.common.util.time.Clocks;
 import com.netflix.titus.common.util.time.TestClock;
 import com.netflix.titus.federation.startup.GrpcConfiguration;
@@ -50,6 +51,7 @@ import org.junit.Test;
 import rx.observers.AssertableSubscriber;
 import rx.subjects.PublishSubject;
 
+import static com.netflix.titus.federation.service.ServiceTests.newLocationCache;
 import static com.netflix.titus.runtime.endpoint.common.grpc.CommonGrpcModelConverters.toGrpcPage;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.any;
@@ -94,6 +96,7 @@ public class AggregatingJobServiceGatewayWithSingleCellTest {
                         .map(GrpcServerRule::getChannel)
         );
 
+        CellLocationCache locationCache = newLocationCache();
         final AggregatingCellClient aggregatingCellClient = new AggregatingCellClient(connector);
         final AnonymousCallMetadataResolver anonymousCallMetadataResolver = new AnonymousCallMetadataResolver();
         service = new AggregatingJobServiceGateway(
@@ -103,7 +106,9 @@ public class AggregatingJobServiceGatewayWithSingleCellTest {
                 cellRouter,
                 anonymousCallMetadataResolver,
                 aggregatingCellClient,
-                new AggregatingJobManagementServiceHelper(aggregatingCellClient, grpcClientConfiguration, anonymousCallMetadataResolver)
+                new AggregatingJobManagementServiceHelper(aggregatingCellClient, connector, locationCache, grpcClientConfiguration, anonymousCallMetadataResolver),
+                locationCache,
+                new CellJobStreamMultiplexer(connector, titusFederationConfiguration, locationCache, TitusRuntimes.internal())
         );
 
         clock = Clocks.test();
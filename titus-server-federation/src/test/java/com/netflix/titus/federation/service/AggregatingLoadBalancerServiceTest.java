@@ -48,6 +48,7 @@ import rx.observers.AssertableSubscriber;
 
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Java6Assertions.assertThat;
+import static com.netflix.titus.federation.service.ServiceTests.newLocationCache;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -85,7 +86,7 @@ public class AggregatingLoadBalancerServiceTest {
         final AggregatingCellClient aggregatingCellClient = new AggregatingCellClient(connector);
 
         service = new AggregatingLoadbalancerService(connector, anonymousCallMetadataResolver, grpcConfiguration, aggregatingCellClient,
-                new AggregatingJobManagementServiceHelper(aggregatingCellClient, grpcConfiguration, anonymousCallMetadataResolver));
+                new AggregatingJobManagementServiceHelper(aggregatingCellClient, connector, newLocationCache(), grpcConfiguration, anonymousCallMetadataResolver));
     }
 
     @Test
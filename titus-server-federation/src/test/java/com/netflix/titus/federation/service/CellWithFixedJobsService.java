@@ -22,6 +22,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -51,6 +52,7 @@ import static io.grpc.Status.NOT_FOUND;
 class CellWithFixedJobsService extends JobManagementServiceGrpc.JobManagementServiceImplBase {
     private final Map<String, Job> jobsIndex;
     private final Observable<JobChangeNotification> updates;
+    private final AtomicInteger observeJobsCalls = new AtomicInteger();
 
     CellWithFixedJobsService(List<Job> snapshot, Observable<JobChangeNotification> updates) {
         this.jobsIndex = snapshot.stream().collect(Collectors.toMap(Job::getId, Function.identity()));
@@ -110,6 +112,7 @@ class CellWithFixedJobsService extends JobManagementServiceGrpc.JobManagementSer
     @Override
     public void observeJobs(ObserveJobsQuery query, StreamObserver<JobChangeNotification> responseObserver) {
         // TODO: query criteria (filters) are not implemented
+        observeJobsCalls.incrementAndGet();
         for (Job job : jobsIndex.values()) {
             JobChangeNotification.JobUpdate update = JobChangeNotification.JobUpdate.newBuilder().setJob(job).build();
             JobChangeNotification notification = JobChangeNotification.newBuilder().setJobUpdate(update).build();
@@ -130,4 +133,8 @@ class CellWithFixedJobsService extends JobManagementServiceGrpc.JobManagementSer
     Map<String, Job> currentJobs() {
         return Collections.unmodifiableMap(jobsIndex);
     }
+
+    int getObserveJobsCalls() {
+        return observeJobsCalls.get();
+    }
 }
@@ -22,10 +22,14 @@ import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+import com.netflix.spectator.api.DefaultRegistry;
+import com.netflix.titus.federation.startup.TitusFederationConfiguration;
 import rx.Observable;
 import rx.observers.AssertableSubscriber;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * Common test utilities (functions).
@@ -34,6 +38,13 @@ final class ServiceTests {
     private ServiceTests() {
     }
 
+    static CellLocationCache newLocationCache() {
+        TitusFederationConfiguration configuration = mock(TitusFederationConfiguration.class);
+        when(configuration.getCellLocationCacheMaxSize()).thenReturn(1_000L);
+        when(configuration.getCellLocationCacheTtlMs()).thenReturn(60_000L);
+        return new CellLocationCache(configuration, new DefaultRegistry());
+    }
+
     /**
      * @param <Q> query type
      * @param <R> result type
@@ -69,36 +69,39 @@ class NeedsMigrationQueryHandler {
         V3TaskQueryCriteriaEvaluator queryFilter = new V3TaskQueryCriteriaEvaluator(queryCriteria, titusRuntime);
         V3TaskQueryCriteriaEvaluator queryFilterWithoutNeedsMigration = new V3TaskQueryCriteriaEvaluator(filterOutNeedsMigration(queryCriteria), titusRuntime);
 
-        List<com.netflix.titus.grpc.protogen.Task> matchingTasks = new ArrayList<>();
+        // Matching is done on the core model, and only the tasks of the requested page are converted to protobuf.
+        // Both filters share the job level criteria, which are evaluated once per job.
+        List<Task> matchingTasks = new ArrayList<>();
         jobsAndTasks.forEach(jobTasksPair -> {
-            Job<?> job = jobTasksPair.getLeft();
-            List<Task> tasks = jobTasksPair.getRight();
-            tasks.forEach(task -> {
-
-                TaskRelocationPlan plan = relocationPlans.get(task.getId());
-
-                Pair<Job<?>, Task> jobTaskPair = Pair.of(job, task);
-                if (plan != null) {
-                    if (queryFilterWithoutNeedsMigration.test(jobTaskPair)) {
-                        matchingTasks.add(newTaskWithRelocationPlan(toGrpcTask(task, logStorageInfo), plan));
-                    }
-                } else {
-                    if (queryFilter.test(jobTaskPair)) {
-                        matchingTasks.add(toGrpcTask(task, logStorageInfo));
-                    }
+            if (!queryFilter.testJob(jobTasksPair.getLeft())) {
+                return;
+            }
+            jobTasksPair.getRight().forEach(task -> {
+                boolean matches = relocationPlans.containsKey(task.getId())
+                        ? queryFilterWithoutNeedsMigration.testTasks(task)
+                        : queryFilter.testTasks(task);
+                if (matches) {
+                    matchingTasks.add(task);
                 }
             });
         });
 
-        Pair<List<com.netflix.titus.grpc.protogen.Task>, Pagination> paginationPair = PaginationUtil.takePageWithCursor(
+        Pair<List<Task>, Pagination> paginationPair = PaginationUtil.takeTopPageWithCursor(
                 page,
                 matchingTasks,
-                JobManagerCursors.taskCursorOrderComparator(),
-                JobManagerCursors::taskIndexOf,
-                JobManagerCursors::newCursorFrom
+                JobManagerCursors.coreTaskCursorOrderComparator(),
+                JobManagerCursors::coreTaskCursorReference,
+                JobManagerCursors::newCoreCursorFrom
         );
 
-        return PageResult.pageOf(paginationPair.getLeft(), paginationPair.getRight());
+        List<com.netflix.titus.grpc.protogen.Task> pageItems = new ArrayList<>(paginationPair.getLeft().size());
+        paginationPair.getLeft().forEach(task -> {
+            TaskRelocationPlan plan = relocationPlans.get(task.getId());
+            com.netflix.titus.grpc.protogen.Task grpcTask = toGrpcTask(task, logStorageInfo);
+            pageItems.add(plan == null ? grpcTask : newTaskWithRelocationPlan(grpcTask, plan));
+        });
+
+        return PageResult.pageOf(pageItems, paginationPair.getRight());
     }
 
     private JobQueryCriteria<TaskStatus.TaskState, JobDescriptor.JobSpecCase> filterOutNeedsMigration(JobQueryCriteria<TaskStatus.TaskState, JobDescriptor.JobSpecCase> queryCriteria) {
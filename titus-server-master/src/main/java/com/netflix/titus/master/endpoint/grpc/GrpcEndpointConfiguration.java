@@ -44,4 +44,44 @@ public interface GrpcEndpointConfiguration {
      */
     @DefaultValue("false")
     boolean isJobSizeValidationEnabled();
+
+    /**
+     * If enabled, the protobuf representation of each job and task is created once, and shared by all job event
+     * streams and their snapshots.
+     */
+    @DefaultValue("true")
+    boolean isJobChangeNotificationCacheEnabled();
+
+    /**
+     * Interval at which the job notification cache is refreshed. Notifications of removed jobs and tasks are evicted,
+     * and notifications of new or modified ones are created ahead of the next observeJobs subscription.
+     */
+    @DefaultValue("30000")
+    long getJobChangeNotificationCacheRefreshIntervalMs();
+
+    /**
+     * Maximum number of job change notifications queued for a single observeJobs/observeJob subscriber, which is
+     * not reading them fast enough. Queued updates of the same task are coalesced, and only the latest one is sent.
+     * While the snapshot is sent, the limit is extended by the snapshot size, so it applies to the lag behind the
+     * live updates only.
+     */
+    @DefaultValue("20000")
+    int getObserveJobsMaxQueueSize();
+
+    /**
+     * Action taken when a subscriber queue is full. Either 'disconnect' (the stream is terminated with an error,
+     * and the client has to reconnect), or 'resnapshot' (the queue is dropped, and a new snapshot followed by
+     * a snapshot end marker is sent to the client). With 'resnapshot', jobs and tasks sent before, but not present
+     * in the new snapshot, are sent as finished ahead of it. This includes jobs and tasks that still exist, but no
+     * longer match the subscriber query.
+     */
+    @DefaultValue("disconnect")
+    String getObserveJobsLaggingSubscriberPolicy();
+
+    /**
+     * Regular expression of the caller ids, for which observeJobs stream metrics are reported with their own client
+     * tag. Streams of other clients are reported together, with the 'other' client tag.
+     */
+    @DefaultValue("NOTHING")
+    String getObserveJobsMetricsClientPattern();
 }
@@ -21,6 +21,7 @@ import com.google.inject.TypeLiteral;
 import com.netflix.titus.api.jobmanager.model.job.Task;
 import com.netflix.titus.grpc.protogen.JobManagementServiceGrpc.JobManagementServiceImplBase;
 import com.netflix.titus.master.jobmanager.endpoint.v3.grpc.DefaultJobManagementServiceGrpc;
+import com.netflix.titus.master.jobmanager.endpoint.v3.grpc.JobChangeNotificationHub;
 import com.netflix.titus.runtime.endpoint.common.LogStorageInfo;
 
 public class V3EndpointModule extends AbstractModule {
@@ -32,5 +33,6 @@ public class V3EndpointModule extends AbstractModule {
     @Override
     protected void configure() {
         bind(JobManagementServiceImplBase.class).to(DefaultJobManagementServiceGrpc.class);
+        bind(JobChangeNotificationHub.class).asEagerSingleton();
     }
 }
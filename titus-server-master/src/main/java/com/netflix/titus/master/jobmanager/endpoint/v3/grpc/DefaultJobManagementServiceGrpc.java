@@ -23,6 +23,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -40,7 +41,6 @@ import com.netflix.titus.api.jobmanager.service.JobManagerException;
 import com.netflix.titus.api.jobmanager.service.V3JobOperations;
 import com.netflix.titus.api.jobmanager.service.V3JobOperations.Trigger;
 import com.netflix.titus.api.model.Pagination;
-import com.netflix.titus.api.model.PaginationUtil;
 import com.netflix.titus.api.model.ResourceDimension;
 import com.netflix.titus.api.model.Tier;
 import com.netflix.titus.api.service.TitusServiceException;
@@ -48,8 +48,7 @@ import com.netflix.titus.common.model.sanitizer.EntitySanitizer;
 import com.netflix.titus.common.model.validator.ValidationError;
 import com.netflix.titus.common.runtime.TitusRuntime;
 import com.netflix.titus.common.util.CollectionsExt;
-import com.netflix.titus.common.util.ProtobufExt;
-import com.netflix.titus.common.util.rx.ObservableExt;
+import com.netflix.titus.common.util.ProtobufProjection;
 import com.netflix.titus.common.util.tuple.Pair;
 import com.netflix.titus.grpc.protogen.Job;
 import com.netflix.titus.grpc.protogen.JobAttributesDeleteRequest;
@@ -90,7 +89,6 @@ import com.netflix.titus.runtime.endpoint.metadata.CallMetadataUtils;
 import com.netflix.titus.runtime.endpoint.v3.grpc.V3GrpcModelConverters;
 import com.netflix.titus.runtime.endpoint.v3.grpc.query.V3JobQueryCriteriaEvaluator;
 import com.netflix.titus.runtime.endpoint.v3.grpc.query.V3TaskQueryCriteriaEvaluator;
-import com.netflix.titus.runtime.jobmanager.JobManagerCursors;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.stub.ServerCallStreamObserver;
@@ -99,7 +97,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Mono;
 import rx.Observable;
-import rx.Subscription;
+import rx.schedulers.Schedulers;
 
 import static com.netflix.titus.api.jobmanager.model.job.sanitizer.JobSanitizerBuilder.JOB_STRICT_SANITIZER;
 import static com.netflix.titus.runtime.jobmanager.gateway.JobServiceGateway.JOB_MINIMUM_FIELD_SET;
@@ -116,10 +114,6 @@ public class DefaultJobManagementServiceGrpc extends JobManagementServiceGrpc.Jo
 
     private static final Logger logger = LoggerFactory.getLogger(DefaultJobManagementServiceGrpc.class);
 
-    private static final JobChangeNotification SNAPSHOT_END_MARKER = JobChangeNotification.newBuilder()
-            .setSnapshotEnd(JobChangeNotification.SnapshotEnd.newBuilder())
-            .build();
-
     private final GrpcEndpointConfiguration configuration;
     private final AgentManagementService agentManagementService;
     private final ApplicationSlaManagementService capacityGroupService;
@@ -130,6 +124,8 @@ public class DefaultJobManagementServiceGrpc extends JobManagementServiceGrpc.Jo
     private final CallMetadataResolver callMetadataResolver;
     private final CellDecorator cellDecorator;
     private final AuthorizationService authorizationService;
+    private final JobChangeNotificationHub notificationHub;
+    private final JobStreamMetrics streamMetrics;
     private final TitusRuntime titusRuntime;
 
     @Inject
@@ -143,6 +139,7 @@ public class DefaultJobManagementServiceGrpc extends JobManagementServiceGrpc.Jo
                                            CallMetadataResolver callMetadataResolver,
                                            CellInfoResolver cellInfoResolver,
                                            AuthorizationService authorizationService,
+                                           JobChangeNotificationHub notificationHub,
                                            TitusRuntime titusRuntime) {
         this.configuration = configuration;
         this.agentManagementService = agentManagementService;
@@ -154,6 +151,8 @@ public class DefaultJobManagementServiceGrpc extends JobManagementServiceGrpc.Jo
         this.callMetadataResolver = callMetadataResolver;
         this.cellDecorator = new CellDecorator(cellInfoResolver::getCellName);
         this.authorizationService = authorizationService;
+        this.notificationHub = notificationHub;
+        this.streamMetrics = new JobStreamMetrics(configuration, titusRuntime.getRegistry());
         this.titusRuntime = titusRuntime;
     }
 
@@ -219,30 +218,20 @@ public class DefaultJobManagementServiceGrpc extends JobManagementServiceGrpc.Jo
         }
 
         try {
-            // We need to find all jobs to get the total number of them.
-            List<com.netflix.titus.api.jobmanager.model.job.Job<?>> allFilteredJobs = jobOperations.findJobs(
+            Pair<List<com.netflix.titus.api.jobmanager.model.job.Job<?>>, Pagination> queryResult = jobOperations.findJobs(
                     new V3JobQueryCriteriaEvaluator(toJobQueryCriteria(jobQuery), titusRuntime),
-                    0,
-                    Integer.MAX_VALUE / 2
-            );
-
-            Pair<List<com.netflix.titus.api.jobmanager.model.job.Job<?>>, Pagination> queryResult = PaginationUtil.takePageWithCursor(
-                    toPage(jobQuery.getPage()),
-                    allFilteredJobs,
-                    JobManagerCursors.coreJobCursorOrderComparator(),
-                    JobManagerCursors::coreJobIndexOf,
-                    JobManagerCursors::newCoreCursorFrom
+                    toPage(jobQuery.getPage())
             );
-            List<Job> grpcJobs = queryResult.getLeft().stream().map(V3GrpcModelConverters::toGrpcJob).collect(Collectors.toList());
-
-            JobQueryResult grpcQueryResult;
+            List<Job> grpcJobs;
             if (jobQuery.getFieldsList().isEmpty()) {
-                grpcQueryResult = toJobQueryResult(grpcJobs, queryResult.getRight());
+                grpcJobs = queryResult.getLeft().stream().map(V3GrpcModelConverters::toGrpcJob).collect(Collectors.toList());
             } else {
                 Set<String> fields = new HashSet<>(jobQuery.getFieldsList());
                 fields.addAll(JOB_MINIMUM_FIELD_SET);
-                grpcQueryResult = toJobQueryResult(grpcJobs.stream().map(j -> ProtobufExt.copy(j, fields)).collect(Collectors.toList()), queryResult.getRight());
+                ProtobufProjection projection = ProtobufProjection.of(Job.getDescriptor(), fields);
+                grpcJobs = queryResult.getLeft().stream().map(j -> V3GrpcModelConverters.toGrpcJob(j, projection)).collect(Collectors.toList());
             }
+            JobQueryResult grpcQueryResult = toJobQueryResult(grpcJobs, queryResult.getRight());
 
             responseObserver.onNext(grpcQueryResult);
             responseObserver.onCompleted();
@@ -276,31 +265,21 @@ public class DefaultJobManagementServiceGrpc extends JobManagementServiceGrpc.Jo
         }
 
         try {
-            // We need to find all tasks to get the total number of them.
-            List<com.netflix.titus.api.jobmanager.model.job.Task> allFilteredTasks = jobOperations.findTasks(
+            Pair<List<com.netflix.titus.api.jobmanager.model.job.Task>, Pagination> queryResult = jobOperations.findTasks(
                     new V3TaskQueryCriteriaEvaluator(toJobQueryCriteria(taskQuery), titusRuntime),
-                    0,
-                    Integer.MAX_VALUE / 2
-            ).stream().map(Pair::getRight).collect(Collectors.toList());
-
-            Pair<List<com.netflix.titus.api.jobmanager.model.job.Task>, Pagination> queryResult = PaginationUtil.takePageWithCursor(
-                    toPage(taskQuery.getPage()),
-                    allFilteredTasks,
-                    JobManagerCursors.coreTaskCursorOrderComparator(),
-                    JobManagerCursors::coreTaskIndexOf,
-                    JobManagerCursors::newCoreCursorFrom
+                    toPage(taskQuery.getPage())
             );
 
-            List<Task> grpcTasks = queryResult.getLeft().stream().map(t -> V3GrpcModelConverters.toGrpcTask(t, logStorageInfo)).collect(Collectors.toList());
-
-            TaskQueryResult grpcQueryResult;
+            List<Task> grpcTasks;
             if (taskQuery.getFieldsList().isEmpty()) {
-                grpcQueryResult = toTaskQueryResult(grpcTasks, queryResult.getRight());
+                grpcTasks = queryResult.getLeft().stream().map(t -> V3GrpcModelConverters.toGrpcTask(t, logStorageInfo)).collect(Collectors.toList());
             } else {
                 Set<String> fields = new HashSet<>(taskQuery.getFieldsList());
                 fields.addAll(TASK_MINIMUM_FIELD_SET);
-                grpcQueryResult = toTaskQueryResult(grpcTasks.stream().map(t -> ProtobufExt.copy(t, fields)).collect(Collectors.toList()), queryResult.getRight());
+                ProtobufProjection projection = ProtobufProjection.of(Task.getDescriptor(), fields);
+                grpcTasks = queryResult.getLeft().stream().map(t -> V3GrpcModelConverters.toGrpcTask(t, logStorageInfo, projection)).collect(Collectors.toList());
             }
+            TaskQueryResult grpcQueryResult = toTaskQueryResult(grpcTasks, queryResult.getRight());
 
             responseObserver.onNext(grpcQueryResult);
             responseObserver.onCompleted();
@@ -571,45 +550,34 @@ public class DefaultJobManagementServiceGrpc extends JobManagementServiceGrpc.Jo
         });
     }
 
+    /**
+     * Streams a snapshot of the jobs and tasks matching the query, followed by a snapshot end marker and the live
+     * updates. If the subscriber falls behind, and the 'resnapshot' lagging subscriber policy is configured, a new
+     * snapshot and snapshot end marker are sent. Jobs and tasks sent before, which are not in the new snapshot, are
+     * sent ahead of it with the Finished state, and a reason message starting with "Not found when the stream snapshot
+     * was refreshed". They may still exist, as they are not in the snapshot also if they no longer match the query.
+     */
     @Override
     public void observeJobs(ObserveJobsQuery query, StreamObserver<JobChangeNotification> responseObserver) {
         JobQueryCriteria<TaskStatus.TaskState, JobDescriptor.JobSpecCase> criteria = toJobQueryCriteria(query);
         V3JobQueryCriteriaEvaluator jobsPredicate = new V3JobQueryCriteriaEvaluator(criteria, titusRuntime);
         V3TaskQueryCriteriaEvaluator tasksPredicate = new V3TaskQueryCriteriaEvaluator(criteria, titusRuntime);
 
-        Observable<JobChangeNotification> eventStream = jobOperations.observeJobs(jobsPredicate, tasksPredicate)
-                .map(event -> V3GrpcModelConverters.toGrpcJobChangeNotification(event, logStorageInfo))
-                .compose(ObservableExt.head(() -> {
-                    List<JobChangeNotification> snapshot = createJobsSnapshot(jobsPredicate, tasksPredicate);
-                    snapshot.add(SNAPSHOT_END_MARKER);
-                    return snapshot;
-                }))
+        Observable<JobChangeNotification> eventStream = notificationHub.observeJobs(jobsPredicate, tasksPredicate)
                 .doOnError(e -> logger.error("Unexpected error in jobs event stream", e));
 
-        Subscription subscription = eventStream.subscribe(
-                responseObserver::onNext,
-                e -> responseObserver.onError(
-                        new StatusRuntimeException(Status.INTERNAL
-                                .withDescription("All jobs monitoring stream terminated with an error")
-                                .withCause(e))
-                ),
-                responseObserver::onCompleted
-        );
-
-        ServerCallStreamObserver<JobChangeNotification> serverObserver = (ServerCallStreamObserver<JobChangeNotification>) responseObserver;
-        serverObserver.setOnCancelHandler(subscription::unsubscribe);
+        newNotificationStream(
+                responseObserver,
+                () -> notificationHub.createJobsSnapshot(jobsPredicate, tasksPredicate),
+                "All jobs monitoring stream terminated with an error"
+        ).start(eventStream);
     }
 
     @Override
     public void observeJob(JobId request, StreamObserver<JobChangeNotification> responseObserver) {
         String jobId = request.getId();
         Observable<JobChangeNotification> eventStream = jobOperations.observeJob(jobId)
-                .map(event -> V3GrpcModelConverters.toGrpcJobChangeNotification(event, logStorageInfo))
-                .compose(ObservableExt.head(() -> {
-                    List<JobChangeNotification> snapshot = createJobSnapshot(jobId);
-                    snapshot.add(SNAPSHOT_END_MARKER);
-                    return snapshot;
-                }))
+                .map(notificationHub::toNotification)
                 .doOnError(e -> {
                     if (!JobManagerException.isExpected(e)) {
                         logger.error("Unexpected error in job {} event stream", jobId, e);
@@ -618,18 +586,26 @@ public class DefaultJobManagementServiceGrpc extends JobManagementServiceGrpc.Jo
                     }
                 });
 
-        Subscription subscription = eventStream.subscribe(
-                responseObserver::onNext,
-                e -> responseObserver.onError(
-                        new StatusRuntimeException(Status.INTERNAL
-                                .withDescription(jobId + " job monitoring stream terminated with an error")
-                                .withCause(e))
-                ),
-                responseObserver::onCompleted
+        newNotificationStream(
+                responseObserver,
+                () -> createJobSnapshot(jobId),
+                jobId + " job monitoring stream terminated with an error"
+        ).start(eventStream);
+    }
+
+    private JobChangeNotificationStream newNotificationStream(StreamObserver<JobChangeNotification> responseObserver,
+                                                              Supplier<List<JobChangeNotification>> snapshotSupplier,
+                                                              String streamDescription) {
+        String clientId = callMetadataResolver.resolve().map(CallMetadata::getCallerId).orElse(null);
+        return new JobChangeNotificationStream(
+                (ServerCallStreamObserver<JobChangeNotification>) responseObserver,
+                snapshotSupplier,
+                streamDescription,
+                configuration.getObserveJobsMaxQueueSize(),
+                JobChangeNotificationStream.LaggingSubscriberPolicy.parse(configuration.getObserveJobsLaggingSubscriberPolicy()),
+                streamMetrics.getClientMetrics(clientId),
+                Schedulers.computation()
         );
-
-        ServerCallStreamObserver<JobChangeNotification> serverObserver = (ServerCallStreamObserver<JobChangeNotification>) responseObserver;
-        serverObserver.setOnCancelHandler(subscription::unsubscribe);
     }
 
     private Mono<String> authorizeJobCreate(CallMetadata callMetadata, com.netflix.titus.api.jobmanager.model.job.JobDescriptor<?> jobDescriptor) {
@@ -710,46 +686,15 @@ public class DefaultJobManagementServiceGrpc extends JobManagementServiceGrpc.Jo
         return tierResourceLimits.stream().noneMatch(limit -> ResourceDimensions.isBigger(limit, requestedResources));
     }
 
-    private List<JobChangeNotification> createJobsSnapshot(
-            Predicate<Pair<com.netflix.titus.api.jobmanager.model.job.Job<?>, List<com.netflix.titus.api.jobmanager.model.job.Task>>> jobsPredicate,
-            Predicate<Pair<com.netflix.titus.api.jobmanager.model.job.Job<?>, com.netflix.titus.api.jobmanager.model.job.Task>> tasksPredicate) {
-        List<JobChangeNotification> snapshot = new ArrayList<>();
-
-        List<com.netflix.titus.api.jobmanager.model.job.Job<?>> coreJobs =
-                jobOperations.findJobs(jobsPredicate, 0, Integer.MAX_VALUE / 2);
-        coreJobs.forEach(coreJob -> snapshot.add(toJobChangeNotification(coreJob)));
-
-        List<Pair<com.netflix.titus.api.jobmanager.model.job.Job<?>, com.netflix.titus.api.jobmanager.model.job.Task>> coreTasks =
-                jobOperations.findTasks(tasksPredicate, 0, Integer.MAX_VALUE / 2);
-        coreTasks.forEach(task -> snapshot.add(toJobChangeNotification(task.getRight())));
-
-        return snapshot;
-    }
-
     private List<JobChangeNotification> createJobSnapshot(String jobId) {
         List<JobChangeNotification> snapshot = new ArrayList<>();
 
         com.netflix.titus.api.jobmanager.model.job.Job<?> coreJob = jobOperations.getJob(jobId).orElseThrow(() -> new IllegalArgumentException("Job with id " + jobId + " not found"));
-        snapshot.add(toJobChangeNotification(coreJob));
+        snapshot.add(notificationHub.toNotification(coreJob));
 
         List<com.netflix.titus.api.jobmanager.model.job.Task> coreTasks = jobOperations.getTasks(jobId);
-        coreTasks.forEach(task -> snapshot.add(toJobChangeNotification(task)));
+        coreTasks.forEach(task -> snapshot.add(notificationHub.toNotification(task)));
 
         return snapshot;
     }
-
-    private JobChangeNotification toJobChangeNotification(com.netflix.titus.api.jobmanager.model.job.Job<?> coreJob) {
-        Job grpcJob = V3GrpcModelConverters.toGrpcJob(coreJob);
-        return JobChangeNotification.newBuilder()
-                .setJobUpdate(JobChangeNotification.JobUpdate.newBuilder().setJob(grpcJob))
-                .build();
-    }
-
-    private JobChangeNotification toJobChangeNotification(com.netflix.titus.api.jobmanager.model.job.Task coreTask) {
-        com.netflix.titus.grpc.protogen.Task grpcTask = V3GrpcModelConverters.toGrpcTask(coreTask, logStorageInfo);
-        return JobChangeNotification.newBuilder()
-                .setTaskUpdate(JobChangeNotification.TaskUpdate.newBuilder().setTask(grpcTask))
-                .build();
-    }
-
 }
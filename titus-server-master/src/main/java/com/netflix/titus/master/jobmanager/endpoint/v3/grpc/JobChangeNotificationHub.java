@@ -0,0 +1,293 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.jobmanager.endpoint.v3.grpc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.netflix.spectator.api.Counter;
+import com.netflix.spectator.api.Registry;
+import com.netflix.spectator.api.patterns.PolledMeter;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.event.JobManagerEvent;
+import com.netflix.titus.api.jobmanager.model.job.event.JobUpdateEvent;
+import com.netflix.titus.api.jobmanager.model.job.event.TaskUpdateEvent;
+import com.netflix.titus.api.jobmanager.service.V3JobOperations;
+import com.netflix.titus.common.runtime.TitusRuntime;
+import com.netflix.titus.common.util.guice.annotation.Activator;
+import com.netflix.titus.common.util.rx.ObservableExt;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.master.MetricConstants;
+import com.netflix.titus.master.endpoint.grpc.GrpcEndpointConfiguration;
+import com.netflix.titus.runtime.endpoint.common.LogStorageInfo;
+import com.netflix.titus.runtime.endpoint.v3.grpc.V3GrpcModelConverters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Completable;
+import rx.Observable;
+import rx.Subscription;
+import rx.schedulers.Schedulers;
+
+/**
+ * Shared source of {@link JobChangeNotification}s for the job event streams. The job manager event stream is
+ * subscribed to once, irrespective of the number of gRPC subscribers, and each event is converted to its protobuf
+ * representation at most once. Subscriber specific filters are applied to the core model of the shared events.
+ * <p>
+ * Notifications of jobs and tasks are cached, and reused by both the event streams and the snapshots sent to
+ * new subscribers. A cached notification is used only if it was created from the very same (immutable) entity
+ * instance that is held by the job manager, so the snapshots are never stale. The cache is periodically refreshed
+ * to evict the removed entities, and to create the notifications of entities modified since the last refresh.
+ */
+@Singleton
+public class JobChangeNotificationHub {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobChangeNotificationHub.class);
+
+    private static final String ROOT_METRIC_NAME = MetricConstants.METRIC_ROOT + "grpc.jobChangeNotificationHub.";
+
+    private final GrpcEndpointConfiguration configuration;
+    private final V3JobOperations jobOperations;
+    private final LogStorageInfo<Task> logStorageInfo;
+    private final Registry registry;
+
+    private final Observable<EventItem> sharedEvents;
+
+    private final Map<String, CachedNotification> jobNotifications = new ConcurrentHashMap<>();
+    private final Map<String, CachedNotification> taskNotifications = new ConcurrentHashMap<>();
+
+    private final Counter conversions;
+    private final Counter cacheHits;
+
+    private Subscription refreshSubscription;
+
+    @Inject
+    public JobChangeNotificationHub(GrpcEndpointConfiguration configuration,
+                                    V3JobOperations jobOperations,
+                                    LogStorageInfo<Task> logStorageInfo,
+                                    TitusRuntime titusRuntime) {
+        this.configuration = configuration;
+        this.jobOperations = jobOperations;
+        this.logStorageInfo = logStorageInfo;
+        this.registry = titusRuntime.getRegistry();
+
+        this.sharedEvents = Observable.defer(() -> {
+            JobTasksCapture jobTasksCapture = new JobTasksCapture();
+            return jobOperations.observeJobs(jobTasksCapture, jobAndTask -> true)
+                    .map(event -> new EventItem(event, jobTasksCapture.take(event)));
+        }).share();
+
+        this.conversions = registry.counter(ROOT_METRIC_NAME + "conversions");
+        this.cacheHits = registry.counter(ROOT_METRIC_NAME + "cacheHits");
+        PolledMeter.using(registry).withName(ROOT_METRIC_NAME + "cachedJobs").monitorSize(jobNotifications);
+        PolledMeter.using(registry).withName(ROOT_METRIC_NAME + "cachedTasks").monitorSize(taskNotifications);
+    }
+
+    @Activator
+    public void enterActiveMode() {
+        long intervalMs = Math.max(1_000, configuration.getJobChangeNotificationCacheRefreshIntervalMs());
+        this.refreshSubscription = ObservableExt.schedule(
+                ROOT_METRIC_NAME + "scheduler", registry, "JobChangeNotificationCacheRefreshAction",
+                Completable.fromAction(this::refreshCache), intervalMs, intervalMs, TimeUnit.MILLISECONDS, Schedulers.computation()
+        ).subscribe(result ->
+                result.ifPresent(error -> logger.warn("Job change notification cache refresh error", error))
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ObservableExt.safeUnsubscribe(refreshSubscription);
+    }
+
+    /**
+     * Returns a stream of notifications for the job manager events matching the given predicates.
+     */
+    public Observable<JobChangeNotification> observeJobs(Predicate<Pair<Job<?>, List<Task>>> jobsPredicate,
+                                                         Predicate<Pair<Job<?>, Task>> tasksPredicate) {
+        return sharedEvents
+                .filter(item -> item.matches(jobsPredicate, tasksPredicate))
+                .map(EventItem::getNotification);
+    }
+
+    /**
+     * Returns notifications of all jobs and tasks matching the given predicates.
+     */
+    public List<JobChangeNotification> createJobsSnapshot(Predicate<Pair<Job<?>, List<Task>>> jobsPredicate,
+                                                          Predicate<Pair<Job<?>, Task>> tasksPredicate) {
+        List<JobChangeNotification> snapshot = new ArrayList<>();
+        jobOperations.findJobs(jobsPredicate, 0, Integer.MAX_VALUE / 2).forEach(job -> snapshot.add(toNotification(job)));
+        jobOperations.findTasks(tasksPredicate, 0, Integer.MAX_VALUE / 2).forEach(jobAndTask -> snapshot.add(toNotification(jobAndTask.getRight())));
+        return snapshot;
+    }
+
+    public JobChangeNotification toNotification(JobManagerEvent<?> event) {
+        if (event instanceof JobUpdateEvent) {
+            return toNotification(((JobUpdateEvent) event).getCurrent());
+        }
+        TaskUpdateEvent taskUpdateEvent = (TaskUpdateEvent) event;
+        if (taskUpdateEvent.isMovedFromAnotherJob()) {
+            // Carries an extra flag, so it is different from the cached task notification
+            conversions.increment();
+            return V3GrpcModelConverters.toGrpcJobChangeNotification(event, logStorageInfo);
+        }
+        return toNotification(taskUpdateEvent.getCurrent());
+    }
+
+    public JobChangeNotification toNotification(Job<?> job) {
+        return getOrConvert(jobNotifications, job.getId(), job, this::convertJob);
+    }
+
+    public JobChangeNotification toNotification(Task task) {
+        return getOrConvert(taskNotifications, task.getId(), task, this::convertTask);
+    }
+
+    private <E> JobChangeNotification getOrConvert(Map<String, CachedNotification> cache, String id, E entity, Function<E, JobChangeNotification> converter) {
+        if (!configuration.isJobChangeNotificationCacheEnabled()) {
+            return converter.apply(entity);
+        }
+        CachedNotification cached = cache.get(id);
+        if (cached != null && cached.entity == entity) {
+            cacheHits.increment();
+            return cached.notification;
+        }
+        JobChangeNotification notification = converter.apply(entity);
+        cache.put(id, new CachedNotification(entity, notification));
+        return notification;
+    }
+
+    private JobChangeNotification convertJob(Job<?> job) {
+        conversions.increment();
+        return JobChangeNotification.newBuilder()
+                .setJobUpdate(JobChangeNotification.JobUpdate.newBuilder().setJob(V3GrpcModelConverters.toGrpcJob(job)))
+                .build();
+    }
+
+    private JobChangeNotification convertTask(Task task) {
+        conversions.increment();
+        return JobChangeNotification.newBuilder()
+                .setTaskUpdate(JobChangeNotification.TaskUpdate.newBuilder().setTask(V3GrpcModelConverters.toGrpcTask(task, logStorageInfo)))
+                .build();
+    }
+
+    void refreshCache() {
+        if (!configuration.isJobChangeNotificationCacheEnabled()) {
+            jobNotifications.clear();
+            taskNotifications.clear();
+            return;
+        }
+
+        Set<String> jobIds = new HashSet<>();
+        Set<String> taskIds = new HashSet<>();
+        for (Pair<Job, List<Task>> jobAndTasks : jobOperations.getJobsAndTasks()) {
+            Job<?> job = jobAndTasks.getLeft();
+            jobIds.add(job.getId());
+            toNotification(job);
+            for (Task task : jobAndTasks.getRight()) {
+                taskIds.add(task.getId());
+                toNotification(task);
+            }
+        }
+        jobNotifications.keySet().retainAll(jobIds);
+        taskNotifications.keySet().retainAll(taskIds);
+    }
+
+    private static class CachedNotification {
+
+        private final Object entity;
+        private final JobChangeNotification notification;
+
+        private CachedNotification(Object entity, JobChangeNotification notification) {
+            this.entity = entity;
+            this.notification = notification;
+        }
+    }
+
+    /**
+     * Job predicate accepting all jobs, which remembers the last job and its tasks it was evaluated for. The job manager
+     * evaluates the predicate against the reconciler event model just before the job event is emitted, so the captured
+     * task list is consistent with the event, and independent from the job manager state at the time the subscriber
+     * filters are applied.
+     */
+    private static class JobTasksCapture implements Predicate<Pair<Job<?>, List<Task>>> {
+
+        private Pair<Job<?>, List<Task>> last;
+
+        @Override
+        public boolean test(Pair<Job<?>, List<Task>> jobAndTasks) {
+            this.last = jobAndTasks;
+            return true;
+        }
+
+        private Pair<Job<?>, List<Task>> take(JobManagerEvent<?> event) {
+            Pair<Job<?>, List<Task>> result = last;
+            this.last = null;
+            return result != null && result.getLeft() == event.getCurrent() ? result : null;
+        }
+    }
+
+    /**
+     * A shared event, with its notification created on the first access. Events are emitted to all subscribers
+     * from a single thread, so no synchronization is needed.
+     */
+    private class EventItem {
+
+        private final JobManagerEvent<?> event;
+
+        private JobChangeNotification notification;
+        private Pair<Job<?>, List<Task>> jobAndTasks;
+
+        private EventItem(JobManagerEvent<?> event, Pair<Job<?>, List<Task>> jobAndTasks) {
+            this.event = event;
+            this.jobAndTasks = jobAndTasks;
+        }
+
+        private boolean matches(Predicate<Pair<Job<?>, List<Task>>> jobsPredicate, Predicate<Pair<Job<?>, Task>> tasksPredicate) {
+            if (event instanceof TaskUpdateEvent) {
+                TaskUpdateEvent taskUpdateEvent = (TaskUpdateEvent) event;
+                return tasksPredicate.test(Pair.of(taskUpdateEvent.getCurrentJob(), taskUpdateEvent.getCurrentTask()));
+            }
+            return jobsPredicate.test(getJobAndTasks());
+        }
+
+        private Pair<Job<?>, List<Task>> getJobAndTasks() {
+            if (jobAndTasks == null) {
+                // The job manager did not evaluate the job predicate for this event, so its tasks are unknown
+                jobAndTasks = Pair.of(((JobUpdateEvent) event).getCurrent(), Collections.emptyList());
+            }
+            return jobAndTasks;
+        }
+
+        private JobChangeNotification getNotification() {
+            if (notification == null) {
+                notification = toNotification(event);
+            }
+            return notification;
+        }
+    }
+}
@@ -0,0 +1,458 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.jobmanager.endpoint.v3.grpc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.netflix.titus.grpc.protogen.Job;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.grpc.protogen.JobStatus;
+import com.netflix.titus.grpc.protogen.Task;
+import com.netflix.titus.grpc.protogen.TaskStatus;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import rx.Observable;
+import rx.Observer;
+import rx.Scheduler;
+import rx.subscriptions.CompositeSubscription;
+
+/**
+ * Flow controlled job notification stream. Notifications are queued, and written to the gRPC stream only when
+ * the transport is ready ({@link ServerCallStreamObserver#isReady()}), so a slow client does not cause unbounded
+ * buffering in the transport layer. A queued task update is replaced by a newer update of the same task, unless
+ * a job update or a task move notification was queued after it, so the relative order of the notifications that
+ * are sent is preserved. If the queue is full, the subscriber is either disconnected, or its queue is dropped and
+ * replaced with a new snapshot, depending on the {@link LaggingSubscriberPolicy}.
+ * <p>
+ * The snapshot is not counted against the queue limit. Live events received while the snapshot is built or sent
+ * are queued up to the queue limit plus the snapshot size, so a subscriber is not found lagging just because its
+ * snapshot is larger than the queue. The regular limit applies to the events received after the snapshot is sent.
+ * <p>
+ * The snapshot is sent ahead of the queued live events, and is created only after the live event stream is
+ * subscribed to, so no update is lost. It is built on the provided scheduler, not on the thread delivering the
+ * live events. When a new snapshot replaces the dropped queue, jobs and tasks sent to the client before, which are
+ * not in the new snapshot, are sent first as finished, as their (dropped) final notifications would never reach
+ * the client otherwise. This includes entities that still exist, but no longer match the subscriber query.
+ */
+class JobChangeNotificationStream implements Observer<JobChangeNotification> {
+
+    static final JobChangeNotification SNAPSHOT_END_MARKER = JobChangeNotification.newBuilder()
+            .setSnapshotEnd(JobChangeNotification.SnapshotEnd.newBuilder())
+            .build();
+
+    private static final String NOT_IN_SNAPSHOT_MESSAGE = "Not found when the stream snapshot was refreshed (finished, or no longer matching the query)";
+
+    enum LaggingSubscriberPolicy {
+        Disconnect,
+        Resnapshot;
+
+        static LaggingSubscriberPolicy parse(String value) {
+            if (value != null && value.trim().equalsIgnoreCase("resnapshot")) {
+                return Resnapshot;
+            }
+            return Disconnect;
+        }
+    }
+
+    private final ServerCallStreamObserver<JobChangeNotification> responseObserver;
+    private final Supplier<List<JobChangeNotification>> snapshotSupplier;
+    private final String streamDescription;
+    private final int maxQueueSize;
+    private final LaggingSubscriberPolicy laggingSubscriberPolicy;
+    private final JobStreamMetrics.ClientMetrics metrics;
+    private final Scheduler.Worker snapshotWorker;
+
+    private final CompositeSubscription subscription = new CompositeSubscription();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final Object lock = new Object();
+
+    // Guarded by lock
+    private final ArrayDeque<Slot> queue = new ArrayDeque<>();
+    private final Map<String, Slot> queuedTaskUpdates = new HashMap<>();
+    private int snapshotPhaseSlots;
+    private boolean snapshotRequested = true;
+    private boolean snapshotInProgress;
+    private Iterator<JobChangeNotification> snapshotIterator;
+    private int snapshotSize;
+    private final Map<String, JobChangeNotification> sentJobs = new HashMap<>();
+    private final Map<String, JobChangeNotification> sentTasks = new HashMap<>();
+    private Throwable pendingFailure;
+    private Throwable upstreamError;
+    private boolean upstreamCompleted;
+
+    // Accessed only from the drain loop
+    private boolean terminated;
+
+    JobChangeNotificationStream(ServerCallStreamObserver<JobChangeNotification> responseObserver,
+                                Supplier<List<JobChangeNotification>> snapshotSupplier,
+                                String streamDescription,
+                                int maxQueueSize,
+                                LaggingSubscriberPolicy laggingSubscriberPolicy,
+                                JobStreamMetrics.ClientMetrics metrics,
+                                Scheduler snapshotScheduler) {
+        this.responseObserver = responseObserver;
+        this.snapshotSupplier = snapshotSupplier;
+        this.streamDescription = streamDescription;
+        this.maxQueueSize = Math.max(1, maxQueueSize);
+        this.laggingSubscriberPolicy = laggingSubscriberPolicy;
+        this.metrics = metrics;
+        this.snapshotWorker = snapshotScheduler.createWorker();
+        subscription.add(snapshotWorker);
+    }
+
+    /**
+     * Subscribes to the live event stream, and starts streaming the snapshot. Must be called from the gRPC service
+     * method, as the gRPC handlers cannot be installed later.
+     */
+    void start(Observable<JobChangeNotification> events) {
+        responseObserver.setOnReadyHandler(this::drain);
+        responseObserver.setOnCancelHandler(this::close);
+        subscription.add(events.subscribe(this));
+        drain();
+    }
+
+    @Override
+    public void onNext(JobChangeNotification notification) {
+        synchronized (lock) {
+            if (pendingFailure != null || upstreamError != null || upstreamCompleted) {
+                return;
+            }
+
+            String taskId = coalescingKey(notification);
+            if (taskId == null) {
+                // Updates queued before this notification must not be moved after it
+                queuedTaskUpdates.clear();
+            } else {
+                Slot queued = queuedTaskUpdates.get(taskId);
+                if (queued != null) {
+                    queued.notification = notification;
+                    metrics.coalesced();
+                    return;
+                }
+            }
+
+            boolean snapshotPhase = isSnapshotPhase();
+            boolean full = snapshotPhase
+                    ? snapshotPhaseSlots >= maxQueueSize + snapshotSize
+                    : queue.size() - snapshotPhaseSlots >= maxQueueSize;
+            if (full) {
+                onQueueFull();
+            } else {
+                Slot slot = new Slot(taskId, notification, snapshotPhase);
+                queue.add(slot);
+                if (taskId != null) {
+                    queuedTaskUpdates.put(taskId, slot);
+                }
+                if (snapshotPhase) {
+                    snapshotPhaseSlots++;
+                }
+                metrics.queueDepthChanged(1);
+            }
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        synchronized (lock) {
+            upstreamError = error;
+        }
+        drain();
+    }
+
+    @Override
+    public void onCompleted() {
+        synchronized (lock) {
+            upstreamCompleted = true;
+        }
+        drain();
+    }
+
+    /**
+     * True, if the snapshot is requested, being built, or not sent completely yet.
+     */
+    private boolean isSnapshotPhase() {
+        return snapshotRequested || snapshotInProgress || (snapshotIterator != null && snapshotIterator.hasNext());
+    }
+
+    private void onQueueFull() {
+        // The notification that did not fit into the queue is dropped as well
+        metrics.dropped(queue.size() + 1);
+        clearQueue();
+        if (laggingSubscriberPolicy == LaggingSubscriberPolicy.Resnapshot) {
+            metrics.resnapshot();
+            snapshotIterator = null;
+            snapshotSize = 0;
+            snapshotRequested = true;
+        } else {
+            metrics.disconnected();
+            pendingFailure = new StatusRuntimeException(Status.RESOURCE_EXHAUSTED.withDescription(
+                    "Subscriber is too slow; more than " + maxQueueSize + " notifications queued"
+            ));
+        }
+    }
+
+    private void clearQueue() {
+        metrics.queueDepthChanged(-queue.size());
+        queue.clear();
+        queuedTaskUpdates.clear();
+        snapshotPhaseSlots = 0;
+    }
+
+    /**
+     * Writes to the gRPC stream as many notifications as possible. The loop is entered by one thread at a time, and
+     * a concurrent request to drain the queue makes the active thread run one more iteration.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            drainLoop();
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drainLoop() {
+        while (!terminated) {
+            if (closed.get()) {
+                // Cancelled by the client
+                terminated = true;
+                return;
+            }
+
+            JobChangeNotification next = null;
+            Throwable failure = null;
+            boolean createSnapshot = false;
+            boolean complete = false;
+
+            synchronized (lock) {
+                if (pendingFailure != null) {
+                    failure = pendingFailure;
+                } else if (snapshotInProgress) {
+                    // Resumed when the snapshot is ready
+                    return;
+                } else if (snapshotRequested) {
+                    snapshotRequested = false;
+                    snapshotInProgress = true;
+                    createSnapshot = true;
+                } else if (!responseObserver.isReady()) {
+                    // Resumed by the onReady handler
+                    return;
+                } else if (snapshotIterator != null && snapshotIterator.hasNext()) {
+                    next = snapshotIterator.next();
+                    recordSent(next);
+                } else if (!queue.isEmpty()) {
+                    Slot slot = queue.poll();
+                    if (slot.taskId != null) {
+                        queuedTaskUpdates.remove(slot.taskId);
+                    }
+                    if (slot.snapshotPhase) {
+                        snapshotPhaseSlots--;
+                    }
+                    metrics.queueDepthChanged(-1);
+                    next = slot.notification;
+                    recordSent(next);
+                } else if (upstreamError != null) {
+                    failure = new StatusRuntimeException(Status.INTERNAL.withDescription(streamDescription).withCause(upstreamError));
+                } else if (upstreamCompleted) {
+                    complete = true;
+                } else {
+                    return;
+                }
+            }
+
+            if (createSnapshot) {
+                snapshotWorker.schedule(this::createSnapshot);
+            } else if (failure != null) {
+                terminate();
+                responseObserver.onError(failure);
+            } else if (complete) {
+                terminate();
+                responseObserver.onCompleted();
+            } else {
+                responseObserver.onNext(next);
+            }
+        }
+    }
+
+    private void createSnapshot() {
+        List<JobChangeNotification> snapshot = null;
+        Set<String> snapshotIds = null;
+        Throwable error = null;
+        try {
+            snapshot = snapshotSupplier.get();
+            snapshotIds = laggingSubscriberPolicy == LaggingSubscriberPolicy.Resnapshot ? idsOf(snapshot) : Collections.emptySet();
+        } catch (Exception e) {
+            error = e;
+        }
+        synchronized (lock) {
+            snapshotInProgress = false;
+            if (error != null) {
+                pendingFailure = new StatusRuntimeException(Status.INTERNAL.withDescription(streamDescription).withCause(error));
+            } else if (!snapshotRequested) {
+                List<JobChangeNotification> all = new ArrayList<>(finishedNotInSnapshot(snapshotIds));
+                all.addAll(snapshot);
+                all.add(SNAPSHOT_END_MARKER);
+                snapshotIterator = all.iterator();
+                snapshotSize = all.size();
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Keeps the latest notification of each job and task sent to the client, which is not finished. Only needed
+     * when a new snapshot may be sent over the same stream.
+     */
+    private void recordSent(JobChangeNotification notification) {
+        if (laggingSubscriberPolicy != LaggingSubscriberPolicy.Resnapshot) {
+            return;
+        }
+        switch (notification.getNotificationCase()) {
+            case JOBUPDATE:
+                Job job = notification.getJobUpdate().getJob();
+                if (job.getStatus().getState() == JobStatus.JobState.Finished) {
+                    sentJobs.remove(job.getId());
+                } else {
+                    sentJobs.put(job.getId(), notification);
+                }
+                break;
+            case TASKUPDATE:
+                Task task = notification.getTaskUpdate().getTask();
+                if (task.getStatus().getState() == TaskStatus.TaskState.Finished) {
+                    sentTasks.remove(task.getId());
+                } else {
+                    sentTasks.put(task.getId(), notification);
+                }
+                break;
+            default:
+                // Snapshot end marker
+        }
+    }
+
+    /**
+     * Returns finished notifications of the jobs and tasks sent to the client, which are not included in the snapshot.
+     */
+    private List<JobChangeNotification> finishedNotInSnapshot(Set<String> snapshotIds) {
+        if (sentJobs.isEmpty() && sentTasks.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Tasks first, as a job finishes after its tasks
+        List<JobChangeNotification> finished = new ArrayList<>();
+        sentTasks.forEach((taskId, notification) -> {
+            if (!snapshotIds.contains(taskId)) {
+                Task task = notification.getTaskUpdate().getTask();
+                Task finishedTask = task.toBuilder()
+                        .setStatus(task.getStatus().toBuilder()
+                                .setState(TaskStatus.TaskState.Finished)
+                                .setReasonMessage(NOT_IN_SNAPSHOT_MESSAGE)
+                        )
+                        .build();
+                finished.add(JobChangeNotification.newBuilder()
+                        .setTaskUpdate(JobChangeNotification.TaskUpdate.newBuilder().setTask(finishedTask))
+                        .build()
+                );
+            }
+        });
+        sentJobs.forEach((jobId, notification) -> {
+            if (!snapshotIds.contains(jobId)) {
+                Job job = notification.getJobUpdate().getJob();
+                Job finishedJob = job.toBuilder()
+                        .setStatus(job.getStatus().toBuilder()
+                                .setState(JobStatus.JobState.Finished)
+                                .setReasonMessage(NOT_IN_SNAPSHOT_MESSAGE)
+                        )
+                        .build();
+                finished.add(JobChangeNotification.newBuilder()
+                        .setJobUpdate(JobChangeNotification.JobUpdate.newBuilder().setJob(finishedJob))
+                        .build()
+                );
+            }
+        });
+        return finished;
+    }
+
+    private static Set<String> idsOf(List<JobChangeNotification> snapshot) {
+        Set<String> ids = new HashSet<>();
+        for (JobChangeNotification notification : snapshot) {
+            if (notification.hasJobUpdate()) {
+                ids.add(notification.getJobUpdate().getJob().getId());
+            } else if (notification.hasTaskUpdate()) {
+                ids.add(notification.getTaskUpdate().getTask().getId());
+            }
+        }
+        return ids;
+    }
+
+    private void terminate() {
+        terminated = true;
+        close();
+    }
+
+    private void close() {
+        if (closed.getAndSet(true)) {
+            return;
+        }
+        subscription.unsubscribe();
+        synchronized (lock) {
+            clearQueue();
+            snapshotIterator = null;
+            sentJobs.clear();
+            sentTasks.clear();
+        }
+        metrics.streamClosed();
+    }
+
+    private static String coalescingKey(JobChangeNotification notification) {
+        if (notification.getNotificationCase() != JobChangeNotification.NotificationCase.TASKUPDATE) {
+            return null;
+        }
+        JobChangeNotification.TaskUpdate taskUpdate = notification.getTaskUpdate();
+        // Keep the move notification, as it cannot be replaced by a regular task update
+        return taskUpdate.getMovedFromAnotherJob() ? null : taskUpdate.getTask().getId();
+    }
+
+    private static class Slot {
+
+        private final String taskId;
+        private final boolean snapshotPhase;
+        private JobChangeNotification notification;
+
+        private Slot(String taskId, JobChangeNotification notification, boolean snapshotPhase) {
+            this.taskId = taskId;
+            this.snapshotPhase = snapshotPhase;
+            this.notification = notification;
+        }
+    }
+}
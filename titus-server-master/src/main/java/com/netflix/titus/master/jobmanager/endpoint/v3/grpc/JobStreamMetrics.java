@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.jobmanager.endpoint.v3.grpc;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+
+import com.netflix.spectator.api.Counter;
+import com.netflix.spectator.api.Id;
+import com.netflix.spectator.api.Registry;
+import com.netflix.spectator.api.patterns.PolledMeter;
+import com.netflix.titus.common.util.RegExpExt;
+import com.netflix.titus.common.util.StringExt;
+import com.netflix.titus.master.MetricConstants;
+import com.netflix.titus.master.endpoint.grpc.GrpcEndpointConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per client metrics of the job event streams ({@link JobChangeNotificationStream}). Only clients matching
+ * {@link GrpcEndpointConfiguration#getObserveJobsMetricsClientPattern()} are tagged with their own caller id. Other
+ * clients share the 'other' tag, so the number of metrics does not depend on the caller ids sent by the clients.
+ * Metrics of a client are removed when its last stream is closed.
+ */
+class JobStreamMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobStreamMetrics.class);
+
+    private static final String ROOT_METRIC_NAME = MetricConstants.METRIC_ROOT + "grpc.observeJobs.";
+
+    private static final String UNKNOWN_CLIENT = "unknown";
+    private static final String OTHER_CLIENT = "other";
+
+    private final Registry registry;
+    private final Function<String, Matcher> clientMatcher;
+    private final ConcurrentMap<String, ClientMetrics> clientMetrics = new ConcurrentHashMap<>();
+
+    JobStreamMetrics(GrpcEndpointConfiguration configuration, Registry registry) {
+        this.registry = registry;
+        this.clientMatcher = RegExpExt.dynamicMatcher(configuration::getObserveJobsMetricsClientPattern,
+                "observeJobsMetricsClientPattern", 0, logger);
+    }
+
+    /**
+     * Returns metrics of the given client, with a new stream counted as active. {@link ClientMetrics#streamClosed()}
+     * must be called when the stream is closed.
+     */
+    ClientMetrics getClientMetrics(String clientId) {
+        String clientTag = toClientTag(clientId);
+        return clientMetrics.compute(clientTag, (tag, current) -> {
+            ClientMetrics metrics = current == null ? new ClientMetrics(tag) : current;
+            metrics.activeStreams.incrementAndGet();
+            return metrics;
+        });
+    }
+
+    private String toClientTag(String clientId) {
+        if (StringExt.isEmpty(clientId)) {
+            return UNKNOWN_CLIENT;
+        }
+        return clientMatcher.apply(clientId).matches() ? clientId : OTHER_CLIENT;
+    }
+
+    class ClientMetrics {
+
+        private final String clientTag;
+
+        private final AtomicLong queueDepth = new AtomicLong();
+        private final AtomicInteger activeStreams = new AtomicInteger();
+
+        private final Id queueDepthId;
+        private final Id activeStreamsId;
+        private final Counter coalescedEvents;
+        private final Counter droppedEvents;
+        private final Counter laggingDisconnects;
+        private final Counter resnapshots;
+
+        private ClientMetrics(String clientTag) {
+            this.clientTag = clientTag;
+
+            this.queueDepthId = newId("queueDepth", clientTag);
+            this.activeStreamsId = newId("activeStreams", clientTag);
+            PolledMeter.using(registry)
+                    .withId(queueDepthId)
+                    .monitorValue(queueDepth);
+            PolledMeter.using(registry)
+                    .withId(activeStreamsId)
+                    .monitorValue(activeStreams);
+
+            this.coalescedEvents = registry.counter(newId("coalescedEvents", clientTag));
+            this.droppedEvents = registry.counter(newId("droppedEvents", clientTag));
+            this.laggingDisconnects = registry.counter(newId("laggingDisconnects", clientTag));
+            this.resnapshots = registry.counter(newId("resnapshots", clientTag));
+        }
+
+        void streamClosed() {
+            clientMetrics.computeIfPresent(clientTag, (tag, current) -> {
+                if (current.activeStreams.decrementAndGet() > 0) {
+                    return current;
+                }
+                PolledMeter.remove(registry, queueDepthId);
+                PolledMeter.remove(registry, activeStreamsId);
+                return null;
+            });
+        }
+        void queueDepthChanged(int delta) {
+            queueDepth.addAndGet(delta);
+        }
+
+        void coalesced() {
+            coalescedEvents.increment();
+        }
+
+        void dropped(int count) {
+            droppedEvents.increment(count);
+        }
+
+        void disconnected() {
+            laggingDisconnects.increment();
+        }
+
+        void resnapshot() {
+            resnapshots.increment();
+        }
+
+        long getQueueDepth() {
+            return queueDepth.get();
+        }
+
+        int getActiveStreams() {
+            return activeStreams.get();
+        }
+    }
+
+    private Id newId(String name, String clientId) {
+        return registry.createId(ROOT_METRIC_NAME + name, "client", clientId);
+    }
+}
@@ -16,6 +16,12 @@
 
 package com.netflix.titus.master.jobmanager.service;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -29,6 +35,8 @@ import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.netflix.titus.api.FeatureActivationConfiguration;
 import com.netflix.titus.api.jobmanager.JobAttributes;
 import com.netflix.titus.api.jobmanager.TaskAttributes;
@@ -53,6 +61,9 @@ import com.netflix.titus.api.jobmanager.service.JobManagerConstants;
 import com.netflix.titus.api.jobmanager.service.JobManagerException;
 import com.netflix.titus.api.jobmanager.service.V3JobOperations;
 import com.netflix.titus.api.jobmanager.store.JobStore;
+import com.netflix.titus.api.model.Page;
+import com.netflix.titus.api.model.Pagination;
+import com.netflix.titus.api.model.PaginationUtil;
 import com.netflix.titus.common.framework.reconciler.ChangeAction;
 import com.netflix.titus.common.framework.reconciler.EntityHolder;
 import com.netflix.titus.common.framework.reconciler.ModelActionHolder;
@@ -82,7 +93,11 @@ import com.netflix.titus.master.jobmanager.service.service.action.BasicServiceJo
 import com.netflix.titus.master.jobmanager.service.service.action.MoveTaskBetweenJobsAction;
 import com.netflix.titus.master.mesos.VirtualMachineMasterService;
 import com.netflix.titus.master.service.management.ManagementSubsystemInitializer;
+import com.netflix.titus.runtime.endpoint.JobQueryCriteria;
 import com.netflix.titus.runtime.endpoint.v3.grpc.V3GrpcModelConverters;
+import com.netflix.titus.runtime.endpoint.v3.grpc.query.V3AbstractQueryCriteriaEvaluator;
+import com.netflix.titus.runtime.endpoint.v3.grpc.query.V3TaskQueryCriteriaEvaluator;
+import com.netflix.titus.runtime.jobmanager.JobManagerCursors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Mono;
@@ -99,7 +114,21 @@ public class DefaultV3JobOperations implements V3JobOperations {
 
     private static final Logger logger = LoggerFactory.getLogger(DefaultV3JobOperations.class);
 
-    enum IndexKind {StatusCreationTime}
+    enum IndexKind {StatusCreationTime, CursorOrder}
+
+    /**
+     * Group indexes, with the entities in each group ordered by {@link IndexKind#CursorOrder}. Job groups are
+     * maintained for job roots, and task groups for tasks of all jobs.
+     */
+    enum GroupKind {ByJobState, ByApplicationName, ByCapacityGroup, ByTaskState}
+
+    static final Comparator<EntityHolder> JOB_CURSOR_ORDER = Comparator.comparing(
+            EntityHolder::<Job<?>>getEntity, JobManagerCursors.coreJobCursorOrderComparator()
+    );
+
+    static final Comparator<EntityHolder> TASK_CURSOR_ORDER = Comparator.comparing(
+            EntityHolder::<Task>getEntity, JobManagerCursors.coreTaskCursorOrderComparator()
+    );
 
     private static final long RECONCILER_SHUTDOWN_TIMEOUT_MS = 30_000;
 
@@ -112,6 +141,11 @@ public class DefaultV3JobOperations implements V3JobOperations {
     private final TitusRuntime titusRuntime;
 
     private ReconciliationFramework<JobManagerReconcilerEvent> reconciliationFramework;
+
+    /**
+     * The last job index version, and the task list built from it.
+     */
+    private volatile Pair<List<EntityHolder>, List<Task>> tasksView = Pair.of(Collections.emptyList(), Collections.emptyList());
     private Subscription transactionLoggerSubscription;
     private Subscription reconcilerEventSubscription;
 
@@ -229,14 +263,27 @@ public class DefaultV3JobOperations implements V3JobOperations {
         return reconciliationFramework.findEngineByRootId(jobId).map(engine -> engine.getReferenceView().getEntity());
     }
 
+    /**
+     * Returns all tasks grouped by job, with jobs and the tasks of each job in the status creation time order. The list
+     * is built from the framework job index and the engine task indexes at most once per model version, and shared by
+     * all callers until the next change.
+     */
     @Override
     public List<Task> getTasks() {
-        return reconciliationFramework.orderedView(IndexKind.StatusCreationTime).stream()
-                .flatMap(entityHolder ->
-                        reconciliationFramework.findEngineByRootId(entityHolder.getId())
-                                .map(engine -> engine.orderedView(IndexKind.StatusCreationTime).stream().map(h -> (Task) h.getEntity()))
-                                .orElse(Stream.empty())
-                ).collect(Collectors.toList());
+        List<EntityHolder> jobHolders = reconciliationFramework.orderedView(IndexKind.StatusCreationTime);
+        Pair<List<EntityHolder>, List<Task>> current = tasksView;
+        if (current.getLeft() == jobHolders) {
+            return current.getRight();
+        }
+        List<Task> tasks = new ArrayList<>(reconciliationFramework.orderedChildView(IndexKind.CursorOrder).size());
+        for (EntityHolder jobHolder : jobHolders) {
+            reconciliationFramework.findEngineByRootId(jobHolder.getId()).ifPresent(engine ->
+                    engine.orderedView(IndexKind.StatusCreationTime).forEach(taskHolder -> tasks.add(taskHolder.getEntity()))
+            );
+        }
+        List<Task> result = Collections.unmodifiableList(tasks);
+        this.tasksView = Pair.of(jobHolders, result);
+        return result;
     }
 
     @Override
@@ -250,7 +297,7 @@ public class DefaultV3JobOperations implements V3JobOperations {
         return reconciliationFramework.orderedView(IndexKind.StatusCreationTime).stream()
                 .map(entityHolder -> {
                     Job job = entityHolder.getEntity();
-                    List<Task> tasks = entityHolder.getChildren().stream().map(h -> (Task) h.getEntity()).collect(Collectors.toList());
+                    List<Task> tasks = entityHolder.getChildrenView().stream().map(h -> (Task) h.getEntity()).collect(Collectors.toList());
                     return Pair.of(job, tasks);
                 })
                 .collect(Collectors.toList());
@@ -270,17 +317,57 @@ public class DefaultV3JobOperations implements V3JobOperations {
     @Override
     public List<Pair<Job<?>, Task>> findTasks(Predicate<Pair<Job<?>, Task>> queryPredicate, int offset, int limit) {
         List<EntityHolder> jobHolders = reconciliationFramework.orderedView(IndexKind.StatusCreationTime);
+        Predicate<Job<?>> jobFilter = V3TaskQueryCriteriaEvaluator.jobFilterOf(queryPredicate);
+        Predicate<Pair<Job<?>, Task>> taskFilter = V3TaskQueryCriteriaEvaluator.taskFilterOf(queryPredicate);
         return jobHolders.stream()
-                .filter(jobHolder -> !jobHolder.getChildren().isEmpty())
-                .flatMap(jobHolder -> jobHolder.getChildren().stream().map(
+                .filter(jobHolder -> !jobHolder.getChildrenView().isEmpty() && jobFilter.test(jobHolder.getEntity()))
+                .flatMap(jobHolder -> jobHolder.getChildrenView().stream().map(
                         taskHolder -> Pair.<Job<?>, Task>of(jobHolder.getEntity(), taskHolder.getEntity())
                 ))
-                .filter(queryPredicate)
+                .filter(taskFilter)
                 .skip(offset)
                 .limit(limit)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public Pair<List<Job<?>>, Pagination> findJobs(Predicate<Pair<Job<?>, List<Task>>> queryPredicate, Page page) {
+        Pair<List<EntityHolder>, Pagination> result = PaginationUtil.takeFilteredPageWithCursor(
+                page,
+                findJobCandidates(queryPredicate),
+                jobHolder -> queryPredicate.test(toJobTasksView(jobHolder)),
+                (jobHolders, cursor) -> JobManagerCursors.coreJobIndexOf(Lists.transform(jobHolders, EntityHolder::<Job<?>>getEntity), cursor),
+                jobHolder -> JobManagerCursors.newCoreCursorFrom(jobHolder.<Job<?>>getEntity())
+        );
+        return Pair.of(Lists.transform(result.getLeft(), EntityHolder::<Job<?>>getEntity), result.getRight());
+    }
+
+    @Override
+    public Pair<List<Task>, Pagination> findTasks(Predicate<Pair<Job<?>, Task>> queryPredicate, Page page) {
+        Predicate<Job<?>> jobFilter = V3TaskQueryCriteriaEvaluator.jobFilterOf(queryPredicate);
+        Predicate<Pair<Job<?>, Task>> taskFilter = V3TaskQueryCriteriaEvaluator.taskFilterOf(queryPredicate);
+
+        // Job level criteria are evaluated once per job. Empty value means that the job is gone or does not match.
+        Map<String, Optional<Job<?>>> matchingJobs = new HashMap<>();
+
+        Pair<List<EntityHolder>, Pagination> result = PaginationUtil.takeFilteredPageWithCursor(
+                page,
+                findTaskCandidates(queryPredicate),
+                taskHolder -> {
+                    Task task = taskHolder.getEntity();
+                    Optional<Job<?>> jobOpt = matchingJobs.computeIfAbsent(task.getJobId(), jobId ->
+                            reconciliationFramework.findEngineByRootId(jobId)
+                                    .map(engine -> engine.getReferenceView().<Job<?>>getEntity())
+                                    .filter(jobFilter)
+                    );
+                    return jobOpt.isPresent() && taskFilter.test(Pair.of(jobOpt.get(), task));
+                },
+                (taskHolders, cursor) -> JobManagerCursors.coreTaskIndexOf(Lists.transform(taskHolders, EntityHolder::<Task>getEntity), cursor),
+                taskHolder -> JobManagerCursors.newCoreCursorFrom(taskHolder.<Task>getEntity())
+        );
+        return Pair.of(Lists.transform(result.getLeft(), EntityHolder::<Task>getEntity), result.getRight());
+    }
+
     @Override
     public Optional<Pair<Job<?>, Task>> findTaskById(String taskId) {
         return reconciliationFramework.findEngineByChildId(taskId)
@@ -548,10 +635,113 @@ public class DefaultV3JobOperations implements V3JobOperations {
     }
 
     private Pair<Job<?>, List<Task>> toJobTasksPair(EntityHolder jobHolder) {
-        List<Task> tasks = jobHolder.getChildren().stream().map(childHolder -> (Task) childHolder.getEntity()).collect(Collectors.toList());
+        List<Task> tasks = jobHolder.getChildrenView().stream().map(childHolder -> (Task) childHolder.getEntity()).collect(Collectors.toList());
         return Pair.of(jobHolder.getEntity(), tasks);
     }
 
+    /**
+     * Like {@link #toJobTasksPair(EntityHolder)}, but the task list is a view, so nothing is copied if the query
+     * predicate does not look at the tasks.
+     */
+    private Pair<Job<?>, List<Task>> toJobTasksView(EntityHolder jobHolder) {
+        return Pair.of(jobHolder.getEntity(), new TaskListView(jobHolder));
+    }
+
+    /**
+     * Returns jobs in the cursor order, which may match the given predicate. If the predicate was built from
+     * query criteria, the smallest group index matching the criteria is selected. Otherwise all jobs are returned.
+     */
+    private List<EntityHolder> findJobCandidates(Predicate<Pair<Job<?>, List<Task>>> queryPredicate) {
+        List<EntityHolder> allJobs = reconciliationFramework.orderedView(IndexKind.CursorOrder);
+        if (!(queryPredicate instanceof V3AbstractQueryCriteriaEvaluator)) {
+            return allJobs;
+        }
+        V3AbstractQueryCriteriaEvaluator<?> evaluator = (V3AbstractQueryCriteriaEvaluator<?>) queryPredicate;
+        JobQueryCriteria<?, ?> criteria = evaluator.getCriteria();
+        if (!criteria.getJobIds().isEmpty()) {
+            return findJobHolders(criteria.getJobIds());
+        }
+        return selectSmallest(allJobs, findJobGroups(evaluator));
+    }
+
+    /**
+     * Returns tasks in the cursor order, which may match the given predicate. If the predicate was built from
+     * query criteria, the smallest candidate set is selected from the task state groups, and the tasks of jobs from
+     * the job groups. Otherwise all tasks are returned.
+     */
+    private List<EntityHolder> findTaskCandidates(Predicate<Pair<Job<?>, Task>> queryPredicate) {
+        List<EntityHolder> allTasks = reconciliationFramework.orderedChildView(IndexKind.CursorOrder);
+        if (!(queryPredicate instanceof V3AbstractQueryCriteriaEvaluator)) {
+            return allTasks;
+        }
+        V3AbstractQueryCriteriaEvaluator<?> evaluator = (V3AbstractQueryCriteriaEvaluator<?>) queryPredicate;
+        JobQueryCriteria<?, ?> criteria = evaluator.getCriteria();
+        if (!criteria.getTaskIds().isEmpty()) {
+            return sortedCopy(criteria.getTaskIds().stream()
+                    .map(reconciliationFramework::findEngineByChildId)
+                    .filter(Optional::isPresent)
+                    .map(pair -> pair.get().getRight()), TASK_CURSOR_ORDER);
+        }
+        if (!criteria.getJobIds().isEmpty()) {
+            return sortedCopy(findJobHolders(criteria.getJobIds()).stream().flatMap(jobHolder -> jobHolder.getChildrenView().stream()), TASK_CURSOR_ORDER);
+        }
+
+        List<EntityHolder> best = allTasks;
+        Set<TaskState> taskStates = evaluator.getCoreTaskStates();
+        if (!taskStates.isEmpty()) {
+            List<List<EntityHolder>> stateGroups = taskStates.stream()
+                    .map(state -> reconciliationFramework.groupedChildView(GroupKind.ByTaskState, state))
+                    .collect(Collectors.toList());
+            best = stateGroups.size() == 1
+                    ? stateGroups.get(0)
+                    : sortedCopy(stateGroups.stream().flatMap(List::stream), TASK_CURSOR_ORDER);
+        }
+
+        List<EntityHolder> jobGroup = selectSmallest(null, findJobGroups(evaluator));
+        if (jobGroup != null) {
+            int taskCount = 0;
+            for (EntityHolder jobHolder : jobGroup) {
+                taskCount += jobHolder.getChildrenView().size();
+            }
+            if (taskCount < best.size()) {
+                best = sortedCopy(jobGroup.stream().flatMap(jobHolder -> jobHolder.getChildrenView().stream()), TASK_CURSOR_ORDER);
+            }
+        }
+        return best;
+    }
+
+    private List<List<EntityHolder>> findJobGroups(V3AbstractQueryCriteriaEvaluator<?> evaluator) {
+        JobQueryCriteria<?, ?> criteria = evaluator.getCriteria();
+        List<List<EntityHolder>> groups = new ArrayList<>();
+        evaluator.getCoreJobState().ifPresent(state -> groups.add(reconciliationFramework.groupedView(GroupKind.ByJobState, state)));
+        criteria.getAppName().ifPresent(appName -> groups.add(reconciliationFramework.groupedView(GroupKind.ByApplicationName, appName)));
+        criteria.getCapacityGroup().ifPresent(capacityGroup -> groups.add(reconciliationFramework.groupedView(GroupKind.ByCapacityGroup, capacityGroup)));
+        return groups;
+    }
+
+    private List<EntityHolder> findJobHolders(Set<String> jobIds) {
+        return sortedCopy(jobIds.stream()
+                .map(reconciliationFramework::findEngineByRootId)
+                .filter(Optional::isPresent)
+                .map(engine -> engine.get().getReferenceView()), JOB_CURSOR_ORDER);
+    }
+
+    private static List<EntityHolder> selectSmallest(List<EntityHolder> initial, List<List<EntityHolder>> candidates) {
+        List<EntityHolder> result = initial;
+        for (List<EntityHolder> candidate : candidates) {
+            if (result == null || candidate.size() < result.size()) {
+                result = candidate;
+            }
+        }
+        return result;
+    }
+
+    private static List<EntityHolder> sortedCopy(Stream<EntityHolder> holders, Comparator<EntityHolder> comparator) {
+        List<EntityHolder> result = holders.collect(Collectors.toList());
+        result.sort(comparator);
+        return result;
+    }
+
     private Observable<JobManagerEvent<?>> toJobManagerEvents(Observable<JobManagerReconcilerEvent> events,
                                                               Predicate<Pair<Job<?>, List<Task>>> jobsPredicate,
                                                               Predicate<Pair<Job<?>, Task>> tasksPredicate) {
@@ -583,26 +773,20 @@ public class DefaultV3JobOperations implements V3JobOperations {
 
     private Optional<JobManagerEvent<?>> toJobUpdateEvent(JobNewModelReconcilerEvent newModelEvent,
                                                           Predicate<Pair<Job<?>, List<Task>>> jobsPredicate) {
-        Job<?> job = newModelEvent.getNewRoot().getEntity();
-        List<Task> tasks = newModelEvent.getNewRoot().getChildren()
-                .stream()
-                .map(EntityHolder::<Task>getEntity)
-                .collect(Collectors.toList());
-        return jobsPredicate.test(Pair.of(job, tasks))
+        Pair<Job<?>, List<Task>> jobAndTasks = toJobTasksView(newModelEvent.getNewRoot());
+        Job<?> job = jobAndTasks.getLeft();
+        return jobsPredicate.test(jobAndTasks)
                 ? Optional.of(JobUpdateEvent.newJob(job, newModelEvent.getCallMetadata()))
                 : Optional.empty();
     }
 
     private Optional<JobManagerEvent<?>> toJobUpdateEvent(JobModelUpdateReconcilerEvent modelUpdateEvent,
                                                           Predicate<Pair<Job<?>, List<Task>>> jobsPredicate) {
-        Job<?> changed = modelUpdateEvent.getChangedEntityHolder().getEntity();
-        List<Task> tasks = modelUpdateEvent.getChangedEntityHolder().getChildren()
-                .stream()
-                .map(EntityHolder::<Task>getEntity)
-                .collect(Collectors.toList());
+        Pair<Job<?>, List<Task>> jobAndTasks = toJobTasksView(modelUpdateEvent.getChangedEntityHolder());
+        Job<?> changed = jobAndTasks.getLeft();
 
         if (!modelUpdateEvent.getPreviousEntityHolder().isPresent()) {
-            return jobsPredicate.test(Pair.of(changed, tasks))
+            return jobsPredicate.test(jobAndTasks)
                     ? Optional.of(JobUpdateEvent.jobChange(changed, changed, modelUpdateEvent.getCallMetadata()))
                     : Optional.empty();
         }
@@ -610,7 +794,7 @@ public class DefaultV3JobOperations implements V3JobOperations {
         if (changed.equals(previous)) {
             return Optional.empty();
         }
-        return jobsPredicate.test(Pair.of(changed, tasks))
+        return jobsPredicate.test(jobAndTasks)
                 ? Optional.of(JobUpdateEvent.jobChange(changed, previous, modelUpdateEvent.getCallMetadata()))
                 : Optional.empty();
     }
@@ -652,4 +836,32 @@ public class DefaultV3JobOperations implements V3JobOperations {
                 (serviceJobProcesses.isDisableDecreaseDesired() && targetCapacity.getDesired() < currentCapacity.getDesired());
 
     }
+
+    /**
+     * Task list backed by {@link EntityHolder#getChildrenView()}. The size and the iteration order come from the view,
+     * and only a positional access makes {@link EntityHolder#getChildren()} build the list of the job version.
+     */
+    private static class TaskListView extends AbstractList<Task> {
+
+        private final EntityHolder jobHolder;
+
+        private TaskListView(EntityHolder jobHolder) {
+            this.jobHolder = jobHolder;
+        }
+
+        @Override
+        public Task get(int index) {
+            return jobHolder.getChildren().get(index).getEntity();
+        }
+
+        @Override
+        public int size() {
+            return jobHolder.getChildrenView().size();
+        }
+
+        @Override
+        public Iterator<Task> iterator() {
+            return Iterators.transform(jobHolder.getChildrenView().iterator(), EntityHolder::<Task>getEntity);
+        }
+    }
 }
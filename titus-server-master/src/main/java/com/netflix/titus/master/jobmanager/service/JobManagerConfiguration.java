@@ -30,6 +30,53 @@ public interface JobManagerConfiguration {
     @DefaultValue("1")
     long getReconcilerActiveTimeoutMs();
 
+    /**
+     * Number of partitions into which the reconciliation engines are split. If greater than one, each partition is
+     * processed by a separate thread in each reconciliation loop iteration.
+     */
+    @DefaultValue("1")
+    int getReconcilerShardCount();
+
+    /**
+     * Maximum number of concurrent task queries issued to the store during the job manager bootstrap.
+     */
+    @DefaultValue("100")
+    int getBootstrapStoreConcurrency();
+
+    /**
+     * Number of threads validating and restoring jobs during the job manager bootstrap. A job is restored as soon as
+     * its tasks are loaded, while the store queries for other jobs are still in progress.
+     */
+    @DefaultValue("8")
+    int getBootstrapProcessingThreads();
+
+    /**
+     * Local file holding a snapshot of all active jobs and tasks, used to speed up the job manager bootstrap.
+     * If empty, snapshots are not written, and the job manager is always loaded from the store.
+     */
+    @DefaultValue("")
+    String getLocalSnapshotFile();
+
+    /**
+     * Interval at which the local snapshot file is rewritten by the active leader.
+     */
+    @DefaultValue("60000")
+    long getLocalSnapshotIntervalMs();
+
+    /**
+     * Snapshots older than this are ignored, and the job manager is fully loaded from the store.
+     */
+    @DefaultValue("3600000")
+    long getLocalSnapshotMaxAgeMs();
+
+    /**
+     * Store records written up to this amount of time before the snapshot was taken are reloaded from the store.
+     * This covers the clock skew between the nodes writing to the store, and the delay between a record being
+     * written and the reference model being updated.
+     */
+    @DefaultValue("60000")
+    long getLocalSnapshotSafetyMarginMs();
+
     /**
      * How many active tasks in the transient state (in other words not Started and not Finished) are allowed in a job.
      * If the number of active tasks in the transient state goes above this limit, no new tasks are created.
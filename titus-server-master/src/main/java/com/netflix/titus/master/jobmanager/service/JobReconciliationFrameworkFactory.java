@@ -16,20 +16,28 @@
 
 package com.netflix.titus.master.jobmanager.service;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import com.google.common.collect.ImmutableMap;
 import com.netflix.spectator.api.BasicTag;
 import com.netflix.spectator.api.Gauge;
 import com.netflix.spectator.api.Registry;
@@ -45,7 +53,9 @@ import com.netflix.titus.api.jobmanager.model.job.TwoLevelResource;
 import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
 import com.netflix.titus.api.jobmanager.model.job.ext.ServiceJobExt;
 import com.netflix.titus.api.jobmanager.service.V3JobOperations;
+import com.netflix.titus.api.jobmanager.store.ActiveRecordVersions;
 import com.netflix.titus.api.jobmanager.store.JobStore;
+import com.netflix.titus.api.jobmanager.store.JobStoreException;
 import com.netflix.titus.api.model.Tier;
 import com.netflix.titus.common.framework.reconciler.ChangeAction;
 import com.netflix.titus.common.framework.reconciler.DifferenceResolvers;
@@ -55,20 +65,25 @@ import com.netflix.titus.common.framework.reconciler.ReconciliationEngine.Differ
 import com.netflix.titus.common.framework.reconciler.ReconciliationFramework;
 import com.netflix.titus.common.framework.reconciler.internal.DefaultReconciliationEngine;
 import com.netflix.titus.common.framework.reconciler.internal.DefaultReconciliationFramework;
+import com.netflix.titus.common.framework.reconciler.internal.IndexSet;
 import com.netflix.titus.common.framework.reconciler.internal.InternalReconciliationEngine;
 import com.netflix.titus.common.model.sanitizer.EntitySanitizer;
 import com.netflix.titus.common.model.sanitizer.EntitySanitizerUtil;
 import com.netflix.titus.common.model.validator.ValidationError;
 import com.netflix.titus.common.runtime.TitusRuntime;
+import com.netflix.titus.common.util.StringExt;
 import com.netflix.titus.common.util.time.Clock;
 import com.netflix.titus.common.util.tuple.Pair;
 import com.netflix.titus.master.MetricConstants;
+import com.netflix.titus.master.jobmanager.service.DefaultV3JobOperations.GroupKind;
 import com.netflix.titus.master.jobmanager.service.DefaultV3JobOperations.IndexKind;
 import com.netflix.titus.master.jobmanager.service.common.V3QueueableTask;
 import com.netflix.titus.master.jobmanager.service.common.action.TitusChangeAction;
 import com.netflix.titus.master.jobmanager.service.common.action.task.TaskTimeoutChangeActions;
 import com.netflix.titus.master.jobmanager.service.event.JobEventFactory;
 import com.netflix.titus.master.jobmanager.service.event.JobManagerReconcilerEvent;
+import com.netflix.titus.master.jobmanager.service.snapshot.JobSnapshotDelta;
+import com.netflix.titus.master.jobmanager.service.snapshot.LocalJobSnapshot;
 import com.netflix.titus.master.scheduler.SchedulingService;
 import com.netflix.titus.master.scheduler.constraint.ConstraintEvaluatorTransformer;
 import com.netflix.titus.master.scheduler.constraint.SystemHardConstraint;
@@ -78,6 +93,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
 import rx.Scheduler;
+import rx.schedulers.Schedulers;
 
 import static com.netflix.titus.api.jobmanager.model.job.sanitizer.JobSanitizerBuilder.JOB_PERMISSIVE_SANITIZER;
 import static com.netflix.titus.api.jobmanager.model.job.sanitizer.JobSanitizerBuilder.JOB_STRICT_SANITIZER;
@@ -99,7 +115,16 @@ public class JobReconciliationFrameworkFactory {
     static final String BATCH_RESOLVER = "batchResolver";
     static final String SERVICE_RESOLVER = "serviceResolver";
 
-    private static final int MAX_RETRIEVE_TASK_CONCURRENCY = 100;
+    /**
+     * Bootstrap phases with timings reported by the tagged 'storeLoadTimeMs' gauges. 'Tasks' is the time until the
+     * last task list is loaded, and 'Restore' is the remaining time needed to restore the jobs loaded last.
+     */
+    private enum BootstrapPhase {Init, Jobs, Tasks, Restore, ConsistencyCheck}
+
+    /**
+     * Local snapshot usage, reported as the ordinal value by the 'snapshotStatus' gauge.
+     */
+    private enum SnapshotStatus {NotConfigured, NotFound, Corrupted, Stale, StoreError, Used}
 
     private static final JobEventFactory JOB_EVENT_FACTORY = new JobEventFactory();
 
@@ -107,6 +132,33 @@ public class JobReconciliationFrameworkFactory {
             IndexKind.StatusCreationTime, JobReconciliationFrameworkFactory::compareByStatusCreationTime
     );
 
+    /**
+     * Job indexes. Groups are ordered in the pagination cursor order, so a page can be taken directly from a group.
+     */
+    private static final IndexSet<EntityHolder> JOB_INDEX_SET = IndexSet.newIndexSet(
+            ImmutableMap.<Object, Comparator<EntityHolder>>of(
+                    IndexKind.StatusCreationTime, JobReconciliationFrameworkFactory::compareByStatusCreationTime,
+                    IndexKind.CursorOrder, DefaultV3JobOperations.JOB_CURSOR_ORDER
+            ),
+            ImmutableMap.<Object, Function<EntityHolder, Object>>of(
+                    GroupKind.ByJobState, holder -> holder.<Job<?>>getEntity().getStatus().getState(),
+                    GroupKind.ByApplicationName, holder -> holder.<Job<?>>getEntity().getJobDescriptor().getApplicationName(),
+                    GroupKind.ByCapacityGroup, holder -> holder.<Job<?>>getEntity().getJobDescriptor().getCapacityGroup()
+            ),
+            DefaultV3JobOperations.JOB_CURSOR_ORDER,
+            EntityHolder::getId
+    );
+
+    /**
+     * Indexes of tasks of all jobs.
+     */
+    private static final IndexSet<EntityHolder> TASK_INDEX_SET = IndexSet.newIndexSet(
+            Collections.<Object, Comparator<EntityHolder>>singletonMap(IndexKind.CursorOrder, DefaultV3JobOperations.TASK_CURSOR_ORDER),
+            Collections.<Object, Function<EntityHolder, Object>>singletonMap(GroupKind.ByTaskState, holder -> holder.<Task>getEntity().getStatus().getState()),
+            DefaultV3JobOperations.TASK_CURSOR_ORDER,
+            EntityHolder::getId
+    );
+
     private final DifferenceResolver<JobManagerReconcilerEvent> dispatchingResolver;
     private final JobManagerConfiguration jobManagerConfiguration;
     private final JobStore store;
@@ -126,6 +178,13 @@ public class JobReconciliationFrameworkFactory {
     private final Gauge loadedJobs;
     private final Gauge loadedTasks;
     private final Gauge storeLoadTimeMs;
+    private final Map<BootstrapPhase, Gauge> storeLoadPhaseTimeMs;
+    private final Gauge snapshotStatus;
+    private final Gauge snapshotUnchangedJobs;
+    private final Gauge snapshotChangedJobs;
+    private final Gauge snapshotChangedTasks;
+
+    private final Object fenzoInitLock = new Object();
 
     @Inject
     public JobReconciliationFrameworkFactory(JobManagerConfiguration jobManagerConfiguration,
@@ -176,6 +235,15 @@ public class JobReconciliationFrameworkFactory {
         this.loadedJobs = registry.gauge(ROOT_METRIC_NAME + "loadedJobs");
         this.loadedTasks = registry.gauge(ROOT_METRIC_NAME + "loadedTasks");
         this.storeLoadTimeMs = registry.gauge(ROOT_METRIC_NAME + "storeLoadTimeMs");
+        this.storeLoadPhaseTimeMs = new EnumMap<>(BootstrapPhase.class);
+        for (BootstrapPhase phase : BootstrapPhase.values()) {
+            storeLoadPhaseTimeMs.put(phase, registry.gauge(registry.createId(ROOT_METRIC_NAME + "storeLoadTimeMs", "phase", phase.name())));
+        }
+        this.snapshotStatus = registry.gauge(ROOT_METRIC_NAME + "snapshotStatus");
+        this.snapshotUnchangedJobs = registry.gauge(ROOT_METRIC_NAME + "snapshotUnchangedJobs");
+        this.snapshotChangedJobs = registry.gauge(ROOT_METRIC_NAME + "snapshotChangedJobs");
+        this.snapshotChangedTasks = registry.gauge(ROOT_METRIC_NAME + "snapshotChangedTasks");
+        snapshotStatus.set(SnapshotStatus.NotConfigured.ordinal());
 
         this.dispatchingResolver = DifferenceResolvers.dispatcher(rootModel -> {
             Job<?> job = rootModel.getEntity();
@@ -191,29 +259,7 @@ public class JobReconciliationFrameworkFactory {
     }
 
     ReconciliationFramework<JobManagerReconcilerEvent> newInstance() {
-        List<Pair<Job, List<Task>>> jobsAndTasks = checkGlobalConsistency(loadJobsAndTasksFromStore(errorCollector));
-
-        // initialize fenzo with running tasks
-        List<InternalReconciliationEngine<JobManagerReconcilerEvent>> engines = new ArrayList<>();
-        for (Pair<Job, List<Task>> pair : jobsAndTasks) {
-            Job job = pair.getLeft();
-            List<Task> tasks = pair.getRight();
-            InternalReconciliationEngine<JobManagerReconcilerEvent> engine = newRestoredEngine(job, tasks);
-            engines.add(engine);
-            for (Task task : tasks) {
-                Optional<Task> validatedTask = validateTask(task);
-                if (validatedTask.isPresent()) {
-                    TaskFenzoCheck check = addTaskToFenzo(engine, job, task);
-                    if (check == TaskFenzoCheck.FenzoAddError) {
-                        errorCollector.taskAddToFenzoError(task.getId());
-                    } else if (check == TaskFenzoCheck.Inconsistent) {
-                        errorCollector.inconsistentTask(task.getId());
-                    }
-                } else {
-                    errorCollector.invalidTaskRecord(task.getId());
-                }
-            }
-        }
+        List<InternalReconciliationEngine<JobManagerReconcilerEvent>> engines = loadEnginesFromStore();
 
         errorCollector.failIfTooManyBadRecords();
 
@@ -222,7 +268,9 @@ public class JobReconciliationFrameworkFactory {
                 bootstrapModel -> newEngine(bootstrapModel, true),
                 jobManagerConfiguration.getReconcilerIdleTimeoutMs(),
                 jobManagerConfiguration.getReconcilerActiveTimeoutMs(),
-                INDEX_COMPARATORS,
+                JOB_INDEX_SET,
+                TASK_INDEX_SET,
+                jobManagerConfiguration.getReconcilerShardCount(),
                 registry,
                 optionalScheduler
         );
@@ -343,59 +391,254 @@ public class JobReconciliationFrameworkFactory {
         return true;
     }
 
-    private List<Pair<Job, List<Task>>> loadJobsAndTasksFromStore(InitializationErrorCollector errorCollector) {
+    /**
+     * Loads all active jobs and their tasks from the store, and creates a reconciliation engine for each job. Jobs are
+     * processed as a stream. A job record is validated as soon as it is loaded, and the job is restored (engine created,
+     * tasks added to Fenzo) as soon as its tasks are loaded, while the store queries for other jobs are still running.
+     * The ENI assignment consistency check is done incrementally with a shared assignment map, and the overlaps are
+     * reported once all jobs are loaded.
+     * <p>
+     * If a recent local snapshot is available, the jobs and tasks not modified since it was taken are restored from it
+     * instead of the store (see {@link LocalJobSnapshot}).
+     */
+    private List<InternalReconciliationEngine<JobManagerReconcilerEvent>> loadEnginesFromStore() {
         long startTime = clock.wallTime();
 
-        // load all job/task pairs
-        List<Pair<Job, Pair<List<Task>, Integer>>> jobTasksPairs;
-        try {
-            jobTasksPairs = store.init().andThen(store.retrieveJobs().flatMap(retrievedJobsAndErrors -> {
-                errorCollector.corruptedJobRecords(retrievedJobsAndErrors.getRight());
-
-                List<Job<?>> retrievedJobs = retrievedJobsAndErrors.getLeft();
-                List<Observable<Pair<Job, Pair<List<Task>, Integer>>>> retrieveTasksObservables = new ArrayList<>();
-                for (Job job : retrievedJobs) {
-                    // TODO Finished jobs that were not archived immediately should be archived by background archive process
-                    if (job.getStatus().getState() == JobState.Finished) {
-                        logger.info("Not loading finished job: {}", job.getId());
-                        continue;
-                    }
-
-                    Optional<Job> validatedJob = validateJob(job);
-                    if (validatedJob.isPresent()) {
-                        Observable<Pair<Job, Pair<List<Task>, Integer>>> retrieveTasksObservable = store.retrieveTasksForJob(job.getId())
-                                .map(taskList -> new Pair<>(validatedJob.get(), taskList));
-                        retrieveTasksObservables.add(retrieveTasksObservable);
-                    } else {
-                        errorCollector.invalidJob(job.getId());
-                    }
-                }
-                return Observable.merge(retrieveTasksObservables, MAX_RETRIEVE_TASK_CONCURRENCY);
-            })).toList().toBlocking().singleOrDefault(Collections.emptyList());
-
-            int corruptedTaskRecords = jobTasksPairs.stream().mapToInt(p -> p.getRight().getRight()).sum();
-            errorCollector.corruptedTaskRecords(corruptedTaskRecords);
-
-            int taskCount = jobTasksPairs.stream().map(p -> p.getRight().getLeft().size()).reduce(0, (a, v) -> a + v);
-            loadedJobs.set(jobTasksPairs.size());
-            loadedTasks.set(taskCount);
+        int storeConcurrency = Math.max(1, jobManagerConfiguration.getBootstrapStoreConcurrency());
+        int processingThreads = Math.max(1, jobManagerConfiguration.getBootstrapProcessingThreads());
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(processingThreads, r -> {
+            Thread thread = new Thread(r, "job-manager-bootstrap-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Scheduler processingScheduler = Schedulers.from(executor);
 
-            for (Pair<Job, Pair<List<Task>, Integer>> jobTaskPair : jobTasksPairs) {
-                Job job = jobTaskPair.getLeft();
-                List<Task> tasks = jobTaskPair.getRight().getLeft();
-                List<String> taskStrings = tasks.stream().map(t -> String.format("<%s,%s>", t.getId(), t.getStatus().getState())).collect(Collectors.toList());
-                logger.info("Loaded job: {} with tasks: {}", job.getId(), taskStrings);
-            }
+        Map<String, Map<String, Set<String>>> eniAssignmentMap = new HashMap<>();
+        AtomicInteger taskCount = new AtomicInteger();
+        AtomicLong lastTasksLoadTime = new AtomicLong();
 
-            logger.info("{} jobs and {} tasks loaded from store in {}ms", jobTasksPairs.size(), taskCount, clock.wallTime() - startTime);
+        List<InternalReconciliationEngine<JobManagerReconcilerEvent>> engines;
+        try {
+            store.init().await();
+            long initEndTime = clock.wallTime();
+            storeLoadPhaseTimeMs.get(BootstrapPhase.Init).set(initEndTime - startTime);
+            lastTasksLoadTime.set(initEndTime);
+
+            BootstrapSource source = newSnapshotSource(storeConcurrency).orElseGet(() -> newStoreSource(initEndTime));
+
+            engines = source.getJobs()
+                    .filter(job -> {
+                        // TODO Finished jobs that were not archived immediately should be archived by background archive process
+                        if (job.getStatus().getState() == JobState.Finished) {
+                            logger.info("Not loading finished job: {}", job.getId());
+                            return false;
+                        }
+                        return true;
+                    })
+                    .flatMap(job -> Observable.fromCallable(() -> validateJob(job))
+                                    .subscribeOn(processingScheduler)
+                                    .flatMap(validatedJob -> {
+                                        if (!validatedJob.isPresent()) {
+                                            errorCollector.invalidJob(job.getId());
+                                            return Observable.<Pair<Job, Pair<List<Task>, Integer>>>empty();
+                                        }
+                                        return source.getTasks(job).map(tasksAndErrors -> Pair.of(validatedJob.get(), tasksAndErrors));
+                                    }),
+                            storeConcurrency
+                    )
+                    .doOnNext(jobAndTasks -> lastTasksLoadTime.set(clock.wallTime()))
+                    .flatMap(jobAndTasks -> Observable.fromCallable(() -> {
+                                        List<Task> tasks = jobAndTasks.getRight().getLeft();
+                                        errorCollector.corruptedTaskRecords(jobAndTasks.getRight().getRight());
+                                        taskCount.addAndGet(tasks.size());
+                                        return restoreJob(jobAndTasks.getLeft(), tasks, eniAssignmentMap);
+                                    }
+                            ).subscribeOn(processingScheduler),
+                            processingThreads
+                    )
+                    .toList()
+                    .toBlocking()
+                    .singleOrDefault(Collections.emptyList());
+
+            long restoreEndTime = clock.wallTime();
+            storeLoadPhaseTimeMs.get(BootstrapPhase.Tasks).set(lastTasksLoadTime.get() - initEndTime);
+            storeLoadPhaseTimeMs.get(BootstrapPhase.Restore).set(restoreEndTime - lastTasksLoadTime.get());
+
+            reportEniOverlaps(eniAssignmentMap);
+            storeLoadPhaseTimeMs.get(BootstrapPhase.ConsistencyCheck).set(clock.wallTime() - restoreEndTime);
+
+            loadedJobs.set(engines.size());
+            loadedTasks.set(taskCount.get());
+
+            logger.info("{} jobs and {} tasks loaded from {} in {}ms", engines.size(), taskCount.get(), source.getName(), clock.wallTime() - startTime);
         } catch (Exception e) {
             logger.error("Failed to load jobs from the store during initialization:", e);
             throw new IllegalStateException("Failed to load jobs from the store during initialization", e);
         } finally {
             storeLoadTimeMs.set(clock.wallTime() - startTime);
+            executor.shutdownNow();
+        }
+
+        return engines;
+    }
+
+    private BootstrapSource newStoreSource(long initEndTime) {
+        Observable<Job<?>> jobs = store.retrieveJobs().flatMap(retrievedJobsAndErrors -> {
+            errorCollector.corruptedJobRecords(retrievedJobsAndErrors.getRight());
+            storeLoadPhaseTimeMs.get(BootstrapPhase.Jobs).set(clock.wallTime() - initEndTime);
+            return Observable.from(retrievedJobsAndErrors.getLeft());
+        });
+        return new BootstrapSource("store", jobs, job -> store.retrieveTasksForJob(job.getId()));
+    }
+
+    /**
+     * Creates a bootstrap source from the local snapshot file, if it is configured, valid and recent enough. Jobs and
+     * tasks not modified since the snapshot was taken are restored from the snapshot, and only the remaining ones are
+     * read from the store. The snapshot is discarded if the store record versions cannot be read.
+     */
+    private Optional<BootstrapSource> newSnapshotSource(int storeConcurrency) {
+        String path = jobManagerConfiguration.getLocalSnapshotFile();
+        if (StringExt.isEmpty(path)) {
+            return Optional.empty();
+        }
+        File file = new File(path);
+        if (!file.exists()) {
+            logger.info("Local job snapshot file {} not found", path);
+            snapshotStatus.set(SnapshotStatus.NotFound.ordinal());
+            return Optional.empty();
+        }
+
+        long startTime = clock.wallTime();
+        LocalJobSnapshot snapshot;
+        try {
+            snapshot = LocalJobSnapshot.readFrom(file);
+        } catch (Exception e) {
+            logger.warn("Cannot read local job snapshot file {}; loading all jobs from the store", path, e);
+            snapshotStatus.set(SnapshotStatus.Corrupted.ordinal());
+            return Optional.empty();
+        }
+
+        long snapshotAge = startTime - snapshot.getTimestamp();
+        if (snapshotAge < 0 || snapshotAge > jobManagerConfiguration.getLocalSnapshotMaxAgeMs()) {
+            logger.info("Local job snapshot is too old ({}ms); loading all jobs from the store", snapshotAge);
+            snapshotStatus.set(SnapshotStatus.Stale.ordinal());
+            return Optional.empty();
+        }
+
+        JobSnapshotDelta delta;
+        Map<String, List<Task>> changedTasks;
+        try {
+            ActiveRecordVersions versions = store.retrieveActiveRecordVersions().toBlocking().first();
+            long cutoffTime = snapshot.getTimestamp() - jobManagerConfiguration.getLocalSnapshotSafetyMarginMs();
+            delta = JobSnapshotDelta.compute(snapshot, versions, cutoffTime);
+            changedTasks = Observable.from(delta.getChangedTaskIds().values())
+                    .flatMapIterable(taskIds -> taskIds)
+                    .flatMap(taskId -> store.retrieveTask(taskId).onErrorResumeNext(error -> onSnapshotDeltaTaskError(taskId, error)), storeConcurrency)
+                    .toList()
+                    .toBlocking()
+                    .single()
+                    .stream()
+                    .collect(Collectors.groupingBy(Task::getJobId));
+        } catch (Exception e) {
+            logger.warn("Cannot reconcile local job snapshot with the store; loading all jobs from the store", e);
+            snapshotStatus.set(SnapshotStatus.StoreError.ordinal());
+            return Optional.empty();
+        }
+
+        logger.info("Restoring from local job snapshot taken {}ms ago: unchangedJobs={}, changedJobs={}, changedTasksOfUnchangedJobs={}",
+                snapshotAge, delta.getUnchangedJobs().size(), delta.getChangedJobIds().size(), delta.getChangedTaskCount());
+        snapshotStatus.set(SnapshotStatus.Used.ordinal());
+        snapshotUnchangedJobs.set(delta.getUnchangedJobs().size());
+        snapshotChangedJobs.set(delta.getChangedJobIds().size());
+        snapshotChangedTasks.set(delta.getChangedTaskCount());
+        storeLoadPhaseTimeMs.get(BootstrapPhase.Jobs).set(clock.wallTime() - startTime);
+
+        Map<String, List<Task>> unchangedTasks = new HashMap<>();
+        delta.getUnchangedJobs().forEach(jobAndTasks -> unchangedTasks.put(jobAndTasks.getLeft().getId(), jobAndTasks.getRight()));
+
+        Observable<Job<?>> jobs = Observable.merge(
+                Observable.from(delta.getUnchangedJobs()).map(jobAndTasks -> (Job<?>) jobAndTasks.getLeft()),
+                Observable.from(delta.getChangedJobIds()).flatMap(
+                        jobId -> store.retrieveJob(jobId).onErrorResumeNext(error -> onSnapshotDeltaJobError(jobId, error)),
+                        storeConcurrency
+                )
+        );
+        return Optional.of(new BootstrapSource("local snapshot", jobs, job -> {
+            List<Task> tasks = unchangedTasks.get(job.getId());
+            if (tasks == null) {
+                return store.retrieveTasksForJob(job.getId());
+            }
+            List<Task> allTasks = new ArrayList<>(tasks);
+            allTasks.addAll(changedTasks.getOrDefault(job.getId(), Collections.emptyList()));
+            return Observable.just(Pair.of(allTasks, 0));
+        }));
+    }
+
+    /**
+     * A record removed from the store after its version was read is skipped, as it is no longer active. Other
+     * errors are reported in the same way as corrupted records found during the full store load.
+     */
+    private Observable<Job<?>> onSnapshotDeltaJobError(String jobId, Throwable error) {
+        if (!isRecordNotFound(error)) {
+            logger.error("Cannot load job {} from the store", jobId, error);
+            errorCollector.corruptedJobRecords(1);
+        }
+        return Observable.empty();
+    }
+
+    private Observable<Task> onSnapshotDeltaTaskError(String taskId, Throwable error) {
+        if (!isRecordNotFound(error)) {
+            logger.error("Cannot load task {} from the store", taskId, error);
+            errorCollector.corruptedTaskRecords(1);
+        }
+        return Observable.empty();
+    }
+
+    private static boolean isRecordNotFound(Throwable error) {
+        if (!(error instanceof JobStoreException)) {
+            return false;
+        }
+        JobStoreException.ErrorCode errorCode = ((JobStoreException) error).getErrorCode();
+        return errorCode == JobStoreException.ErrorCode.JOB_DOES_NOT_EXIST
+                || errorCode == JobStoreException.ErrorCode.JOB_MUST_BE_ACTIVE
+                || errorCode == JobStoreException.ErrorCode.TASK_DOES_NOT_EXIST;
+    }
+
+    private InternalReconciliationEngine<JobManagerReconcilerEvent> restoreJob(Job job,
+                                                                                List<Task> tasks,
+                                                                                Map<String, Map<String, Set<String>>> eniAssignmentMap) {
+        if (logger.isInfoEnabled()) {
+            List<String> taskStrings = tasks.stream().map(t -> String.format("<%s,%s>", t.getId(), t.getStatus().getState())).collect(Collectors.toList());
+            logger.info("Loaded job: {} with tasks: {}", job.getId(), taskStrings);
         }
 
-        return jobTasksPairs.stream().map(p -> Pair.of(p.getLeft(), p.getRight().getLeft())).collect(Collectors.toList());
+        List<Task> consistentTasks = new ArrayList<>(tasks.size());
+        synchronized (eniAssignmentMap) {
+            for (Task task : tasks) {
+                checkTaskEniAssignment(task, eniAssignmentMap).ifPresent(consistentTasks::add);
+            }
+        }
+
+        InternalReconciliationEngine<JobManagerReconcilerEvent> engine = newRestoredEngine(job, consistentTasks);
+        for (Task task : consistentTasks) {
+            Optional<Task> validatedTask = validateTask(task);
+            if (validatedTask.isPresent()) {
+                TaskFenzoCheck check;
+                // Fenzo queue and running task initialization are not guaranteed to be thread safe
+                synchronized (fenzoInitLock) {
+                    check = addTaskToFenzo(engine, job, task);
+                }
+                if (check == TaskFenzoCheck.FenzoAddError) {
+                    errorCollector.taskAddToFenzoError(task.getId());
+                } else if (check == TaskFenzoCheck.Inconsistent) {
+                    errorCollector.inconsistentTask(task.getId());
+                }
+            } else {
+                errorCollector.invalidTaskRecord(task.getId());
+            }
+        }
+        return engine;
     }
 
     private Optional<Job> validateJob(Job job) {
@@ -440,28 +683,12 @@ public class JobReconciliationFrameworkFactory {
         return Optional.of(task);
     }
 
-    private List<Pair<Job, List<Task>>> checkGlobalConsistency(List<Pair<Job, List<Task>>> jobsAndTasks) {
-        Map<String, Map<String, Set<String>>> eniAssignmentMap = new HashMap<>();
-
-        List<Pair<Job, List<Task>>> filtered = jobsAndTasks.stream()
-                .map(jobAndTasks -> {
-                            List<Task> filteredTasks = jobAndTasks.getRight().stream()
-                                    .map(task -> checkTaskEniAssignment(task, eniAssignmentMap))
-                                    .filter(Optional::isPresent)
-                                    .map(Optional::get)
-                                    .collect(Collectors.toList());
-                            return Pair.of(jobAndTasks.getLeft(), filteredTasks);
-                        }
-                ).collect(Collectors.toList());
-
-        // Report overlaps
+    private void reportEniOverlaps(Map<String, Map<String, Set<String>>> eniAssignmentMap) {
         eniAssignmentMap.forEach((eniSignature, assignments) -> {
             if (assignments.size() > 1) {
                 errorCollector.eniOverlaps(eniSignature, assignments);
             }
         });
-
-        return filtered;
     }
 
     private Optional<Task> checkTaskEniAssignment(Task task, Map<String, Map<String, Set<String>>> eniAssignmentMap) {
@@ -505,4 +732,29 @@ public class JobReconciliationFrameworkFactory {
         Task task2 = holder2.getEntity();
         return Long.compare(task1.getStatus().getTimestamp(), task2.getStatus().getTimestamp());
     }
+
+    private static class BootstrapSource {
+
+        private final String name;
+        private final Observable<Job<?>> jobs;
+        private final Function<Job<?>, Observable<Pair<List<Task>, Integer>>> taskLoader;
+
+        private BootstrapSource(String name, Observable<Job<?>> jobs, Function<Job<?>, Observable<Pair<List<Task>, Integer>>> taskLoader) {
+            this.name = name;
+            this.jobs = jobs;
+            this.taskLoader = taskLoader;
+        }
+
+        private String getName() {
+            return name;
+        }
+
+        private Observable<Job<?>> getJobs() {
+            return jobs;
+        }
+
+        private Observable<Pair<List<Task>, Integer>> getTasks(Job<?> job) {
+            return taskLoader.apply(job);
+        }
+    }
 }
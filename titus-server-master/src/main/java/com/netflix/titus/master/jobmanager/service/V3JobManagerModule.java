@@ -32,6 +32,7 @@ import com.netflix.titus.master.jobmanager.service.event.JobManagerReconcilerEve
 import com.netflix.titus.master.jobmanager.service.limiter.DefaultJobSubmitLimiter;
 import com.netflix.titus.master.jobmanager.service.limiter.JobSubmitLimiter;
 import com.netflix.titus.master.jobmanager.service.service.ServiceDifferenceResolver;
+import com.netflix.titus.master.jobmanager.service.snapshot.LocalJobSnapshotWriter;
 import com.netflix.titus.master.mesos.DefaultV3TaskInfoFactory;
 import com.netflix.titus.master.mesos.TaskInfoFactory;
 import org.apache.mesos.Protos;
@@ -55,6 +56,7 @@ public class V3JobManagerModule extends AbstractModule {
         }).to(DefaultV3TaskInfoFactory.class);
 
         bind(TaskLivenessMetrics.class).asEagerSingleton();
+        bind(LocalJobSnapshotWriter.class).asEagerSingleton();
     }
 
     @Provides
@@ -196,7 +196,7 @@ public class BatchDifferenceResolver implements ReconciliationEngine.DifferenceR
 
     private Optional<TitusChangeAction> createNewTaskAction(BatchJobView refJobView, int taskIndex) {
         // Safety check
-        long numberOfNotFinishedTasks = refJobView.getJobHolder().getChildren().stream()
+        long numberOfNotFinishedTasks = refJobView.getJobHolder().getChildrenView().stream()
                 .filter(holder -> TaskState.isRunning(((Task) holder.getEntity()).getStatus().getState()))
                 .count();
         if (numberOfNotFinishedTasks >= refJobView.getRequiredSize()) {
@@ -250,7 +250,7 @@ public class BatchDifferenceResolver implements ReconciliationEngine.DifferenceR
             actions.add(storeWriteRetryInterceptor.apply(BasicJobActions.updateJobInStore(engine, jobStore)));
         }
         boolean isJobTerminating = refJob.getStatus().getState() == JobState.KillInitiated;
-        for (EntityHolder referenceTask : refJobHolder.getChildren()) {
+        for (EntityHolder referenceTask : refJobHolder.getChildrenView()) {
 
             Optional<EntityHolder> storeHolder = storeJob.findById(referenceTask.getId());
 
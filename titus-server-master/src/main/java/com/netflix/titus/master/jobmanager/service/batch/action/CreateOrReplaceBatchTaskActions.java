@@ -45,7 +45,7 @@ import rx.Observable;
 public class CreateOrReplaceBatchTaskActions {
 
     public static TitusChangeAction createOrReplaceTaskAction(JobManagerConfiguration configuration, JobStore jobStore, EntityHolder jobHolder, int index, Clock clock) {
-        return jobHolder.getChildren().stream()
+        return jobHolder.getChildrenView().stream()
                 .filter(taskHolder -> {
                     BatchJobTask task = taskHolder.getEntity();
                     return task.getIndex() == index;
@@ -60,7 +60,7 @@ public class DifferenceResolverUtils {
     }
 
     public static boolean allDone(EntityHolder rootHolder) {
-        return rootHolder.getChildren().stream().allMatch(taskHolder -> isDone(rootHolder.getEntity(), taskHolder.getEntity()));
+        return rootHolder.getChildrenView().stream().allMatch(taskHolder -> isDone(rootHolder.getEntity(), taskHolder.getEntity()));
     }
 
     public static boolean shouldRetry(Job<?> job, Task task) {
@@ -133,7 +133,7 @@ public class DifferenceResolverUtils {
         Clock clock = titusRuntime.getClock();
 
         List<ChangeAction> actions = new ArrayList<>();
-        runningJobView.getJobHolder().getChildren().forEach(taskHolder -> {
+        runningJobView.getJobHolder().getChildrenView().forEach(taskHolder -> {
             Task task = taskHolder.getEntity();
             TaskState taskState = task.getStatus().getState();
 
@@ -216,7 +216,7 @@ public class DifferenceResolverUtils {
     public static int countActiveNotStartedTasks(EntityHolder refJobHolder, EntityHolder runningJobHolder) {
         Set<String> pendingTaskIds = new HashSet<>();
 
-        Consumer<EntityHolder> countingFun = jobHolder -> jobHolder.getChildren().forEach(taskHolder -> {
+        Consumer<EntityHolder> countingFun = jobHolder -> jobHolder.getChildrenView().forEach(taskHolder -> {
             TaskState state = ((Task) taskHolder.getEntity()).getStatus().getState();
             if (state != TaskState.Started && state != TaskState.Finished) {
                 pendingTaskIds.add(taskHolder.getId());
@@ -240,7 +240,7 @@ public class DifferenceResolverUtils {
             this.job = jobHolder.getEntity();
             this.jobHolder = jobHolder;
             this.requiredSize = apply(job, BatchJobExt::getSize, service -> service.getCapacity().getDesired());
-            this.tasks = jobHolder.getChildren().stream().map(h -> (TASK) h.getEntity()).collect(Collectors.toList());
+            this.tasks = jobHolder.getChildrenView().stream().map(h -> (TASK) h.getEntity()).collect(Collectors.toList());
         }
 
         public EntityHolder getJobHolder() {
@@ -177,7 +177,7 @@ public class KillInitiatedActions {
 
         // Move running tasks to KillInitiated state
         Set<String> runningTaskIds = new HashSet<>();
-        engine.getRunningView().getChildren().forEach(taskHolder -> {
+        engine.getRunningView().getChildrenView().forEach(taskHolder -> {
             Task task = taskHolder.getEntity();
             runningTaskIds.add(task.getId());
 
@@ -188,7 +188,7 @@ public class KillInitiatedActions {
         });
 
         // Immediately finish Accepted tasks, which are not yet in the running model.
-        engine.getReferenceView().getChildren().forEach(taskHolder -> {
+        engine.getReferenceView().getChildrenView().forEach(taskHolder -> {
             Task task = taskHolder.getEntity();
             TaskState state = task.getStatus().getState();
             if (state == TaskState.Accepted && !runningTaskIds.contains(task.getId())) {
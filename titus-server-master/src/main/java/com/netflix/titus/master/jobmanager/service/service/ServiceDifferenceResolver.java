@@ -260,7 +260,7 @@ public class ServiceDifferenceResolver implements ReconciliationEngine.Differenc
             actions.add(storeWriteRetryInterceptor.apply(BasicJobActions.updateJobInStore(engine, jobStore)));
         }
         boolean isJobTerminating = refJob.getStatus().getState() == JobState.KillInitiated;
-        for (EntityHolder referenceTaskHolder : refJobHolder.getChildren()) {
+        for (EntityHolder referenceTaskHolder : refJobHolder.getChildrenView()) {
             ServiceJobTask refTask = referenceTaskHolder.getEntity();
             Optional<EntityHolder> storeHolder = storeJob.findById(referenceTaskHolder.getId());
             ServiceJobTask storeTask = storeHolder.get().getEntity();
@@ -294,7 +294,7 @@ public class ServiceDifferenceResolver implements ReconciliationEngine.Differenc
     }
 
     private long getNumberOfNotFinishedTasks(ServiceJobView refJobView) {
-        return refJobView.getJobHolder().getChildren().stream()
+        return refJobView.getJobHolder().getChildrenView().stream()
                 .filter(holder -> TaskState.isRunning(((Task) holder.getEntity()).getStatus().getState()))
                 .count();
     }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.jobmanager.service.snapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.store.ActiveRecordVersions;
+import com.netflix.titus.common.util.tuple.Pair;
+
+/**
+ * Difference between a {@link LocalJobSnapshot} and the current store content, computed from the store record
+ * versions. A record is taken from the snapshot only if its version is older than the cutoff time. All other
+ * active records (new or updated after the cutoff time) must be loaded from the store. Snapshot records that are
+ * no longer active in the store are dropped.
+ */
+public class JobSnapshotDelta {
+
+    private final List<Pair<Job, List<Task>>> unchangedJobs;
+    private final Map<String, Set<String>> changedTaskIds;
+    private final Set<String> changedJobIds;
+
+    private JobSnapshotDelta(List<Pair<Job, List<Task>>> unchangedJobs,
+                             Map<String, Set<String>> changedTaskIds,
+                             Set<String> changedJobIds) {
+        this.unchangedJobs = unchangedJobs;
+        this.changedTaskIds = changedTaskIds;
+        this.changedJobIds = changedJobIds;
+    }
+
+    /**
+     * Jobs not modified since the snapshot was taken, with their unmodified tasks.
+     */
+    public List<Pair<Job, List<Task>>> getUnchangedJobs() {
+        return unchangedJobs;
+    }
+
+    /**
+     * Ids of new or modified tasks belonging to the unchanged jobs, keyed by job id.
+     */
+    public Map<String, Set<String>> getChangedTaskIds() {
+        return changedTaskIds;
+    }
+
+    public int getChangedTaskCount() {
+        return changedTaskIds.values().stream().mapToInt(Set::size).sum();
+    }
+
+    /**
+     * Ids of new or modified jobs, which must be loaded from the store together with all their tasks.
+     */
+    public Set<String> getChangedJobIds() {
+        return changedJobIds;
+    }
+
+    public static JobSnapshotDelta compute(LocalJobSnapshot snapshot, ActiveRecordVersions versions, long cutoffTime) {
+        Map<String, Long> jobVersions = versions.getJobVersions();
+
+        List<Pair<Job, List<Task>>> unchangedJobs = new ArrayList<>();
+        Map<String, Set<String>> changedTaskIds = new HashMap<>();
+        Set<String> unchangedJobIds = new HashSet<>();
+
+        for (Pair<Job, List<Task>> jobAndTasks : snapshot.getJobsAndTasks()) {
+            Job job = jobAndTasks.getLeft();
+            Long jobVersion = jobVersions.get(job.getId());
+            if (jobVersion == null || jobVersion >= cutoffTime) {
+                continue;
+            }
+            unchangedJobIds.add(job.getId());
+
+            Map<String, Long> taskVersions = versions.getTaskVersions(job.getId());
+            Set<String> notInSnapshot = new HashSet<>(taskVersions.keySet());
+            List<Task> unchangedTasks = new ArrayList<>();
+            for (Task task : jobAndTasks.getRight()) {
+                Long taskVersion = taskVersions.get(task.getId());
+                if (taskVersion != null && taskVersion < cutoffTime) {
+                    unchangedTasks.add(task);
+                    notInSnapshot.remove(task.getId());
+                }
+            }
+            unchangedJobs.add(Pair.of(job, unchangedTasks));
+            if (!notInSnapshot.isEmpty()) {
+                changedTaskIds.put(job.getId(), notInSnapshot);
+            }
+        }
+
+        Set<String> changedJobIds = new HashSet<>(jobVersions.keySet());
+        changedJobIds.removeAll(unchangedJobIds);
+
+        return new JobSnapshotDelta(
+                Collections.unmodifiableList(unchangedJobs),
+                Collections.unmodifiableMap(changedTaskIds),
+                Collections.unmodifiableSet(changedJobIds)
+        );
+    }
+}
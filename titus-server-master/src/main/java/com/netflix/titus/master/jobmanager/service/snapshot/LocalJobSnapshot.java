@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.jobmanager.service.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.json.ObjectMappers;
+import com.netflix.titus.common.util.tuple.Pair;
+
+/**
+ * A point in time copy of all jobs and tasks of the job manager reference model, kept in a local file. The file
+ * is GZIP compressed, and contains a header (magic number, format version, snapshot timestamp and job count),
+ * followed by length prefixed job and task records in the job store JSON format, and a CRC32 checksum of all
+ * preceding data. A file with a wrong header or checksum is rejected as a whole.
+ */
+public class LocalJobSnapshot {
+
+    static final int MAGIC = 0x5453_4E50;
+    static final int VERSION_1 = 1;
+
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    private static final ObjectMapper MAPPER = ObjectMappers.storeMapper();
+
+    private final long timestamp;
+    private final List<Pair<Job, List<Task>>> jobsAndTasks;
+
+    public LocalJobSnapshot(long timestamp, List<Pair<Job, List<Task>>> jobsAndTasks) {
+        this.timestamp = timestamp;
+        this.jobsAndTasks = jobsAndTasks;
+    }
+
+    /**
+     * Time at which the snapshot was taken. All changes made to the reference model before this time are included
+     * in the snapshot.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public List<Pair<Job, List<Task>>> getJobsAndTasks() {
+        return jobsAndTasks;
+    }
+
+    /**
+     * Writes the snapshot to a temporary file first, and next moves it to the target location, so an incomplete
+     * file is never observed by a reader.
+     *
+     * @return size of the written file in bytes
+     */
+    public long writeTo(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create snapshot directory " + parent);
+        }
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+            write(output);
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file.length();
+    }
+
+    void write(OutputStream output) throws IOException {
+        GZIPOutputStream gzipOutput = new GZIPOutputStream(output);
+        CRC32 checksum = new CRC32();
+        DataOutputStream dataOutput = new DataOutputStream(new CheckedOutputStream(gzipOutput, checksum));
+
+        dataOutput.writeInt(MAGIC);
+        dataOutput.writeInt(VERSION_1);
+        dataOutput.writeLong(timestamp);
+        dataOutput.writeInt(jobsAndTasks.size());
+        for (Pair<Job, List<Task>> jobAndTasks : jobsAndTasks) {
+            writeRecord(dataOutput, jobAndTasks.getLeft());
+            List<Task> tasks = jobAndTasks.getRight();
+            dataOutput.writeInt(tasks.size());
+            for (Task task : tasks) {
+                writeRecord(dataOutput, task);
+            }
+        }
+        dataOutput.flush();
+
+        new DataOutputStream(gzipOutput).writeLong(checksum.getValue());
+        gzipOutput.finish();
+        output.flush();
+    }
+
+    /**
+     * Reads a snapshot from a file.
+     *
+     * @throws IOException if the file cannot be read, or its content is corrupted
+     */
+    public static LocalJobSnapshot readFrom(File file) throws IOException {
+        try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+            return read(input);
+        }
+    }
+
+    static LocalJobSnapshot read(InputStream input) throws IOException {
+        GZIPInputStream gzipInput = new GZIPInputStream(input);
+        CRC32 checksum = new CRC32();
+        DataInputStream dataInput = new DataInputStream(new CheckedInputStream(gzipInput, checksum));
+
+        int magic = dataInput.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not a job snapshot file (bad magic number)");
+        }
+        int version = dataInput.readInt();
+        if (version != VERSION_1) {
+            throw new IOException("Unsupported job snapshot version: " + version);
+        }
+        long timestamp = dataInput.readLong();
+        int jobCount = readCount(dataInput);
+
+        List<Pair<Job, List<Task>>> jobsAndTasks = new ArrayList<>(Math.min(jobCount, 100_000));
+        for (int i = 0; i < jobCount; i++) {
+            Job job = readRecord(dataInput, Job.class);
+            int taskCount = readCount(dataInput);
+            List<Task> tasks = new ArrayList<>(Math.min(taskCount, 10_000));
+            for (int j = 0; j < taskCount; j++) {
+                tasks.add(readRecord(dataInput, Task.class));
+            }
+            jobsAndTasks.add(Pair.of(job, tasks));
+        }
+
+        long expectedChecksum = new DataInputStream(gzipInput).readLong();
+        if (expectedChecksum != checksum.getValue()) {
+            throw new IOException("Job snapshot checksum mismatch");
+        }
+        return new LocalJobSnapshot(timestamp, Collections.unmodifiableList(jobsAndTasks));
+    }
+
+    private static void writeRecord(DataOutputStream dataOutput, Object record) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(record);
+        dataOutput.writeInt(bytes.length);
+        dataOutput.write(bytes);
+    }
+
+    private static <T> T readRecord(DataInputStream dataInput, Class<T> type) throws IOException {
+        int size = dataInput.readInt();
+        if (size < 0 || size > MAX_RECORD_SIZE) {
+            throw new IOException("Invalid job snapshot record size: " + size);
+        }
+        byte[] bytes = new byte[size];
+        dataInput.readFully(bytes);
+        return MAPPER.readValue(bytes, type);
+    }
+
+    private static int readCount(DataInputStream dataInput) throws IOException {
+        int count = dataInput.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid job snapshot record count: " + count);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.jobmanager.service.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.netflix.spectator.api.Gauge;
+import com.netflix.spectator.api.Registry;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.service.V3JobOperations;
+import com.netflix.titus.common.runtime.TitusRuntime;
+import com.netflix.titus.common.util.StringExt;
+import com.netflix.titus.common.util.guice.annotation.Activator;
+import com.netflix.titus.common.util.rx.ObservableExt;
+import com.netflix.titus.common.util.time.Clock;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.master.MetricConstants;
+import com.netflix.titus.master.jobmanager.service.JobManagerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Completable;
+import rx.Subscription;
+import rx.schedulers.Schedulers;
+
+/**
+ * Periodically writes the job manager reference model to a local {@link LocalJobSnapshot} file, which is used
+ * by the next leader running on this node to restore the job manager state without reading all records from the store.
+ */
+@Singleton
+public class LocalJobSnapshotWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalJobSnapshotWriter.class);
+
+    private static final String ROOT_METRIC_NAME = MetricConstants.METRIC_ROOT + "jobManager.localSnapshot.";
+
+    private final JobManagerConfiguration configuration;
+    private final V3JobOperations v3JobOperations;
+    private final Registry registry;
+    private final Clock clock;
+
+    private final Gauge lastWriteTimestamp;
+    private final Gauge writeTimeMs;
+    private final Gauge fileSizeBytes;
+    private final Gauge jobCount;
+
+    private Subscription writerSubscription;
+
+    @Inject
+    public LocalJobSnapshotWriter(JobManagerConfiguration configuration,
+                                  V3JobOperations v3JobOperations,
+                                  TitusRuntime titusRuntime) {
+        this.configuration = configuration;
+        this.v3JobOperations = v3JobOperations;
+        this.registry = titusRuntime.getRegistry();
+        this.clock = titusRuntime.getClock();
+
+        this.lastWriteTimestamp = registry.gauge(ROOT_METRIC_NAME + "lastWriteTimestamp");
+        this.writeTimeMs = registry.gauge(ROOT_METRIC_NAME + "writeTimeMs");
+        this.fileSizeBytes = registry.gauge(ROOT_METRIC_NAME + "fileSizeBytes");
+        this.jobCount = registry.gauge(ROOT_METRIC_NAME + "jobCount");
+    }
+
+    @Activator
+    public void enterActiveMode() {
+        if (StringExt.isEmpty(configuration.getLocalSnapshotFile())) {
+            logger.info("Local job snapshot file not configured");
+            return;
+        }
+        long intervalMs = Math.max(1_000, configuration.getLocalSnapshotIntervalMs());
+
+        this.writerSubscription = ObservableExt.schedule(
+                ROOT_METRIC_NAME + "scheduler", registry, "LocalJobSnapshotWriteAction",
+                Completable.fromAction(this::writeSnapshot), intervalMs, intervalMs, TimeUnit.MILLISECONDS, Schedulers.io()
+        ).subscribe(result ->
+                result.ifPresent(error -> logger.warn("Local job snapshot write error", error))
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ObservableExt.safeUnsubscribe(writerSubscription);
+    }
+
+    void writeSnapshot() {
+        String path = configuration.getLocalSnapshotFile();
+        if (StringExt.isEmpty(path)) {
+            return;
+        }
+
+        // The timestamp must be taken before reading the reference model, so no change made after it is missed
+        long timestamp = clock.wallTime();
+        List<Pair<Job, List<Task>>> jobsAndTasks = v3JobOperations.getJobsAndTasks();
+
+        long size;
+        try {
+            size = new LocalJobSnapshot(timestamp, jobsAndTasks).writeTo(new File(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write local job snapshot file " + path, e);
+        }
+
+        long now = clock.wallTime();
+        lastWriteTimestamp.set(now);
+        writeTimeMs.set(now - timestamp);
+        fileSizeBytes.set(size);
+        jobCount.set(jobsAndTasks.size());
+        logger.debug("Local job snapshot with {} jobs written to {} in {}ms ({} bytes)", jobsAndTasks.size(), path, now - timestamp, size);
+    }
+}
@@ -84,6 +84,7 @@ import com.netflix.titus.master.model.job.TitusQueuableTask;
 import com.netflix.titus.master.scheduler.constraint.SystemHardConstraint;
 import com.netflix.titus.master.scheduler.constraint.TaskCache;
 import com.netflix.titus.master.scheduler.fitness.AgentManagementFitnessCalculator;
+import com.netflix.titus.master.scheduler.fitness.AgentTaskAggregateCache;
 import com.netflix.titus.master.scheduler.fitness.TitusFitnessCalculator;
 import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCache;
 import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCacheUpdater;
@@ -164,6 +165,7 @@ public class DefaultSchedulingService implements SchedulingService {
     private final TitusRuntime titusRuntime;
     private final AgentResourceCache agentResourceCache;
     private final AgentResourceCacheUpdater agentResourceCacheUpdater;
+    private final AgentTaskAggregateCache agentTaskAggregateCache = new AgentTaskAggregateCache();
     private final BlockingQueue<Map<String, Action1<List<TaskAssignmentResult>>>> taskFailuresActions = new LinkedBlockingQueue<>(5);
     private final TierSlaUpdater tierSlaUpdater;
     private final Registry registry;
@@ -251,7 +253,7 @@ public class DefaultSchedulingService implements SchedulingService {
         TaskScheduler.Builder schedulerBuilder = new TaskScheduler.Builder()
                 .withLeaseRejectAction(virtualMachineService::rejectLease)
                 .withLeaseOfferExpirySecs(masterConfiguration.getMesosLeaseOfferExpirySecs())
-                .withFitnessCalculator(new TitusFitnessCalculator(schedulerConfiguration, agentManagementFitnessCalculator, agentResourceCache))
+                .withFitnessCalculator(new TitusFitnessCalculator(schedulerConfiguration, agentManagementFitnessCalculator, agentResourceCache, agentTaskAggregateCache))
                 .withFitnessGoodEnoughFunction(TitusFitnessCalculator.fitnessGoodEnoughFunction)
                 .withPreferentialNamedConsumableResourceEvaluator(preferentialNamedConsumableResourceEvaluator)
                 .withMaxConcurrent(schedulerConfiguration.getSchedulerMaxConcurrent())
@@ -389,6 +391,7 @@ public class DefaultSchedulingService implements SchedulingService {
     private void preSchedulingHook() {
         systemHardConstraint.prepare();
         taskCache.prepare();
+        agentTaskAggregateCache.prepare();
     }
 
     private void checkIfExitOnSchedError(String s) {
@@ -585,6 +588,8 @@ public class DefaultSchedulingService implements SchedulingService {
      * To fix this problem we have to redesign our APIs.
      */
     public void startScheduling() {
+        taskCache.start();
+
         if (schedulerConfiguration.isSchedulerEnabled()) {
             logger.info("Starting the scheduling service");
             schedulingService.start();
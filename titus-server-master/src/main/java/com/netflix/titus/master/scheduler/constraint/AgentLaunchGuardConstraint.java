@@ -16,19 +16,12 @@
 
 package com.netflix.titus.master.scheduler.constraint;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicReference;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import com.netflix.fenzo.TaskRequest;
 import com.netflix.fenzo.TaskTrackerState;
 import com.netflix.fenzo.VirtualMachineCurrentState;
-import com.netflix.titus.api.jobmanager.model.job.Task;
-import com.netflix.titus.api.jobmanager.model.job.TaskState;
-import com.netflix.titus.api.jobmanager.service.V3JobOperations;
 import com.netflix.titus.master.scheduler.SchedulerConfiguration;
 
 /**
@@ -43,15 +36,13 @@ public class AgentLaunchGuardConstraint implements SystemConstraint {
     private static final Result INVALID = new Result(false, "The agent has a task already launching");
 
     private final SchedulerConfiguration schedulerConfiguration;
-    private final V3JobOperations v3JobOperations;
-
-    private final AtomicReference<Map<String, Task>> taskIdMapRef = new AtomicReference<>(Collections.emptyMap());
+    private final TaskCache taskCache;
 
     @Inject
     public AgentLaunchGuardConstraint(SchedulerConfiguration schedulerConfiguration,
-                                      V3JobOperations v3JobOperations) {
+                                      TaskCache taskCache) {
         this.schedulerConfiguration = schedulerConfiguration;
-        this.v3JobOperations = v3JobOperations;
+        this.taskCache = taskCache;
     }
 
     @Override
@@ -59,15 +50,6 @@ public class AgentLaunchGuardConstraint implements SystemConstraint {
         return NAME;
     }
 
-    @Override
-    public void prepare() {
-        Map<String, Task> taskIdMap = new HashMap<>();
-        for (Task task : v3JobOperations.getTasks()) {
-            taskIdMap.put(task.getId(), task);
-        }
-        taskIdMapRef.set(taskIdMap);
-    }
-
     @Override
     public Result evaluate(TaskRequest taskRequest, VirtualMachineCurrentState targetVM, TaskTrackerState taskTrackerState) {
         if (!schedulerConfiguration.isGlobalTaskLaunchingConstraintEvaluatorEnabled()) {
@@ -87,19 +69,10 @@ public class AgentLaunchGuardConstraint implements SystemConstraint {
 
     private boolean hasLaunchingTask(VirtualMachineCurrentState targetVM) {
         for (TaskRequest running : targetVM.getRunningTasks()) {
-            if (isTaskLaunching(running)) {
+            if (taskCache.isTaskLaunching(running.getId())) {
                 return true;
             }
         }
         return false;
     }
-
-    private boolean isTaskLaunching(TaskRequest request) {
-        Task current = taskIdMapRef.get().get(request.getId());
-        if (current == null) {
-            return false;
-        }
-        TaskState state = current.getStatus().getState();
-        return state == TaskState.Accepted || state == TaskState.Launched || state == TaskState.StartInitiated;
-    }
 }
@@ -17,72 +17,181 @@
 package com.netflix.titus.master.scheduler.constraint;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import com.netflix.titus.api.jobmanager.TaskAttributes;
 import com.netflix.titus.api.jobmanager.model.job.Job;
 import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.TaskState;
+import com.netflix.titus.api.jobmanager.model.job.event.JobManagerEvent;
+import com.netflix.titus.api.jobmanager.model.job.event.TaskUpdateEvent;
 import com.netflix.titus.api.jobmanager.service.V3JobOperations;
+import com.netflix.titus.common.runtime.TitusRuntime;
+import com.netflix.titus.common.util.collections.PersistentHashMap;
+import com.netflix.titus.common.util.rx.ObservableExt;
 import com.netflix.titus.common.util.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.Subscription;
 
 /**
  * Helper class that aggregates task data by multiple criteria used by Fenzo constraint/fitness evaluators.
+ * <p>
+ * The aggregates are built once from the job manager state, and next updated incrementally from the job manager
+ * event stream. They are kept in persistent maps, so {@link #prepare()} only publishes the latest version, which stays
+ * unchanged for the duration of a scheduling iteration.
  */
 @Singleton
 public class TaskCache {
 
+    private static final Logger logger = LoggerFactory.getLogger(TaskCache.class);
+
     private final V3JobOperations v3JobOperations;
-    private final AtomicReference<TaskCacheValue> currentCacheValue;
+    private final TitusRuntime titusRuntime;
+
+    private final AtomicReference<TaskCacheValue> currentCacheValue = new AtomicReference<>(TaskCacheValue.EMPTY);
+    private final Object lock = new Object();
+    private volatile TaskCacheValue latestCacheValue = TaskCacheValue.EMPTY;
+
+    private Subscription jobStreamSubscription;
 
     @Inject
-    public TaskCache(V3JobOperations v3JobOperations) {
+    public TaskCache(V3JobOperations v3JobOperations, TitusRuntime titusRuntime) {
         this.v3JobOperations = v3JobOperations;
-        this.currentCacheValue = new AtomicReference<>();
+        this.titusRuntime = titusRuntime;
+    }
+
+    /**
+     * FIXME Due to circular dependency between components, we cannot use the activation framework here.
+     */
+    public void start() {
+        // The event stream is subscribed to first, and the full state is loaded next. All updates applied before
+        // the reload are already included in the loaded state, and those that come later are applied on top of it.
+        Observable<JobManagerEvent<?>> eventsWithResync = Observable.merge(
+                v3JobOperations.observeJobs(),
+                Observable.defer(() -> {
+                    resync();
+                    return Observable.<JobManagerEvent<?>>empty();
+                })
+        );
+        this.jobStreamSubscription = titusRuntime.persistentStream(eventsWithResync).subscribe(
+                this::handleJobEvent,
+                e -> logger.error("Job event stream terminated with an error", e),
+                () -> logger.info("Job event stream onCompleted")
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ObservableExt.safeUnsubscribe(jobStreamSubscription);
     }
 
     public void prepare() {
-        currentCacheValue.set(new TaskCacheValue());
+        currentCacheValue.set(latestCacheValue);
     }
 
     public Map<String, Integer> getTasksByZoneIdCounters(String jobId) {
         return currentCacheValue.get().getTasksByZoneIdCounters(jobId);
     }
 
-    private class TaskCacheValue {
+    /**
+     * @return true if the task is in one of the states between Accepted and Started (exclusive)
+     */
+    public boolean isTaskLaunching(String taskId) {
+        Task task = currentCacheValue.get().tasksById.get(taskId);
+        if (task == null) {
+            return false;
+        }
+        TaskState state = task.getStatus().getState();
+        return state == TaskState.Accepted || state == TaskState.Launched || state == TaskState.StartInitiated;
+    }
 
-        private final Map<String, Map<String, Integer>> zoneBalanceCountersByJobId;
+    private void resync() {
+        synchronized (lock) {
+            TaskCacheValue value = TaskCacheValue.EMPTY;
+            for (Pair<Job, List<Task>> jobAndTasks : v3JobOperations.getJobsAndTasks()) {
+                for (Task task : jobAndTasks.getRight()) {
+                    value = value.update(task);
+                }
+            }
+            this.latestCacheValue = value;
+        }
+    }
 
-        private TaskCacheValue() {
-            List<Pair<Job, List<Task>>> jobsAndTasks = v3JobOperations.getJobsAndTasks();
-            this.zoneBalanceCountersByJobId = buildZoneBalanceCountersByJobId(jobsAndTasks);
+    private void handleJobEvent(JobManagerEvent<?> event) {
+        if (!(event instanceof TaskUpdateEvent)) {
+            return;
+        }
+        Task task = ((TaskUpdateEvent) event).getCurrentTask();
+        try {
+            synchronized (lock) {
+                this.latestCacheValue = latestCacheValue.update(task);
+            }
+        } catch (Exception e) {
+            logger.warn("Unexpected exception during handling job event: event={}", event, e);
+        }
+    }
+
+    private static class TaskCacheValue {
+
+        private static final TaskCacheValue EMPTY = new TaskCacheValue(
+                PersistentHashMap.empty(), PersistentHashMap.empty()
+        );
+
+        private final PersistentHashMap<String, Task> tasksById;
+        private final PersistentHashMap<String, PersistentHashMap<String, Integer>> zoneBalanceCountersByJobId;
+
+        private TaskCacheValue(PersistentHashMap<String, Task> tasksById,
+                               PersistentHashMap<String, PersistentHashMap<String, Integer>> zoneBalanceCountersByJobId) {
+            this.tasksById = tasksById;
+            this.zoneBalanceCountersByJobId = zoneBalanceCountersByJobId;
         }
 
         private Map<String, Integer> getTasksByZoneIdCounters(String jobId) {
-            return zoneBalanceCountersByJobId.getOrDefault(jobId, Collections.emptyMap());
+            PersistentHashMap<String, Integer> counters = zoneBalanceCountersByJobId.get(jobId);
+            return counters == null ? Collections.emptyMap() : counters.asMap();
         }
 
-        private Map<String, Map<String, Integer>> buildZoneBalanceCountersByJobId(List<Pair<Job, List<Task>>> jobsAndTasks) {
-            Map<String, Map<String, Integer>> result = new HashMap<>();
-            for (Pair<Job, List<Task>> jobAndTask : jobsAndTasks) {
-                Map<String, Integer> jobZoneBalancing = new HashMap<>();
-                for (Task task : jobAndTask.getRight()) {
-                    String zoneId = getZoneId(task);
-                    if (zoneId != null) {
-                        jobZoneBalancing.put(zoneId, jobZoneBalancing.getOrDefault(zoneId, 0) + 1);
-                    }
-                }
-                result.put(jobAndTask.getLeft().getId(), jobZoneBalancing);
+        /**
+         * Replaces the previous version of the task. Finished tasks are removed.
+         */
+        private TaskCacheValue update(Task task) {
+            Task previous = tasksById.get(task.getId());
+            boolean finished = task.getStatus().getState() == TaskState.Finished;
+            if (previous == null && finished) {
+                return this;
+            }
+
+            PersistentHashMap<String, Task> newTasksById = tasksById;
+            PersistentHashMap<String, PersistentHashMap<String, Integer>> newZoneCounters = zoneBalanceCountersByJobId;
+
+            if (previous != null) {
+                newTasksById = newTasksById.remove(previous.getId());
+                newZoneCounters = updateZoneCounter(newZoneCounters, previous, -1);
+            }
+            if (!finished) {
+                newTasksById = newTasksById.put(task.getId(), task);
+                newZoneCounters = updateZoneCounter(newZoneCounters, task, 1);
             }
-            return result;
+            return new TaskCacheValue(newTasksById, newZoneCounters);
         }
 
-        private String getZoneId(Task task) {
-            return task.getTaskContext().get(TaskAttributes.TASK_ATTRIBUTES_AGENT_ZONE);
+        private static PersistentHashMap<String, PersistentHashMap<String, Integer>> updateZoneCounter(
+                PersistentHashMap<String, PersistentHashMap<String, Integer>> zoneCounters, Task task, int delta) {
+            String zoneId = task.getTaskContext().get(TaskAttributes.TASK_ATTRIBUTES_AGENT_ZONE);
+            if (zoneId == null) {
+                return zoneCounters;
+            }
+            PersistentHashMap<String, Integer> jobCounters = zoneCounters.getOrDefault(task.getJobId(), PersistentHashMap.empty());
+            int newCount = jobCounters.getOrDefault(zoneId, 0) + delta;
+            jobCounters = newCount > 0 ? jobCounters.put(zoneId, newCount) : jobCounters.remove(zoneId);
+            return jobCounters.isEmpty() ? zoneCounters.remove(task.getJobId()) : zoneCounters.put(task.getJobId(), jobCounters);
         }
     }
-}
\ No newline at end of file
+}
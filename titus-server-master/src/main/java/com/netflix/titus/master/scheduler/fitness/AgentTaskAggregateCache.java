@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.scheduler.fitness;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.netflix.fenzo.TaskAssignmentResult;
+import com.netflix.fenzo.TaskRequest;
+import com.netflix.fenzo.VirtualMachineCurrentState;
+import com.netflix.titus.api.jobmanager.model.job.Container;
+import com.netflix.titus.api.jobmanager.model.job.Image;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+
+/**
+ * Per scheduling iteration cache of task counts on an agent, grouped by job id, image and security groups. Fenzo
+ * evaluates the fitness of each task and agent pair, so counting the tasks on an agent anew on each call is expensive
+ * in large cells. An agent aggregate is built from the Fenzo running tasks the first time the agent is evaluated in a
+ * scheduling iteration, and next only the tasks assigned to it by Fenzo in the same iteration are added. The Fenzo
+ * running tasks include the tasks placed in the previous iterations, even if the job manager has not reported them yet.
+ * {@link #prepare()} must be called at the beginning of each scheduling iteration.
+ */
+public class AgentTaskAggregateCache {
+
+    private final ConcurrentMap<String, AgentTaskAggregate> aggregatesByHostname = new ConcurrentHashMap<>();
+
+    public void prepare() {
+        aggregatesByHostname.clear();
+    }
+
+    public AgentTaskAggregate get(VirtualMachineCurrentState targetVM) {
+        AgentTaskAggregate aggregate = aggregatesByHostname.get(targetVM.getHostname());
+        if (aggregate == null) {
+            aggregate = aggregatesByHostname.computeIfAbsent(targetVM.getHostname(), hostname -> new AgentTaskAggregate());
+        }
+        aggregate.refresh(targetVM);
+        return aggregate;
+    }
+
+    public static class AgentTaskAggregate {
+
+        private final Map<String, Integer> taskCountsByJobId = new HashMap<>();
+        private final Map<Image, Integer> taskCountsByImage = new HashMap<>();
+        private final Map<List<String>, Integer> taskCountsBySecurityGroups = new HashMap<>();
+
+        private final Set<String> assignedTaskIds = new HashSet<>();
+        private int runningTaskCount = -1;
+
+        public synchronized int getTaskCountOfJob(String jobId) {
+            return taskCountsByJobId.getOrDefault(jobId, 0);
+        }
+
+        public synchronized int getTaskCountWithImage(Image image) {
+            return taskCountsByImage.getOrDefault(image, 0);
+        }
+
+        public synchronized int getTaskCountWithSecurityGroups(List<String> securityGroups) {
+            return taskCountsBySecurityGroups.getOrDefault(securityGroups, 0);
+        }
+
+        /**
+         * Running tasks do not change during a scheduling iteration, and Fenzo only adds new task assignments, so
+         * comparing the collection sizes is enough to detect a change. If the running tasks changed anyway, or an
+         * assignment was removed, the aggregate is rebuilt.
+         */
+        private synchronized void refresh(VirtualMachineCurrentState targetVM) {
+            Collection<TaskRequest> runningTasks = targetVM.getRunningTasks();
+            Collection<TaskAssignmentResult> assignedTasks = targetVM.getTasksCurrentlyAssigned();
+            if (runningTasks.size() == runningTaskCount && assignedTasks.size() == assignedTaskIds.size()) {
+                return;
+            }
+
+            if (runningTasks.size() != runningTaskCount || assignedTasks.size() < assignedTaskIds.size()) {
+                taskCountsByJobId.clear();
+                taskCountsByImage.clear();
+                taskCountsBySecurityGroups.clear();
+                assignedTaskIds.clear();
+                runningTasks.forEach(this::add);
+                this.runningTaskCount = runningTasks.size();
+            }
+            for (TaskAssignmentResult assignmentResult : assignedTasks) {
+                TaskRequest taskRequest = assignmentResult.getRequest();
+                if (assignedTaskIds.add(taskRequest.getId())) {
+                    add(taskRequest);
+                }
+            }
+        }
+
+        private void add(TaskRequest taskRequest) {
+            Job<?> job = FitnessCalculatorFunctions.getJob(taskRequest);
+            Container container = job.getJobDescriptor().getContainer();
+            taskCountsByJobId.merge(job.getId(), 1, Integer::sum);
+            taskCountsByImage.merge(container.getImage(), 1, Integer::sum);
+            taskCountsBySecurityGroups.merge(container.getSecurityProfile().getSecurityGroups(), 1, Integer::sum);
+        }
+    }
+}
@@ -16,12 +16,7 @@
 
 package com.netflix.titus.master.scheduler.fitness;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.function.Predicate;
-
 import com.google.common.base.Strings;
-import com.netflix.fenzo.TaskAssignmentResult;
 import com.netflix.fenzo.TaskRequest;
 import com.netflix.fenzo.VirtualMachineCurrentState;
 import com.netflix.fenzo.queues.QueuableTask;
@@ -72,24 +67,6 @@ public class FitnessCalculatorFunctions {
         return v3QueueableTask.getJob();
     }
 
-    public static List<TaskRequest> getAllTasksOnAgent(VirtualMachineCurrentState targetVm) {
-        List<TaskRequest> tasksOnAgent = new ArrayList<>(targetVm.getRunningTasks());
-        for (TaskAssignmentResult taskAssignmentResult : targetVm.getTasksCurrentlyAssigned()) {
-            tasksOnAgent.add(taskAssignmentResult.getRequest());
-        }
-        return tasksOnAgent;
-    }
-
-    public static long countMatchingTasks(List<TaskRequest> tasksOnAgent, Predicate<TaskRequest> predicate) {
-        int count = 0;
-        for (TaskRequest taskRequest : tasksOnAgent) {
-            if (predicate.test(taskRequest)) {
-                count++;
-            }
-        }
-        return count;
-    }
-
     public static String getAgentAttributeValue(VirtualMachineCurrentState targetVM, String attributeName) {
         Protos.Attribute attribute = targetVM.getCurrAvailableResources().getAttributeMap().get(attributeName);
         return Strings.nullToEmpty(attribute.getText().getValue());
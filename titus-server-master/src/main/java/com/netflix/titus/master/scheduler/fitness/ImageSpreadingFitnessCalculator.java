@@ -16,14 +16,11 @@
 
 package com.netflix.titus.master.scheduler.fitness;
 
-import java.util.List;
-
 import com.netflix.fenzo.TaskRequest;
 import com.netflix.fenzo.TaskTrackerState;
 import com.netflix.fenzo.VMTaskFitnessCalculator;
 import com.netflix.fenzo.VirtualMachineCurrentState;
-import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCacheFunctions;
-import com.netflix.titus.master.scheduler.resourcecache.AgentResourceCacheImage;
+import com.netflix.titus.api.jobmanager.model.job.Image;
 
 /**
  * A fitness calculator that will prefer placing tasks on agents that do not have a task with the same image.
@@ -35,6 +32,12 @@ public class ImageSpreadingFitnessCalculator implements VMTaskFitnessCalculator
     private static final double MATCHING_TASK_SCORE = 0.5;
     private static final double NO_MATCHING_TASK_SCORE = 1.0;
 
+    private final AgentTaskAggregateCache aggregateCache;
+
+    public ImageSpreadingFitnessCalculator(AgentTaskAggregateCache aggregateCache) {
+        this.aggregateCache = aggregateCache;
+    }
+
     @Override
     public String getName() {
         return NAME;
@@ -42,12 +45,8 @@ public class ImageSpreadingFitnessCalculator implements VMTaskFitnessCalculator
 
     @Override
     public double calculateFitness(TaskRequest taskRequest, VirtualMachineCurrentState targetVM, TaskTrackerState taskTrackerState) {
-        List<TaskRequest> allTasksOnAgent = FitnessCalculatorFunctions.getAllTasksOnAgent(targetVM);
-        AgentResourceCacheImage taskRequestImage = AgentResourceCacheFunctions.getImage(taskRequest);
-        long matchingTaskCount = FitnessCalculatorFunctions.countMatchingTasks(allTasksOnAgent, taskOnAgent -> {
-            AgentResourceCacheImage taskOnAgentImage = AgentResourceCacheFunctions.getImage(taskOnAgent);
-            return taskRequestImage.equals(taskOnAgentImage);
-        });
+        Image image = FitnessCalculatorFunctions.getJob(taskRequest).getJobDescriptor().getContainer().getImage();
+        int matchingTaskCount = aggregateCache.get(targetVM).getTaskCountWithImage(image);
 
         if (matchingTaskCount == 0) {
             return NO_MATCHING_TASK_SCORE;
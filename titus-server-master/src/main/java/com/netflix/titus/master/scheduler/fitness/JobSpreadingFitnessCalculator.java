@@ -16,8 +16,6 @@
 
 package com.netflix.titus.master.scheduler.fitness;
 
-import java.util.List;
-
 import com.netflix.fenzo.TaskRequest;
 import com.netflix.fenzo.TaskTrackerState;
 import com.netflix.fenzo.VMTaskFitnessCalculator;
@@ -33,6 +31,12 @@ public class JobSpreadingFitnessCalculator implements VMTaskFitnessCalculator {
     private static final double MATCHING_TASK_SCORE = 0.5;
     private static final double NO_MATCHING_TASK_SCORE = 1.0;
 
+    private final AgentTaskAggregateCache aggregateCache;
+
+    public JobSpreadingFitnessCalculator(AgentTaskAggregateCache aggregateCache) {
+        this.aggregateCache = aggregateCache;
+    }
+
     @Override
     public String getName() {
         return NAME;
@@ -40,12 +44,8 @@ public class JobSpreadingFitnessCalculator implements VMTaskFitnessCalculator {
 
     @Override
     public double calculateFitness(TaskRequest taskRequest, VirtualMachineCurrentState targetVM, TaskTrackerState taskTrackerState) {
-        List<TaskRequest> allTasksOnAgent = FitnessCalculatorFunctions.getAllTasksOnAgent(targetVM);
         String jobId = FitnessCalculatorFunctions.getJob(taskRequest).getId();
-        long matchingTaskCount = FitnessCalculatorFunctions.countMatchingTasks(allTasksOnAgent, taskOnAgent -> {
-            String taskOnAgentJobId = FitnessCalculatorFunctions.getJob(taskRequest).getId();
-            return jobId.equals(taskOnAgentJobId);
-        });
+        int matchingTaskCount = aggregateCache.get(targetVM).getTaskCountOfJob(jobId);
 
         if (matchingTaskCount == 0) {
             return NO_MATCHING_TASK_SCORE;
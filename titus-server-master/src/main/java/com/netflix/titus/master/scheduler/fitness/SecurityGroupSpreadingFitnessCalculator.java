@@ -33,6 +33,12 @@ public class SecurityGroupSpreadingFitnessCalculator implements VMTaskFitnessCal
     private static final double MATCHING_TASK_SCORE = 0.5;
     private static final double NO_MATCHING_TASK_SCORE = 1.0;
 
+    private final AgentTaskAggregateCache aggregateCache;
+
+    public SecurityGroupSpreadingFitnessCalculator(AgentTaskAggregateCache aggregateCache) {
+        this.aggregateCache = aggregateCache;
+    }
+
     @Override
     public String getName() {
         return NAME;
@@ -40,12 +46,8 @@ public class SecurityGroupSpreadingFitnessCalculator implements VMTaskFitnessCal
 
     @Override
     public double calculateFitness(TaskRequest taskRequest, VirtualMachineCurrentState targetVM, TaskTrackerState taskTrackerState) {
-        List<TaskRequest> allTasksOnAgent = FitnessCalculatorFunctions.getAllTasksOnAgent(targetVM);
-        String currentTaskRequestJoinedSecurityGroupIds = FitnessCalculatorFunctions.getJoinedSecurityGroupIds(taskRequest);
-        long matchingTaskCount = FitnessCalculatorFunctions.countMatchingTasks(allTasksOnAgent, taskOnAgent -> {
-            String taskOnAgentJoinedSecurityGroupIds = FitnessCalculatorFunctions.getJoinedSecurityGroupIds(taskOnAgent);
-            return currentTaskRequestJoinedSecurityGroupIds.equals(taskOnAgentJoinedSecurityGroupIds);
-        });
+        List<String> securityGroups = FitnessCalculatorFunctions.getJob(taskRequest).getJobDescriptor().getContainer().getSecurityProfile().getSecurityGroups();
+        int matchingTaskCount = aggregateCache.get(targetVM).getTaskCountWithSecurityGroups(securityGroups);
 
         if (matchingTaskCount == 0) {
             return NO_MATCHING_TASK_SCORE;
@@ -47,10 +47,11 @@ public class TitusFitnessCalculator implements VMTaskFitnessCalculator {
 
     public TitusFitnessCalculator(SchedulerConfiguration configuration,
                                   AgentManagementFitnessCalculator agentManagementFitnessCalculator,
-                                  AgentResourceCache agentResourceCache) {
+                                  AgentResourceCache agentResourceCache,
+                                  AgentTaskAggregateCache agentTaskAggregateCache) {
         this.configuration = configuration;
         this.agentManagementFitnessCalculator = agentManagementFitnessCalculator;
-        this.criticalServiceJobSpreader = criticalServiceJobSpreader();
+        this.criticalServiceJobSpreader = criticalServiceJobSpreader(agentTaskAggregateCache);
         this.criticalServiceJobBinPacker = criticalServiceJobBinPacker(agentResourceCache);
         this.defaultFitnessCalculator = defaultFitnessCalculator(agentResourceCache);
     }
@@ -72,19 +73,19 @@ public class TitusFitnessCalculator implements VMTaskFitnessCalculator {
         return defaultFitnessCalculator.calculateFitness(taskRequest, targetVM, taskTrackerState);
     }
 
-    private VMTaskFitnessCalculator criticalServiceJobSpreader() {
+    private VMTaskFitnessCalculator criticalServiceJobSpreader(AgentTaskAggregateCache agentTaskAggregateCache) {
         List<WeightedFitnessCalculator> calculators = new ArrayList<>();
         if (configuration.isCriticalTierJobSpreadingEnabled()) {
-            calculators.add(new WeightedFitnessCalculator(new JobSpreadingFitnessCalculator(), 0.05));
+            calculators.add(new WeightedFitnessCalculator(new JobSpreadingFitnessCalculator(agentTaskAggregateCache), 0.05));
             calculators.add(new WeightedFitnessCalculator(new JobTypeFitnessCalculator(), 0.05));
-            calculators.add(new WeightedFitnessCalculator(new ImageSpreadingFitnessCalculator(), 0.1));
-            calculators.add(new WeightedFitnessCalculator(new SecurityGroupSpreadingFitnessCalculator(), 0.3));
+            calculators.add(new WeightedFitnessCalculator(new ImageSpreadingFitnessCalculator(agentTaskAggregateCache), 0.1));
+            calculators.add(new WeightedFitnessCalculator(new SecurityGroupSpreadingFitnessCalculator(agentTaskAggregateCache), 0.3));
             calculators.add(new WeightedFitnessCalculator(agentManagementFitnessCalculator, 0.5));
         } else {
             calculators.add(new WeightedFitnessCalculator(BinPackingFitnessCalculators.cpuMemBinPacker, 0.05));
             calculators.add(new WeightedFitnessCalculator(new JobTypeFitnessCalculator(), 0.05));
-            calculators.add(new WeightedFitnessCalculator(new ImageSpreadingFitnessCalculator(), 0.1));
-            calculators.add(new WeightedFitnessCalculator(new SecurityGroupSpreadingFitnessCalculator(), 0.3));
+            calculators.add(new WeightedFitnessCalculator(new ImageSpreadingFitnessCalculator(agentTaskAggregateCache), 0.1));
+            calculators.add(new WeightedFitnessCalculator(new SecurityGroupSpreadingFitnessCalculator(agentTaskAggregateCache), 0.3));
             calculators.add(new WeightedFitnessCalculator(agentManagementFitnessCalculator, 0.5));
         }
 
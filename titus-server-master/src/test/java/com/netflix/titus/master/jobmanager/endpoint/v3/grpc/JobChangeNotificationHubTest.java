@@ -0,0 +1,167 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.jobmanager.endpoint.v3.grpc;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+import com.netflix.titus.api.jobmanager.model.CallMetadata;
+import com.netflix.titus.api.jobmanager.model.job.BatchJobTask;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.JobModel;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.TaskState;
+import com.netflix.titus.api.jobmanager.model.job.event.JobManagerEvent;
+import com.netflix.titus.api.jobmanager.model.job.event.JobUpdateEvent;
+import com.netflix.titus.api.jobmanager.model.job.event.TaskUpdateEvent;
+import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
+import com.netflix.titus.api.jobmanager.service.JobManagerConstants;
+import com.netflix.titus.api.jobmanager.service.JobManagerException;
+import com.netflix.titus.api.jobmanager.service.V3JobOperations;
+import com.netflix.titus.common.runtime.TitusRuntimes;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.master.endpoint.grpc.GrpcEndpointConfiguration;
+import com.netflix.titus.runtime.endpoint.common.EmptyLogStorageInfo;
+import com.netflix.titus.testkit.model.job.JobGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import rx.observers.AssertableSubscriber;
+import rx.subjects.PublishSubject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JobChangeNotificationHubTest {
+
+    private static final CallMetadata CALL_METADATA = JobManagerConstants.UNDEFINED_CALL_METADATA;
+
+    private final GrpcEndpointConfiguration configuration = mock(GrpcEndpointConfiguration.class);
+    private final V3JobOperations jobOperations = mock(V3JobOperations.class);
+
+    private final PublishSubject<JobManagerEvent<?>> eventSubject = PublishSubject.create();
+
+    private final Job<BatchJobExt> job = JobGenerator.oneBatchJob();
+    private final BatchJobTask task = JobGenerator.batchTasks(job).getValue();
+
+    private volatile List<Task> eventTasks = Collections.singletonList(task);
+
+    private JobChangeNotificationHub hub;
+
+    @Before
+    public void setUp() {
+        when(configuration.isJobChangeNotificationCacheEnabled()).thenReturn(true);
+        when(jobOperations.observeJobs(any(), any())).thenAnswer(invocation -> {
+            // Like the job manager, evaluate the job predicate against the job and tasks of the event model
+            Predicate<Pair<Job<?>, List<Task>>> jobsPredicate = invocation.getArgument(0);
+            Predicate<Pair<Job<?>, Task>> tasksPredicate = invocation.getArgument(1);
+            return eventSubject.filter(event -> event instanceof JobUpdateEvent
+                    ? jobsPredicate.test(Pair.of(((JobUpdateEvent) event).getCurrent(), eventTasks))
+                    : tasksPredicate.test(Pair.of(((TaskUpdateEvent) event).getCurrentJob(), ((TaskUpdateEvent) event).getCurrentTask()))
+            );
+        });
+
+        this.hub = new JobChangeNotificationHub(configuration, jobOperations, EmptyLogStorageInfo.empty(), TitusRuntimes.internal());
+    }
+
+    @Test
+    public void testEventsAreConvertedOnceForAllSubscribers() {
+        AssertableSubscriber<JobChangeNotification> first = hub.observeJobs(jobAndTasks -> true, jobAndTask -> true).test();
+        AssertableSubscriber<JobChangeNotification> second = hub.observeJobs(jobAndTasks -> true, jobAndTask -> true).test();
+
+        eventSubject.onNext(TaskUpdateEvent.newTask(job, task, CALL_METADATA));
+
+        first.assertValueCount(1);
+        second.assertValueCount(1);
+        assertThat(first.getOnNextEvents().get(0)).isSameAs(second.getOnNextEvents().get(0));
+        assertThat(first.getOnNextEvents().get(0).getTaskUpdate().getTask().getId()).isEqualTo(task.getId());
+        verify(jobOperations, times(1)).observeJobs(any(), any());
+    }
+
+    @Test
+    public void testSubscriberPredicatesAreApplied() {
+        AssertableSubscriber<JobChangeNotification> jobsOnly = hub.observeJobs(
+                jobAndTasks -> jobAndTasks.getRight().contains(task),
+                jobAndTask -> false
+        ).test();
+
+        eventSubject.onNext(JobUpdateEvent.newJob(job, CALL_METADATA));
+        eventSubject.onNext(TaskUpdateEvent.newTask(job, task, CALL_METADATA));
+
+        jobsOnly.assertValueCount(1);
+        assertThat(jobsOnly.getOnNextEvents().get(0).getJobUpdate().getJob().getId()).isEqualTo(job.getId());
+    }
+
+    @Test
+    public void testJobEventsAreFilteredByTasksOfEventModel() {
+        AssertableSubscriber<JobChangeNotification> withTask = hub.observeJobs(
+                jobAndTasks -> jobAndTasks.getRight().contains(task),
+                jobAndTask -> false
+        ).test();
+
+        // The job manager state is not consulted, as it may be ahead of the event, or the job may be gone already
+        when(jobOperations.getTasks(job.getId())).thenThrow(JobManagerException.jobNotFound(job.getId()));
+        eventSubject.onNext(JobUpdateEvent.newJob(job, CALL_METADATA));
+        withTask.assertValueCount(1);
+
+        eventTasks = Collections.emptyList();
+        when(jobOperations.getTasks(job.getId())).thenReturn(Collections.singletonList(task));
+        eventSubject.onNext(JobUpdateEvent.jobChange(job, job, CALL_METADATA));
+        withTask.assertValueCount(1);
+    }
+
+    @Test
+    public void testSnapshotReusesNotificationsOfUnchangedEntities() {
+        AssertableSubscriber<JobChangeNotification> subscriber = hub.observeJobs(jobAndTasks -> true, jobAndTask -> true).test();
+        eventSubject.onNext(TaskUpdateEvent.newTask(job, task, CALL_METADATA));
+        JobChangeNotification eventNotification = subscriber.getOnNextEvents().get(0);
+
+        when(jobOperations.findJobs(any(), anyInt(), anyInt())).thenReturn(Collections.emptyList());
+        when(jobOperations.findTasks(any(), anyInt(), anyInt())).thenReturn(Collections.singletonList(Pair.of(job, task)));
+        List<JobChangeNotification> snapshot = hub.createJobsSnapshot(jobAndTasks -> true, jobAndTask -> true);
+        assertThat(snapshot).hasSize(1);
+        assertThat(snapshot.get(0)).isSameAs(eventNotification);
+
+        // An equal, but different task instance must be converted again
+        Task updatedTask = task.toBuilder().withStatus(JobModel.newTaskStatus().withState(TaskState.Launched).build()).build();
+        when(jobOperations.findTasks(any(), anyInt(), anyInt())).thenReturn(Collections.singletonList(Pair.of(job, updatedTask)));
+        JobChangeNotification updated = hub.createJobsSnapshot(jobAndTasks -> true, jobAndTask -> true).get(0);
+        assertThat(updated).isNotSameAs(eventNotification);
+        assertThat(updated.getTaskUpdate().getTask().getStatus().getState().name()).isEqualTo(TaskState.Launched.name());
+    }
+
+    @Test
+    public void testRefreshEvictsRemovedEntities() {
+        JobChangeNotification jobNotification = hub.toNotification(job);
+        JobChangeNotification taskNotification = hub.toNotification(task);
+
+        when(jobOperations.getJobsAndTasks()).thenReturn(Collections.singletonList(Pair.of(job, Collections.singletonList(task))));
+        hub.refreshCache();
+        assertThat(hub.toNotification(job)).isSameAs(jobNotification);
+        assertThat(hub.toNotification(task)).isSameAs(taskNotification);
+
+        when(jobOperations.getJobsAndTasks()).thenReturn(Collections.emptyList());
+        hub.refreshCache();
+        assertThat(hub.toNotification(job)).isNotSameAs(jobNotification);
+    }
+}
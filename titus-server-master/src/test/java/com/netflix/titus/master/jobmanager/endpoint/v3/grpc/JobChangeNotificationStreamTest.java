@@ -0,0 +1,287 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.jobmanager.endpoint.v3.grpc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.netflix.spectator.api.DefaultRegistry;
+import com.netflix.titus.grpc.protogen.Job;
+import com.netflix.titus.grpc.protogen.JobChangeNotification;
+import com.netflix.titus.grpc.protogen.Task;
+import com.netflix.titus.grpc.protogen.TaskStatus;
+import com.netflix.titus.grpc.protogen.TaskStatus.TaskState;
+import com.netflix.titus.master.endpoint.grpc.GrpcEndpointConfiguration;
+import com.netflix.titus.master.jobmanager.endpoint.v3.grpc.JobChangeNotificationStream.LaggingSubscriberPolicy;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+import static com.netflix.titus.master.jobmanager.endpoint.v3.grpc.JobChangeNotificationStream.SNAPSHOT_END_MARKER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JobChangeNotificationStreamTest {
+
+    private static final int MAX_QUEUE_SIZE = 3;
+
+    private final GrpcEndpointConfiguration configuration = mock(GrpcEndpointConfiguration.class);
+
+    private JobStreamMetrics.ClientMetrics metrics;
+
+    @SuppressWarnings("unchecked")
+    private final ServerCallStreamObserver<JobChangeNotification> responseObserver = mock(ServerCallStreamObserver.class);
+
+    private final PublishSubject<JobChangeNotification> eventSubject = PublishSubject.create();
+
+    private final List<JobChangeNotification> received = new ArrayList<>();
+    private final AtomicInteger snapshotCount = new AtomicInteger();
+
+    private volatile List<JobChangeNotification> snapshot = Collections.singletonList(jobUpdate("job1"));
+
+    private boolean ready = true;
+    private Runnable onReadyHandler;
+
+    @Before
+    public void setUp() {
+        when(responseObserver.isReady()).thenAnswer(invocation -> ready);
+        doAnswer(invocation -> received.add(invocation.getArgument(0))).when(responseObserver).onNext(any());
+        doAnswer(invocation -> onReadyHandler = invocation.getArgument(0)).when(responseObserver).setOnReadyHandler(any());
+        when(configuration.getObserveJobsMetricsClientPattern()).thenReturn("testClient");
+        this.metrics = new JobStreamMetrics(configuration, new DefaultRegistry()).getClientMetrics("testClient");
+    }
+
+    @Test
+    public void testSnapshotIsSentBeforeLiveEvents() {
+        newStream(LaggingSubscriberPolicy.Disconnect);
+        eventSubject.onNext(taskUpdate("task1", "running"));
+
+        assertThat(received).containsExactly(jobUpdate("job1"), SNAPSHOT_END_MARKER, taskUpdate("task1", "running"));
+        assertThat(eventSubject.hasObservers()).isTrue();
+    }
+
+    @Test
+    public void testQueuedUpdatesOfTheSameTaskAreCoalesced() {
+        ready = false;
+        newStream(LaggingSubscriberPolicy.Disconnect);
+
+        eventSubject.onNext(taskUpdate("task1", "launched"));
+        eventSubject.onNext(taskUpdate("task2", "launched"));
+        eventSubject.onNext(taskUpdate("task1", "running"));
+        assertThat(metrics.getQueueDepth()).isEqualTo(2);
+
+        makeReady();
+
+        assertThat(received).containsExactly(
+                jobUpdate("job1"), SNAPSHOT_END_MARKER, taskUpdate("task1", "running"), taskUpdate("task2", "launched")
+        );
+        assertThat(metrics.getQueueDepth()).isZero();
+    }
+
+    @Test
+    public void testTaskUpdateIsNotCoalescedAcrossJobUpdate() {
+        ready = false;
+        newStream(LaggingSubscriberPolicy.Disconnect);
+
+        eventSubject.onNext(taskUpdate("task1", "launched"));
+        eventSubject.onNext(jobUpdate("job2"));
+        eventSubject.onNext(taskUpdate("task1", "running"));
+        assertThat(metrics.getQueueDepth()).isEqualTo(3);
+
+        makeReady();
+
+        assertThat(received).containsExactly(
+                jobUpdate("job1"), SNAPSHOT_END_MARKER, taskUpdate("task1", "launched"), jobUpdate("job2"), taskUpdate("task1", "running")
+        );
+    }
+
+    @Test
+    public void testSnapshotIsBuiltOnSnapshotScheduler() {
+        TestScheduler testScheduler = Schedulers.test();
+        newStream(LaggingSubscriberPolicy.Disconnect, testScheduler);
+        eventSubject.onNext(taskUpdate("task1", "running"));
+
+        assertThat(snapshotCount.get()).isZero();
+        assertThat(received).isEmpty();
+
+        testScheduler.triggerActions();
+
+        assertThat(received).containsExactly(jobUpdate("job1"), SNAPSHOT_END_MARKER, taskUpdate("task1", "running"));
+    }
+
+    @Test
+    public void testLaggingSubscriberIsDisconnected() {
+        newStream(LaggingSubscriberPolicy.Disconnect);
+        ready = false;
+
+        for (int i = 0; i <= MAX_QUEUE_SIZE; i++) {
+            eventSubject.onNext(taskUpdate("task" + i, "running"));
+        }
+
+        ArgumentCaptor<Throwable> errorCaptor = ArgumentCaptor.forClass(Throwable.class);
+        verify(responseObserver).onError(errorCaptor.capture());
+        assertThat(Status.fromThrowable(errorCaptor.getValue()).getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+        assertThat(eventSubject.hasObservers()).isFalse();
+        assertThat(metrics.getQueueDepth()).isZero();
+        assertThat(metrics.getActiveStreams()).isZero();
+    }
+
+    @Test
+    public void testLaggingSubscriberIsResnapshotted() {
+        newStream(LaggingSubscriberPolicy.Resnapshot);
+        received.clear();
+        ready = false;
+
+        for (int i = 0; i <= MAX_QUEUE_SIZE; i++) {
+            eventSubject.onNext(taskUpdate("task" + i, "running"));
+        }
+        assertThat(snapshotCount.get()).isEqualTo(2);
+
+        eventSubject.onNext(taskUpdate("task10", "running"));
+        makeReady();
+
+        assertThat(received).containsExactly(jobUpdate("job1"), SNAPSHOT_END_MARKER, taskUpdate("task10", "running"));
+        assertThat(eventSubject.hasObservers()).isTrue();
+        verify(responseObserver, never()).onError(any());
+    }
+
+    @Test
+    public void testSnapshotLargerThanQueueIsNotCountedAsLag() {
+        List<JobChangeNotification> largeSnapshot = new ArrayList<>();
+        for (int i = 0; i < 2 * MAX_QUEUE_SIZE; i++) {
+            largeSnapshot.add(jobUpdate("job" + i));
+        }
+        snapshot = largeSnapshot;
+        ready = false;
+        newStream(LaggingSubscriberPolicy.Disconnect);
+
+        // Live events received while the snapshot is not sent yet are allowed beyond the queue limit
+        for (int i = 0; i <= MAX_QUEUE_SIZE; i++) {
+            eventSubject.onNext(taskUpdate("task" + i, "running"));
+        }
+        verify(responseObserver, never()).onError(any());
+        assertThat(metrics.getQueueDepth()).isEqualTo(MAX_QUEUE_SIZE + 1);
+
+        makeReady();
+        assertThat(received).hasSize(largeSnapshot.size() + 1 + MAX_QUEUE_SIZE + 1);
+        assertThat(received.subList(0, largeSnapshot.size())).isEqualTo(largeSnapshot);
+        assertThat(received.get(largeSnapshot.size())).isEqualTo(SNAPSHOT_END_MARKER);
+
+        // Once the snapshot is sent, the regular queue limit applies
+        ready = false;
+        for (int i = 0; i <= MAX_QUEUE_SIZE; i++) {
+            eventSubject.onNext(taskUpdate("task" + (i + 10), "running"));
+        }
+        ArgumentCaptor<Throwable> errorCaptor = ArgumentCaptor.forClass(Throwable.class);
+        verify(responseObserver).onError(errorCaptor.capture());
+        assertThat(Status.fromThrowable(errorCaptor.getValue()).getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+    }
+
+    @Test
+    public void testResnapshotFinishesEntitiesMissingInNewSnapshot() {
+        snapshot = Arrays.asList(jobUpdate("job1"), taskUpdate("task1", "running"));
+        newStream(LaggingSubscriberPolicy.Resnapshot);
+        received.clear();
+
+        // The final task1 update is dropped together with the queue
+        ready = false;
+        eventSubject.onNext(taskUpdate("task1", "finished", TaskState.Finished));
+        snapshot = Collections.singletonList(jobUpdate("job1"));
+        for (int i = 0; i < MAX_QUEUE_SIZE; i++) {
+            eventSubject.onNext(taskUpdate("task" + (i + 10), "running"));
+        }
+        makeReady();
+
+        assertThat(received).hasSize(3);
+        Task finishedTask = received.get(0).getTaskUpdate().getTask();
+        assertThat(finishedTask.getId()).isEqualTo("task1");
+        assertThat(finishedTask.getStatus().getState()).isEqualTo(TaskState.Finished);
+        assertThat(received.subList(1, 3)).containsExactly(jobUpdate("job1"), SNAPSHOT_END_MARKER);
+    }
+
+    @Test
+    public void testUpstreamErrorIsDeliveredAfterQueuedEvents() {
+        newStream(LaggingSubscriberPolicy.Disconnect);
+        eventSubject.onError(new RuntimeException("simulated error"));
+
+        ArgumentCaptor<Throwable> errorCaptor = ArgumentCaptor.forClass(Throwable.class);
+        verify(responseObserver).onError(errorCaptor.capture());
+        assertThat(errorCaptor.getValue()).isInstanceOf(StatusRuntimeException.class);
+        assertThat(Status.fromThrowable(errorCaptor.getValue()).getCode()).isEqualTo(Status.Code.INTERNAL);
+        assertThat(received).containsExactly(jobUpdate("job1"), SNAPSHOT_END_MARKER);
+    }
+
+    private void newStream(LaggingSubscriberPolicy policy) {
+        newStream(policy, Schedulers.immediate());
+    }
+
+    private void newStream(LaggingSubscriberPolicy policy, Scheduler snapshotScheduler) {
+        JobChangeNotificationStream stream = new JobChangeNotificationStream(
+                responseObserver,
+                () -> {
+                    snapshotCount.incrementAndGet();
+                    return snapshot;
+                },
+                "test stream terminated with an error",
+                MAX_QUEUE_SIZE,
+                policy,
+                metrics,
+                snapshotScheduler
+        );
+        stream.start(eventSubject);
+    }
+
+    private void makeReady() {
+        ready = true;
+        onReadyHandler.run();
+    }
+
+    private static JobChangeNotification jobUpdate(String jobId) {
+        return JobChangeNotification.newBuilder()
+                .setJobUpdate(JobChangeNotification.JobUpdate.newBuilder().setJob(Job.newBuilder().setId(jobId)))
+                .build();
+    }
+
+    private static JobChangeNotification taskUpdate(String taskId, String reasonMessage) {
+        return taskUpdate(taskId, reasonMessage, TaskState.Started);
+    }
+
+    private static JobChangeNotification taskUpdate(String taskId, String reasonMessage, TaskState state) {
+        Task task = Task.newBuilder()
+                .setId(taskId)
+                .setStatus(TaskStatus.newBuilder().setState(state).setReasonMessage(reasonMessage))
+                .build();
+        return JobChangeNotification.newBuilder()
+                .setTaskUpdate(JobChangeNotification.TaskUpdate.newBuilder().setTask(task))
+                .build();
+    }
+}
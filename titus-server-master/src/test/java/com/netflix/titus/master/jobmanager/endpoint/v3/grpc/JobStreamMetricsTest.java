@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.jobmanager.endpoint.v3.grpc;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import com.netflix.spectator.api.DefaultRegistry;
+import com.netflix.spectator.api.Meter;
+import com.netflix.spectator.api.Registry;
+import com.netflix.spectator.api.Tag;
+import com.netflix.titus.master.endpoint.grpc.GrpcEndpointConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JobStreamMetricsTest {
+
+    private final GrpcEndpointConfiguration configuration = mock(GrpcEndpointConfiguration.class);
+    private final Registry registry = new DefaultRegistry();
+
+    private JobStreamMetrics streamMetrics;
+
+    @Before
+    public void setUp() {
+        when(configuration.getObserveJobsMetricsClientPattern()).thenReturn("knownClient.*");
+        this.streamMetrics = new JobStreamMetrics(configuration, registry);
+    }
+
+    @Test
+    public void testClientsNotMatchingPatternShareOtherTag() {
+        JobStreamMetrics.ClientMetrics known = streamMetrics.getClientMetrics("knownClient1");
+        JobStreamMetrics.ClientMetrics first = streamMetrics.getClientMetrics("randomClient1");
+        JobStreamMetrics.ClientMetrics second = streamMetrics.getClientMetrics("randomClient2");
+
+        assertThat(first).isSameAs(second);
+        assertThat(first.getActiveStreams()).isEqualTo(2);
+        assertThat(known).isNotSameAs(first);
+        assertThat(known.getActiveStreams()).isEqualTo(1);
+
+        first.coalesced();
+        known.coalesced();
+        assertThat(clientTags()).containsExactlyInAnyOrder("knownClient1", "other");
+    }
+
+    @Test
+    public void testMetricsAreRemovedWhenLastStreamIsClosed() {
+        JobStreamMetrics.ClientMetrics first = streamMetrics.getClientMetrics("knownClient1");
+        JobStreamMetrics.ClientMetrics second = streamMetrics.getClientMetrics("knownClient1");
+        assertThat(first).isSameAs(second);
+
+        first.streamClosed();
+        assertThat(streamMetrics.getClientMetrics("knownClient1")).isSameAs(first);
+        assertThat(first.getActiveStreams()).isEqualTo(2);
+
+        first.streamClosed();
+        first.streamClosed();
+        assertThat(first.getActiveStreams()).isZero();
+
+        JobStreamMetrics.ClientMetrics reopened = streamMetrics.getClientMetrics("knownClient1");
+        assertThat(reopened).isNotSameAs(first);
+        assertThat(reopened.getActiveStreams()).isEqualTo(1);
+    }
+
+    private Set<String> clientTags() {
+        return registry.stream()
+                .map(Meter::id)
+                .filter(id -> id.name().endsWith("coalescedEvents"))
+                .flatMap(id -> StreamSupport.stream(id.tags().spliterator(), false))
+                .filter(tag -> tag.key().equals("client"))
+                .map(Tag::value)
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.jobmanager.service;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableMap;
+import com.netflix.titus.api.jobmanager.TaskAttributes;
+import com.netflix.titus.api.jobmanager.model.job.BatchJobTask;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.JobModel;
+import com.netflix.titus.api.jobmanager.model.job.JobState;
+import com.netflix.titus.api.jobmanager.model.job.JobStatus;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.TaskState;
+import com.netflix.titus.api.jobmanager.model.job.TwoLevelResource;
+import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
+import com.netflix.titus.api.jobmanager.store.ActiveRecordVersions;
+import com.netflix.titus.api.jobmanager.store.JobStore;
+import com.netflix.titus.common.framework.reconciler.EntityHolder;
+import com.netflix.titus.common.framework.reconciler.ReconciliationEngine;
+import com.netflix.titus.common.framework.reconciler.ReconciliationFramework;
+import com.netflix.titus.common.model.sanitizer.EntitySanitizer;
+import com.netflix.titus.common.runtime.TitusRuntimes;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.master.jobmanager.service.event.JobManagerReconcilerEvent;
+import com.netflix.titus.master.jobmanager.service.snapshot.LocalJobSnapshot;
+import com.netflix.titus.master.scheduler.SchedulingService;
+import com.netflix.titus.master.scheduler.constraint.SystemHardConstraint;
+import com.netflix.titus.master.scheduler.constraint.SystemSoftConstraint;
+import com.netflix.titus.master.service.management.ApplicationSlaManagementService;
+import com.netflix.titus.testkit.data.core.ApplicationSlaSample;
+import com.netflix.titus.testkit.model.job.JobGenerator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import rx.Completable;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JobReconciliationFrameworkFactoryTest {
+
+    private static final int JOB_COUNT = 20;
+    private static final int TASKS_PER_JOB = 3;
+
+    private final JobManagerConfiguration configuration = mock(JobManagerConfiguration.class);
+    private final JobStore store = mock(JobStore.class);
+    private final SchedulingService schedulingService = mock(SchedulingService.class);
+    private final ApplicationSlaManagementService capacityGroupService = mock(ApplicationSlaManagementService.class);
+
+    private final List<Job<?>> storedJobs = new ArrayList<>();
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private JobReconciliationFrameworkFactory factory;
+
+    @Before
+    public void setUp() {
+        when(configuration.getReconcilerIdleTimeoutMs()).thenReturn(100L);
+        when(configuration.getReconcilerActiveTimeoutMs()).thenReturn(1L);
+        when(configuration.getReconcilerShardCount()).thenReturn(1);
+        when(configuration.getBootstrapStoreConcurrency()).thenReturn(4);
+        when(configuration.getBootstrapProcessingThreads()).thenReturn(4);
+
+        when(capacityGroupService.getApplicationSLA(anyString())).thenReturn(ApplicationSlaSample.DefaultFlex.build());
+
+        when(store.init()).thenReturn(Completable.complete());
+        when(store.retrieveJobs()).thenAnswer(invocation -> Observable.just(Pair.of(storedJobs, 0)));
+
+        this.factory = new JobReconciliationFrameworkFactory(
+                configuration,
+                mock(ReconciliationEngine.DifferenceResolver.class),
+                mock(ReconciliationEngine.DifferenceResolver.class),
+                store,
+                schedulingService,
+                capacityGroupService,
+                mock(SystemSoftConstraint.class),
+                mock(SystemHardConstraint.class),
+                null,
+                mock(EntitySanitizer.class),
+                mock(EntitySanitizer.class),
+                TitusRuntimes.internal(),
+                Optional.of(Schedulers.test())
+        );
+    }
+
+    @Test
+    public void testAllJobsAndTasksAreRestored() {
+        List<Job<BatchJobExt>> jobs = JobGenerator.batchJobs(JobGenerator.oneBatchJob().getJobDescriptor()).toList(JOB_COUNT);
+        jobs.forEach(job -> addToStore(job, new ArrayList<>(JobGenerator.batchTasks(job).toList(TASKS_PER_JOB))));
+
+        ReconciliationFramework<JobManagerReconcilerEvent> framework = factory.newInstance();
+
+        for (Job<BatchJobExt> job : jobs) {
+            Optional<ReconciliationEngine<JobManagerReconcilerEvent>> engine = framework.findEngineByRootId(job.getId());
+            assertThat(engine).isPresent();
+            assertThat(engine.get().getReferenceView().getChildren()).hasSize(TASKS_PER_JOB);
+        }
+        verify(schedulingService, times(JOB_COUNT * TASKS_PER_JOB)).addTask(any());
+    }
+
+    @Test
+    public void testFinishedJobsAreNotRestored() {
+        Job<BatchJobExt> job = JobGenerator.oneBatchJob();
+        Job<BatchJobExt> finishedJob = JobGenerator.oneBatchJob().toBuilder()
+                .withStatus(JobStatus.newBuilder().withState(JobState.Finished).build())
+                .build();
+        addToStore(job, Collections.emptyList());
+        addToStore(finishedJob, Collections.emptyList());
+
+        ReconciliationFramework<JobManagerReconcilerEvent> framework = factory.newInstance();
+
+        assertThat(framework.findEngineByRootId(job.getId())).isPresent();
+        assertThat(framework.findEngineByRootId(finishedJob.getId())).isEmpty();
+    }
+
+    @Test
+    public void testTaskWithOverlappingEniAssignmentIsNotRestored() {
+        when(configuration.getMaxFailedTasks()).thenReturn(1L);
+
+        Job<BatchJobExt> job1 = JobGenerator.oneBatchJob();
+        Job<BatchJobExt> job2 = JobGenerator.oneBatchJob();
+        addToStore(job1, Collections.singletonList(newStartedTask(job1, "sg-1")));
+        addToStore(job2, Collections.singletonList(newStartedTask(job2, "sg-2")));
+
+        ReconciliationFramework<JobManagerReconcilerEvent> framework = factory.newInstance();
+
+        int restoredTasks = framework.findEngineByRootId(job1.getId()).get().getReferenceView().getChildren().size()
+                + framework.findEngineByRootId(job2.getId()).get().getReferenceView().getChildren().size();
+        assertThat(restoredTasks).isEqualTo(1);
+        verify(schedulingService, times(1)).addRunningTask(any(), any());
+    }
+
+    @Test
+    public void testStoreErrorFailsBootstrap() {
+        when(store.retrieveJobs()).thenReturn(Observable.error(new RuntimeException("simulated store error")));
+
+        assertThatThrownBy(() -> factory.newInstance())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Failed to load jobs");
+    }
+
+    @Test
+    public void testJobsAreRestoredFromLocalSnapshot() throws Exception {
+        File snapshotFile = configureLocalSnapshot();
+        long snapshotTime = System.currentTimeMillis();
+        long oldVersion = snapshotTime - 60_000;
+
+        Job<BatchJobExt> unchangedJob = JobGenerator.oneBatchJob();
+        List<BatchJobTask> unchangedJobTasks = JobGenerator.batchTasks(unchangedJob).toList(3);
+        Job<BatchJobExt> changedJob = JobGenerator.oneBatchJob();
+        Job<BatchJobExt> updatedChangedJob = changedJob.toBuilder()
+                .withStatus(JobStatus.newBuilder().withState(JobState.Accepted).withReasonMessage("updated").build())
+                .build();
+        Task changedJobTask = JobGenerator.batchTasks(changedJob).getValue();
+
+        new LocalJobSnapshot(snapshotTime, Arrays.asList(
+                Pair.of(unchangedJob, Arrays.asList(unchangedJobTasks.get(0), unchangedJobTasks.get(1))),
+                Pair.of(changedJob, Collections.singletonList(changedJobTask))
+        )).writeTo(snapshotFile);
+
+        // Task 0 unchanged, task 1 removed, task 2 created after the snapshot was taken
+        Map<String, Long> jobVersions = ImmutableMap.of(unchangedJob.getId(), oldVersion, changedJob.getId(), snapshotTime);
+        Map<String, Map<String, Long>> taskVersions = ImmutableMap.of(
+                unchangedJob.getId(), ImmutableMap.of(unchangedJobTasks.get(0).getId(), oldVersion, unchangedJobTasks.get(2).getId(), snapshotTime),
+                changedJob.getId(), ImmutableMap.of(changedJobTask.getId(), oldVersion)
+        );
+        when(store.retrieveActiveRecordVersions()).thenReturn(Observable.just(new ActiveRecordVersions(jobVersions, taskVersions)));
+        when(store.retrieveTask(unchangedJobTasks.get(2).getId())).thenReturn(Observable.just(unchangedJobTasks.get(2)));
+        when(store.retrieveJob(changedJob.getId())).thenReturn(Observable.just(updatedChangedJob));
+        when(store.retrieveTasksForJob(changedJob.getId())).thenReturn(Observable.just(Pair.of(Collections.singletonList(changedJobTask), 0)));
+
+        ReconciliationFramework<JobManagerReconcilerEvent> framework = factory.newInstance();
+
+        EntityHolder unchangedJobHolder = framework.findEngineByRootId(unchangedJob.getId()).get().getReferenceView();
+        assertThat(unchangedJobHolder.getChildren().stream().map(EntityHolder::getId))
+                .containsExactlyInAnyOrder(unchangedJobTasks.get(0).getId(), unchangedJobTasks.get(2).getId());
+
+        EntityHolder changedJobHolder = framework.findEngineByRootId(changedJob.getId()).get().getReferenceView();
+        assertThat((Job<?>) changedJobHolder.getEntity()).isEqualTo(updatedChangedJob);
+        assertThat(changedJobHolder.getChildren()).hasSize(1);
+
+        verify(store, never()).retrieveJobs();
+    }
+
+    @Test
+    public void testCorruptedLocalSnapshotFallsBackToStore() throws Exception {
+        File snapshotFile = configureLocalSnapshot();
+        Files.write(snapshotFile.toPath(), "not a snapshot".getBytes());
+
+        Job<BatchJobExt> job = JobGenerator.oneBatchJob();
+        addToStore(job, new ArrayList<>(JobGenerator.batchTasks(job).toList(TASKS_PER_JOB)));
+
+        ReconciliationFramework<JobManagerReconcilerEvent> framework = factory.newInstance();
+
+        assertThat(framework.findEngineByRootId(job.getId()).get().getReferenceView().getChildren()).hasSize(TASKS_PER_JOB);
+        verify(store, never()).retrieveActiveRecordVersions();
+    }
+
+    private File configureLocalSnapshot() {
+        File snapshotFile = new File(temporaryFolder.getRoot(), "jobs.snapshot");
+        when(configuration.getLocalSnapshotFile()).thenReturn(snapshotFile.getAbsolutePath());
+        when(configuration.getLocalSnapshotMaxAgeMs()).thenReturn(3_600_000L);
+        when(configuration.getLocalSnapshotSafetyMarginMs()).thenReturn(1_000L);
+        return snapshotFile;
+    }
+
+    private void addToStore(Job<?> job, List<Task> tasks) {
+        storedJobs.add(job);
+        when(store.retrieveTasksForJob(job.getId())).thenReturn(Observable.just(Pair.of(tasks, 0)));
+    }
+
+    private Task newStartedTask(Job<BatchJobExt> job, String securityGroups) {
+        return JobGenerator.batchTasks(job).getValue().toBuilder()
+                .withStatus(JobModel.newTaskStatus().withState(TaskState.Started).build())
+                .addToTaskContext(TaskAttributes.TASK_ATTRIBUTES_AGENT_HOST, "agent1")
+                .withTwoLevelResources(TwoLevelResource.newBuilder().withName("ENIs").withIndex(0).withValue(securityGroups).build())
+                .build();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.jobmanager.service.integration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.JobDescriptor;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.TaskState;
+import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
+import com.netflix.titus.api.model.Page;
+import com.netflix.titus.api.model.Pagination;
+import com.netflix.titus.common.runtime.TitusRuntimes;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.grpc.protogen.JobDescriptor.JobSpecCase;
+import com.netflix.titus.grpc.protogen.TaskStatus;
+import com.netflix.titus.master.jobmanager.service.integration.scenario.JobsScenarioBuilder;
+import com.netflix.titus.master.jobmanager.service.integration.scenario.ScenarioTemplates;
+import com.netflix.titus.runtime.endpoint.JobQueryCriteria;
+import com.netflix.titus.runtime.endpoint.v3.grpc.query.V3JobQueryCriteriaEvaluator;
+import com.netflix.titus.runtime.endpoint.v3.grpc.query.V3TaskQueryCriteriaEvaluator;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.netflix.titus.testkit.model.job.JobDescriptorGenerator.oneTaskBatchJobDescriptor;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JobQueryTest {
+
+    private final JobsScenarioBuilder jobsScenarioBuilder = new JobsScenarioBuilder();
+
+    @Before
+    public void setUp() {
+        startNewJob("appA", TaskState.Started);
+        startNewJob("appB", TaskState.Started);
+        startNewJob("appA", TaskState.Launched);
+    }
+
+    @Test
+    public void testFindJobsByApplicationName() {
+        JobQueryCriteria<TaskStatus.TaskState, JobSpecCase> criteria = JobQueryCriteria.<TaskStatus.TaskState, JobSpecCase>newBuilder()
+                .withAppName("appA")
+                .build();
+        V3JobQueryCriteriaEvaluator evaluator = new V3JobQueryCriteriaEvaluator(criteria, TitusRuntimes.internal());
+
+        List<Job<?>> jobs = new ArrayList<>();
+        Pair<List<Job<?>>, Pagination> page = jobsScenarioBuilder.getJobOperations().findJobs(evaluator, Page.newBuilder().withPageSize(1).build());
+        jobs.addAll(page.getLeft());
+        assertThat(page.getRight().getTotalItems()).isEqualTo(2);
+        assertThat(page.getRight().hasMore()).isTrue();
+
+        page = jobsScenarioBuilder.getJobOperations().findJobs(evaluator, Page.newBuilder().withPageSize(1).withCursor(page.getRight().getCursor()).build());
+        jobs.addAll(page.getLeft());
+        assertThat(page.getRight().hasMore()).isFalse();
+
+        assertThat(jobs).hasSize(2);
+        assertThat(jobs).allMatch(job -> job.getJobDescriptor().getApplicationName().equals("appA"));
+    }
+
+    @Test
+    public void testFindTasksByTaskState() {
+        JobQueryCriteria<TaskStatus.TaskState, JobSpecCase> criteria = JobQueryCriteria.<TaskStatus.TaskState, JobSpecCase>newBuilder()
+                .withTaskStates(Collections.singleton(TaskStatus.TaskState.Started))
+                .build();
+        V3TaskQueryCriteriaEvaluator evaluator = new V3TaskQueryCriteriaEvaluator(criteria, TitusRuntimes.internal());
+
+        Pair<List<Task>, Pagination> page = jobsScenarioBuilder.getJobOperations().findTasks(evaluator, Page.newBuilder().withPageSize(10).build());
+        assertThat(page.getLeft()).hasSize(2);
+        assertThat(page.getLeft()).allMatch(task -> task.getStatus().getState() == TaskState.Started);
+        assertThat(page.getRight().getTotalItems()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFindTasksByApplicationNameAndTaskState() {
+        JobQueryCriteria<TaskStatus.TaskState, JobSpecCase> criteria = JobQueryCriteria.<TaskStatus.TaskState, JobSpecCase>newBuilder()
+                .withAppName("appA")
+                .withTaskStates(Collections.singleton(TaskStatus.TaskState.Launched))
+                .build();
+        V3TaskQueryCriteriaEvaluator evaluator = new V3TaskQueryCriteriaEvaluator(criteria, TitusRuntimes.internal());
+
+        Pair<List<Task>, Pagination> page = jobsScenarioBuilder.getJobOperations().findTasks(evaluator, Page.newBuilder().withPageSize(10).build());
+        assertThat(page.getLeft()).hasSize(1);
+        assertThat(page.getLeft().get(0).getStatus().getState()).isEqualTo(TaskState.Launched);
+    }
+
+    @Test
+    public void testGetTasksIsSharedUntilModelChanges() {
+        List<Task> tasks = jobsScenarioBuilder.getJobOperations().getTasks();
+        assertThat(tasks).hasSize(3);
+        assertThat(jobsScenarioBuilder.getJobOperations().getTasks()).isSameAs(tasks);
+
+        startNewJob("appC", TaskState.Started);
+        List<Task> updatedTasks = jobsScenarioBuilder.getJobOperations().getTasks();
+        assertThat(updatedTasks).isNotSameAs(tasks).hasSize(4);
+    }
+
+    @Test
+    public void testGetTasksIsGroupedByJobInStatusCreationTimeOrder() {
+        List<Task> expected = new ArrayList<>();
+        for (Job job : jobsScenarioBuilder.getJobOperations().getJobs()) {
+            expected.addAll(jobsScenarioBuilder.getJobOperations().getTasks(job.getId()));
+        }
+        assertThat(jobsScenarioBuilder.getJobOperations().getTasks()).hasSize(3).containsExactlyElementsOf(expected);
+    }
+
+    private void startNewJob(String applicationName, TaskState taskState) {
+        JobDescriptor<BatchJobExt> jobDescriptor = oneTaskBatchJobDescriptor().toBuilder().withApplicationName(applicationName).build();
+        jobsScenarioBuilder.scheduleJob(jobDescriptor, jobScenario -> jobScenario
+                .template(ScenarioTemplates.acceptJobWithOneTask(0, 0))
+                .template(ScenarioTemplates.startTask(0, 0, taskState))
+        );
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.jobmanager.service.snapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.testkit.model.job.JobGenerator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LocalJobSnapshotTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testFileRoundTrip() throws Exception {
+        LocalJobSnapshot snapshot = newSnapshot();
+        File file = new File(temporaryFolder.getRoot(), "snapshots/jobs.snapshot");
+
+        long size = snapshot.writeTo(file);
+        assertThat(size).isGreaterThan(0);
+        assertThat(new File(file.getAbsolutePath() + ".tmp")).doesNotExist();
+
+        LocalJobSnapshot loaded = LocalJobSnapshot.readFrom(file);
+        assertThat(loaded.getTimestamp()).isEqualTo(snapshot.getTimestamp());
+        assertThat(loaded.getJobsAndTasks()).isEqualTo(snapshot.getJobsAndTasks());
+    }
+
+    @Test
+    public void testCorruptedContentIsRejected() throws Exception {
+        byte[] raw = toUncompressedBytes(newSnapshot());
+        // Flip a bit inside a record, so the data is still parseable, but the checksum does not match
+        int idx = indexOf(raw, "\"id\":\"".getBytes());
+        raw[idx] = (byte) (raw[idx] ^ 0x01);
+
+        assertThatThrownBy(() -> LocalJobSnapshot.read(new ByteArrayInputStream(gzip(raw))))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("checksum");
+    }
+
+    @Test
+    public void testTruncatedFileIsRejected() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        newSnapshot().write(output);
+        byte[] truncated = Arrays.copyOf(output.toByteArray(), output.size() / 2);
+
+        assertThatThrownBy(() -> LocalJobSnapshot.read(new ByteArrayInputStream(truncated)))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void testUnknownFormatIsRejected() {
+        byte[] raw = new byte[]{0, 0, 0, 1, 0, 0, 0, 1};
+
+        assertThatThrownBy(() -> LocalJobSnapshot.read(new ByteArrayInputStream(gzip(raw))))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("magic");
+    }
+
+    private LocalJobSnapshot newSnapshot() {
+        List<Pair<Job, List<Task>>> jobsAndTasks = new ArrayList<>();
+        JobGenerator.batchJobs(JobGenerator.oneBatchJob().getJobDescriptor()).toList(3).forEach(job ->
+                jobsAndTasks.add(Pair.of(job, new ArrayList<>(JobGenerator.batchTasks(job).toList(2))))
+        );
+        return new LocalJobSnapshot(System.currentTimeMillis(), jobsAndTasks);
+    }
+
+    private static byte[] toUncompressedBytes(LocalJobSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        snapshot.write(output);
+        ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = input.read(buffer)) > 0) {
+                uncompressed.write(buffer, 0, count);
+            }
+        }
+        return uncompressed.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] raw) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (OutputStream gzipOutput = new GZIPOutputStream(output)) {
+            gzipOutput.write(raw);
+        }
+        return output.toByteArray();
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        for (int i = 0; i <= data.length - pattern.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(data, i, i + pattern.length), pattern)) {
+                return i + pattern.length;
+            }
+        }
+        throw new IllegalArgumentException("Pattern not found");
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.scheduler.constraint;
+
+import java.util.Collections;
+
+import com.netflix.titus.api.jobmanager.TaskAttributes;
+import com.netflix.titus.api.jobmanager.model.job.ServiceJobTask;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.TaskState;
+import com.netflix.titus.api.jobmanager.model.job.TaskStatus;
+import com.netflix.titus.api.jobmanager.model.job.event.JobManagerEvent;
+import com.netflix.titus.api.jobmanager.model.job.event.TaskUpdateEvent;
+import com.netflix.titus.api.jobmanager.service.V3JobOperations;
+import com.netflix.titus.common.runtime.TitusRuntimes;
+import com.netflix.titus.common.util.tuple.Pair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rx.subjects.PublishSubject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TaskCacheTest {
+
+    private static final String JOB_ID = "job#1";
+
+    private final V3JobOperations v3JobOperations = mock(V3JobOperations.class);
+    private final PublishSubject<JobManagerEvent<?>> jobEvents = PublishSubject.create();
+
+    private final TaskCache taskCache = new TaskCache(v3JobOperations, TitusRuntimes.internal());
+
+    @Before
+    public void setUp() {
+        Task bootstrapTask = newTask("task#0", TaskState.Started, "zoneA");
+        when(v3JobOperations.observeJobs()).thenReturn(jobEvents);
+        when(v3JobOperations.getJobsAndTasks()).thenReturn(Collections.singletonList(Pair.of(null, Collections.singletonList(bootstrapTask))));
+        taskCache.start();
+        taskCache.prepare();
+    }
+
+    @After
+    public void tearDown() {
+        taskCache.shutdown();
+    }
+
+    @Test
+    public void testBootstrap() {
+        assertThat(taskCache.getTasksByZoneIdCounters(JOB_ID)).containsOnly(entry("zoneA", 1));
+        assertThat(taskCache.isTaskLaunching("task#0")).isFalse();
+    }
+
+    @Test
+    public void testIncrementalUpdates() {
+        Task launched = newTask("task#1", TaskState.Launched, "zoneB");
+        jobEvents.onNext(TaskUpdateEvent.newTask(null, launched, null));
+
+        // Not visible until the next scheduling iteration
+        assertThat(taskCache.isTaskLaunching("task#1")).isFalse();
+        taskCache.prepare();
+        assertThat(taskCache.isTaskLaunching("task#1")).isTrue();
+        assertThat(taskCache.getTasksByZoneIdCounters(JOB_ID)).containsOnly(entry("zoneA", 1), entry("zoneB", 1));
+
+        Task started = newTask("task#1", TaskState.Started, "zoneB");
+        jobEvents.onNext(TaskUpdateEvent.taskChange(null, started, launched, null));
+        taskCache.prepare();
+        assertThat(taskCache.isTaskLaunching("task#1")).isFalse();
+        assertThat(taskCache.getTasksByZoneIdCounters(JOB_ID)).containsOnly(entry("zoneA", 1), entry("zoneB", 1));
+
+        Task finished = newTask("task#1", TaskState.Finished, "zoneB");
+        jobEvents.onNext(TaskUpdateEvent.taskChange(null, finished, started, null));
+        taskCache.prepare();
+        assertThat(taskCache.getTasksByZoneIdCounters(JOB_ID)).containsOnly(entry("zoneA", 1));
+    }
+
+    private Task newTask(String taskId, TaskState state, String zoneId) {
+        return ServiceJobTask.newBuilder()
+                .withJobId(JOB_ID)
+                .withId(taskId)
+                .withStatus(TaskStatus.newBuilder().withState(state).build())
+                .withTaskContext(Collections.singletonMap(TaskAttributes.TASK_ATTRIBUTES_AGENT_ZONE, zoneId))
+                .build();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.master.scheduler.fitness;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.netflix.fenzo.TaskAssignmentResult;
+import com.netflix.fenzo.TaskRequest;
+import com.netflix.fenzo.VirtualMachineCurrentState;
+import com.netflix.titus.api.jobmanager.model.job.Image;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
+import com.netflix.titus.master.jobmanager.service.common.V3QueueableTask;
+import com.netflix.titus.master.scheduler.fitness.AgentTaskAggregateCache.AgentTaskAggregate;
+import com.netflix.titus.testkit.model.job.JobGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AgentTaskAggregateCacheTest {
+
+    private final AgentTaskAggregateCache cache = new AgentTaskAggregateCache();
+
+    private final Job<BatchJobExt> job = JobGenerator.oneBatchJob();
+    private final Image image = job.getJobDescriptor().getContainer().getImage();
+    private final List<String> securityGroups = job.getJobDescriptor().getContainer().getSecurityProfile().getSecurityGroups();
+
+    private final VirtualMachineCurrentState targetVM = mock(VirtualMachineCurrentState.class);
+    private final List<TaskRequest> runningTasks = new ArrayList<>();
+    private final List<TaskAssignmentResult> assignedTasks = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        when(targetVM.getHostname()).thenReturn("host1");
+        when(targetVM.getRunningTasks()).thenReturn(runningTasks);
+        when(targetVM.getTasksCurrentlyAssigned()).thenReturn(assignedTasks);
+    }
+
+    @Test
+    public void testRunningTasksAreCounted() {
+        runningTasks.add(newTaskRequest(job, "task1"));
+        runningTasks.add(newTaskRequest(job, "task2"));
+
+        AgentTaskAggregate aggregate = cache.get(targetVM);
+        assertThat(aggregate.getTaskCountOfJob(job.getId())).isEqualTo(2);
+        assertThat(aggregate.getTaskCountWithImage(image)).isEqualTo(2);
+        assertThat(aggregate.getTaskCountWithSecurityGroups(securityGroups)).isEqualTo(2);
+        assertThat(aggregate.getTaskCountOfJob("otherJob")).isEqualTo(0);
+    }
+
+    @Test
+    public void testAssignedTasksAreAddedIncrementally() {
+        runningTasks.add(newTaskRequest(job, "task1"));
+        assertThat(cache.get(targetVM).getTaskCountOfJob(job.getId())).isEqualTo(1);
+
+        assignedTasks.add(newAssignmentResult(newTaskRequest(job, "task2")));
+        assertThat(cache.get(targetVM).getTaskCountOfJob(job.getId())).isEqualTo(2);
+
+        assignedTasks.add(newAssignmentResult(newTaskRequest(job, "task3")));
+        assertThat(cache.get(targetVM).getTaskCountOfJob(job.getId())).isEqualTo(3);
+    }
+
+    @Test
+    public void testAggregateIsRebuiltWhenAssignmentIsRemoved() {
+        runningTasks.add(newTaskRequest(job, "task1"));
+        assignedTasks.add(newAssignmentResult(newTaskRequest(job, "task2")));
+        assignedTasks.add(newAssignmentResult(newTaskRequest(job, "task3")));
+        assertThat(cache.get(targetVM).getTaskCountOfJob(job.getId())).isEqualTo(3);
+
+        assignedTasks.remove(1);
+        assertThat(cache.get(targetVM).getTaskCountOfJob(job.getId())).isEqualTo(2);
+    }
+
+    @Test
+    public void testPlacementsOfPreviousIterationAreCountedAfterPrepare() {
+        assignedTasks.add(newAssignmentResult(newTaskRequest(job, "task1")));
+        assertThat(cache.get(targetVM).getTaskCountOfJob(job.getId())).isEqualTo(1);
+
+        // Fenzo moves the assigned task to the running tasks of the agent, before the job manager reports it.
+        runningTasks.add(assignedTasks.remove(0).getRequest());
+        cache.prepare();
+        assertThat(cache.get(targetVM).getTaskCountOfJob(job.getId())).isEqualTo(1);
+
+        assignedTasks.add(newAssignmentResult(newTaskRequest(job, "task2")));
+        assertThat(cache.get(targetVM).getTaskCountOfJob(job.getId())).isEqualTo(2);
+    }
+
+    @Test
+    public void testAggregateIsRebuiltAfterPrepare() {
+        runningTasks.add(newTaskRequest(job, "task1"));
+        assertThat(cache.get(targetVM).getTaskCountOfJob(job.getId())).isEqualTo(1);
+
+        runningTasks.clear();
+        when(targetVM.getRunningTasks()).thenReturn(Collections.emptyList());
+        cache.prepare();
+        assertThat(cache.get(targetVM).getTaskCountOfJob(job.getId())).isEqualTo(0);
+    }
+
+    @Test
+    public void testJobSpreadingCountsOnlyTasksOfTheSameJob() {
+        Job<BatchJobExt> otherJob = JobGenerator.oneBatchJob();
+        runningTasks.add(newTaskRequest(otherJob, "otherTask"));
+
+        JobSpreadingFitnessCalculator calculator = new JobSpreadingFitnessCalculator(cache);
+        assertThat(calculator.calculateFitness(newTaskRequest(job, "task1"), targetVM, null)).isEqualTo(1.0);
+
+        runningTasks.add(newTaskRequest(job, "task2"));
+        assertThat(calculator.calculateFitness(newTaskRequest(job, "task1"), targetVM, null)).isEqualTo(0.5);
+    }
+
+    private static TaskRequest newTaskRequest(Job<?> job, String taskId) {
+        V3QueueableTask taskRequest = mock(V3QueueableTask.class);
+        when(taskRequest.getJob()).thenReturn(job);
+        when(taskRequest.getId()).thenReturn(taskId);
+        return taskRequest;
+    }
+
+    private static TaskAssignmentResult newAssignmentResult(TaskRequest taskRequest) {
+        TaskAssignmentResult assignmentResult = mock(TaskAssignmentResult.class);
+        when(assignmentResult.getRequest()).thenReturn(taskRequest);
+        return assignmentResult;
+    }
+}
@@ -33,6 +33,7 @@ import com.netflix.titus.api.jobmanager.service.ReadOnlyJobOperations;
 import com.netflix.titus.common.annotation.Experimental;
 import com.netflix.titus.common.util.rx.ReactorExt;
 import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.runtime.endpoint.v3.grpc.query.V3TaskQueryCriteriaEvaluator;
 import reactor.core.publisher.Flux;
 import rx.Observable;
 
@@ -85,10 +86,13 @@ public class CachedReadOnlyJobOperations implements ReadOnlyJobOperations {
     @Override
     public List<Pair<Job<?>, Task>> findTasks(Predicate<Pair<Job<?>, Task>> queryPredicate, int offset, int limit) {
         JobSnapshot snapshot = replicator.getCurrent();
+        Predicate<Job<?>> jobFilter = V3TaskQueryCriteriaEvaluator.jobFilterOf(queryPredicate);
+        Predicate<Pair<Job<?>, Task>> taskFilter = V3TaskQueryCriteriaEvaluator.taskFilterOf(queryPredicate);
 
         return snapshot.getJobs().stream()
+                .filter(jobFilter)
                 .flatMap(job -> snapshot.getTasks(job.getId()).stream()
-                        .filter(task -> queryPredicate.test(Pair.of(job, task)))
+                        .filter(task -> taskFilter.test(Pair.of(job, task)))
                         .map(task -> Pair.<Job<?>, Task>of(job, task))
                 )
                 .skip(offset)
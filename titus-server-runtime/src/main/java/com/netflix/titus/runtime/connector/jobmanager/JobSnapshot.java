@@ -18,12 +18,9 @@ package com.netflix.titus.runtime.connector.jobmanager;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import com.google.common.base.Preconditions;
 import com.netflix.titus.api.jobmanager.TaskAttributes;
@@ -31,31 +28,33 @@ import com.netflix.titus.api.jobmanager.model.job.Job;
 import com.netflix.titus.api.jobmanager.model.job.JobState;
 import com.netflix.titus.api.jobmanager.model.job.Task;
 import com.netflix.titus.api.jobmanager.model.job.TaskState;
-import com.netflix.titus.common.util.CollectionsExt;
 import com.netflix.titus.common.util.StringExt;
+import com.netflix.titus.common.util.collections.PersistentHashMap;
 import com.netflix.titus.common.util.tuple.Pair;
 import com.netflix.titus.runtime.connector.common.replicator.ReplicatedSnapshot;
 
 import static java.util.Collections.unmodifiableList;
-import static java.util.Collections.unmodifiableMap;
 
 /**
+ * Immutable snapshot of jobs and tasks. The data are kept in {@link PersistentHashMap}s, so a single job or task update
+ * costs O(log(n)), and shares all unchanged data with the previous snapshot version. The flattened job/task lists
+ * are built on first access only, as most of the snapshot versions created during a burst of events are never read.
+ * <p>
  * TODO Handle moved tasks
  * TODO Finished tasks are not handled correctly for batch jobs (they are in active data set until replaced).
  */
 public class JobSnapshot extends ReplicatedSnapshot {
 
-    private static final JobSnapshot EMPTY = new Builder("empty", Collections.emptyMap(), Collections.emptyMap()).build();
+    private static final JobSnapshot EMPTY = new Builder("empty").build();
 
     private final String snapshotId;
-    private final Map<String, Job<?>> jobsById;
-    private final Map<String, List<Task>> tasksByJobId;
-    private final List<Job<?>> allJobs;
-    private final List<Task> allTasks;
-    private final List<Pair<Job<?>, List<Task>>> allJobsAndTasks;
-    private final Map<String, Task> taskById;
+    private final PersistentHashMap<String, Job<?>> jobsById;
+    private final PersistentHashMap<String, JobTasks> tasksByJobId;
+    private final PersistentHashMap<String, Task> taskById;
 
-    private final String signature;
+    private volatile List<Job<?>> allJobs;
+    private volatile List<Task> allTasks;
+    private volatile List<Pair<Job<?>, List<Task>>> allJobsAndTasks;
 
     public static JobSnapshot empty() {
         return EMPTY;
@@ -73,17 +72,14 @@ public class JobSnapshot extends ReplicatedSnapshot {
         return new Builder(snapshotId);
     }
 
-    private JobSnapshot(String snapshotId, Map<String, Job<?>> jobsById, Map<String, List<Task>> tasksByJobId,
-                        List<Job<?>> allJobs, List<Task> allTasks, List<Pair<Job<?>, List<Task>>> allJobsAndTasks,
-                        Map<String, Task> taskById) {
+    private JobSnapshot(String snapshotId,
+                        PersistentHashMap<String, Job<?>> jobsById,
+                        PersistentHashMap<String, JobTasks> tasksByJobId,
+                        PersistentHashMap<String, Task> taskById) {
         this.snapshotId = snapshotId;
         this.jobsById = jobsById;
         this.tasksByJobId = tasksByJobId;
-        this.allJobs = allJobs;
-        this.allTasks = allTasks;
-        this.allJobsAndTasks = allJobsAndTasks;
         this.taskById = taskById;
-        this.signature = computeSignature();
     }
 
     public String getSnapshotId() {
@@ -91,7 +87,12 @@ public class JobSnapshot extends ReplicatedSnapshot {
     }
 
     public List<Job<?>> getJobs() {
-        return allJobs;
+        List<Job<?>> result = allJobs;
+        if (result == null) {
+            result = unmodifiableList(new ArrayList<>(jobsById.asMap().values()));
+            allJobs = result;
+        }
+        return result;
     }
 
     public Optional<Job<?>> findJob(String jobId) {
@@ -99,15 +100,30 @@ public class JobSnapshot extends ReplicatedSnapshot {
     }
 
     public List<Task> getTasks() {
-        return allTasks;
+        List<Task> result = allTasks;
+        if (result == null) {
+            List<Task> tasks = new ArrayList<>(taskById.size());
+            tasksByJobId.forEach((jobId, jobTasks) -> tasks.addAll(jobTasks.getTaskList()));
+            result = unmodifiableList(tasks);
+            allTasks = result;
+        }
+        return result;
     }
 
     public List<Task> getTasks(String jobId) {
-        return tasksByJobId.getOrDefault(jobId, Collections.emptyList());
+        JobTasks jobTasks = tasksByJobId.get(jobId);
+        return jobTasks == null ? Collections.emptyList() : jobTasks.getTaskList();
     }
 
     public List<Pair<Job<?>, List<Task>>> getJobsAndTasks() {
-        return allJobsAndTasks;
+        List<Pair<Job<?>, List<Task>>> result = allJobsAndTasks;
+        if (result == null) {
+            List<Pair<Job<?>, List<Task>>> jobsAndTasks = new ArrayList<>(jobsById.size());
+            jobsById.forEach((jobId, job) -> jobsAndTasks.add(Pair.of(job, getTasks(jobId))));
+            result = unmodifiableList(jobsAndTasks);
+            allJobsAndTasks = result;
+        }
+        return result;
     }
 
     public Optional<Pair<Job<?>, Task>> findTaskById(String taskId) {
@@ -157,80 +173,98 @@ public class JobSnapshot extends ReplicatedSnapshot {
 
     @Override
     public String toSummaryString() {
-        return signature;
+        return "JobSnapshot{snapshotId=" + snapshotId +
+                ", jobs=" + jobsById.size() +
+                ", tasks=" + taskById.size() +
+                "}";
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder("JobSnapshot{snapshotId=").append(snapshotId).append(", jobs=");
-        jobsById.forEach((id, job) -> {
-            List<Task> tasks = tasksByJobId.get(id);
-            int tasksCount = tasks == null ? 0 : tasks.size();
-            sb.append(id).append('=').append(tasksCount).append(',');
-        });
+        jobsById.forEach((id, job) -> sb.append(id).append('=').append(getTasks(id).size()).append(','));
         sb.setLength(sb.length() - 1);
         return sb.append('}').toString();
     }
 
-    private String computeSignature() {
-        return "JobSnapshot{snapshotId=" + snapshotId +
-                ", jobs=" + jobsById.size() +
-                ", tasks=" + allTasks.size() +
-                "}";
+    /**
+     * Tasks of a single job, with the list representation built on first access.
+     */
+    private static final class JobTasks {
+
+        private static final JobTasks EMPTY = new JobTasks(PersistentHashMap.empty());
+
+        private final PersistentHashMap<String, Task> tasksById;
+        private volatile List<Task> taskList;
+
+        private JobTasks(PersistentHashMap<String, Task> tasksById) {
+            this.tasksById = tasksById;
+        }
+
+        private boolean contains(String taskId) {
+            return tasksById.containsKey(taskId);
+        }
+
+        private JobTasks addOrUpdate(Task task) {
+            return new JobTasks(tasksById.put(task.getId(), task));
+        }
+
+        private JobTasks remove(String taskId) {
+            return new JobTasks(tasksById.remove(taskId));
+        }
+
+        private List<Task> getTaskList() {
+            List<Task> result = taskList;
+            if (result == null) {
+                result = unmodifiableList(new ArrayList<>(tasksById.asMap().values()));
+                taskList = result;
+            }
+            return result;
+        }
     }
 
     public static class Builder {
         private final String snapshotId;
-        private final Map<String, Job<?>> jobsById;
-        private final Map<String, List<Task>> tasksByJobId;
+        private PersistentHashMap<String, Job<?>> jobsById;
+        private PersistentHashMap<String, JobTasks> tasksByJobId;
+        private PersistentHashMap<String, Task> taskById;
 
         private Builder(String snapshotId) {
             this.snapshotId = snapshotId;
-            this.jobsById = new HashMap<>();
-            this.tasksByJobId = new HashMap<>();
+            this.jobsById = PersistentHashMap.empty();
+            this.tasksByJobId = PersistentHashMap.empty();
+            this.taskById = PersistentHashMap.empty();
         }
 
         private Builder(JobSnapshot from) {
-            this(from.snapshotId, from.jobsById, from.tasksByJobId);
+            this.snapshotId = from.snapshotId;
+            this.jobsById = from.jobsById;
+            this.tasksByJobId = from.tasksByJobId;
+            this.taskById = from.taskById;
         }
 
         private Builder(String snapshotId, Map<String, Job<?>> jobsById, Map<String, List<Task>> tasksByJobId) {
-            this.snapshotId = snapshotId;
-            this.jobsById = new HashMap<>(jobsById);
-            HashMap<String, List<Task>> copy = new HashMap<>();
-            tasksByJobId.forEach((jobId, tasks) -> copy.put(jobId, new ArrayList<>(tasks)));
-            this.tasksByJobId = copy;
+            this(snapshotId);
+            this.jobsById = PersistentHashMap.of(jobsById);
+            tasksByJobId.forEach((jobId, tasks) -> tasks.forEach(task -> addTaskToIndex(jobId, task)));
         }
 
         public JobSnapshot build() {
-            Map<String, List<Task>> immutableTasksByJobId = new HashMap<>();
-            tasksByJobId.forEach((jobId, tasks) -> immutableTasksByJobId.put(jobId, unmodifiableList(tasks)));
-
-            List<Task> allTasks = new ArrayList<>();
-            tasksByJobId.values().forEach(allTasks::addAll);
-
-            Map<String, Task> taskById = allTasks.stream().collect(Collectors.toMap(Task::getId, Function.identity()));
-
-            return new JobSnapshot(
-                    snapshotId,
-                    unmodifiableMap(jobsById),
-                    unmodifiableMap(immutableTasksByJobId),
-                    unmodifiableList(new ArrayList<>(jobsById.values())),
-                    unmodifiableList(allTasks),
-                    buildAllJobsAndTasksList(jobsById, tasksByJobId),
-                    unmodifiableMap(taskById)
-            );
-
+            return new JobSnapshot(snapshotId, jobsById, tasksByJobId, taskById);
         }
 
         public Builder removeJob(Job<?> job) {
-            jobsById.remove(job.getId());
-            tasksByJobId.remove(job.getId());
+            jobsById = jobsById.remove(job.getId());
+            JobTasks jobTasks = tasksByJobId.get(job.getId());
+            if (jobTasks != null) {
+                tasksByJobId = tasksByJobId.remove(job.getId());
+                jobTasks.tasksById.forEach((taskId, task) -> taskById = taskById.remove(taskId));
+            }
             return this;
         }
 
         public Builder addOrUpdateJob(Job<?> job) {
-            jobsById.put(job.getId(), job);
+            jobsById = jobsById.put(job.getId(), job);
             return this;
         }
 
@@ -240,8 +274,10 @@ public class JobSnapshot extends ReplicatedSnapshot {
                     task.getJobId();
             Preconditions.checkArgument(StringExt.isNotEmpty(jobIdIndexToUpdate));
 
-            if (tasksByJobId.containsKey(jobIdIndexToUpdate)) {
-                tasksByJobId.get(jobIdIndexToUpdate).removeIf(t -> t.getId().equals(task.getId()));
+            JobTasks jobTasks = tasksByJobId.get(jobIdIndexToUpdate);
+            if (jobTasks != null && jobTasks.contains(task.getId())) {
+                tasksByJobId = tasksByJobId.put(jobIdIndexToUpdate, jobTasks.remove(task.getId()));
+                taskById = taskById.remove(task.getId());
             }
 
             return this;
@@ -251,31 +287,18 @@ public class JobSnapshot extends ReplicatedSnapshot {
             if (movedFromAnotherJob) {
                 removeTask(task, true);
             }
-            tasksByJobId.putIfAbsent(task.getJobId(), new ArrayList<>());
-            List<Task> jobTasks = tasksByJobId.get(task.getJobId());
-            jobTasks.removeIf(t -> t.getId().equals(task.getId()));
-            jobTasks.add(task);
-
+            addTaskToIndex(task.getJobId(), task);
             return this;
         }
 
-        private static List<Pair<Job<?>, List<Task>>> buildAllJobsAndTasksList(Map<String, Job<?>> jobsById, Map<String, List<Task>> tasksByJobId) {
-            List<Pair<Job<?>, List<Task>>> result = new ArrayList<>();
-
-            jobsById.values().forEach(job -> {
-                List<Task> tasks = tasksByJobId.get(job.getId());
-                if (CollectionsExt.isNullOrEmpty(tasks)) {
-                    result.add(Pair.of(job, Collections.emptyList()));
-                } else {
-                    result.add(Pair.of(job, unmodifiableList(tasks)));
-                }
-            });
-
-            return unmodifiableList(result);
-        }
-
         public Job<?> getJob(String jobId) {
             return jobsById.get(jobId);
         }
+
+        private void addTaskToIndex(String jobId, Task task) {
+            JobTasks jobTasks = tasksByJobId.getOrDefault(jobId, JobTasks.EMPTY);
+            tasksByJobId = tasksByJobId.put(jobId, jobTasks.addOrUpdate(task));
+            taskById = taskById.put(task.getId(), task);
+        }
     }
 }
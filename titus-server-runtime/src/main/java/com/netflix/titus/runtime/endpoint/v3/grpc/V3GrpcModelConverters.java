@@ -70,6 +70,7 @@ import com.netflix.titus.api.jobmanager.model.job.retry.ExponentialBackoffRetryP
 import com.netflix.titus.api.jobmanager.model.job.retry.ImmediateRetryPolicy;
 import com.netflix.titus.api.jobmanager.model.job.retry.RetryPolicy;
 import com.netflix.titus.api.model.EfsMount;
+import com.netflix.titus.common.util.ProtobufProjection;
 import com.netflix.titus.common.util.StringExt;
 import com.netflix.titus.grpc.protogen.BatchJobSpec;
 import com.netflix.titus.grpc.protogen.Capacity;
@@ -866,25 +867,35 @@ public final class V3GrpcModelConverters {
                 .build();
     }
 
-    public static com.netflix.titus.grpc.protogen.Task toGrpcTask(Task coreTask, LogStorageInfo<Task> logStorageInfo) {
-        Map<String, String> taskContext = new HashMap<>(coreTask.getTaskContext());
-        taskContext.put(TASK_ATTRIBUTES_TASK_ORIGINAL_ID, coreTask.getOriginalId());
-        taskContext.put(TASK_ATTRIBUTES_RESUBMIT_NUMBER, Integer.toString(coreTask.getResubmitNumber()));
-        taskContext.put(TASK_ATTRIBUTES_SYSTEM_RESUBMIT_NUMBER, Integer.toString(coreTask.getSystemResubmitNumber()));
-        taskContext.put(TASK_ATTRIBUTES_EVICTION_RESUBMIT_NUMBER, Integer.toString(coreTask.getEvictionResubmitNumber()));
-        coreTask.getResubmitOf().ifPresent(resubmitOf -> taskContext.put(TASK_ATTRIBUTES_TASK_RESUBMIT_OF, resubmitOf));
-
-        if (coreTask instanceof BatchJobTask) {
-            BatchJobTask batchTask = (BatchJobTask) coreTask;
-            taskContext.put(TASK_ATTRIBUTES_TASK_INDEX, Integer.toString(batchTask.getIndex()));
+    /**
+     * Converts only the top level fields included in the projection, and next applies the projection to
+     * the nested fields, if they are selected partially.
+     */
+    public static com.netflix.titus.grpc.protogen.Job toGrpcJob(Job<?> coreJob, ProtobufProjection projection) {
+        com.netflix.titus.grpc.protogen.Job.Builder builder = com.netflix.titus.grpc.protogen.Job.newBuilder();
+        if (projection.includes("id")) {
+            builder.setId(coreJob.getId());
+        }
+        if (projection.includes("jobDescriptor")) {
+            builder.setJobDescriptor(toGrpcJobDescriptor(coreJob.getJobDescriptor()));
         }
+        if (projection.includes("status")) {
+            builder.setStatus(toGrpcJobStatus(coreJob.getStatus()));
+        }
+        if (projection.includes("statusHistory")) {
+            builder.addAllStatusHistory(toGrpcJobStatusHistory(coreJob.getStatusHistory()));
+        }
+        com.netflix.titus.grpc.protogen.Job grpcJob = builder.build();
+        return projection.hasNestedSelection() ? projection.apply(grpcJob) : grpcJob;
+    }
 
+    public static com.netflix.titus.grpc.protogen.Task toGrpcTask(Task coreTask, LogStorageInfo<Task> logStorageInfo) {
         com.netflix.titus.grpc.protogen.Task.Builder taskBuilder = com.netflix.titus.grpc.protogen.Task.newBuilder()
                 .setId(coreTask.getId())
                 .setJobId(coreTask.getJobId())
                 .setStatus(toGrpcTaskStatus(coreTask.getStatus()))
                 .addAllStatusHistory(toGrpcTaskStatusHistory(coreTask.getStatusHistory()))
-                .putAllTaskContext(taskContext)
+                .putAllTaskContext(toGrpcTaskContext(coreTask))
                 .putAllAttributes(coreTask.getAttributes())
                 .setLogLocation(toGrpcLogLocation(coreTask, logStorageInfo));
 
@@ -896,6 +907,55 @@ public final class V3GrpcModelConverters {
         return taskBuilder.build();
     }
 
+    /**
+     * Converts only the top level fields included in the projection, and next applies the projection to
+     * the nested fields, if they are selected partially.
+     */
+    public static com.netflix.titus.grpc.protogen.Task toGrpcTask(Task coreTask, LogStorageInfo<Task> logStorageInfo, ProtobufProjection projection) {
+        com.netflix.titus.grpc.protogen.Task.Builder taskBuilder = com.netflix.titus.grpc.protogen.Task.newBuilder();
+        if (projection.includes("id")) {
+            taskBuilder.setId(coreTask.getId());
+        }
+        if (projection.includes("jobId")) {
+            taskBuilder.setJobId(coreTask.getJobId());
+        }
+        if (projection.includes("status")) {
+            taskBuilder.setStatus(toGrpcTaskStatus(coreTask.getStatus()));
+        }
+        if (projection.includes("statusHistory")) {
+            taskBuilder.addAllStatusHistory(toGrpcTaskStatusHistory(coreTask.getStatusHistory()));
+        }
+        if (projection.includes("taskContext")) {
+            taskBuilder.putAllTaskContext(toGrpcTaskContext(coreTask));
+        }
+        if (projection.includes("attributes")) {
+            taskBuilder.putAllAttributes(coreTask.getAttributes());
+        }
+        if (projection.includes("logLocation")) {
+            taskBuilder.setLogLocation(toGrpcLogLocation(coreTask, logStorageInfo));
+        }
+        if (projection.includes("migrationDetails") && coreTask instanceof ServiceJobTask) {
+            taskBuilder.setMigrationDetails(toGrpcMigrationDetails(((ServiceJobTask) coreTask).getMigrationDetails()));
+        }
+        com.netflix.titus.grpc.protogen.Task grpcTask = taskBuilder.build();
+        return projection.hasNestedSelection() ? projection.apply(grpcTask) : grpcTask;
+    }
+
+    private static Map<String, String> toGrpcTaskContext(Task coreTask) {
+        Map<String, String> taskContext = new HashMap<>(coreTask.getTaskContext());
+        taskContext.put(TASK_ATTRIBUTES_TASK_ORIGINAL_ID, coreTask.getOriginalId());
+        taskContext.put(TASK_ATTRIBUTES_RESUBMIT_NUMBER, Integer.toString(coreTask.getResubmitNumber()));
+        taskContext.put(TASK_ATTRIBUTES_SYSTEM_RESUBMIT_NUMBER, Integer.toString(coreTask.getSystemResubmitNumber()));
+        taskContext.put(TASK_ATTRIBUTES_EVICTION_RESUBMIT_NUMBER, Integer.toString(coreTask.getEvictionResubmitNumber()));
+        coreTask.getResubmitOf().ifPresent(resubmitOf -> taskContext.put(TASK_ATTRIBUTES_TASK_RESUBMIT_OF, resubmitOf));
+
+        if (coreTask instanceof BatchJobTask) {
+            BatchJobTask batchTask = (BatchJobTask) coreTask;
+            taskContext.put(TASK_ATTRIBUTES_TASK_INDEX, Integer.toString(batchTask.getIndex()));
+        }
+        return taskContext;
+    }
+
     public static <TASK> LogLocation toGrpcLogLocation(TASK task, LogStorageInfo<TASK> logStorageInfo) {
         LogLocation.Builder logLocationBuilder = LogLocation.newBuilder();
 
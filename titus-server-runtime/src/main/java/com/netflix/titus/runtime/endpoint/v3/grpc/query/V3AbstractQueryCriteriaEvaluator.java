@@ -17,16 +17,19 @@
 package com.netflix.titus.runtime.endpoint.v3.grpc.query;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import com.netflix.titus.api.jobmanager.model.job.Job;
 import com.netflix.titus.api.jobmanager.model.job.JobGroupInfo;
 import com.netflix.titus.api.jobmanager.model.job.JobState;
+import com.netflix.titus.api.jobmanager.model.job.TaskState;
 import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
 import com.netflix.titus.common.util.tuple.Pair;
 import com.netflix.titus.grpc.protogen.JobDescriptor;
@@ -36,45 +39,90 @@ import com.netflix.titus.runtime.endpoint.JobQueryCriteria;
 import com.netflix.titus.runtime.endpoint.common.QueryUtils;
 import com.netflix.titus.runtime.endpoint.v3.grpc.V3GrpcModelConverters;
 
+/**
+ * Query evaluator compiled from {@link JobQueryCriteria}. The criteria are split into a job part, which depends only
+ * on the job, and a task part, which depends only on the task (or the task list), so the job part can be evaluated
+ * once per job, and the task part only for the tasks of matching jobs (see {@link #testJob(Job)} and
+ * {@link #testTasks(Object)}). Within each part, predicates are ordered from the cheapest and most selective ones
+ * (id lookups, string equality) to the least selective (job type and state) and the most expensive (attributes).
+ */
 public abstract class V3AbstractQueryCriteriaEvaluator<TASK_OR_SET> implements Predicate<Pair<Job<?>, TASK_OR_SET>> {
 
-    private final Predicate<Pair<Job<?>, TASK_OR_SET>> queryPredicate;
+    private final JobQueryCriteria<TaskStatus.TaskState, JobDescriptor.JobSpecCase> criteria;
+    private final Predicate<Job<?>> jobPredicate;
+    private final Predicate<TASK_OR_SET> taskPredicate;
 
-    protected V3AbstractQueryCriteriaEvaluator(List<Predicate<Pair<Job<?>, TASK_OR_SET>>> taskPredicates,
+    protected V3AbstractQueryCriteriaEvaluator(List<Predicate<TASK_OR_SET>> taskPredicates,
                                                JobQueryCriteria<TaskStatus.TaskState, JobDescriptor.JobSpecCase> criteria) {
-        List<Predicate<Pair<Job<?>, TASK_OR_SET>>> predicates = createJobPredicates(criteria);
-        predicates.addAll(taskPredicates);
-        this.queryPredicate = matchAll(predicates);
+        this.criteria = criteria;
+        this.jobPredicate = matchAll(createJobPredicates(criteria));
+        this.taskPredicate = matchAll(taskPredicates);
+    }
+
+    /**
+     * Query criteria from which this evaluator was built. Data sources may use them to narrow down the set of
+     * entities to evaluate (for example with an index lookup), but the evaluator remains the final filter.
+     */
+    public JobQueryCriteria<TaskStatus.TaskState, JobDescriptor.JobSpecCase> getCriteria() {
+        return criteria;
+    }
+
+    /**
+     * Job state of the query criteria, in the core model.
+     */
+    public Optional<JobState> getCoreJobState() {
+        return criteria.getJobState().map(jobState -> V3GrpcModelConverters.toCoreJobState((JobStatus.JobState) jobState));
+    }
+
+    /**
+     * Task states of the query criteria, in the core model.
+     */
+    public Set<TaskState> getCoreTaskStates() {
+        return criteria.getTaskStates().stream().map(V3GrpcModelConverters::toCoreTaskState).collect(Collectors.toSet());
     }
 
     @Override
     public boolean test(Pair<Job<?>, TASK_OR_SET> jobListPair) {
-        return queryPredicate.test(jobListPair);
+        return jobPredicate.test(jobListPair.getLeft()) && taskPredicate.test(jobListPair.getRight());
     }
 
-    private List<Predicate<Pair<Job<?>, TASK_OR_SET>>> createJobPredicates(JobQueryCriteria<TaskStatus.TaskState, JobDescriptor.JobSpecCase> criteria) {
-        List<Predicate<Pair<Job<?>, TASK_OR_SET>>> predicates = new ArrayList<>();
+    /**
+     * Evaluates the job level criteria only. The result is the same for all tasks of a job.
+     */
+    public boolean testJob(Job<?> job) {
+        return jobPredicate.test(job);
+    }
 
-        applyJobIds(criteria.getJobIds()).ifPresent(predicates::add);
-        applyJobType(criteria.getJobType()).ifPresent(predicates::add);
-        applyJobState(criteria.getJobState()).ifPresent(predicates::add);
-        applyOwner(criteria.getOwner()).ifPresent(predicates::add);
-        applyApplicationName(criteria.getAppName()).ifPresent(predicates::add);
-        applyCapacityGroup(criteria.getCapacityGroup()).ifPresent(predicates::add);
-        applyJobGroupStack(criteria.getJobGroupStack()).ifPresent(predicates::add);
-        applyJobGroupDetail(criteria.getJobGroupDetail()).ifPresent(predicates::add);
-        applyJobGroupSequence(criteria.getJobGroupSequence()).ifPresent(predicates::add);
-        applyImageName(criteria.getImageName()).ifPresent(predicates::add);
-        applyImageTag(criteria.getImageTag()).ifPresent(predicates::add);
-        applyJobDescriptorAttributes(criteria.getLabels(), criteria.isLabelsAndOp()).ifPresent(predicates::add);
+    /**
+     * Evaluates the task level criteria only. A task (or task list) matches the query if both this method and
+     * {@link #testJob(Job)} for its job return true.
+     */
+    public boolean testTasks(TASK_OR_SET tasks) {
+        return taskPredicate.test(tasks);
+    }
 
-        return predicates;
+    /**
+     * Returns a matcher for a set of identifiers. A single identifier is compared directly.
+     */
+    protected static Predicate<String> newIdMatcher(Set<String> ids) {
+        if (ids.size() == 1) {
+            String id = ids.iterator().next();
+            return id::equals;
+        }
+        Set<String> idSet = new HashSet<>(ids);
+        return idSet::contains;
     }
 
-    private Predicate<Pair<Job<?>, TASK_OR_SET>> matchAll(List<Predicate<Pair<Job<?>, TASK_OR_SET>>> predicates) {
-        return jobAndTasks -> {
-            for (Predicate<Pair<Job<?>, TASK_OR_SET>> predicate : predicates) {
-                if (!predicate.test(jobAndTasks)) {
+    protected static <T> Predicate<T> matchAll(List<Predicate<T>> predicates) {
+        if (predicates.isEmpty()) {
+            return value -> true;
+        }
+        if (predicates.size() == 1) {
+            return predicates.get(0);
+        }
+        return value -> {
+            for (Predicate<T> predicate : predicates) {
+                if (!predicate.test(value)) {
                     return false;
                 }
             }
@@ -82,94 +130,107 @@ public abstract class V3AbstractQueryCriteriaEvaluator<TASK_OR_SET> implements P
         };
     }
 
-    private Optional<Predicate<Pair<Job<?>, TASK_OR_SET>>> applyJobType(Optional<JobDescriptor.JobSpecCase> jobTypeOpt) {
+    private List<Predicate<Job<?>>> createJobPredicates(JobQueryCriteria<TaskStatus.TaskState, JobDescriptor.JobSpecCase> criteria) {
+        List<Predicate<Job<?>>> predicates = new ArrayList<>();
+
+        applyJobIds(criteria.getJobIds()).ifPresent(predicates::add);
+        applyApplicationName(criteria.getAppName()).ifPresent(predicates::add);
+        applyImageName(criteria.getImageName()).ifPresent(predicates::add);
+        applyImageTag(criteria.getImageTag()).ifPresent(predicates::add);
+        applyJobGroupSequence(criteria.getJobGroupSequence()).ifPresent(predicates::add);
+        applyJobGroupDetail(criteria.getJobGroupDetail()).ifPresent(predicates::add);
+        applyJobGroupStack(criteria.getJobGroupStack()).ifPresent(predicates::add);
+        applyOwner(criteria.getOwner()).ifPresent(predicates::add);
+        applyCapacityGroup(criteria.getCapacityGroup()).ifPresent(predicates::add);
+        applyJobType(criteria.getJobType()).ifPresent(predicates::add);
+        applyJobState(criteria.getJobState()).ifPresent(predicates::add);
+        applyJobDescriptorAttributes(criteria.getLabels(), criteria.isLabelsAndOp()).ifPresent(predicates::add);
+
+        return predicates;
+    }
+
+    private Optional<Predicate<Job<?>>> applyJobType(Optional<JobDescriptor.JobSpecCase> jobTypeOpt) {
         return jobTypeOpt.map(jobType ->
-                jobTaskPair -> {
-                    boolean isBatchJob = jobTaskPair.getLeft().getJobDescriptor().getExtensions() instanceof BatchJobExt;
+                job -> {
+                    boolean isBatchJob = job.getJobDescriptor().getExtensions() instanceof BatchJobExt;
                     return (isBatchJob && jobType.equals(JobDescriptor.JobSpecCase.BATCH)) || (!isBatchJob && jobType.equals(JobDescriptor.JobSpecCase.SERVICE));
                 }
         );
     }
 
-    private Optional<Predicate<Pair<Job<?>, TASK_OR_SET>>> applyJobIds(Set<String> jobIds) {
-        return jobIds.isEmpty() ? Optional.empty() : Optional.of(jobAndTasks -> jobIds.contains(jobAndTasks.getLeft().getId()));
+    private Optional<Predicate<Job<?>>> applyJobIds(Set<String> jobIds) {
+        if (jobIds.isEmpty()) {
+            return Optional.empty();
+        }
+        Predicate<String> idMatcher = newIdMatcher(jobIds);
+        return Optional.of(job -> idMatcher.test(job.getId()));
     }
 
-    private Optional<Predicate<Pair<Job<?>, TASK_OR_SET>>> applyJobState(Optional<Object> jobStateOpt) {
+    private Optional<Predicate<Job<?>>> applyJobState(Optional<Object> jobStateOpt) {
         return jobStateOpt.map(jobStateObj -> {
             JobState jobState = V3GrpcModelConverters.toCoreJobState((JobStatus.JobState) jobStateObj);
-            return jobTaskPair -> jobTaskPair.getLeft().getStatus().getState().equals(jobState);
+            return job -> job.getStatus().getState().equals(jobState);
         });
     }
 
-    private Optional<Predicate<Pair<Job<?>, TASK_OR_SET>>> applyOwner(Optional<String> ownerOpt) {
+    private Optional<Predicate<Job<?>>> applyOwner(Optional<String> ownerOpt) {
         return ownerOpt.map(owner ->
-                jobTaskPair -> jobTaskPair.getLeft().getJobDescriptor().getOwner().getTeamEmail().equals(owner)
+                job -> job.getJobDescriptor().getOwner().getTeamEmail().equals(owner)
         );
     }
 
-    private Optional<Predicate<Pair<Job<?>, TASK_OR_SET>>> applyApplicationName(Optional<String> appNameOpt) {
-        return appNameOpt.map(appName ->
-                jobTaskPair -> {
-                    String currentAppName = jobTaskPair.getLeft().getJobDescriptor().getApplicationName();
-                    return currentAppName != null && currentAppName.equals(appName);
-                }
-        );
+    private Optional<Predicate<Job<?>>> applyApplicationName(Optional<String> appNameOpt) {
+        return apply(appNameOpt, job -> job.getJobDescriptor().getApplicationName());
     }
 
-    private Optional<Predicate<Pair<Job<?>, TASK_OR_SET>>> applyCapacityGroup(Optional<String> capacityGroupOpt) {
-        return capacityGroupOpt.map(capacityGroup ->
-                jobTaskPair -> {
-                    String currentCapacityGroup = jobTaskPair.getLeft().getJobDescriptor().getCapacityGroup();
-                    return currentCapacityGroup != null && currentCapacityGroup.equals(capacityGroup);
-                }
-        );
+    private Optional<Predicate<Job<?>>> applyCapacityGroup(Optional<String> capacityGroupOpt) {
+        return apply(capacityGroupOpt, job -> job.getJobDescriptor().getCapacityGroup());
     }
 
-    private Optional<Predicate<Pair<Job<?>, TASK_OR_SET>>> applyJobGroupStack(Optional<String> jobGroupStack) {
+    private Optional<Predicate<Job<?>>> applyJobGroupStack(Optional<String> jobGroupStack) {
         return apply(jobGroupStack, job -> {
             JobGroupInfo jobGroupInfo = job.getJobDescriptor().getJobGroupInfo();
             return jobGroupInfo == null ? null : jobGroupInfo.getStack();
         });
     }
 
-    private Optional<Predicate<Pair<Job<?>, TASK_OR_SET>>> applyJobGroupDetail(Optional<String> jobGroupDetail) {
+    private Optional<Predicate<Job<?>>> applyJobGroupDetail(Optional<String> jobGroupDetail) {
         return apply(jobGroupDetail, job -> {
             JobGroupInfo jobGroupInfo = job.getJobDescriptor().getJobGroupInfo();
             return jobGroupInfo == null ? null : jobGroupInfo.getDetail();
         });
     }
 
-    private Optional<Predicate<Pair<Job<?>, TASK_OR_SET>>> applyJobGroupSequence(Optional<String> jobGroupSequence) {
+    private Optional<Predicate<Job<?>>> applyJobGroupSequence(Optional<String> jobGroupSequence) {
         return apply(jobGroupSequence, job -> {
             JobGroupInfo jobGroupInfo = job.getJobDescriptor().getJobGroupInfo();
             return jobGroupInfo == null ? null : jobGroupInfo.getSequence();
         });
     }
 
-    private Optional<Predicate<Pair<Job<?>, TASK_OR_SET>>> applyImageName(Optional<String> imageName) {
+    private Optional<Predicate<Job<?>>> applyImageName(Optional<String> imageName) {
         return apply(imageName, job -> job.getJobDescriptor().getContainer().getImage().getName());
     }
 
-    private Optional<Predicate<Pair<Job<?>, TASK_OR_SET>>> applyImageTag(Optional<String> imageTag) {
+    private Optional<Predicate<Job<?>>> applyImageTag(Optional<String> imageTag) {
         return apply(imageTag, job -> job.getJobDescriptor().getContainer().getImage().getTag());
     }
 
-    private Optional<Predicate<Pair<Job<?>, TASK_OR_SET>>> apply(Optional<String> expectedOpt, Function<Job<?>, String> valueGetter) {
+    private Optional<Predicate<Job<?>>> apply(Optional<String> expectedOpt, Function<Job<?>, String> valueGetter) {
         return expectedOpt.map(expected ->
-                jobTaskPair -> {
-                    String actual = valueGetter.apply(jobTaskPair.getLeft());
+                job -> {
+                    String actual = valueGetter.apply(job);
                     return actual != null && actual.equals(expected);
                 }
         );
     }
 
-    private Optional<Predicate<Pair<Job<?>, TASK_OR_SET>>> applyJobDescriptorAttributes(Map<String, Set<String>> attributes, boolean andOperator) {
+    private Optional<Predicate<Job<?>>> applyJobDescriptorAttributes(Map<String, Set<String>> attributes, boolean andOperator) {
         if (attributes.isEmpty()) {
             return Optional.empty();
         }
-        return Optional.of(jobTaskPair -> {
-                    Map<String, String> jobAttributes = jobTaskPair.getLeft().getJobDescriptor().getAttributes();
+        return Optional.of(job -> {
+                    Map<String, String> jobAttributes = job.getJobDescriptor().getAttributes();
                     return QueryUtils.matchesAttributes(attributes, jobAttributes, andOperator);
                 }
         );
@@ -23,13 +23,11 @@ import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
-import com.netflix.titus.api.jobmanager.model.job.Job;
 import com.netflix.titus.api.jobmanager.model.job.JobFunctions;
 import com.netflix.titus.api.jobmanager.model.job.ServiceJobTask;
 import com.netflix.titus.api.jobmanager.model.job.Task;
 import com.netflix.titus.api.jobmanager.model.job.TaskState;
 import com.netflix.titus.common.runtime.TitusRuntime;
-import com.netflix.titus.common.util.tuple.Pair;
 import com.netflix.titus.grpc.protogen.JobDescriptor.JobSpecCase;
 import com.netflix.titus.grpc.protogen.TaskStatus;
 import com.netflix.titus.runtime.endpoint.JobQueryCriteria;
@@ -43,8 +41,8 @@ public class V3JobQueryCriteriaEvaluator extends V3AbstractQueryCriteriaEvaluato
         super(createTaskPredicates(criteria, titusRuntime), criteria);
     }
 
-    private static List<Predicate<Pair<Job<?>, List<Task>>>> createTaskPredicates(JobQueryCriteria<TaskStatus.TaskState, JobSpecCase> criteria, TitusRuntime titusRuntime) {
-        List<Predicate<Pair<Job<?>, List<Task>>>> predicates = new ArrayList<>();
+    private static List<Predicate<List<Task>>> createTaskPredicates(JobQueryCriteria<TaskStatus.TaskState, JobSpecCase> criteria, TitusRuntime titusRuntime) {
+        List<Predicate<List<Task>>> predicates = new ArrayList<>();
         applyTaskIds(criteria.getTaskIds()).ifPresent(predicates::add);
         applyTaskStates(criteria.getTaskStates()).ifPresent(predicates::add);
         applyTaskStateReasons(criteria.getTaskStateReasons());
@@ -52,42 +50,34 @@ public class V3JobQueryCriteriaEvaluator extends V3AbstractQueryCriteriaEvaluato
         return predicates;
     }
 
-    private static Optional<Predicate<Pair<Job<?>, List<Task>>>> applyTaskIds(Set<String> taskIds) {
+    private static Optional<Predicate<List<Task>>> applyTaskIds(Set<String> taskIds) {
         if (taskIds.isEmpty()) {
             return Optional.empty();
         }
-        return Optional.of(jobAndTasks -> {
-            List<Task> tasks = jobAndTasks.getRight();
-            return tasks.stream().anyMatch(t -> taskIds.contains(t.getId()));
-        });
+        Predicate<String> idMatcher = newIdMatcher(taskIds);
+        return Optional.of(tasks -> tasks.stream().anyMatch(t -> idMatcher.test(t.getId())));
     }
 
-    private static Optional<Predicate<Pair<Job<?>, List<Task>>>> applyTaskStates(Set<TaskStatus.TaskState> taskStates) {
+    private static Optional<Predicate<List<Task>>> applyTaskStates(Set<TaskStatus.TaskState> taskStates) {
         if (taskStates.isEmpty()) {
             return Optional.empty();
         }
         Set<TaskState> coreTaskStates = taskStates.stream().map(V3GrpcModelConverters::toCoreTaskState).collect(Collectors.toSet());
-        return Optional.of(jobAndTasks -> {
-            List<Task> tasks = jobAndTasks.getRight();
-            return tasks.stream().anyMatch(t -> coreTaskStates.contains(t.getStatus().getState()));
-        });
+        return Optional.of(tasks -> tasks.stream().anyMatch(t -> coreTaskStates.contains(t.getStatus().getState())));
     }
 
-    private static Optional<Predicate<Pair<Job<?>, List<Task>>>> applyTaskStateReasons(Set<String> taskStateReasons) {
+    private static Optional<Predicate<List<Task>>> applyTaskStateReasons(Set<String> taskStateReasons) {
         if (taskStateReasons.isEmpty()) {
             return Optional.empty();
         }
-        return Optional.of(jobAndTasks -> {
-            List<Task> tasks = jobAndTasks.getRight();
-            return tasks.stream().anyMatch(t -> taskStateReasons.contains(t.getStatus().getReasonCode()));
-        });
+        return Optional.of(tasks -> tasks.stream().anyMatch(t -> taskStateReasons.contains(t.getStatus().getReasonCode())));
     }
 
-    private static Optional<Predicate<Pair<Job<?>, List<Task>>>> applyNeedsMigration(boolean needsMigration, TitusRuntime titusRuntime) {
+    private static Optional<Predicate<List<Task>>> applyNeedsMigration(boolean needsMigration, TitusRuntime titusRuntime) {
         if (!needsMigration) {
             return Optional.empty();
         }
-        return Optional.of(jobAndTasks -> jobAndTasks.getRight().stream().anyMatch(t -> {
+        return Optional.of(tasks -> tasks.stream().anyMatch(t -> {
             if (!JobFunctions.isServiceTask(t)) {
                 return false;
             }
@@ -41,9 +41,31 @@ public class V3TaskQueryCriteriaEvaluator extends V3AbstractQueryCriteriaEvaluat
         super(createTaskPredicates(criteria, titusRuntime), criteria);
     }
 
-    private static List<Predicate<Pair<Job<?>, Task>>> createTaskPredicates(JobQueryCriteria<TaskStatus.TaskState, JobDescriptor.JobSpecCase> criteria, TitusRuntime titusRuntime) {
-        List<Predicate<Pair<Job<?>, Task>>> predicates = new ArrayList<>();
-        applyJobIds(criteria.getJobIds()).ifPresent(predicates::add);
+    /**
+     * Returns the job level part of the given query predicate, if it is a query evaluator, so a data source may
+     * evaluate it once per job. Otherwise returns an always true predicate.
+     */
+    public static Predicate<Job<?>> jobFilterOf(Predicate<Pair<Job<?>, Task>> queryPredicate) {
+        if (queryPredicate instanceof V3TaskQueryCriteriaEvaluator) {
+            return ((V3TaskQueryCriteriaEvaluator) queryPredicate)::testJob;
+        }
+        return job -> true;
+    }
+
+    /**
+     * Returns the task level part of the given query predicate, if it is a query evaluator, or the predicate itself
+     * otherwise. It should be evaluated only for tasks of jobs matching {@link #jobFilterOf(Predicate)}.
+     */
+    public static Predicate<Pair<Job<?>, Task>> taskFilterOf(Predicate<Pair<Job<?>, Task>> queryPredicate) {
+        if (queryPredicate instanceof V3TaskQueryCriteriaEvaluator) {
+            V3TaskQueryCriteriaEvaluator evaluator = (V3TaskQueryCriteriaEvaluator) queryPredicate;
+            return jobAndTask -> evaluator.testTasks(jobAndTask.getRight());
+        }
+        return queryPredicate;
+    }
+
+    private static List<Predicate<Task>> createTaskPredicates(JobQueryCriteria<TaskStatus.TaskState, JobDescriptor.JobSpecCase> criteria, TitusRuntime titusRuntime) {
+        List<Predicate<Task>> predicates = new ArrayList<>();
         applyTaskIds(criteria.getTaskIds()).ifPresent(predicates::add);
         applyTaskStates(criteria.getTaskStates()).ifPresent(predicates::add);
         applyTaskStateReasons(criteria.getTaskStateReasons()).ifPresent(predicates::add);
@@ -51,47 +73,34 @@ public class V3TaskQueryCriteriaEvaluator extends V3AbstractQueryCriteriaEvaluat
         return predicates;
     }
 
-    private static Optional<Predicate<Pair<Job<?>, Task>>> applyJobIds(Set<String> jobIds) {
-        if (jobIds.isEmpty()) {
-            return Optional.empty();
-        }
-        return Optional.of(jobAndTask -> jobIds.contains(jobAndTask.getLeft().getId()));
-    }
-
-    private static Optional<Predicate<Pair<Job<?>, Task>>> applyTaskIds(Set<String> taskIds) {
+    private static Optional<Predicate<Task>> applyTaskIds(Set<String> taskIds) {
         if (taskIds.isEmpty()) {
             return Optional.empty();
         }
-        return Optional.of(jobAndTask -> taskIds.contains(jobAndTask.getRight().getId()));
+        Predicate<String> idMatcher = newIdMatcher(taskIds);
+        return Optional.of(task -> idMatcher.test(task.getId()));
     }
 
-    private static Optional<Predicate<Pair<Job<?>, Task>>> applyTaskStates(Set<TaskStatus.TaskState> taskStates) {
+    private static Optional<Predicate<Task>> applyTaskStates(Set<TaskStatus.TaskState> taskStates) {
         if (taskStates.isEmpty()) {
             return Optional.empty();
         }
         Set<TaskState> coreTaskStates = taskStates.stream().map(V3GrpcModelConverters::toCoreTaskState).collect(Collectors.toSet());
-        return Optional.of(jobAndTasks -> {
-            Task task = jobAndTasks.getRight();
-            return coreTaskStates.contains(task.getStatus().getState());
-        });
+        return Optional.of(task -> coreTaskStates.contains(task.getStatus().getState()));
     }
 
-    private static Optional<Predicate<Pair<Job<?>, Task>>> applyTaskStateReasons(Set<String> taskStateReasons) {
+    private static Optional<Predicate<Task>> applyTaskStateReasons(Set<String> taskStateReasons) {
         if (taskStateReasons.isEmpty()) {
             return Optional.empty();
         }
-        return Optional.of(jobAndTasks -> {
-            Task task = jobAndTasks.getRight();
-            return taskStateReasons.contains(task.getStatus().getReasonCode());
-        });
+        return Optional.of(task -> taskStateReasons.contains(task.getStatus().getReasonCode()));
     }
 
-    private static Optional<Predicate<Pair<Job<?>, Task>>> applyNeedsMigration(boolean needsMigration, TitusRuntime titusRuntime) {
+    private static Optional<Predicate<Task>> applyNeedsMigration(boolean needsMigration, TitusRuntime titusRuntime) {
         if (!needsMigration) {
             return Optional.empty();
         }
-        return Optional.of(jobAndTask -> {
-                    Task t = jobAndTask.getRight();
+        return Optional.of(t -> {
                     if (!JobFunctions.isServiceTask(t)) {
                         return false;
                     }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.runtime.endpoint.v3.grpc;
+
+import java.util.Set;
+
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.ServiceJobTask;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.ext.ServiceJobExt;
+import com.netflix.titus.common.util.ProtobufExt;
+import com.netflix.titus.common.util.ProtobufProjection;
+import com.netflix.titus.runtime.endpoint.common.EmptyLogStorageInfo;
+import com.netflix.titus.runtime.endpoint.common.LogStorageInfo;
+import com.netflix.titus.testkit.model.job.JobGenerator;
+import org.junit.Test;
+
+import static com.netflix.titus.common.util.CollectionsExt.asSet;
+import static com.netflix.titus.testkit.model.job.JobDescriptorGenerator.oneTaskServiceJobDescriptor;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class V3GrpcModelConvertersTest {
+
+    private static final LogStorageInfo<Task> LOG_STORAGE_INFO = EmptyLogStorageInfo.empty();
+
+    private final Job<ServiceJobExt> job = JobGenerator.serviceJobs(oneTaskServiceJobDescriptor()).getValue();
+    private final ServiceJobTask task = JobGenerator.serviceTasks(job).getValue();
+
+    @Test
+    public void testJobProjection() {
+        assertJobProjection(asSet("id"));
+        assertJobProjection(asSet("id", "status"));
+        assertJobProjection(asSet("id", "jobDescriptor.owner", "jobDescriptor.attributes"));
+    }
+
+    @Test
+    public void testTaskProjection() {
+        assertTaskProjection(asSet("id"));
+        assertTaskProjection(asSet("id", "jobId", "status", "migrationDetails"));
+        assertTaskProjection(asSet("id", "status.state", "taskContext.task.originalId"));
+    }
+
+    private void assertJobProjection(Set<String> fields) {
+        com.netflix.titus.grpc.protogen.Job projected = V3GrpcModelConverters.toGrpcJob(
+                job, ProtobufProjection.of(com.netflix.titus.grpc.protogen.Job.getDescriptor(), fields)
+        );
+        assertThat(projected).isEqualTo(ProtobufExt.copy(V3GrpcModelConverters.toGrpcJob(job), fields));
+    }
+
+    private void assertTaskProjection(Set<String> fields) {
+        com.netflix.titus.grpc.protogen.Task projected = V3GrpcModelConverters.toGrpcTask(
+                task, LOG_STORAGE_INFO, ProtobufProjection.of(com.netflix.titus.grpc.protogen.Task.getDescriptor(), fields)
+        );
+        assertThat(projected).isEqualTo(ProtobufExt.copy(V3GrpcModelConverters.toGrpcTask(task, LOG_STORAGE_INFO), fields));
+    }
+}
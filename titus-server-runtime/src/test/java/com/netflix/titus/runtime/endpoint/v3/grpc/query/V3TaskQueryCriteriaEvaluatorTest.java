@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.titus.runtime.endpoint.v3.grpc.query;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import com.google.common.collect.ImmutableSet;
+import com.netflix.titus.api.jobmanager.model.job.BatchJobTask;
+import com.netflix.titus.api.jobmanager.model.job.Job;
+import com.netflix.titus.api.jobmanager.model.job.Task;
+import com.netflix.titus.api.jobmanager.model.job.ext.BatchJobExt;
+import com.netflix.titus.common.runtime.TitusRuntimes;
+import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.grpc.protogen.JobDescriptor.JobSpecCase;
+import com.netflix.titus.grpc.protogen.TaskStatus;
+import com.netflix.titus.runtime.endpoint.JobQueryCriteria;
+import com.netflix.titus.testkit.model.job.JobGenerator;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class V3TaskQueryCriteriaEvaluatorTest {
+
+    private final Job<BatchJobExt> job = JobGenerator.oneBatchJob();
+    private final List<BatchJobTask> tasks = JobGenerator.batchTasks(job).getValues(3);
+
+    @Test
+    public void testJobAndTaskPartsAreEvaluatedSeparately() {
+        V3TaskQueryCriteriaEvaluator evaluator = newEvaluator(JobQueryCriteria.<TaskStatus.TaskState, JobSpecCase>newBuilder()
+                .withAppName(job.getJobDescriptor().getApplicationName())
+                .withTaskIds(ImmutableSet.of(tasks.get(0).getId()))
+                .build()
+        );
+
+        assertThat(evaluator.testJob(job)).isTrue();
+        assertThat(evaluator.testTasks(tasks.get(0))).isTrue();
+        assertThat(evaluator.testTasks(tasks.get(1))).isFalse();
+        assertThat(evaluator.test(Pair.<Job<?>, Task>of(job, tasks.get(0)))).isTrue();
+        assertThat(evaluator.test(Pair.<Job<?>, Task>of(job, tasks.get(1)))).isFalse();
+    }
+
+    @Test
+    public void testJobMismatchRejectsAllTasks() {
+        V3TaskQueryCriteriaEvaluator evaluator = newEvaluator(JobQueryCriteria.<TaskStatus.TaskState, JobSpecCase>newBuilder()
+                .withAppName("otherApp")
+                .withTaskIds(ImmutableSet.of(tasks.get(0).getId()))
+                .build()
+        );
+
+        assertThat(evaluator.testJob(job)).isFalse();
+        assertThat(evaluator.testTasks(tasks.get(0))).isTrue();
+        assertThat(evaluator.test(Pair.<Job<?>, Task>of(job, tasks.get(0)))).isFalse();
+    }
+
+    @Test
+    public void testMultipleIdsLookup() {
+        V3TaskQueryCriteriaEvaluator evaluator = newEvaluator(JobQueryCriteria.<TaskStatus.TaskState, JobSpecCase>newBuilder()
+                .withJobIds(ImmutableSet.of(job.getId(), "otherJob"))
+                .withTaskIds(ImmutableSet.of(tasks.get(0).getId(), tasks.get(2).getId()))
+                .build()
+        );
+
+        assertThat(evaluator.testJob(job)).isTrue();
+        assertThat(evaluator.testTasks(tasks.get(0))).isTrue();
+        assertThat(evaluator.testTasks(tasks.get(1))).isFalse();
+        assertThat(evaluator.testTasks(tasks.get(2))).isTrue();
+    }
+
+    @Test
+    public void testFiltersOfNonEvaluatorPredicate() {
+        Predicate<Pair<Job<?>, Task>> predicate = jobAndTask -> jobAndTask.getRight().getId().equals(tasks.get(1).getId());
+
+        assertThat(V3TaskQueryCriteriaEvaluator.jobFilterOf(predicate).test(job)).isTrue();
+        assertThat(V3TaskQueryCriteriaEvaluator.taskFilterOf(predicate)).isSameAs(predicate);
+    }
+
+    private V3TaskQueryCriteriaEvaluator newEvaluator(JobQueryCriteria<TaskStatus.TaskState, JobSpecCase> criteria) {
+        return new V3TaskQueryCriteriaEvaluator(criteria, TitusRuntimes.internal());
+    }
+}
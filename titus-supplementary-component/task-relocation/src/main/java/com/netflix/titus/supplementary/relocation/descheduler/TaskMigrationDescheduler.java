@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.PriorityQueue;
 
 import com.netflix.titus.api.agent.model.AgentInstance;
 import com.netflix.titus.api.jobmanager.model.job.Job;
@@ -53,6 +54,10 @@ class TaskMigrationDescheduler {
      */
     private static final double TASK_ON_AGENT_PENALTY = 1.0 / MAX_EXPECTED_AGENT_CPUS;
 
+    private static final Comparator<AgentFitness> BEST_FITNESS_FIRST = Comparator
+            .comparingDouble((AgentFitness f) -> f.fitness).reversed()
+            .thenComparing(f -> f.agent.getId());
+
     private final Map<String, TaskRelocationPlan> plannedAheadTaskRelocationPlans;
 
     private final EvacuatedAgentsAllocationTracker evacuatedAgentsAllocationTracker;
@@ -61,6 +66,11 @@ class TaskMigrationDescheduler {
     private final Map<String, Task> tasksById;
     private final Clock clock;
 
+    /**
+     * Removable agents ordered by their last known fitness, built lazily on the first {@link #nextBestMatch()} call.
+     */
+    private PriorityQueue<AgentFitness> agentsByFitness;
+
     TaskMigrationDescheduler(Map<String, TaskRelocationPlan> plannedAheadTaskRelocationPlans,
                              EvacuatedAgentsAllocationTracker evacuatedAgentsAllocationTracker,
                              EvictionQuotaTracker evictionQuotaTracker,
@@ -114,26 +124,47 @@ class TaskMigrationDescheduler {
         return result;
     }
 
+    /**
+     * Returns the agent with the highest fitness, and the tasks to evict from it. An agent fitness can only go down
+     * as job and system eviction quotas are consumed, so the fitness kept in the queue is an upper bound of the actual
+     * one. Only the agent at the top of the queue is re-evaluated, and it is accepted if its current fitness is not
+     * lower than the upper bound of the next agent. Otherwise it is put back with the updated value. This way
+     * an evaluation is repeated only for agents affected by the quota consumed by the previous picks.
+     */
     Optional<Pair<AgentInstance, List<Task>>> nextBestMatch() {
         if (evictionQuotaTracker.getSystemEvictionQuota() <= 0) {
             return Optional.empty();
         }
+        if (agentsByFitness == null) {
+            agentsByFitness = buildAgentFitnessQueue();
+        }
 
-        return evacuatedAgentsAllocationTracker.getRemovableAgentsById().values().stream()
-                .map(i -> Pair.of(i, computeFitness(i)))
-                .filter(p -> p.getRight().getLeft() > 0)
-                .max(Comparator.comparingDouble(p -> p.getRight().getLeft()))
-                .map(p -> {
-                    AgentInstance agent = p.getLeft();
-                    List<Task> tasks = p.getRight().getRight();
+        AgentFitness top;
+        while ((top = agentsByFitness.poll()) != null) {
+            Pair<Double, List<Task>> fitness = computeFitness(top.agent);
+            if (fitness.getLeft() <= 0) {
+                continue;
+            }
 
-                    tasks.forEach(task -> {
-                        evacuatedAgentsAllocationTracker.descheduled(task);
-                        evictionQuotaTracker.consumeQuota(task.getJobId());
-                    });
+            AgentFitness next = agentsByFitness.peek();
+            if (next == null || fitness.getLeft() >= next.fitness) {
+                AgentInstance agent = top.agent;
+                List<Task> tasks = fitness.getRight();
 
-                    return Pair.of(agent, tasks);
+                tasks.forEach(task -> {
+                    evacuatedAgentsAllocationTracker.descheduled(task);
+                    evictionQuotaTracker.consumeQuota(task.getJobId());
                 });
+
+                // Tasks left on the agent may still be evicted, if it becomes the best match again. As fewer tasks
+                // are left, its fitness may go up, so it is put back with the highest possible value.
+                agentsByFitness.add(new AgentFitness(agent, FITNESS_PERFECT));
+
+                return Optional.of(Pair.of(agent, tasks));
+            }
+            agentsByFitness.add(new AgentFitness(top.agent, fitness.getLeft()));
+        }
+        return Optional.empty();
     }
 
     DeschedulingFailure getDeschedulingFailure(Task task) {
@@ -178,6 +209,18 @@ class TaskMigrationDescheduler {
                 .build();
     }
 
+    private PriorityQueue<AgentFitness> buildAgentFitnessQueue() {
+        Map<String, AgentInstance> removableAgents = evacuatedAgentsAllocationTracker.getRemovableAgentsById();
+        PriorityQueue<AgentFitness> queue = new PriorityQueue<>(Math.max(1, removableAgents.size()), BEST_FITNESS_FIRST);
+        removableAgents.values().forEach(agent -> {
+            double fitness = computeFitness(agent).getLeft();
+            if (fitness > 0) {
+                queue.add(new AgentFitness(agent, fitness));
+            }
+        });
+        return queue;
+    }
+
     private Pair<Double, List<Task>> computeFitness(AgentInstance agent) {
         List<Task> tasks = evacuatedAgentsAllocationTracker.getTasksOnAgent(agent.getId());
         if (tasks.isEmpty()) {
@@ -231,4 +274,15 @@ class TaskMigrationDescheduler {
 
         return relocationPlan.getRelocationTime() <= clock.wallTime();
     }
+
+    private static class AgentFitness {
+
+        private final AgentInstance agent;
+        private final double fitness;
+
+        private AgentFitness(AgentInstance agent, double fitness) {
+            this.agent = agent;
+            this.fitness = fitness;
+        }
+    }
 }
@@ -145,6 +145,35 @@ public class TaskMigrationDeschedulerTest {
         assertThat(results.get().getLeft().getId()).isEqualTo(agent2);
     }
 
+    @Test
+    public void testFitnessIsReevaluatedAfterQuotaIsConsumed() {
+        List<AgentInstance> removableAgents = agentOperations.getAgentInstances("removable1");
+        String agent1 = removableAgents.get(0).getId();
+        String agent2 = removableAgents.get(1).getId();
+        List<Task> tasksOfJob1 = jobOperations.getTasks("job1");
+        List<Task> tasksOfJob2 = jobOperations.getTasks("job2");
+        dataGenerator.placeOnAgent(agent1, tasksOfJob1.get(0), tasksOfJob1.get(1), tasksOfJob2.get(0));
+        dataGenerator.placeOnAgent(agent2, tasksOfJob1.get(2));
+        dataGenerator.setQuota("job1", 2);
+        dataGenerator.setQuota("job2", 0);
+
+        TaskMigrationDescheduler descheduler = newDescheduler(Collections.emptyMap());
+
+        // agent2 can be fully evacuated, so it goes first, and consumes one unit of job1 quota.
+        Optional<Pair<AgentInstance, List<Task>>> first = descheduler.nextBestMatch();
+        assertThat(first).isPresent();
+        assertThat(first.get().getLeft().getId()).isEqualTo(agent2);
+        assertThat(first.get().getRight()).containsExactly(tasksOfJob1.get(2));
+
+        // Only one job1 task can be evicted from agent1 now.
+        Optional<Pair<AgentInstance, List<Task>>> second = descheduler.nextBestMatch();
+        assertThat(second).isPresent();
+        assertThat(second.get().getLeft().getId()).isEqualTo(agent1);
+        assertThat(second.get().getRight()).hasSize(1);
+
+        assertThat(descheduler.nextBestMatch()).isEmpty();
+    }
+
     @Test
     public void testFailures() {
         Task job1Task0 = jobOperations.getTasks("job1").get(0);
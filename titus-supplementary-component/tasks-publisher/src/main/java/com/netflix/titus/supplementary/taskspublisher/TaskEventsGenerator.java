@@ -18,6 +18,8 @@ package com.netflix.titus.supplementary.taskspublisher;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.netflix.titus.api.jobmanager.JobAttributes;
 import com.netflix.titus.common.util.tuple.Pair;
 import com.netflix.titus.grpc.protogen.Job;
@@ -27,16 +29,25 @@ import com.netflix.titus.supplementary.taskspublisher.es.ElasticSearchUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.ConnectableFlux;
-import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
 
 public class TaskEventsGenerator {
     private static final Logger logger = LoggerFactory.getLogger(TaskEventsGenerator.class);
+    private static final int MAX_CONVERTED_JOBS = 40000;
     private final Map<String, String> taskDocumentBaseContext;
     private TitusClient titusClient;
     private ConnectableFlux<TaskDocument> taskEvents;
 
+    /**
+     * Core model of the most recently seen version of each job. The job protobuf objects come from the job cache of
+     * {@link TitusClient}, which is updated from the job event stream, so a job is converted again only when it changes,
+     * and not for each of its task updates.
+     */
+    private final Cache<String, Pair<Job, com.netflix.titus.api.jobmanager.model.job.Job>> convertedJobs = Caffeine.newBuilder()
+            .maximumSize(MAX_CONVERTED_JOBS)
+            .build();
+
     public TaskEventsGenerator(TitusClient titusClient,
                                Map<String, String> taskDocumentBaseContext) {
         this.titusClient = titusClient;
@@ -52,24 +63,27 @@ public class TaskEventsGenerator {
     private void buildEventStream() {
         taskEvents = titusClient.getTaskUpdates()
                 .publishOn(Schedulers.elastic())
-                .map(task -> {
-                    final Mono<Job> jobById = titusClient.getJobById(task.getJobId());
-                    return Pair.of(task, jobById);
-                })
-                .flatMap(taskMonoPair -> {
-                    final Task task = taskMonoPair.getLeft();
-                    return taskMonoPair.getRight()
-                            .map(job -> {
-                                final com.netflix.titus.api.jobmanager.model.job.Job coreJob = V3GrpcModelConverters.toCoreJob(job);
-                                final com.netflix.titus.api.jobmanager.model.job.Task coreTask = V3GrpcModelConverters.toCoreTask(coreJob, task);
-                                return TaskDocument.fromV3Task(coreTask, coreJob, ElasticSearchUtils.DATE_FORMAT, buildTaskContext(task));
-                            }).flux();
-                })
+                .flatMap(task -> titusClient.getJobById(task.getJobId())
+                        .map(job -> {
+                            final com.netflix.titus.api.jobmanager.model.job.Job coreJob = toCoreJob(job);
+                            final com.netflix.titus.api.jobmanager.model.job.Task coreTask = V3GrpcModelConverters.toCoreTask(coreJob, task);
+                            return TaskDocument.fromV3Task(coreTask, coreJob, ElasticSearchUtils.DATE_FORMAT, buildTaskContext(task));
+                        }).flux()
+                )
                 .retryWhen(TaskPublisherRetryUtil.buildRetryHandler(TaskPublisherRetryUtil.INITIAL_RETRY_DELAY_MS,
                         TaskPublisherRetryUtil.MAX_RETRY_DELAY_MS, -1))
                 .publish();
     }
 
+    private com.netflix.titus.api.jobmanager.model.job.Job toCoreJob(Job job) {
+        Pair<Job, com.netflix.titus.api.jobmanager.model.job.Job> converted = convertedJobs.getIfPresent(job.getId());
+        if (converted != null && converted.getLeft() == job) {
+            return converted.getRight();
+        }
+        com.netflix.titus.api.jobmanager.model.job.Job coreJob = V3GrpcModelConverters.toCoreJob(job);
+        convertedJobs.put(job.getId(), Pair.of(job, coreJob));
+        return coreJob;
+    }
 
     private Map<String, String> buildTaskContext(Task task) {
         String stack = "";
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.titus.supplementary.taskspublisher.es;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the number of documents sent in a single bulk index request. The size grows while full bulk requests
+ * complete within the target latency, and is halved when a request is slow or fails, so the request size follows
+ * both the event rate and the Elasticsearch cluster capacity.
+ */
+class AdaptiveBulkSizer {
+
+    private final int minSize;
+    private final int maxSize;
+    private final long targetLatencyMs;
+
+    private final AtomicInteger bulkSize;
+
+    AdaptiveBulkSizer(int minSize, int initialSize, int maxSize, long targetLatencyMs) {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetLatencyMs = targetLatencyMs;
+        this.bulkSize = new AtomicInteger(Math.max(minSize, Math.min(maxSize, initialSize)));
+    }
+
+    int getBulkSize() {
+        return bulkSize.get();
+    }
+
+    /**
+     * Splits the buffered documents into bulk requests of the current size.
+     */
+    <T> List<List<T>> split(List<T> items) {
+        int size = bulkSize.get();
+        if (items.size() <= size) {
+            return Collections.singletonList(items);
+        }
+        List<List<T>> parts = new ArrayList<>((items.size() + size - 1) / size);
+        for (int from = 0; from < items.size(); from += size) {
+            parts.add(items.subList(from, Math.min(items.size(), from + size)));
+        }
+        return parts;
+    }
+
+    void onSuccess(int requestSize, long latencyMs) {
+        if (latencyMs > targetLatencyMs) {
+            decrease();
+        } else if (requestSize >= bulkSize.get()) {
+            // Only full requests are a signal that a larger size is needed.
+            bulkSize.updateAndGet(current -> Math.min(maxSize, current + Math.max(1, current / 4)));
+        }
+    }
+
+    void onFailure() {
+        decrease();
+    }
+
+    private void decrease() {
+        bulkSize.updateAndGet(current -> Math.max(minSize, current / 2));
+    }
+}
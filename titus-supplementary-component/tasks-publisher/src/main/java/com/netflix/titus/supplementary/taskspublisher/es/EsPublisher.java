@@ -16,6 +16,8 @@
 package com.netflix.titus.supplementary.taskspublisher.es;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.PostConstruct;
@@ -33,13 +35,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.Disposable;
 import reactor.core.publisher.ConnectableFlux;
+import reactor.core.publisher.Mono;
 
 public class EsPublisher implements TasksPublisher {
     private static final Logger logger = LoggerFactory.getLogger(EsPublisher.class);
     private static final int MAX_CONCURRENCY = 20;
+    private static final int MIN_BULK_SIZE = 10;
+    private static final int INITIAL_BULK_SIZE = 100;
+    private static final int MAX_BULK_SIZE = 2000;
+    private static final long TARGET_BULK_LATENCY_MS = 2_000;
+    private static final Duration FLUSH_INTERVAL = Duration.ofSeconds(1);
     private TaskEventsGenerator taskEventsGenerator;
     private final EsClient esClient;
     private Registry registry;
+    private final AdaptiveBulkSizer bulkSizer = new AdaptiveBulkSizer(MIN_BULK_SIZE, INITIAL_BULK_SIZE, MAX_BULK_SIZE, TARGET_BULK_LATENCY_MS);
 
     private AtomicInteger numErrors = new AtomicInteger(0);
     private AtomicInteger numTasksUpdated = new AtomicInteger(0);
@@ -64,9 +73,12 @@ public class EsPublisher implements TasksPublisher {
     @PostConstruct
     public void start() {
         ConnectableFlux<TaskDocument> taskEvents = taskEventsGenerator.getTaskEvents();
-        subscription = taskEvents.bufferTimeout(100, Duration.ofSeconds(5))
+        // Documents are buffered up to the maximum bulk size, and split into requests of the current adaptive size.
+        // With a low event rate the buffer is flushed by time, so the documents are indexed with a short delay.
+        subscription = taskEvents.bufferTimeout(MAX_BULK_SIZE, FLUSH_INTERVAL)
+                .concatMapIterable(bulkSizer::split)
                 .flatMap(taskDocuments ->
-                        esClient.bulkIndexTaskDocument(taskDocuments)
+                        indexTaskDocuments(taskDocuments)
                                 .retryWhen(TaskPublisherRetryUtil.buildRetryHandler(
                                         TaskPublisherRetryUtil.INITIAL_RETRY_DELAY_MS,
                                         TaskPublisherRetryUtil.MAX_RETRY_DELAY_MS, 3)),
@@ -90,6 +102,18 @@ public class EsPublisher implements TasksPublisher {
         taskEventsSourceConnection = taskEvents.connect();
     }
 
+    private Mono<EsClient.BulkEsIndexResp> indexTaskDocuments(List<TaskDocument> taskDocuments) {
+        return Mono.defer(() -> {
+            long startTime = registry.clock().monotonicTime();
+            return esClient.bulkIndexTaskDocument(taskDocuments)
+                    .doOnSuccess(response -> bulkSizer.onSuccess(
+                            taskDocuments.size(),
+                            TimeUnit.NANOSECONDS.toMillis(registry.clock().monotonicTime() - startTime)
+                    ))
+                    .doOnError(e -> bulkSizer.onFailure());
+        });
+    }
+
     @Override
     public int getNumErrorsInPublishing() {
         return numErrors.get();
@@ -107,6 +131,9 @@ public class EsPublisher implements TasksPublisher {
         PolledMeter.using(registry)
                 .withId(registry.createId(EsTaskPublisherMetrics.METRIC_ES_PUBLISHER + "numTasksUpdated"))
                 .monitorValue(numTasksUpdated);
+        PolledMeter.using(registry)
+                .withId(registry.createId(EsTaskPublisherMetrics.METRIC_ES_PUBLISHER + "bulkSize"))
+                .monitorValue(bulkSizer, AdaptiveBulkSizer::getBulkSize);
 
         lastPublishedTimestamp = PolledMeter.using(registry)
                 .withId(registry.createId(EsTaskPublisherMetrics.METRIC_ES_PUBLISHER + "lastPublishedTimestamp"))
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.titus.supplementary.taskspublisher;
+package com.netflix.titus.supplementary.taskspublisher.es;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class AdaptiveBulkSizerTest {
+
+    private static final long TARGET_LATENCY_MS = 1_000;
+
+    private final AdaptiveBulkSizer bulkSizer = new AdaptiveBulkSizer(10, 100, 1000, TARGET_LATENCY_MS);
+
+    @Test
+    public void testBulkSizeGrowsWhenFullRequestsAreFast() {
+        bulkSizer.onSuccess(100, 10);
+        assertThat(bulkSizer.getBulkSize()).isEqualTo(125);
+
+        // Partial requests do not change the size.
+        bulkSizer.onSuccess(50, 10);
+        assertThat(bulkSizer.getBulkSize()).isEqualTo(125);
+
+        for (int i = 0; i < 100; i++) {
+            bulkSizer.onSuccess(bulkSizer.getBulkSize(), 10);
+        }
+        assertThat(bulkSizer.getBulkSize()).isEqualTo(1000);
+    }
+
+    @Test
+    public void testBulkSizeShrinksOnSlowRequestsAndFailures() {
+        bulkSizer.onSuccess(100, TARGET_LATENCY_MS + 1);
+        assertThat(bulkSizer.getBulkSize()).isEqualTo(50);
+
+        bulkSizer.onFailure();
+        assertThat(bulkSizer.getBulkSize()).isEqualTo(25);
+
+        for (int i = 0; i < 10; i++) {
+            bulkSizer.onFailure();
+        }
+        assertThat(bulkSizer.getBulkSize()).isEqualTo(10);
+    }
+
+    @Test
+    public void testSplit() {
+        List<Integer> items = IntStream.range(0, 250).boxed().collect(Collectors.toList());
+
+        List<List<Integer>> parts = bulkSizer.split(items);
+        assertThat(parts).hasSize(3);
+        assertThat(parts.get(0)).hasSize(100);
+        assertThat(parts.get(2)).containsExactlyElementsOf(items.subList(200, 250));
+
+        assertThat(bulkSizer.split(items.subList(0, 100))).hasSize(1);
+    }
+}
@@ -38,8 +38,12 @@ import com.netflix.titus.api.jobmanager.model.job.event.JobUpdateEvent;
 import com.netflix.titus.api.jobmanager.model.job.event.TaskUpdateEvent;
 import com.netflix.titus.api.jobmanager.model.job.ext.ServiceJobExt;
 import com.netflix.titus.api.jobmanager.service.V3JobOperations;
+import com.netflix.titus.api.model.Page;
+import com.netflix.titus.api.model.Pagination;
+import com.netflix.titus.api.model.PaginationUtil;
 import com.netflix.titus.common.util.rx.ReactorExt;
 import com.netflix.titus.common.util.tuple.Pair;
+import com.netflix.titus.runtime.jobmanager.JobManagerCursors;
 import reactor.core.publisher.Mono;
 import rx.Completable;
 import rx.Observable;
@@ -103,6 +107,28 @@ class StubbedJobOperations implements V3JobOperations {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public Pair<List<Job<?>>, Pagination> findJobs(Predicate<Pair<Job<?>, List<Task>>> queryPredicate, Page page) {
+        return PaginationUtil.takePageWithCursor(
+                page,
+                findJobs(queryPredicate, 0, Integer.MAX_VALUE / 2),
+                JobManagerCursors.coreJobCursorOrderComparator(),
+                JobManagerCursors::coreJobIndexOf,
+                JobManagerCursors::newCoreCursorFrom
+        );
+    }
+
+    @Override
+    public Pair<List<Task>, Pagination> findTasks(Predicate<Pair<Job<?>, Task>> queryPredicate, Page page) {
+        return PaginationUtil.takePageWithCursor(
+                page,
+                findTasks(queryPredicate, 0, Integer.MAX_VALUE / 2).stream().map(Pair::getRight).collect(Collectors.toList()),
+                JobManagerCursors.coreTaskCursorOrderComparator(),
+                JobManagerCursors::coreTaskIndexOf,
+                JobManagerCursors::newCoreCursorFrom
+        );
+    }
+
     @Override
     public Optional<Pair<Job<?>, Task>> findTaskById(String taskId) {
         return stubbedJobData